@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net.payload;
+
+import llc.berserkr.common.util.JacksonUtil;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second per core for the payload proxy frame decode, comparing the original
+ * String/ObjectMapper/ZonedDateTime path with {@link LogEventDecoder}.  Run with
+ * <code>-prof gc</code> to compare the allocation rate per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LogEventDecoderBenchmark {
+
+    private byte[] frame;
+    private LogEventDecoder decoder;
+
+    @Setup
+    public void setup() {
+        final String json = "{\"message\":\"Connection pool exhausted, waiting for a free connection\","
+            + "\"name\":\"org.example.db.ConnectionPool\","
+            + "\"threadName\":\"http-nio-8080-exec-12\","
+            + "\"level\":\"WARN\","
+            + "\"time\":" + System.currentTimeMillis() + "}";
+
+        final byte[] event = json.getBytes(StandardCharsets.UTF_8);
+
+        // frames carry a two byte type ahead of the event
+        frame = new byte[event.length + 2];
+        frame[0] = 0;
+        frame[1] = 'B';
+        System.arraycopy(event, 0, frame, 2, event.length);
+
+        decoder = new LogEventDecoder();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) throws JacksonUtil.DataException {
+        final byte[] data = new byte[frame.length - 2];
+        System.arraycopy(frame, 2, data, 0, data.length);
+
+        final LogEvent event = JacksonUtil.deserialize(new String(data, StandardCharsets.UTF_8), LogEvent.class);
+        final String timeStamp = ZonedDateTime.ofInstant(Instant.ofEpochMilli(event.time), ZoneId.systemDefault()).toString();
+
+        final ChainsawLoggingEvent loggingEvent = new ChainsawLoggingEventBuilder()
+            .setLevelFromString(event.level)
+            .setMessage(event.message)
+            .setLogger(event.name)
+            .setThreadName(event.threadName)
+            .setTimestamp(ZonedDateTime.parse(timeStamp).toInstant())
+            .create();
+
+        blackhole.consume(loggingEvent);
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        blackhole.consume(decoder.decode(frame, 2, frame.length - 2));
+    }
+}
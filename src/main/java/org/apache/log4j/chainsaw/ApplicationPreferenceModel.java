@@ -22,6 +22,7 @@ import javax.swing.*;
 import org.apache.commons.configuration2.AbstractConfiguration;
 import org.apache.commons.configuration2.event.ConfigurationEvent;
 import org.apache.commons.configuration2.event.EventListener;
+import org.apache.log4j.chainsaw.store.MemoryGovernor;
 
 /**
  * Encapsulates the Chainsaw Application wide properties
@@ -33,6 +34,13 @@ public class ApplicationPreferenceModel {
     public static final String SHOW_NO_RECEIVER_WARNING = "showNoReceiverWarning";
     public static final String IDENTIFIER_EXPRESSION = "identifierExpression";
     public static final String CYCLIC_BUFFER_SIZE = "cyclicBufferSize";
+    public static final String SPILL_TO_DISK = "spillToDisk";
+    public static final String SPILL_MAX_MEGABYTES = "spillMaxMegabytes";
+    public static final String MEMORY_BUDGET_PERCENT = "memoryBudgetPercent";
+    public static final String USE_RETENTION_POLICY = "useRetentionPolicy";
+    public static final String RETENTION_MINUTES = "retentionMinutes";
+    public static final String RETENTION_WARN_MINUTES = "retentionWarnMinutes";
+    public static final String RETENTION_LOGGER_QUOTA = "retentionLoggerQuota";
     public static final String TOOL_TIP_DISPLAY_MILLIS = "toolTipDisplayMillis";
     public static final String RESPONSIVENESS = "responsiveness";
     public static final String TAB_PLACEMENT = "tabPlacement";
@@ -53,6 +61,13 @@ public class ApplicationPreferenceModel {
     private final AbstractConfiguration globalConfiguration;
     private final int toolTipDisplayMillisDefault = 4000;
     private final int cyclicBufferSizeDefault = 50000;
+    private final boolean spillToDiskDefault = false;
+    private final int spillMaxMegabytesDefault = 1024;
+    private final int memoryBudgetPercentDefault = MemoryGovernor.DEFAULT_BUDGET_PERCENT;
+    private final boolean useRetentionPolicyDefault = false;
+    private final int retentionMinutesDefault = 0;
+    private final int retentionWarnMinutesDefault = 0;
+    private final int retentionLoggerQuotaDefault = 0;
     private final int responsivenessDefault = 3;
     private final Color searchBackgroundColorDefault = ChainsawConstants.FIND_LOGGER_BACKGROUND;
     private final Color searchForegroundColorDefault = ChainsawConstants.FIND_LOGGER_FOREGROUND;
@@ -99,6 +114,83 @@ public class ApplicationPreferenceModel {
         return globalConfiguration.getInt(CYCLIC_BUFFER_SIZE, cyclicBufferSizeDefault);
     }
 
+    /**
+     * @return true if events evicted from the cyclic buffer are kept on disk
+     */
+    public final boolean isSpillToDisk() {
+        return globalConfiguration.getBoolean(SPILL_TO_DISK, spillToDiskDefault);
+    }
+
+    public final void setSpillToDisk(boolean spillToDisk) {
+        globalConfiguration.setProperty(SPILL_TO_DISK, spillToDisk);
+    }
+
+    /**
+     * @return the maximum size of the history kept on disk for each tab
+     */
+    public final int getSpillMaxMegabytes() {
+        return globalConfiguration.getInt(SPILL_MAX_MEGABYTES, spillMaxMegabytesDefault);
+    }
+
+    public final void setSpillMaxMegabytes(int spillMaxMegabytes) {
+        globalConfiguration.setProperty(SPILL_MAX_MEGABYTES, spillMaxMegabytes);
+    }
+
+    /**
+     * @return the percentage of the maximum heap size the events of all tabs may use
+     */
+    public final int getMemoryBudgetPercent() {
+        return globalConfiguration.getInt(MEMORY_BUDGET_PERCENT, memoryBudgetPercentDefault);
+    }
+
+    public final void setMemoryBudgetPercent(int memoryBudgetPercent) {
+        globalConfiguration.setProperty(MEMORY_BUDGET_PERCENT, memoryBudgetPercent);
+    }
+
+    /**
+     * @return true if events are evicted by level, age and logger quota rather than oldest first
+     */
+    public final boolean isUseRetentionPolicy() {
+        return globalConfiguration.getBoolean(USE_RETENTION_POLICY, useRetentionPolicyDefault);
+    }
+
+    public final void setUseRetentionPolicy(boolean useRetentionPolicy) {
+        globalConfiguration.setProperty(USE_RETENTION_POLICY, useRetentionPolicy);
+    }
+
+    /**
+     * @return how long events are kept, 0 to keep them until they are evicted by count
+     */
+    public final int getRetentionMinutes() {
+        return globalConfiguration.getInt(RETENTION_MINUTES, retentionMinutesDefault);
+    }
+
+    public final void setRetentionMinutes(int retentionMinutes) {
+        globalConfiguration.setProperty(RETENTION_MINUTES, retentionMinutes);
+    }
+
+    /**
+     * @return how long WARN and above events are kept, 0 to keep them until they are evicted by count
+     */
+    public final int getRetentionWarnMinutes() {
+        return globalConfiguration.getInt(RETENTION_WARN_MINUTES, retentionWarnMinutesDefault);
+    }
+
+    public final void setRetentionWarnMinutes(int retentionWarnMinutes) {
+        globalConfiguration.setProperty(RETENTION_WARN_MINUTES, retentionWarnMinutes);
+    }
+
+    /**
+     * @return the maximum number of events kept for one logger, 0 for no limit
+     */
+    public final int getRetentionLoggerQuota() {
+        return globalConfiguration.getInt(RETENTION_LOGGER_QUOTA, retentionLoggerQuotaDefault);
+    }
+
+    public final void setRetentionLoggerQuota(int retentionLoggerQuota) {
+        globalConfiguration.setProperty(RETENTION_LOGGER_QUOTA, retentionLoggerQuota);
+    }
+
     public final void setToolTipDisplayMillis(int newToolTipDisplayMillis) {
         globalConfiguration.setProperty(TOOL_TIP_DISPLAY_MILLIS, newToolTipDisplayMillis);
     }
@@ -144,6 +236,13 @@ public class ApplicationPreferenceModel {
         setShowSplash(model.isShowSplash());
         setToolTipDisplayMillis(model.getToolTipDisplayMillis());
         setCyclicBufferSize(model.getCyclicBufferSize());
+        setSpillToDisk(model.isSpillToDisk());
+        setSpillMaxMegabytes(model.getSpillMaxMegabytes());
+        setMemoryBudgetPercent(model.getMemoryBudgetPercent());
+        setUseRetentionPolicy(model.isUseRetentionPolicy());
+        setRetentionMinutes(model.getRetentionMinutes());
+        setRetentionWarnMinutes(model.getRetentionWarnMinutes());
+        setRetentionLoggerQuota(model.getRetentionLoggerQuota());
         // only set current config URL if bypass is null
         if (model.getBypassConfigurationURL() == null) {
             setConfigurationURL(model.getConfigurationURL());
@@ -265,6 +265,10 @@ public class ApplicationPreferenceModelPanel extends AbstractPreferencePanel {
         private final JCheckBox showSplash = new JCheckBox(" Show Splash screen at startup ");
         private final JSlider responsiveSlider = new JSlider(SwingConstants.HORIZONTAL, 1, 4, 2);
         private final JCheckBox confirmExit = new JCheckBox(" Confirm Exit ");
+        private final JCheckBox spillToDisk =
+                new JCheckBox(" Keep events which fall out of the cyclic buffer on disk (effective on restart) ");
+        private final JCheckBox useRetentionPolicy =
+                new JCheckBox(" Evict lower level events first and keep marked events (effective on restart) ");
         Dictionary<Integer, JLabel> sliderLabelMap = new Hashtable<>();
 
         public GeneralAllPrefPanel() {
@@ -316,9 +320,17 @@ public class ApplicationPreferenceModelPanel extends AbstractPreferencePanel {
             p5.add(new JLabel(" Cyclic buffer size "));
             p5.add(Box.createHorizontalStrut(5));
             p5.add(cyclicBufferSize);
-            p5.add(Box.createHorizontalStrut(5));
-            p5.add(new JLabel(" (effective on restart) "));
             add(p5);
+
+            Box p6 = new Box(BoxLayout.X_AXIS);
+            p6.add(spillToDisk);
+            p6.add(Box.createHorizontalGlue());
+            add(p6);
+
+            Box p7 = new Box(BoxLayout.X_AXIS);
+            p7.add(useRetentionPolicy);
+            p7.add(Box.createHorizontalGlue());
+            add(p7);
         }
 
         private void initSliderComponent() {
@@ -391,6 +403,21 @@ public class ApplicationPreferenceModelPanel extends AbstractPreferencePanel {
             });
 
             confirmExit.addActionListener(e -> applicationPreferenceModel.setConfirmExit(confirmExit.isSelected()));
+            spillToDisk.addActionListener(e -> applicationPreferenceModel.setSpillToDisk(spillToDisk.isSelected()));
+            cyclicBufferSize.addActionListener(e -> {
+                try {
+                    int value = Integer.parseInt(cyclicBufferSize.getText().trim());
+                    if (value > 0) {
+                        applicationPreferenceModel.setCyclicBufferSize(value);
+                        return;
+                    }
+                } catch (NumberFormatException ex) {
+                    // fall through and restore the current value
+                }
+                cyclicBufferSize.setText(String.valueOf(applicationPreferenceModel.getCyclicBufferSize()));
+            });
+            useRetentionPolicy.addActionListener(
+                    e -> applicationPreferenceModel.setUseRetentionPolicy(useRetentionPolicy.isSelected()));
         }
 
         private void setupInitialValues() {
@@ -401,6 +428,8 @@ public class ApplicationPreferenceModelPanel extends AbstractPreferencePanel {
 
             confirmExit.setSelected(applicationPreferenceModel.isConfirmExit());
             showSplash.setSelected(applicationPreferenceModel.isShowSplash());
+            spillToDisk.setSelected(applicationPreferenceModel.isSpillToDisk());
+            useRetentionPolicy.setSelected(applicationPreferenceModel.isUseRetentionPolicy());
             toolTipDisplayMillis.setText(String.valueOf(applicationPreferenceModel.getToolTipDisplayMillis()));
             cyclicBufferSize.setText(String.valueOf(applicationPreferenceModel.getCyclicBufferSize()));
         }
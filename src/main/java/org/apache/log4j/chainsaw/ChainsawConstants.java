@@ -83,6 +83,8 @@ public class ChainsawConstants {
     public static final String LINE_COL_NAME = "LINE";
     public static final String PROPERTIES_COL_NAME = "PROPERTIES";
     public static final String MILLIS_DELTA_COL_NAME_LOWERCASE = "millisdelta";
+    public static final String RELATIVE_TIME_COL_NAME_LOWERCASE = "relativetime";
+    public static final String ROW_NUMBER_COL_NAME_LOWERCASE = "rownumber";
     public static final String ID_COL_NAME = "ID";
 
     // none is not a real column name, but is used by filters as a way to apply no filter for colors or display
@@ -19,14 +19,19 @@ package org.apache.log4j.chainsaw;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import javax.swing.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import javax.swing.event.EventListenerList;
 import javax.swing.table.AbstractTableModel;
 import org.apache.log4j.chainsaw.color.RuleColorizer;
@@ -35,6 +40,11 @@ import org.apache.log4j.chainsaw.components.loggernamepanel.LoggerNameModel;
 import org.apache.log4j.chainsaw.components.loggernamepanel.LoggerNameModelSupport;
 import org.apache.log4j.chainsaw.helper.SwingHelper;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
+import org.apache.log4j.chainsaw.store.EventSpillStore;
+import org.apache.log4j.chainsaw.store.RetentionEventList;
+import org.apache.log4j.chainsaw.store.RetentionPolicy;
+import org.apache.log4j.chainsaw.store.TieredEventList;
 import org.apache.log4j.helpers.Constants;
 import org.apache.log4j.rule.Rule;
 import org.apache.logging.log4j.LogManager;
@@ -56,9 +66,14 @@ import org.apache.logging.log4j.Logger;
 public class ChainsawCyclicBufferTableModel extends AbstractTableModel
         implements EventContainer, PropertyChangeListener {
 
+    // events paged in from disk per lock hold while scanning the whole history
+    private static final int SCAN_CHUNK_SIZE = 1024;
+    // how often events are checked against the retention policy's maximum ages
+    private static final long EXPIRY_INTERVAL_MILLIS = 1000;
+
     // cyclic field used internally in this class, but not exposed via the eventcontainer
     private boolean cyclic = true;
-    private final int cyclicBufferSize;
+    private int cyclicBufferSize;
     // original list of LoggingEventWrapper instances
     private List<LoggingEventWrapper> unfilteredList;
     // filtered list of LoggingEventWrapper instances
@@ -79,13 +94,26 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
     // use and increment this row counter as the ID for each received row
     private int uniqueRow;
     private final Set uniquePropertyKeys = new HashSet();
+    private boolean derivedColumnsAdded = false;
+    // timestamp of the last event displayed in arrival order, the base of the next event's millis delta
+    private Instant lastDisplayedTimestamp;
     private Rule ruleMediator;
     private final PropertyChangeSupport propertySupport = new PropertyChangeSupport(this);
     private RuleColorizer colorizer;
     private final String tableModelName;
+    private EventSpillStore spillStore;
+    // estimated bytes retained by the in-memory part of unfilteredList, guarded by mutex
+    private long retainedBytes;
+    private long byteBudget = Long.MAX_VALUE;
+    // set when events were released to stay within budget, so the next table event repaints everything
+    private boolean eventsReleased;
+    private RetentionPolicy retentionPolicy;
+    // expires events by age while there is a retention policy with a maximum age, guarded by mutex
+    private ScheduledFuture<?> expiryTask;
+    // displayed events which have left unfilteredList but are still in filteredList, guarded by mutex
+    private final Set<LoggingEventWrapper> evictedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
 
     public ChainsawCyclicBufferTableModel(int cyclicBufferSize, RuleColorizer colorizer, String tableModelName) {
-        propertySupport.addPropertyChangeListener("cyclic", new ModelChanger());
         this.cyclicBufferSize = cyclicBufferSize;
         this.colorizer = colorizer;
         this.tableModelName = tableModelName;
@@ -116,11 +144,14 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
         List<LoggingEventWrapper> list = new ArrayList<>();
         List<LoggingEventWrapper> unfilteredCopy;
         synchronized (mutex) {
+            if (unfilteredList instanceof TieredEventList) {
+                return getMatchingEvents((TieredEventList) unfilteredList, rule);
+            }
             unfilteredCopy = new ArrayList<>(unfilteredList);
         }
 
         for (LoggingEventWrapper loggingEventWrapper : unfilteredCopy) {
-            if (rule.evaluate(loggingEventWrapper.getLoggingEvent(), null)) {
+            if (DerivedColumns.evaluate(rule, this, -1, loggingEventWrapper)) {
                 list.add(loggingEventWrapper);
             }
         }
@@ -128,34 +159,94 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
         return list;
     }
 
+    /**
+     * Evaluate a rule against the whole history, on disk and in memory, without copying it into
+     * memory: chunks of events are paged in while holding the mutex, and evaluated after
+     * releasing it, so events keep arriving during a long scan.  Events added after the scan
+     * started are not evaluated, and events dropped from the spill store during the scan are
+     * skipped.
+     */
+    private List<LoggingEventWrapper> getMatchingEvents(TieredEventList tieredList, Rule rule) {
+        List<LoggingEventWrapper> list = new ArrayList<>();
+        List<LoggingEventWrapper> chunk = new ArrayList<>(SCAN_CHUNK_SIZE);
+        long sequence;
+        long end;
+        synchronized (mutex) {
+            sequence = tieredList.getFirstSequence();
+            end = tieredList.getNextSequence();
+        }
+        while (sequence < end) {
+            chunk.clear();
+            synchronized (mutex) {
+                if (unfilteredList != tieredList) {
+                    // the lists were replaced (the store was turned off or cleared) - stop scanning
+                    break;
+                }
+                sequence = tieredList.read(sequence, (int) Math.min(SCAN_CHUNK_SIZE, end - sequence), chunk);
+            }
+            if (chunk.isEmpty()) {
+                break;
+            }
+            for (LoggingEventWrapper loggingEventWrapper : chunk) {
+                if (DerivedColumns.evaluate(rule, this, -1, loggingEventWrapper)) {
+                    list.add(loggingEventWrapper);
+                }
+            }
+        }
+        return list;
+    }
+
     @Override
     public void reFilter() {
-        final int previousSize;
-        final int newSize;
         synchronized (mutex) {
             // post refilter with newValue of TRUE (filtering is about to begin)
             propertySupport.firePropertyChange("refilter", Boolean.FALSE, Boolean.TRUE);
+        }
+        boolean refiltered;
+        do {
+            TieredEventList tieredList;
+            synchronized (mutex) {
+                tieredList = unfilteredList instanceof TieredEventList ? (TieredEventList) unfilteredList : null;
+            }
+            refiltered = tieredList == null ? reFilterInMemory() : reFilterHistory(tieredList);
+        } while (!refiltered);
+    }
+
+    /**
+     * Refilter events which are all held in memory, under the mutex.
+     *
+     * @return false if the events are partly on disk, and must be refiltered by {@link #reFilterHistory}
+     */
+    private boolean reFilterInMemory() {
+        final int previousSize;
+        final int newSize;
+        synchronized (mutex) {
+            if (unfilteredList instanceof TieredEventList) {
+                return false;
+            }
             previousSize = filteredList.size();
             filteredList.clear();
+            evictedEvents.clear();
+            lastDisplayedTimestamp = null;
             if (ruleMediator == null) {
-                LoggingEventWrapper lastEvent = null;
                 for (LoggingEventWrapper loggingEventWrapper : unfilteredList) {
                     loggingEventWrapper.setDisplayed(true);
-                    updateEventMillisDelta(loggingEventWrapper, lastEvent);
+                    loggingEventWrapper.setPreviousDisplayedEventTimestamp(lastDisplayedTimestamp);
+                    lastDisplayedTimestamp = loggingEventWrapper.getLoggingEvent().m_timestamp;
                     filteredList.add(loggingEventWrapper);
-                    lastEvent = loggingEventWrapper;
                 }
             } else {
                 Iterator<LoggingEventWrapper> iter = unfilteredList.iterator();
-                LoggingEventWrapper lastEvent = null;
                 while (iter.hasNext()) {
                     LoggingEventWrapper loggingEventWrapper = iter.next();
 
-                    if (ruleMediator.evaluate(loggingEventWrapper.getLoggingEvent(), null)) {
+                    // the event would be displayed at the end of the filtered list - rules referencing derived
+                    // columns (millisdelta etc) are evaluated against that row
+                    loggingEventWrapper.setPreviousDisplayedEventTimestamp(lastDisplayedTimestamp);
+                    if (DerivedColumns.evaluate(ruleMediator, this, filteredList.size(), loggingEventWrapper)) {
                         loggingEventWrapper.setDisplayed(true);
+                        lastDisplayedTimestamp = loggingEventWrapper.getLoggingEvent().m_timestamp;
                         filteredList.add(loggingEventWrapper);
-                        updateEventMillisDelta(loggingEventWrapper, lastEvent);
-                        lastEvent = loggingEventWrapper;
                     } else {
                         loggingEventWrapper.setDisplayed(false);
                     }
@@ -163,6 +254,160 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
             }
             newSize = filteredList.size();
         }
+        fireRefiltered(previousSize, newSize);
+        return true;
+    }
+
+    /**
+     * Refilter a history partly held on disk without holding the mutex while it is read.
+     * Chunks of events are read newest first, one chunk per lock hold, and evaluated after
+     * releasing it, until the displayed rows are full or the history runs out, so a filter
+     * matching recent events doesn't read the disk at all.  Only the new rows are swapped in
+     * under the mutex, along with any events which arrived during the scan.
+     * <p>
+     * The rows are only known once the scan is done, so while scanning the rules see events
+     * as not displayed (rules on the row number or relative time don't match them), and the
+     * millis delta of an event is measured from the event received before it.
+     *
+     * @return false if the lists were replaced during the scan, which must be refiltered again
+     */
+    private boolean reFilterHistory(TieredEventList tieredList) {
+        Rule rule;
+        int maxRows;
+        long first;
+        long end;
+        synchronized (mutex) {
+            rule = ruleMediator;
+            maxRows = cyclicBufferSize;
+            first = tieredList.getFirstSequence();
+            end = tieredList.getNextSequence();
+        }
+        ArrayDeque<LoggingEventWrapper> matches = new ArrayDeque<>();
+        // matching events read back from disk, which are colored once they are displayed
+        Set<LoggingEventWrapper> loaded = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<LoggingEventWrapper> chunk = new ArrayList<>(SCAN_CHUNK_SIZE);
+        // the oldest event of the newer chunk, evaluated once the event before it is read
+        LoggingEventWrapper pending = null;
+        boolean pendingLoaded = false;
+        long chunkEnd = end;
+        while (matches.size() < maxRows) {
+            chunk.clear();
+            int spilled;
+            synchronized (mutex) {
+                if (unfilteredList != tieredList) {
+                    // the lists were replaced (the store was turned off or cleared)
+                    return false;
+                }
+                first = Math.max(first, tieredList.getFirstSequence());
+                long chunkStart = Math.max(first, chunkEnd - SCAN_CHUNK_SIZE);
+                long hotStart = tieredList.getHotStartSequence();
+                tieredList.readRange(chunkStart, Math.min(chunkEnd, hotStart), chunk);
+                spilled = chunk.size();
+                tieredList.readRange(Math.max(chunkStart, hotStart), chunkEnd, chunk);
+                chunkEnd = chunkStart;
+            }
+            if (pending != null) {
+                Instant previous = chunk.isEmpty() ? null : chunk.get(chunk.size() - 1).getLoggingEvent().m_timestamp;
+                addMatch(rule, pending, previous, pendingLoaded, matches, loaded);
+                pending = null;
+            }
+            if (chunk.isEmpty()) {
+                break;
+            }
+            for (int i = chunk.size() - 1; i > 0 && matches.size() < maxRows; i--) {
+                addMatch(rule, chunk.get(i), chunk.get(i - 1).getLoggingEvent().m_timestamp, i < spilled, matches, loaded);
+            }
+            pending = chunk.get(0);
+            pendingLoaded = spilled > 0;
+        }
+        if (pending != null && matches.size() < maxRows) {
+            addMatch(rule, pending, null, pendingLoaded, matches, loaded);
+        }
+
+        final int previousSize;
+        final int newSize;
+        List<LoggingEventWrapper> toColor = new ArrayList<>();
+        List<Integer> toColorRows = new ArrayList<>();
+        synchronized (mutex) {
+            if (unfilteredList != tieredList) {
+                return false;
+            }
+            // events which arrived during the scan are displayed after the scanned rows
+            List<LoggingEventWrapper> arrived = new ArrayList<>();
+            long next = tieredList.getNextSequence();
+            long hotStart = tieredList.getHotStartSequence();
+            tieredList.readRange(end, Math.min(next, hotStart), arrived);
+            for (LoggingEventWrapper loggingEventWrapper : arrived) {
+                loaded.add(loggingEventWrapper);
+            }
+            tieredList.readRange(Math.max(end, hotStart), next, arrived);
+            for (int i = 0; i < tieredList.getHotSize(); i++) {
+                tieredList.getHotEvent(i).setDisplayed(false);
+            }
+            previousSize = filteredList.size();
+            filteredList.clear();
+            evictedEvents.clear();
+            lastDisplayedTimestamp = null;
+            for (LoggingEventWrapper loggingEventWrapper : matches) {
+                display(loggingEventWrapper);
+            }
+            for (LoggingEventWrapper loggingEventWrapper : arrived) {
+                loggingEventWrapper.setPreviousDisplayedEventTimestamp(lastDisplayedTimestamp);
+                if (ruleMediator == null
+                        || DerivedColumns.evaluate(ruleMediator, this, filteredList.size(), loggingEventWrapper)) {
+                    display(loggingEventWrapper);
+                }
+            }
+            newSize = filteredList.size();
+            // events read back from disk are colored once their rows are known, after releasing the mutex
+            for (int row = 0; row < newSize; row++) {
+                if (loaded.contains(filteredList.get(row))) {
+                    toColor.add(filteredList.get(row));
+                    toColorRows.add(row);
+                }
+            }
+        }
+        for (int i = 0; i < toColor.size(); i++) {
+            updateColors(toColor.get(i), toColorRows.get(i));
+        }
+        fireRefiltered(previousSize, newSize);
+        return true;
+    }
+
+    /**
+     * Evaluate an event found scanning the history newest first, adding it ahead of the
+     * events already matched.
+     */
+    private void addMatch(
+            Rule rule,
+            LoggingEventWrapper loggingEventWrapper,
+            Instant previousTimestamp,
+            boolean fromDisk,
+            ArrayDeque<LoggingEventWrapper> matches,
+            Set<LoggingEventWrapper> loaded) {
+        loggingEventWrapper.setPreviousDisplayedEventTimestamp(previousTimestamp);
+        if (rule == null || DerivedColumns.evaluate(rule, this, -1, loggingEventWrapper)) {
+            matches.addFirst(loggingEventWrapper);
+            if (fromDisk) {
+                loaded.add(loggingEventWrapper);
+            }
+        }
+    }
+
+    /**
+     * Add an event to the end of the displayed rows, called holding the mutex.
+     */
+    private void display(LoggingEventWrapper loggingEventWrapper) {
+        loggingEventWrapper.setDisplayed(true);
+        loggingEventWrapper.setPreviousDisplayedEventTimestamp(lastDisplayedTimestamp);
+        lastDisplayedTimestamp = loggingEventWrapper.getLoggingEvent().m_timestamp;
+        filteredList.add(loggingEventWrapper);
+    }
+
+    /**
+     * Tell the table, on the EDT, that the rows were refiltered.
+     */
+    private void fireRefiltered(int previousSize, int newSize) {
         SwingHelper.invokeOnEDT(() -> {
             if (newSize > 0) {
                 if (previousSize == newSize) {
@@ -199,25 +444,25 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
         }
         if (searchForward) {
             for (int i = startLocation; i < filteredListCopy.size(); i++) {
-                if (rule.evaluate((filteredListCopy.get(i)).getLoggingEvent(), null)) {
+                if (DerivedColumns.evaluate(rule, this, i, filteredListCopy.get(i))) {
                     return i;
                 }
             }
             // if there was no match, start at row zero and go to startLocation
             for (int i = 0; i < startLocation; i++) {
-                if (rule.evaluate((filteredListCopy.get(i)).getLoggingEvent(), null)) {
+                if (DerivedColumns.evaluate(rule, this, i, filteredListCopy.get(i))) {
                     return i;
                 }
             }
         } else {
             for (int i = startLocation; i > -1; i--) {
-                if (rule.evaluate((filteredListCopy.get(i)).getLoggingEvent(), null)) {
+                if (DerivedColumns.evaluate(rule, this, i, filteredListCopy.get(i))) {
                     return i;
                 }
             }
             // if there was no match, start at row list.size() - 1 and go to startLocation
             for (int i = filteredListCopy.size() - 1; i > startLocation; i--) {
-                if (rule.evaluate((filteredListCopy.get(i)).getLoggingEvent(), null)) {
+                if (DerivedColumns.evaluate(rule, this, i, filteredListCopy.get(i))) {
                     return i;
                 }
             }
@@ -314,11 +559,8 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
             sort = (sortEnabled && filteredListSize > 0);
             if (sort) {
                 // reset display (used to ensure row height is updated)
-                LoggingEventWrapper lastEvent = null;
                 for (LoggingEventWrapper e : filteredList) {
                     e.setDisplayed(true);
-                    updateEventMillisDelta(e, lastEvent);
-                    lastEvent = e;
                 }
                 filteredList.sort(new ColumnComparator(
                         getColumnName(currentSortColumn), currentSortColumn, currentSortAscending));
@@ -353,7 +595,10 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
         synchronized (mutex) {
             unfilteredList.clear();
             filteredList.clear();
+            evictedEvents.clear();
+            lastDisplayedTimestamp = null;
             uniqueRow = 0;
+            retainedBytes = 0;
         }
 
         SwingHelper.invokeOnEDT(this::fireTableDataChanged);
@@ -364,7 +609,18 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
 
     @Override
     public List<LoggingEventWrapper> getAllEvents() {
+        return copyInMemoryEvents();
+    }
+
+    /**
+     * Copy the events held in memory.  Events spilled to disk are not included - they are
+     * read back (and colored) again when they are needed.
+     */
+    private List<LoggingEventWrapper> copyInMemoryEvents() {
         synchronized (mutex) {
+            if (unfilteredList instanceof TieredEventList) {
+                return ((TieredEventList) unfilteredList).copyHotEvents();
+            }
             return new ArrayList<>(unfilteredList);
         }
     }
@@ -388,11 +644,10 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
     public void removePropertyFromEvents(String propName) {
         // first remove the event from any displayed events, so we can fire row updated event
         List<LoggingEventWrapper> filteredListCopy;
-        List<LoggingEventWrapper> unfilteredListCopy;
         synchronized (mutex) {
             filteredListCopy = new ArrayList<>(filteredList);
-            unfilteredListCopy = new ArrayList<>(unfilteredList);
         }
+        List<LoggingEventWrapper> unfilteredListCopy = copyInMemoryEvents();
         for (int i = 0; i < filteredListCopy.size(); i++) {
             LoggingEventWrapper loggingEventWrapper = filteredListCopy.get(i);
             Object result = loggingEventWrapper.removeProperty(propName);
@@ -409,10 +664,8 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
     @Override
     public int updateEventsWithFindRule(Rule findRule) {
         int count = 0;
-        List<LoggingEventWrapper> unfilteredListCopy;
-        synchronized (mutex) {
-            unfilteredListCopy = new ArrayList<>(unfilteredList);
-        }
+        // events read back from disk are evaluated against the find rule as they are loaded
+        List<LoggingEventWrapper> unfilteredListCopy = copyInMemoryEvents();
         for (LoggingEventWrapper loggingEventWrapper : unfilteredListCopy) {
             loggingEventWrapper.evaluateSearchRule(findRule);
             // return the count of visible search matches
@@ -509,17 +762,12 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        ChainsawLoggingEvent event = null;
+        LoggingEventWrapper loggingEventWrapper = getRow(rowIndex);
 
-        synchronized (mutex) {
-            if (rowIndex < filteredList.size() && rowIndex > -1) {
-                event = (filteredList.get(rowIndex)).getLoggingEvent();
-            }
-        }
-
-        if (event == null) {
+        if (loggingEventWrapper == null) {
             return null;
         }
+        ChainsawLoggingEvent event = loggingEventWrapper.getLoggingEvent();
 
         switch (columnIndex + 1) {
             case ChainsawColumns.INDEX_ID_COL_NAME:
@@ -531,11 +779,6 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
             case ChainsawColumns.INDEX_LOG4J_MARKER_COL_NAME:
                 return event.getProperty(ChainsawConstants.LOG4J_MARKER_COL_NAME);
 
-                /*
-                            case ChainsawColumns.INDEX_MILLIS_DELTA_COL_NAME:
-                                return event.getProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE);
-
-                */
             case ChainsawColumns.INDEX_LOGGER_COL_NAME:
                 return event.m_logger;
 
@@ -569,6 +812,10 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
                 */
 
             default:
+                DerivedColumn derivedColumn = DerivedColumns.getColumn(getColumnName(columnIndex));
+                if (derivedColumn != null) {
+                    return derivedColumn.getValue(this, rowIndex, loggingEventWrapper);
+                }
 
                 //                if (columnIndex < columnNames.size()) {
                 //                    //case may not match..try case sensitive and fall back to case-insensitive
@@ -601,15 +848,8 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
             loggingEventWrapper.setProperty(Constants.LOG4J_ID_KEY, id.toString());
         }
 
-        loggingEventWrapper.updateColorRuleColors(
-                colorizer.getBackgroundColor(loggingEventWrapper.getLoggingEvent()),
-                colorizer.getForegroundColor(loggingEventWrapper.getLoggingEvent()));
-        Rule findRule = colorizer.getFindRule();
-        if (findRule != null) {
-            loggingEventWrapper.evaluateSearchRule(colorizer.getFindRule());
-        }
-
         boolean rowAdded = false;
+        int row = -1;
 
         /*
          * If we're in cyclic mode and over budget on the size, the addition of a new event will
@@ -618,41 +858,65 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
          * memory...)
          */
         synchronized (mutex) {
-            if (cyclic) {
+            if (unfilteredList instanceof TieredEventList) {
+                TieredEventList tieredList = (TieredEventList) unfilteredList;
+                if (tieredList.isHotFull()) {
+                    retainedBytes -= tieredList.getHotEvent(0).getEstimatedSize();
+                    if (cyclic) {
+                        reachedCapacity = true;
+                    }
+                }
+            } else if (unfilteredList instanceof CyclicBufferList) {
                 CyclicBufferList bufferList = (CyclicBufferList) unfilteredList;
                 if (bufferList.size() == bufferList.getMaxSize()) {
+                    retainedBytes -= ((LoggingEventWrapper) bufferList.get(0)).getEstimatedSize();
                     reachedCapacity = true;
                 }
             }
-            int unfilteredSize = unfilteredList.size();
-            LoggingEventWrapper lastLoggingEventWrapper = null;
-            if (unfilteredSize > 0) {
-                lastLoggingEventWrapper = unfilteredList.get(unfilteredSize - 1);
-            }
-            unfilteredList.add(loggingEventWrapper);
-            if ((ruleMediator == null) || (ruleMediator.evaluate(loggingEventWrapper.getLoggingEvent(), null))) {
+            retainedBytes += loggingEventWrapper.getEstimatedSize();
+            // a retention policy may evict the new event straight away
+            boolean retained = unfilteredList.add(loggingEventWrapper);
+            loggingEventWrapper.setPreviousDisplayedEventTimestamp(lastDisplayedTimestamp);
+            if (retained
+                    && ((ruleMediator == null)
+                            || DerivedColumns.evaluate(
+                                    ruleMediator, this, filteredList.size(), loggingEventWrapper))) {
                 loggingEventWrapper.setDisplayed(true);
-                updateEventMillisDelta(loggingEventWrapper, lastLoggingEventWrapper);
+                lastDisplayedTimestamp = loggingEventWrapper.getLoggingEvent().m_timestamp;
                 filteredList.add(loggingEventWrapper);
+                row = filteredList.size() - 1;
                 rowAdded = true;
             } else {
                 loggingEventWrapper.setDisplayed(false);
             }
+            if (evictedEvents.size() > Math.max(64, filteredList.size() / 16) && removeEvictedEvents()) {
+                eventsReleased = true;
+            }
+            // release a tenth of the budget beyond what is needed, so the filtered list isn't rebuilt on every add
+            if (retainedBytes > byteBudget && releaseOldest(retainedBytes - byteBudget + byteBudget / 10) > 0) {
+                eventsReleased = true;
+            }
         }
 
+        // colored once the row (and millis delta) is known, before the table is told of the row
+        updateColors(loggingEventWrapper, row);
         checkForNewColumn(loggingEventWrapper);
 
         return rowAdded;
     }
 
-    private void updateEventMillisDelta(
-            LoggingEventWrapper loggingEventWrapper, LoggingEventWrapper lastLoggingEventWrapper) {
-        if (lastLoggingEventWrapper != null) {
-            loggingEventWrapper.setPreviousDisplayedEventTimestamp(
-                    lastLoggingEventWrapper.getLoggingEvent().m_timestamp);
-        } else {
-            // delta to same event = 0
-            loggingEventWrapper.setPreviousDisplayedEventTimestamp(loggingEventWrapper.getLoggingEvent().m_timestamp);
+    private void updateColors(LoggingEventWrapper loggingEventWrapper) {
+        updateColors(loggingEventWrapper, -1);
+    }
+
+    /**
+     * @param row the row the event is displayed at, or -1 if it isn't displayed
+     */
+    private void updateColors(LoggingEventWrapper loggingEventWrapper, int row) {
+        colorizer.updateColors(this, row, loggingEventWrapper);
+        Rule findRule = colorizer.getFindRule();
+        if (findRule != null) {
+            loggingEventWrapper.evaluateSearchRule(findRule, this, row);
         }
     }
 
@@ -663,6 +927,20 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
          */
         boolean newColumn = uniquePropertyKeys.addAll(loggingEventWrapper.getPropertyKeySet());
 
+        if (!derivedColumnsAdded) {
+            /**
+             * Derived columns aren't stored on the events, so announce them along with the first event
+             */
+            derivedColumnsAdded = true;
+            for (DerivedColumn derivedColumn : DerivedColumns.getColumns()) {
+                String key = derivedColumn.getName().toUpperCase();
+                if (!columnNames.contains(key)) {
+                    columnNames.add(key);
+                    fireNewKeyColumnAdded(new NewKeyEvent(this, columnNames.indexOf(key), key, null));
+                }
+            }
+        }
+
         if (newColumn) {
             /**
              * If so, we should add them as columns and notify listeners.
@@ -687,7 +965,19 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
     @Override
     public void fireTableEvent(final int begin, final int end, final int count) {
         SwingHelper.invokeOnEDT(() -> {
-            if (cyclic) {
+            boolean released;
+            boolean cyclicView;
+            synchronized (mutex) {
+                // evicted rows are removed by isAddRow once enough have built up, not per batch
+                released = eventsReleased;
+                eventsReleased = false;
+                cyclicView = filteredList instanceof CyclicBufferList
+                        && ((CyclicBufferList) filteredList).getMaxSize() != CyclicBufferList.UNBOUNDED;
+            }
+            if (released) {
+                // rows were removed from the table, begin and end no longer line up
+                fireTableDataChanged();
+            } else if (cyclicView) {
                 if (!reachedCapacity) {
                     // if we didn't loop and it's the 1st time, insert
                     if ((begin + count) < cyclicBufferSize) {
@@ -712,13 +1002,7 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
     public void fireRowUpdated(int row, boolean checkForNewColumns) {
         LoggingEventWrapper loggingEventWrapper = getRow(row);
         if (loggingEventWrapper != null) {
-            loggingEventWrapper.updateColorRuleColors(
-                    colorizer.getBackgroundColor(loggingEventWrapper.getLoggingEvent()),
-                    colorizer.getForegroundColor(loggingEventWrapper.getLoggingEvent()));
-            Rule findRule = colorizer.getFindRule();
-            if (findRule != null) {
-                loggingEventWrapper.evaluateSearchRule(colorizer.getFindRule());
-            }
+            updateColors(loggingEventWrapper, row);
 
             fireTableRowsUpdated(row, row);
             if (checkForNewColumns) {
@@ -774,13 +1058,295 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
      */
     @Override
     public void setCyclic(final boolean cyclic) {
-        if (this.cyclic == cyclic) {
+        synchronized (mutex) {
+            if (this.cyclic == cyclic) {
+                return;
+            }
+            logger.debug("Changing Model, isCyclic is now {}", cyclic);
+            this.cyclic = cyclic;
+            applyCapacity();
+        }
+        propertySupport.firePropertyChange("cyclic", !cyclic, cyclic);
+        capacityChanged();
+    }
+
+    @Override
+    public void setCyclicBufferSize(int cyclicBufferSize) {
+        if (cyclicBufferSize < 1) {
+            throw new IllegalArgumentException(
+                    "The cyclicBufferSize argument (" + cyclicBufferSize + ") is not a positive integer.");
+        }
+        synchronized (mutex) {
+            if (this.cyclicBufferSize == cyclicBufferSize) {
+                return;
+            }
+            logger.debug("Changing cyclic buffer size from {} to {}", this.cyclicBufferSize, cyclicBufferSize);
+            this.cyclicBufferSize = cyclicBufferSize;
+            applyCapacity();
+        }
+        capacityChanged();
+    }
+
+    /**
+     * Apply the current mode and buffer size to the event lists in place, evicting the oldest
+     * events if the lists hold more than they now may.  Takes time proportional to the number
+     * of events evicted (or to the number of rows if the table is sorted), so ingest is never
+     * held up for long.
+     * <p>
+     * Must be called while holding the mutex.
+     */
+    private void applyCapacity() {
+        reachedCapacity = false;
+        if (unfilteredList instanceof RetentionEventList) {
+            // the retention policy bounds the events in either mode, reporting evictions to evicted()
+            ((RetentionEventList) unfilteredList).setCapacity(cyclicBufferSize);
+            removeEvictedEvents();
             return;
         }
+        int capacity = cyclic ? cyclicBufferSize : CyclicBufferList.UNBOUNDED;
+        if (unfilteredList instanceof TieredEventList) {
+            // history beyond the buffer is kept on disk, and the filtered view stays bounded in either mode
+            TieredEventList tieredList = (TieredEventList) unfilteredList;
+            while (tieredList.getHotSize() > cyclicBufferSize) {
+                evicted(tieredList.spillOldest());
+            }
+            tieredList.setHotMaxSize(cyclicBufferSize);
+            capacity = cyclicBufferSize;
+        } else {
+            CyclicBufferList bufferList = (CyclicBufferList) unfilteredList;
+            while (bufferList.size() > capacity) {
+                evicted((LoggingEventWrapper) bufferList.get());
+            }
+            bufferList.setMaxSize(capacity);
+        }
+        removeEvictedEvents();
+        ((CyclicBufferList) filteredList).setMaxSize(capacity);
+    }
+
+    private void capacityChanged() {
+        SwingHelper.invokeOnEDT(() -> {
+            fireTableDataChanged();
+            notifyCountListeners();
+        });
+    }
+
+    @Override
+    public void setSpillStore(EventSpillStore spillStore) {
+        synchronized (mutex) {
+            if (this.spillStore == spillStore) {
+                return;
+            }
+            List<LoggingEventWrapper> inMemory = copyInMemoryEvents();
+            if (this.spillStore != null) {
+                this.spillStore.close();
+            }
+            this.spillStore = spillStore;
+            replaceLists(inMemory);
+        }
+        reFilter();
+    }
+
+    @Override
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        synchronized (mutex) {
+            if (this.retentionPolicy == retentionPolicy) {
+                return;
+            }
+            List<LoggingEventWrapper> inMemory = copyInMemoryEvents();
+            this.retentionPolicy = retentionPolicy;
+            replaceLists(inMemory);
+            if (expiryTask != null) {
+                expiryTask.cancel(false);
+                expiryTask = null;
+            }
+            if (retentionPolicy != null && retentionPolicy.hasMaxAge()) {
+                // events are otherwise only expired as others arrive, so a quiet tab would keep them
+                expiryTask = ReceiverRuntime.getShared()
+                        .getScheduler()
+                        .scheduleWithFixedDelay(
+                                () -> SwingHelper.invokeOnEDT(this::expireRetained),
+                                EXPIRY_INTERVAL_MILLIS,
+                                EXPIRY_INTERVAL_MILLIS,
+                                TimeUnit.MILLISECONDS);
+            }
+        }
+        reFilter();
+    }
+
+    /**
+     * Evict the events the retention policy no longer keeps because of their age, on the EDT
+     * like the events being added, and tell the table of the rows removed.
+     */
+    private void expireRetained() {
+        boolean removed;
+        synchronized (mutex) {
+            if (!(unfilteredList instanceof RetentionEventList)) {
+                return;
+            }
+            ((RetentionEventList) unfilteredList).expire();
+            removed = removeEvictedEvents();
+        }
+        if (removed) {
+            fireTableDataChanged();
+            notifyCountListeners();
+        }
+    }
+
+    /**
+     * Replace the event lists with lists suited to the current settings, holding the given events.
+     * <p>
+     * Must be called while holding the mutex.
+     */
+    private void replaceLists(List<LoggingEventWrapper> events) {
+        if (retentionPolicy != null) {
+            // the policy bounds unfilteredList, and the filtered view mirrors its evictions
+            unfilteredList = new RetentionEventList(cyclicBufferSize, retentionPolicy, this::evicted);
+            filteredList = new ArrayList<>(cyclicBufferSize);
+        } else if (spillStore != null) {
+            // with a spill store, the filtered view stays bounded in either mode
+            unfilteredList = new TieredEventList(cyclicBufferSize, spillStore, this::updateColors);
+            filteredList = new CyclicBufferList(cyclicBufferSize);
+        } else if (cyclic) {
+            unfilteredList = new CyclicBufferList(cyclicBufferSize);
+            filteredList = new CyclicBufferList(cyclicBufferSize);
+        } else {
+            unfilteredList = new CyclicBufferList(CyclicBufferList.UNBOUNDED);
+            filteredList = new CyclicBufferList(CyclicBufferList.UNBOUNDED);
+        }
+        evictedEvents.clear();
+        retainedBytes = 0;
+        for (LoggingEventWrapper loggingEventWrapper : events) {
+            retainedBytes += loggingEventWrapper.getEstimatedSize();
+            unfilteredList.add(loggingEventWrapper);
+        }
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        synchronized (mutex) {
+            return retainedBytes;
+        }
+    }
+
+    @Override
+    public void setByteBudget(long byteBudget) {
+        synchronized (mutex) {
+            this.byteBudget = byteBudget;
+        }
+    }
+
+    @Override
+    public long getByteBudget() {
+        synchronized (mutex) {
+            return byteBudget;
+        }
+    }
+
+    @Override
+    public long trimToBytes(long targetBytes) {
+        long released;
+        synchronized (mutex) {
+            released = releaseOldest(retainedBytes - targetBytes);
+        }
+        if (released > 0) {
+            SwingHelper.invokeOnEDT(() -> {
+                fireTableDataChanged();
+                notifyCountListeners();
+            });
+        }
+        return released;
+    }
+
+    /**
+     * Remove the oldest events held in memory (moving them to the spill store, if there is one, or
+     * the least important events, if there is a retention policy) until at least the given number
+     * of bytes has been released.  The newest event is always kept.
+     * <p>
+     * Must be called while holding the mutex.
+     *
+     * @return the estimated number of bytes released
+     */
+    private long releaseOldest(long bytes) {
+        if (bytes <= 0) {
+            return 0;
+        }
+        long releasedBytes = 0;
+        if (unfilteredList instanceof RetentionEventList) {
+            // the list reports each eviction to evicted()
+            RetentionEventList retentionList = (RetentionEventList) unfilteredList;
+            while (releasedBytes < bytes && retentionList.size() > 1) {
+                LoggingEventWrapper loggingEventWrapper = retentionList.evictLeastImportant();
+                if (loggingEventWrapper == null) {
+                    // everything left is marked
+                    break;
+                }
+                releasedBytes += loggingEventWrapper.getEstimatedSize();
+            }
+        } else if (unfilteredList instanceof TieredEventList) {
+            TieredEventList tieredList = (TieredEventList) unfilteredList;
+            while (releasedBytes < bytes && tieredList.getHotSize() > 1) {
+                LoggingEventWrapper loggingEventWrapper = tieredList.spillOldest();
+                releasedBytes += loggingEventWrapper.getEstimatedSize();
+                evicted(loggingEventWrapper);
+            }
+        } else {
+            CyclicBufferList bufferList = (CyclicBufferList) unfilteredList;
+            while (releasedBytes < bytes && bufferList.size() > 1) {
+                LoggingEventWrapper loggingEventWrapper = (LoggingEventWrapper) bufferList.get();
+                releasedBytes += loggingEventWrapper.getEstimatedSize();
+                evicted(loggingEventWrapper);
+            }
+        }
+        removeEvictedEvents();
+        return releasedBytes;
+    }
 
-        final boolean old = this.cyclic;
-        this.cyclic = cyclic;
-        propertySupport.firePropertyChange("cyclic", old, cyclic);
+    /**
+     * Account for an event which has been removed from unfilteredList.
+     * <p>
+     * Must be called while holding the mutex.
+     */
+    private void evicted(LoggingEventWrapper loggingEventWrapper) {
+        retainedBytes -= loggingEventWrapper.getEstimatedSize();
+        if (loggingEventWrapper.isDisplayed()) {
+            evictedEvents.add(loggingEventWrapper);
+        }
+    }
+
+    /**
+     * Remove evicted events from the filtered list.  Evicted events are usually the oldest rows,
+     * but the filtered list may be sorted (or the events evicted by a retention policy), so if
+     * removing from the front doesn't account for all of them the list is rebuilt.
+     * <p>
+     * Must be called while holding the mutex.
+     *
+     * @return true if any rows were removed
+     */
+    private boolean removeEvictedEvents() {
+        if (evictedEvents.isEmpty()) {
+            return false;
+        }
+        int previousSize = filteredList.size();
+        if (filteredList instanceof CyclicBufferList) {
+            CyclicBufferList bufferList = (CyclicBufferList) filteredList;
+            while (bufferList.size() > 0 && evictedEvents.remove(bufferList.get(0))) {
+                bufferList.get();
+            }
+            if (evictedEvents.isEmpty()) {
+                return filteredList.size() != previousSize;
+            }
+        }
+        List<LoggingEventWrapper> remaining = filteredList instanceof CyclicBufferList
+                ? new CyclicBufferList(((CyclicBufferList) filteredList).getMaxSize())
+                : new ArrayList<>(filteredList.size());
+        for (LoggingEventWrapper loggingEventWrapper : filteredList) {
+            if (!evictedEvents.contains(loggingEventWrapper)) {
+                remaining.add(loggingEventWrapper);
+            }
+        }
+        filteredList = remaining;
+        evictedEvents.clear();
+        return filteredList.size() != previousSize;
     }
 
     /* (non-Javadoc)
@@ -808,65 +1374,4 @@ public class ChainsawCyclicBufferTableModel extends AbstractTableModel
             return unfilteredList.size();
         }
     }
-
-    private class ModelChanger implements PropertyChangeListener {
-        /* (non-Javadoc)
-         * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
-         */
-        @Override
-        public void propertyChange(PropertyChangeEvent arg0) {
-            Thread thread = new Thread(() -> {
-                ProgressMonitor monitor = null;
-
-                int index = 0;
-
-                try {
-                    synchronized (mutex) {
-                        monitor = new ProgressMonitor(
-                                null,
-                                "Switching models...",
-                                "Transferring between data structures, please wait...",
-                                0,
-                                unfilteredList.size() + 1);
-                        monitor.setMillisToDecideToPopup(250);
-                        monitor.setMillisToPopup(100);
-                        logger.debug("Changing Model, isCyclic is now {}", cyclic);
-
-                        List newUnfilteredList;
-                        List newFilteredList;
-
-                        if (cyclic) {
-                            newUnfilteredList = new CyclicBufferList(cyclicBufferSize);
-                            newFilteredList = new CyclicBufferList(cyclicBufferSize);
-                        } else {
-                            newUnfilteredList = new ArrayList(cyclicBufferSize);
-                            newFilteredList = new ArrayList(cyclicBufferSize);
-                        }
-
-                        for (Object anUnfilteredList : unfilteredList) {
-                            LoggingEventWrapper loggingEventWrapper = (LoggingEventWrapper) anUnfilteredList;
-                            newUnfilteredList.add(loggingEventWrapper);
-                            monitor.setProgress(index++);
-                        }
-
-                        unfilteredList = newUnfilteredList;
-                        filteredList = newFilteredList;
-                    }
-
-                    monitor.setNote("Refiltering...");
-                    reFilter();
-
-                    monitor.setProgress(index++);
-                } finally {
-                    if (monitor != null) {
-                        monitor.close();
-                    }
-                }
-
-                logger.debug("Model Change completed");
-            });
-            thread.setPriority(Thread.MIN_PRIORITY + 1);
-            thread.start();
-        }
-    }
 }
@@ -20,7 +20,12 @@ import java.util.List;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 
 /**
- *
+ * Receives the events of a receiver, a batch at a time.
+ * <p>
+ * The list is only valid during the call, and must not be changed: a receiver may hand the
+ * same list to every listener, and recycle it once they return.  A listener keeping the list
+ * for later must retain it with {@link org.apache.log4j.chainsaw.receiver.EventBatch#retain(List)}
+ * and release it when done.
  */
 public interface ChainsawEventBatchListener {
     void receiveChainsawEventBatch(List<ChainsawLoggingEvent> events);
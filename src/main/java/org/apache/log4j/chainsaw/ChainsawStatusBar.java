@@ -68,7 +68,11 @@ public class ChainsawStatusBar extends JPanel {
         statusMsgPanel.setBorder(statusBarComponentBorder);
 
         pausedLabel.setBorder(statusBarComponentBorder);
-        pausedLabel.setMinimumSize(new Dimension(pausedIcon.getIconWidth(), pausedIcon.getIconHeight()));
+        pausedLabel.setMinimumSize(new Dimension(
+                pausedIcon.getIconWidth()
+                        + pausedLabel.getFontMetrics(pausedLabel.getFont()).stringWidth("9999999999")
+                        + 5,
+                pausedIcon.getIconHeight()));
 
         pausedLabel.setToolTipText("Shows whether the current Log panel is paused or not");
 
@@ -212,21 +216,50 @@ public class ChainsawStatusBar extends JPanel {
      * @param tabName
      */
     void setPaused(final boolean isPaused, String tabName) {
+        setPaused(isPaused, 0, tabName);
+    }
+
+    /**
+     * Called when the paused state of the LogPanel, or the number of events it holds while
+     * paused, has been updated
+     *
+     * @param isPaused
+     * @param backlog  events held by the LogPanel, waiting to be shown
+     * @param tabName
+     */
+    public void setPaused(final boolean isPaused, final long backlog, String tabName) {
         if (tabName.equals(logUI.getActiveTabName())) {
             Runnable runnable = () -> {
                 pausedLabel.setIcon(isPaused ? pausedIcon : null);
-                pausedLabel.setToolTipText(
-                        isPaused ? "This Log panel is currently paused" : "This Log panel is not paused");
+                pausedLabel.setText(backlog > 0 ? nf.format(backlog) : "");
+                if (backlog > 0) {
+                    pausedLabel.setToolTipText((isPaused
+                                    ? "This Log panel is currently paused, holding "
+                                    : "This Log panel is catching up, still holding ")
+                            + backlog + " events");
+                } else {
+                    pausedLabel.setToolTipText(
+                            isPaused ? "This Log panel is currently paused" : "This Log panel is not paused");
+                }
             };
             SwingUtilities.invokeLater(runnable);
         }
     }
 
     public void setSelectedLine(final int selectedLine, final int lineCount, final int total, String tabName) {
+        setSelectedLine(selectedLine, lineCount, total, 0, tabName);
+    }
+
+    /**
+     * @param dropped events the tab's receiver dropped before they reached the tab
+     */
+    public void setSelectedLine(
+            final int selectedLine, final int lineCount, final int total, final long dropped, String tabName) {
         if (tabName.equals(logUI.getActiveTabName())) {
             SwingUtilities.invokeLater(() -> {
                 lineSelectionLabel.setText(selectedLine + "");
-                eventCountLabel.setText("Filtered/Total: " + lineCount + ":" + total);
+                eventCountLabel.setText("Filtered/Total: " + lineCount + ":" + total
+                        + (dropped > 0 ? " (dropped: " + dropped + ")" : ""));
             });
         }
     }
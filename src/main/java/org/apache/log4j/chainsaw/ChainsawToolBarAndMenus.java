@@ -770,7 +770,8 @@ public class ChainsawToolBarAndMenus implements ChangeListener {
             fileMenu.getFileSaveAction().setEnabled(true);
             pauseButton.getModel().setSelected(logPanel.isPaused());
             toggleCyclicButton.setSelected(logPanel.isCyclic());
-            logui.getStatusBar().setPaused(logPanel.isPaused(), logPanel.getIdentifier());
+            logui.getStatusBar()
+                    .setPaused(logPanel.isPaused(), logPanel.getPauseBacklog(), logPanel.getIdentifier());
             toggleCyclicMenuItem.setSelected(logPanel.isCyclic());
             detailPaneButton.getModel().setSelected(logPanel.isDetailVisible());
             toggleLogTreeMenuItem.setSelected(logPanel.isLogTreeVisible());
@@ -17,21 +17,28 @@
 package org.apache.log4j.chainsaw;
 
 import java.util.AbstractList;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * CyclicBuffer implementation that is Object generic, and implements the List interface.
  * <p>
+ * The maximum size can be changed in place: shrinking drops the oldest elements, and a buffer
+ * with a maximum size of {@link #UNBOUNDED} never drops elements, growing like an ArrayList.
+ * The backing array is allocated as elements are added rather than up front, and is only
+ * copied when the maximum size changes if it drops to well below the array's length.
+ * <p>
  * Original CyclicBuffer @author Ceki G&uuml;lc&uuml;
  * <p>
  * This implementation (although there's very little change) @author Paul Smith &lt;psmith@apache.org&gt;
  */
 public class CyclicBufferList extends AbstractList implements List {
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
     Object[] ea;
     int first;
-    int last;
     int numElems;
     int maxSize;
 
@@ -65,27 +72,21 @@ public class CyclicBufferList extends AbstractList implements List {
      *                                   &lt; 0 || index &gt;= size())</tt>.
      */
     public Object remove(int index) {
-        Object oldValue = ea[index];
-
-        List list = new ArrayList(Arrays.asList(ea));
-        list.remove(index);
-        ea = list.toArray(ea);
-        numElems = ea.length;
-
-        numElems--;
-        if (--last <= 0) {
-            last = numElems;
-        }
-
-        if (first == maxSize) {
-            first = 0;
+        checkIndex(index);
+        Object oldValue = ea[slot(index)];
+        for (int i = index; i < numElems - 1; i++) {
+            ea[slot(i)] = ea[slot(i + 1)];
         }
+        ea[slot(numElems - 1)] = null;
+        numElems--;
         return oldValue;
     }
 
     public Object set(int index, Object element) {
-        Object previous = ea[index];
-        ea[index] = element;
+        checkIndex(index);
+        int slot = slot(index);
+        Object previous = ea[slot];
+        ea[slot] = element;
 
         return previous;
     }
@@ -94,17 +95,13 @@ public class CyclicBufferList extends AbstractList implements List {
      * Add an <code>event</code> as the last event in the buffer.
      */
     public boolean add(Object event) {
-        ea[last] = event;
-
-        if (++last == maxSize) {
-            last = 0;
-        }
-
-        if (numElems < maxSize) {
-            numElems++;
-        } else if (++first == maxSize) {
-            first = 0;
+        if (numElems == maxSize) {
+            // full - drop the oldest
+            get();
+        } else if (numElems == ea.length) {
+            grow();
         }
+        ea[slot(numElems++)] = event;
 
         return true;
     }
@@ -119,15 +116,18 @@ public class CyclicBufferList extends AbstractList implements List {
             return null;
         }
 
-        return ea[(first + i) % maxSize];
+        return ea[slot(i)];
     }
 
     public int getMaxSize() {
         return maxSize;
     }
 
+    /**
+     * @return the index into the backing array the next element will be written to
+     */
     public Integer getLast() {
-        return last;
+        return numElems == ea.length ? first : slot(numElems);
     }
 
     /**
@@ -142,7 +142,7 @@ public class CyclicBufferList extends AbstractList implements List {
             r = ea[first];
             ea[first] = null;
 
-            if (++first == maxSize) {
+            if (++first == ea.length) {
                 first = 0;
             }
         }
@@ -160,7 +160,31 @@ public class CyclicBufferList extends AbstractList implements List {
     }
 
     /**
-     * Resize the cyclic buffer to <code>newSize</code>.
+     * Change the maximum size of the buffer in place.  If there are more than
+     * <code>newMaxSize</code> elements, the oldest are dropped, taking time proportional
+     * to the number dropped.
+     *
+     * @param newMaxSize the new maximum size, or {@link #UNBOUNDED}
+     * @throws IllegalArgumentException if <code>newMaxSize</code> is not positive.
+     */
+    public void setMaxSize(int newMaxSize) {
+        if (newMaxSize < 1) {
+            throw new IllegalArgumentException(
+                    "The maxSize argument (" + newMaxSize + ") is not a positive integer.");
+        }
+        while (numElems > newMaxSize) {
+            get();
+        }
+        maxSize = newMaxSize;
+        // give back the memory of a buffer shrunk to a fraction of its array
+        if (ea.length > INITIAL_CAPACITY && newMaxSize < ea.length / 4) {
+            copyTo(Math.max(newMaxSize, INITIAL_CAPACITY));
+        }
+    }
+
+    /**
+     * Resize the cyclic buffer to <code>newSize</code>, dropping the oldest elements if
+     * there are more than <code>newSize</code>.
      *
      * @throws IllegalArgumentException if <code>newSize</code> is negative.
      */
@@ -168,43 +192,42 @@ public class CyclicBufferList extends AbstractList implements List {
         if (newSize < 0) {
             throw new IllegalArgumentException("Negative array size [" + newSize + "] not allowed.");
         }
+        setMaxSize(Math.max(1, newSize));
+    }
 
-        if (newSize == numElems) {
-            return; // nothing to do
-        }
-
-        Object[] temp = new Object[newSize];
-
-        int loopLen = (newSize < numElems) ? newSize : numElems;
+    /* (non-Javadoc)
+     * @see java.util.Collection#clear()
+     */
+    public void clear() {
+        ea = new Object[Math.min(maxSize, INITIAL_CAPACITY)];
+        first = 0;
+        numElems = 0;
+    }
 
-        for (int i = 0; i < loopLen; i++) {
-            temp[i] = ea[first];
-            ea[first] = null;
+    private int slot(int index) {
+        int slot = first + index;
+        return slot >= ea.length ? slot - ea.length : slot;
+    }
 
-            if (++first == numElems) {
-                first = 0;
-            }
+    private void checkIndex(int index) {
+        if (index < 0 || index >= numElems) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numElems);
         }
+    }
 
-        ea = temp;
-        first = 0;
-        numElems = loopLen;
-        maxSize = newSize;
-
-        if (loopLen == newSize) {
-            last = 0;
-        } else {
-            last = loopLen;
-        }
+    private void grow() {
+        copyTo((int) Math.min(Math.max(ea.length * 2L, INITIAL_CAPACITY), maxSize));
     }
 
-    /* (non-Javadoc)
-     * @see java.util.Collection#clear()
+    /**
+     * Move the elements to a new backing array of the given length, oldest first.
      */
-    public void clear() {
-        ea = new Object[maxSize];
+    private void copyTo(int newLength) {
+        Object[] copy = new Object[newLength];
+        int head = Math.min(numElems, ea.length - first);
+        System.arraycopy(ea, first, copy, 0, head);
+        System.arraycopy(ea, 0, copy, head, numElems - head);
+        ea = copy;
         first = 0;
-        last = 0;
-        numElems = 0;
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw;
+
+/**
+ * A column whose value is not stored on the event, but computed on demand from
+ * the event and its neighbouring rows in an EventContainer.
+ * <p>
+ * Values are only computed when a row is rendered or a rule asks for them, so
+ * nothing is written into the event's property map.
+ *
+ * @see DerivedColumns
+ */
+public interface DerivedColumn {
+
+    /**
+     * The lower case name of this column.  Expressions refer to the column
+     * as <code>PROP.name</code>.
+     *
+     * @return column name
+     */
+    String getName();
+
+    /**
+     * Compute the value of this column for an event.
+     *
+     * @param container the container holding the displayed rows
+     * @param row       the row the event is (or is about to be) displayed at
+     * @param current   the event itself, which may not have been added to the container yet
+     * @return the value, or null if it can't be computed
+     */
+    Object getValue(EventContainer container, int row, LoggingEventWrapper current);
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.rule.Rule;
+
+/**
+ * The set of columns Chainsaw derives from neighbouring rows rather than from
+ * the event itself.
+ * <p>
+ * The renderer asks for derived values while painting a row.  Rules see derived
+ * values (as <code>PROP.millisdelta</code> and so on) when they are evaluated
+ * through {@link #evaluate(Rule, EventContainer, int, LoggingEventWrapper, Map)}, which
+ * makes the row being evaluated available to the LoggingEventFieldResolver for the
+ * duration of the call.  The display filter, find, search and color rules are all
+ * evaluated this way.
+ * <p>
+ * The millis delta is measured from the event displayed before this one in arrival
+ * order, recorded on the event when it is added or the table is refiltered, so it
+ * doesn't change when the table is sorted.
+ */
+public final class DerivedColumns {
+
+    /**
+     * Milliseconds since the previously displayed event, in arrival order.
+     */
+    public static final DerivedColumn MILLIS_DELTA = new DerivedColumn() {
+        @Override
+        public String getName() {
+            return ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE;
+        }
+
+        @Override
+        public Object getValue(EventContainer container, int row, LoggingEventWrapper current) {
+            return millisBetween(
+                    current.getPreviousDisplayedEventTimestamp(), current.getLoggingEvent().m_timestamp);
+        }
+    };
+
+    /**
+     * Milliseconds since the first displayed row, or null if the event isn't displayed.
+     */
+    public static final DerivedColumn RELATIVE_TIME = new DerivedColumn() {
+        @Override
+        public String getName() {
+            return ChainsawConstants.RELATIVE_TIME_COL_NAME_LOWERCASE;
+        }
+
+        @Override
+        public Object getValue(EventContainer container, int row, LoggingEventWrapper current) {
+            if (row < 0) {
+                return null;
+            }
+            return millisBetween(row > 0 ? container.getRow(0) : null, current);
+        }
+    };
+
+    /**
+     * One-based position of the row in the displayed rows, or null if the event isn't displayed.
+     */
+    public static final DerivedColumn ROW_NUMBER = new DerivedColumn() {
+        @Override
+        public String getName() {
+            return ChainsawConstants.ROW_NUMBER_COL_NAME_LOWERCASE;
+        }
+
+        @Override
+        public Object getValue(EventContainer container, int row, LoggingEventWrapper current) {
+            return row < 0 ? null : row + 1;
+        }
+    };
+
+    private static final Map<String, DerivedColumn> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        register(MILLIS_DELTA);
+        register(RELATIVE_TIME);
+        register(ROW_NUMBER);
+    }
+
+    // the row currently being evaluated by a rule on this thread, if any
+    private static final ThreadLocal<RowContext> CURRENT_ROW = ThreadLocal.withInitial(RowContext::new);
+
+    private DerivedColumns() {}
+
+    private static void register(DerivedColumn column) {
+        COLUMNS.put(column.getName(), column);
+    }
+
+    public static Collection<DerivedColumn> getColumns() {
+        return Collections.unmodifiableCollection(COLUMNS.values());
+    }
+
+    /**
+     * Find a derived column by name, ignoring case.
+     *
+     * @param name column name
+     * @return the column, or null if there is no derived column with that name
+     */
+    public static DerivedColumn getColumn(String name) {
+        if (name == null) {
+            return null;
+        }
+        return COLUMNS.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    public static boolean isDerivedColumn(String name) {
+        return getColumn(name) != null;
+    }
+
+    /**
+     * Milliseconds between two rows, or 0 if there is no previous row.
+     */
+    public static long millisBetween(LoggingEventWrapper previous, LoggingEventWrapper current) {
+        if (previous == null || current == null) {
+            return 0;
+        }
+        return millisBetween(previous.getLoggingEvent().m_timestamp, current.getLoggingEvent().m_timestamp);
+    }
+
+    /**
+     * Milliseconds between two timestamps, or 0 if either is missing.
+     */
+    public static long millisBetween(Instant previous, Instant current) {
+        if (previous == null || current == null) {
+            return 0;
+        }
+        return ChronoUnit.MILLIS.between(previous, current);
+    }
+
+    /**
+     * Evaluate a rule against an event, making the derived columns of the row it is
+     * (or will be) displayed at available to the rule.
+     *
+     * @param rule      rule to evaluate
+     * @param container container holding the displayed rows
+     * @param row       row the event is (or would be) displayed at, or -1 if it isn't displayed
+     * @param current   the event
+     * @return the result of the rule
+     */
+    public static boolean evaluate(Rule rule, EventContainer container, int row, LoggingEventWrapper current) {
+        return evaluate(rule, container, row, current, null);
+    }
+
+    /**
+     * Evaluate a rule against an event, making the derived columns of the row it is
+     * (or will be) displayed at available to the rule.
+     *
+     * @param rule      rule to evaluate
+     * @param container container holding the displayed rows, may be null if row is -1
+     * @param row       row the event is (or would be) displayed at, or -1 if it isn't displayed
+     * @param current   the event
+     * @param matches   map collecting the fields the rule matched, may be null
+     * @return the result of the rule
+     */
+    public static boolean evaluate(
+            Rule rule, EventContainer container, int row, LoggingEventWrapper current, Map matches) {
+        // the context is reused rather than allocated per evaluation, restoring any outer row afterwards
+        RowContext context = CURRENT_ROW.get();
+        EventContainer outerContainer = context.container;
+        int outerRow = context.row;
+        LoggingEventWrapper outerCurrent = context.current;
+        context.container = container;
+        context.row = row;
+        context.current = current;
+        try {
+            return rule.evaluate(current.getLoggingEvent(), matches);
+        } finally {
+            context.container = outerContainer;
+            context.row = outerRow;
+            context.current = outerCurrent;
+        }
+    }
+
+    /**
+     * Resolve a derived column for an event which is currently being evaluated
+     * through {@link #evaluate(Rule, EventContainer, int, LoggingEventWrapper, Map)}.
+     *
+     * @param name  column name
+     * @param event event being evaluated
+     * @return the value, or null if name is not a derived column or the event has no row context
+     */
+    public static Object resolve(String name, ChainsawLoggingEvent event) {
+        DerivedColumn column = getColumn(name);
+        if (column == null) {
+            return null;
+        }
+        RowContext context = CURRENT_ROW.get();
+        if (context.current == null || context.current.getLoggingEvent() != event) {
+            return null;
+        }
+        return column.getValue(context.container, context.row, context.current);
+    }
+
+    private static class RowContext {
+        private EventContainer container;
+        private int row = -1;
+        private LoggingEventWrapper current;
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.log4j.chainsaw;
 import java.beans.PropertyChangeListener;
 import java.util.List;
 import org.apache.log4j.chainsaw.components.loggernamepanel.LoggerNameModel;
+import org.apache.log4j.chainsaw.store.EventSpillStore;
+import org.apache.log4j.chainsaw.store.RetentionPolicy;
 import org.apache.log4j.rule.Rule;
 
 /**
@@ -75,6 +77,29 @@ public interface EventContainer extends SortTableModel, LoggerNameModel {
      */
     void setCyclic(boolean cyclic);
 
+    /**
+     * Change the size of the cyclic buffer in place.  If the container holds more events
+     * than the new size allows, the oldest are evicted.
+     *
+     * @param cyclicBufferSize the new size
+     */
+    void setCyclicBufferSize(int cyclicBufferSize);
+
+    /**
+     * Keep events which fall out of the cyclic buffer in the given spill store instead of
+     * discarding them.  Events in the store are read back from disk when the container is
+     * refiltered, which reads them newest first until it has the newest events passing the
+     * filter, so a narrower filter brings older events back into view, and when matching
+     * events are collected with
+     * {@link #getMatchingEvents(Rule)}.  The displayed rows themselves are not paged: they
+     * stay bounded by the cyclic buffer size, so spilled events can't be scrolled to, and
+     * find only searches the displayed rows.  Pass null to stop spilling (the spilled
+     * history is deleted).
+     *
+     * @param spillStore the store, or null
+     */
+    void setSpillStore(EventSpillStore spillStore);
+
     /**
      * If this container is in Cyclic mode, returns the Size of the cyclic buffer,
      * otherwise this method throws an IllegalStateException, when in unlimited
@@ -95,7 +120,8 @@ public interface EventContainer extends SortTableModel, LoggerNameModel {
     int locate(Rule rule, int startRow, boolean searchForward);
 
     /**
-     * Returns a copied list of all the event in the model.
+     * Returns a copied list of all the events held in memory by the model (events in
+     * the spill store, if any, are not included).
      */
     List<LoggingEventWrapper> getAllEvents();
 
@@ -190,4 +216,40 @@ public interface EventContainer extends SortTableModel, LoggerNameModel {
      * @return
      */
     int getSearchMatchCount();
+
+    /**
+     * Evict events according to a retention policy instead of oldest first.  The policy bounds
+     * the number of events in either cyclic or unlimited mode, and takes precedence over a spill
+     * store - events it evicts are discarded.
+     *
+     * @param retentionPolicy the policy, or null to evict oldest first
+     */
+    void setRetentionPolicy(RetentionPolicy retentionPolicy);
+
+    /**
+     * Return the estimated number of bytes retained by the events held in memory
+     *
+     * @return estimated retained bytes
+     */
+    long getRetainedBytes();
+
+    /**
+     * Limit the estimated bytes retained by the events held in memory.  When an added
+     * event takes the container over budget, the oldest events are discarded (or spilled
+     * to disk, if a spill store is set).
+     *
+     * @param byteBudget the budget in bytes
+     */
+    void setByteBudget(long byteBudget);
+
+    long getByteBudget();
+
+    /**
+     * Discard (or spill) the oldest events held in memory until no more than the given
+     * number of bytes is retained.  Must be called on the EDT, as it removes rows.
+     *
+     * @param targetBytes estimated bytes to retain
+     * @return the estimated number of bytes released
+     */
+    long trimToBytes(long targetBytes);
 }
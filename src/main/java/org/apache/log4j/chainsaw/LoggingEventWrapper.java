@@ -18,11 +18,11 @@ package org.apache.log4j.chainsaw;
 
 import java.awt.*;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.store.EventSizeEstimator;
 import org.apache.log4j.helpers.Constants;
 import org.apache.log4j.rule.Rule;
 
@@ -49,6 +49,10 @@ public class LoggingEventWrapper {
     Map eventMatches = new HashMap();
     private LoggingEventWrapper syncWrapper;
     private boolean displayed;
+    // estimated once, so the same amount is released as was accounted for
+    private long estimatedSize = -1;
+    // timestamp of the event displayed before this one in arrival order, for the millis delta
+    private Instant previousDisplayedEventTimestamp;
 
     public LoggingEventWrapper(ChainsawLoggingEvent loggingEvent) {
         this.loggingEvent = loggingEvent;
@@ -70,14 +74,14 @@ public class LoggingEventWrapper {
         if (id == 0 && propName.equals(Constants.LOG4J_ID_KEY)) {
             id = Integer.parseInt(propValue);
         }
-        if (syncWrapper != null && !propName.equals(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE)) {
+        if (syncWrapper != null) {
             syncWrapper.getLoggingEvent().setProperty(propName, propValue);
         }
     }
 
     public Object removeProperty(String propName) {
         Object result = loggingEvent.removeProperty(propName);
-        if (syncWrapper != null && !propName.equals(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE)) {
+        if (syncWrapper != null) {
             syncWrapper.getLoggingEvent().removeProperty(propName);
         }
         return result;
@@ -106,8 +110,18 @@ public class LoggingEventWrapper {
     }
 
     public void evaluateSearchRule(Rule searchRule) {
+        evaluateSearchRule(searchRule, null, -1);
+    }
+
+    /**
+     * Evaluate the search rule with the derived columns of the row the event is displayed at.
+     *
+     * @param container container holding the displayed rows, may be null if row is -1
+     * @param row       row the event is displayed at, or -1 if not known
+     */
+    public void evaluateSearchRule(Rule searchRule, EventContainer container, int row) {
         eventMatches.clear();
-        searchMatch = searchRule != null && searchRule.evaluate(loggingEvent, eventMatches);
+        searchMatch = searchRule != null && DerivedColumns.evaluate(searchRule, container, row, this, eventMatches);
     }
 
     public Map getSearchMatches() {
@@ -156,15 +170,32 @@ public class LoggingEventWrapper {
         displayed = b;
     }
 
-    public void setPreviousDisplayedEventTimestamp(Instant previousDisplayedEventTimeStamp) {
-        long diffMs = ChronoUnit.MILLIS.between(previousDisplayedEventTimeStamp, loggingEvent.m_timestamp);
-        setProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE, String.valueOf(diffMs));
-    }
-
     public boolean isDisplayed() {
         return displayed;
     }
 
+    /**
+     * @param previousDisplayedEventTimestamp timestamp of the event displayed before this one in
+     *                                        arrival order, or null if this is the first
+     */
+    public void setPreviousDisplayedEventTimestamp(Instant previousDisplayedEventTimestamp) {
+        this.previousDisplayedEventTimestamp = previousDisplayedEventTimestamp;
+    }
+
+    public Instant getPreviousDisplayedEventTimestamp() {
+        return previousDisplayedEventTimestamp;
+    }
+
+    /**
+     * @return estimated heap retained by this wrapper and its event, computed on first use
+     */
+    public long getEstimatedSize() {
+        if (estimatedSize < 0) {
+            estimatedSize = EventSizeEstimator.estimate(loggingEvent);
+        }
+        return estimatedSize;
+    }
+
     public boolean equals(Object o) {
         if (this == o) {
             return true;
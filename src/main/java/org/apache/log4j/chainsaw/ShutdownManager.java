@@ -19,11 +19,13 @@ package org.apache.log4j.chainsaw;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.swing.*;
 import javax.swing.event.EventListenerList;
 import org.apache.commons.configuration2.AbstractConfiguration;
 import org.apache.log4j.chainsaw.osx.OSXIntegration;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -96,8 +98,9 @@ public class ShutdownManager {
 
                 Thread.sleep(delay);
 
-                for (ChainsawReceiver rx : receivers) {
-                    rx.shutdown();
+                // stop every receiver at once, and let what they already received reach the UI
+                if (!ReceiverRuntime.getShared().stop(receivers, 2, TimeUnit.SECONDS)) {
+                    logger.warn("Receivers did not drain in time, some events were not delivered");
                 }
                 panel.setProgress(progress++);
 
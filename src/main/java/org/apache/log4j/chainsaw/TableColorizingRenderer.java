@@ -155,7 +155,7 @@ public class TableColorizingRenderer extends DefaultTableCellRenderer {
             final JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
         EventContainer container = (EventContainer) table.getModel();
         LoggingEventWrapper loggingEventWrapper = container.getRow(row);
-        value = formatField(value, loggingEventWrapper);
+        value = formatField(value, container, row, loggingEventWrapper);
         TableColumn tableColumn = table.getColumnModel().getColumn(col);
         int width = tableColumn.getWidth();
         JLabel label = (JLabel) super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
@@ -168,9 +168,7 @@ public class TableColorizingRenderer extends DefaultTableCellRenderer {
         }
         long delta = 0;
         if (row > 0) {
-            LoggingEventWrapper previous = eventContainer.getRow(row - 1);
-            long millisBetween = ChronoUnit.MILLIS.between(
-                    loggingEventWrapper.getLoggingEvent().m_timestamp, previous.getLoggingEvent().m_timestamp);
+            long millisBetween = DerivedColumns.millisBetween(container.getRow(row - 1), loggingEventWrapper);
             delta = Math.min(ChainsawConstants.MILLIS_DELTA_RENDERING_HEIGHT_MAX, Math.max(0, (long)
                     ((millisBetween) * ChainsawConstants.MILLIS_DELTA_RENDERING_FACTOR)));
         }
@@ -386,6 +384,17 @@ public class TableColorizingRenderer extends DefaultTableCellRenderer {
             default:
                 Set propertySet = loggingEventWrapper.getPropertyKeySet();
                 String headerName = tableColumn.getHeaderValue().toString().toLowerCase();
+                DerivedColumn derivedColumn = DerivedColumns.getColumn(headerName);
+                if (derivedColumn != null) {
+                    Object derivedValue = derivedColumn.getValue(container, row, loggingEventWrapper);
+                    singleLineTextPane.setText(derivedValue == null ? "" : derivedValue.toString());
+                    setHighlightAttributesInternal(
+                            matches.get(LoggingEventFieldResolver.PROP_FIELD + headerName.toUpperCase()),
+                            (StyledDocument) singleLineTextPane.getDocument());
+                    layoutRenderingPanel(generalPanel, singleLineTextPane, delta, isSelected, width, col, table);
+                    component = generalPanel;
+                    break;
+                }
                 String thisProp = null;
                 // find the property in the property set...case-sensitive
                 for (Object aPropertySet : propertySet) {
@@ -414,7 +423,7 @@ public class TableColorizingRenderer extends DefaultTableCellRenderer {
         Rule loggerRule = colorizer.getLoggerRule();
         AbstractConfiguration configuration = settingsManager.getGlobalConfiguration();
         // use logger colors in table instead of event colors if event passes logger rule
-        if (loggerRule != null && loggerRule.evaluate(loggingEventWrapper.getLoggingEvent(), null)) {
+        if (loggerRule != null && DerivedColumns.evaluate(loggerRule, container, row, loggingEventWrapper)) {
             background =
                     configuration.get(Color.class, "searchBackgroundColor", ChainsawConstants.FIND_LOGGER_BACKGROUND);
             foreground =
@@ -575,7 +584,8 @@ public class TableColorizingRenderer extends DefaultTableCellRenderer {
      * @param field object
      * @return formatted object
      */
-    private Object formatField(Object field, LoggingEventWrapper loggingEventWrapper) {
+    private Object formatField(
+            Object field, EventContainer container, int row, LoggingEventWrapper loggingEventWrapper) {
         if (!(field instanceof Instant)) {
             return (field == null ? "" : field);
         }
@@ -586,7 +596,7 @@ public class TableColorizingRenderer extends DefaultTableCellRenderer {
             return "" + ChronoUnit.MILLIS.between(dt, relativeTimestampBase);
         }
         if (useRelativeTimesToPrevious) {
-            return loggingEventWrapper.getLoggingEvent().getProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE);
+            return "" + DerivedColumns.MILLIS_DELTA.getValue(container, row, loggingEventWrapper);
         }
 
         return dateFormatInUse.format(Date.from((Instant) field));
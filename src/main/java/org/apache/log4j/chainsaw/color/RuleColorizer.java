@@ -22,6 +22,9 @@ import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.log4j.chainsaw.ChainsawConstants;
+import org.apache.log4j.chainsaw.DerivedColumns;
+import org.apache.log4j.chainsaw.EventContainer;
+import org.apache.log4j.chainsaw.LoggingEventWrapper;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.rule.ColorRule;
 import org.apache.log4j.rule.ExpressionRule;
@@ -137,6 +140,32 @@ public class RuleColorizer implements Colorizer {
         return null;
     }
 
+    /**
+     * Update the colors of an event, evaluating the rules with the derived columns (millisdelta
+     * etc) of the row it is displayed at.
+     *
+     * @param container container holding the displayed rows, may be null if row is -1
+     * @param row       row the event is displayed at, or -1 if not known
+     */
+    public void updateColors(EventContainer container, int row, LoggingEventWrapper loggingEventWrapper) {
+        Color background = null;
+        Color foreground = null;
+        for (ColorRule rule : rules) {
+            boolean needBackground = background == null && rule.getBackgroundColor() != null;
+            boolean needForeground = foreground == null && rule.getForegroundColor() != null;
+            if ((needBackground || needForeground)
+                    && DerivedColumns.evaluate(rule, container, row, loggingEventWrapper)) {
+                if (needBackground) {
+                    background = rule.getBackgroundColor();
+                }
+                if (needForeground) {
+                    foreground = rule.getForegroundColor();
+                }
+            }
+        }
+        loggingEventWrapper.updateColorRuleColors(background, foreground);
+    }
+
     public void addPropertyChangeListener(PropertyChangeListener listener) {
         colorChangeSupport.addPropertyChangeListener(listener);
     }
@@ -23,13 +23,18 @@ import java.awt.event.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
 import javax.swing.event.*;
 import javax.swing.table.TableCellEditor;
@@ -54,7 +59,17 @@ import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.logevents.Level;
 import org.apache.log4j.chainsaw.prefs.Profileable;
 import org.apache.log4j.chainsaw.prefs.SettingsManager;
+import org.apache.log4j.chainsaw.store.EventSpillStore;
+import org.apache.log4j.chainsaw.store.MemoryGovernor;
+import org.apache.log4j.chainsaw.store.RetentionPolicyBuilder;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.EventBatch;
+import org.apache.log4j.chainsaw.receiver.FlowReceiver;
+import org.apache.log4j.chainsaw.receiver.PauseSpill;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
+import org.apache.log4j.chainsaw.receiver.RoutingReceiver;
 import org.apache.log4j.helpers.Constants;
 import org.apache.log4j.rule.ColorRule;
 import org.apache.log4j.rule.ExpressionRule;
@@ -115,6 +130,12 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
     private static final DateFormat TIMESTAMP_DATE_FORMAT = new SimpleDateFormat(Constants.TIMESTAMP_RULE_FORMAT);
     private final String identifier;
     private final ChainsawStatusBar statusBar;
+    // holds the events received while this tab is paused
+    private final PauseSpill pauseSpill;
+    // retained batches waiting to be added on the EDT, priority batches ahead of the others
+    private final Queue<List<ChainsawLoggingEvent>> priorityBatches = new ConcurrentLinkedQueue<>();
+    private final Queue<List<ChainsawLoggingEvent>> bulkBatches = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean addScheduled = new AtomicBoolean();
     private final JFrame logPanelPreferencesFrame = new JFrame();
     private ColorPanel colorPanel;
     private final JFrame colorFrame = new JFrame();
@@ -176,6 +197,7 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
      * @param settingsManager
      * @param statusBar       shared status bar, provided by main application
      * @param identifier      used to load and save settings
+     * @param memoryGovernor  shares the memory budget between tabs, may be null
      */
     public LogPanel(
             SettingsManager settingsManager,
@@ -183,12 +205,17 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
             final ChainsawStatusBar statusBar,
             final String identifier,
             Map<String, RuleColorizer> allColorizers,
-            RuleColorizer globalRuleColorizer) {
+            RuleColorizer globalRuleColorizer,
+            MemoryGovernor memoryGovernor) {
 
         this.identifier = identifier;
         this.applicationPreferenceModel = applicationPreferenceModel;
         logPanelPreferenceModel = new LogPanelPreferenceModel(settingsManager.getSettingsForReceiverTab(identifier));
         this.statusBar = statusBar;
+        pauseSpill = new PauseSpill(identifier);
+        if (logPanelPreferenceModel.isPaused()) {
+            pauseSpill.pause();
+        }
         this.currentColorizer = globalRuleColorizer;
         this.globalColorizer = globalRuleColorizer;
         this.allColorizers = allColorizers;
@@ -256,6 +283,16 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
         undockedFrame.setSize(new Dimension(1024, 768));
         undockedFrame.pack();
 
+        logPanelPreferenceModel.addEventListener(evt -> {
+            if (evt.getPropertyName().equals(LogPanelPreferenceModel.PAUSED)) {
+                if ((Boolean) evt.getPropertyValue()) {
+                    pauseSpill.pause();
+                } else if (pauseSpill.resume()) {
+                    ReceiverRuntime.getShared().runIo(identifier + "-replay", () -> pauseSpill.replay(this::replay));
+                }
+            }
+        });
+
         logPanelPreferenceModel.addEventListener(evt -> {
             if (evt.getPropertyName().equals(LogPanelPreferenceModel.SCROLL_TO_BOTTOM)) {
                 boolean value = (Boolean) evt.getPropertyValue();
@@ -517,7 +554,46 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
         table.setColumnSelectionAllowed(false);
         table.setRowSelectionAllowed(true);
 
+        if (applicationPreferenceModel.isSpillToDisk()) {
+            EventSpillStore spillStore = EventSpillStore.create(
+                    new File(SettingsManager.getSettingsDirectory(), EventSpillStore.SPILL_DIRECTORY_NAME), identifier);
+            spillStore.setMaxBytes(applicationPreferenceModel.getSpillMaxMegabytes() * 1024L * 1024L);
+            tableModel.setSpillStore(spillStore);
+        }
+
+        if (applicationPreferenceModel.isUseRetentionPolicy()) {
+            RetentionPolicyBuilder retentionPolicyBuilder = new RetentionPolicyBuilder()
+                    .setLoggerQuota(applicationPreferenceModel.getRetentionLoggerQuota());
+            if (applicationPreferenceModel.getRetentionMinutes() > 0) {
+                retentionPolicyBuilder.setMaxAge(Duration.ofMinutes(applicationPreferenceModel.getRetentionMinutes()));
+            }
+            if (applicationPreferenceModel.getRetentionWarnMinutes() > 0) {
+                retentionPolicyBuilder.setMaxAge(
+                        Level.WARN, Duration.ofMinutes(applicationPreferenceModel.getRetentionWarnMinutes()));
+            }
+            tableModel.setRetentionPolicy(retentionPolicyBuilder.create());
+        }
+
         searchModel = new ChainsawCyclicBufferTableModel(cyclicBufferSize, currentColorizer, "search");
+
+        // resized in place, evicting the oldest events if the buffer shrinks
+        applicationPreferenceModel.addEventListener(evt -> {
+            if (!evt.isBeforeUpdate() && evt.getPropertyName().equals(ApplicationPreferenceModel.CYCLIC_BUFFER_SIZE)) {
+                int value = (Integer) evt.getPropertyValue();
+                tableModel.setCyclicBufferSize(value);
+                searchModel.setCyclicBufferSize(value);
+            }
+        });
+
+        if (memoryGovernor != null) {
+            memoryGovernor.register(this, tableModel, searchModel);
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentShown(ComponentEvent e) {
+                    memoryGovernor.viewed(LogPanel.this);
+                }
+            });
+        }
         searchTable = new JSortTable(searchModel);
 
         searchTable.setName("search");
@@ -587,7 +663,8 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
 
         tableModel.addEventCountListener((currentCount, totalCount) -> {
             if (LogPanel.this.isVisible()) {
-                statusBar.setSelectedLine(table.getSelectedRow() + 1, currentCount, totalCount, getIdentifier());
+                statusBar.setSelectedLine(
+                        table.getSelectedRow() + 1, currentCount, totalCount, getDroppedCount(), getIdentifier());
             }
         });
 
@@ -641,6 +718,15 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
 
         currentColorizer.setLoggerRule(logTreePanel.getLoggerColorRule());
 
+        // keep what the receiver drops in step with what this tab hides
+        logTreePanel.getLoggerVisibilityRule().addPropertyChangeListener(evt -> updatePushdownFilter());
+        logTreePanel.addChangeListener(e -> updatePushdownFilter());
+        logPanelPreferenceModel.addEventListener(evt -> {
+            if (evt.getPropertyName().equals(LogPanelPreferenceModel.PUSH_DOWN_FILTERS)) {
+                updatePushdownFilter();
+            }
+        });
+
         /*
          * Color rule frame and panel
          */
@@ -666,9 +752,7 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
             public void propertyChange(PropertyChangeEvent evt) {
                 for (Object o : tableModel.getAllEvents()) {
                     LoggingEventWrapper loggingEventWrapper = (LoggingEventWrapper) o;
-                    loggingEventWrapper.updateColorRuleColors(
-                            currentColorizer.getBackgroundColor(loggingEventWrapper.getLoggingEvent()),
-                            currentColorizer.getForegroundColor(loggingEventWrapper.getLoggingEvent()));
+                    currentColorizer.updateColors(tableModel, -1, loggingEventWrapper);
                 }
                 //          no need to update searchmodel events since tablemodel and searchmodel share all events, and
                 // color rules aren't different between the two
@@ -2180,7 +2264,15 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
     }
 
     /**
-     * Modifies the Paused property and notifies the listeners
+     * @return the number of events received while paused which are waiting to be shown
+     */
+    public long getPauseBacklog() {
+        return pauseSpill.getBacklog();
+    }
+
+    /**
+     * Modifies the Paused property and notifies the listeners.  While paused, received events
+     * are held, in memory and then on disk up to a limit, and are shown when the tab resumes.
      *
      * @param paused
      */
@@ -2532,7 +2624,11 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
     public void updateStatusBar() {
         SwingHelper.invokeOnEDT(() -> {
             statusBar.setSelectedLine(
-                    table.getSelectedRow() + 1, tableModel.getRowCount(), tableModel.size(), getIdentifier());
+                    table.getSelectedRow() + 1,
+                    tableModel.getRowCount(),
+                    tableModel.size(),
+                    getDroppedCount(),
+                    getIdentifier());
             statusBar.setSearchMatchCount(currentSearchMatchCount, getIdentifier());
         });
     }
@@ -2759,8 +2855,10 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
         return longestWidth + 5;
     }
 
-    private String getToolTipTextForEvent(LoggingEventWrapper loggingEventWrapper) {
-        return detailLayout.format(loggingEventWrapper.getLoggingEvent());
+    private String getToolTipTextForEvent(EventContainer container, int row, LoggingEventWrapper loggingEventWrapper) {
+        return detailLayout.format(
+                loggingEventWrapper.getLoggingEvent(),
+                DerivedColumns.MILLIS_DELTA.getValue(container, row, loggingEventWrapper));
     }
 
     /**
@@ -2860,95 +2958,225 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
                 //                this.identifier = pce.getNewValue();
             }
         }));
-        receiver.addChainsawEventBatchListener(this);
+        if (receiver instanceof FlowReceiver) {
+            ((FlowReceiver) receiver).subscribe(new TabSubscriber());
+        } else {
+            receiver.addChainsawEventBatchListener(this);
+        }
+        updatePushdownFilter();
+    }
+
+    /**
+     * Takes the receiver's events as fast as the EDT adds them to the table, keeping at most
+     * {@link #REQUEST_SIZE} events requested but not yet added, so a receiver whose events
+     * arrive faster than they can be shown holds back its source instead of queueing them.
+     */
+    private final class TabSubscriber implements Flow.Subscriber<EventBatch> {
+        private static final int REQUEST_SIZE = 10_000;
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(REQUEST_SIZE);
+        }
+
+        @Override
+        public void onNext(EventBatch batch) {
+            int size = batch.size();
+            receiveChainsawEventBatch(batch);
+            // ask for more once these have been added
+            EventQueue.invokeLater(() -> subscription.request(size));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            logger.error("Subscription to {} failed", receiver.getName(), throwable);
+        }
+
+        @Override
+        public void onComplete() {}
+    }
+
+    /**
+     * When the tab's preferences ask for it, hand the loggers this tab hides, and its hide
+     * expression if simple enough, to the receiver, which then drops their events before
+     * decoding or queueing them.  Nothing is handed down while an always-display expression
+     * could show hidden events, or to a receiver which routes its events to the tabs of
+     * further receivers, as what this tab hides may be wanted in those.
+     */
+    private void updatePushdownFilter() {
+        if (!(receiver instanceof ChainsawReceiverSkeleton)
+                || receiver instanceof RoutingReceiver
+                || logTreePanel == null) {
+            return;
+        }
+        PushdownFilter filter = ((ChainsawReceiverSkeleton) receiver).getPushdownFilter();
+        if (logPanelPreferenceModel.isPushDownFilters() && logTreePanel.getAlwaysDisplayExpression() == null) {
+            filter.setHidden(
+                    logTreePanel.getHiddenSet(), PushdownFilter.parseEqualities(logTreePanel.getHiddenExpression()));
+        } else {
+            filter.clearHidden();
+        }
+    }
+
+    /**
+     * @return the number of events the receiver dropped before they reached this tab
+     */
+    private long getDroppedCount() {
+        return receiver instanceof ChainsawReceiverSkeleton
+                ? ((ChainsawReceiverSkeleton) receiver).getDroppedCount()
+                : 0;
     }
 
     public void receiveChainsawEventBatch(List<ChainsawLoggingEvent> events) {
-        SwingHelper.invokeOnEDT(() -> {
-            /*
-             * if this panel is paused, we totally ignore events
-             */
-            if (isPaused()) {
-                return;
-            }
-            final int selectedRow = table.getSelectedRow();
-            final int startingRow = table.getRowCount();
-            final LoggingEventWrapper selectedEvent;
-            if (selectedRow >= 0) {
-                selectedEvent = tableModel.getRow(selectedRow);
-            } else {
-                selectedEvent = null;
-            }
+        /*
+         * if this panel is paused, or still showing what it held while paused, hold the events
+         * here on the receiver's thread, the spill writes any bound for disk on an I/O thread
+         */
+        if (pauseSpill.hold(events)) {
+            SwingHelper.invokeOnEDT(() -> statusBar.setPaused(isPaused(), pauseSpill.getBacklog(), getIdentifier()));
+            return;
+        }
+        // the events are added on the EDT, after the receiver's call returns
+        EventBatch.retain(events);
+        (EventBatch.isPriority(events) ? priorityBatches : bulkBatches).add(events);
+        scheduleAdd();
+    }
 
-            final int startingSearchRow = searchTable.getRowCount();
+    private void scheduleAdd() {
+        if (addScheduled.compareAndSet(false, true)) {
+            EventQueue.invokeLater(this::addQueued);
+        }
+    }
 
-            boolean rowAdded = false;
-            boolean searchRowAdded = false;
+    /**
+     * Add every priority batch waiting, then one other batch, leaving the rest for another turn
+     * of the EDT so a priority batch arriving meanwhile goes ahead of them.  A batch is released
+     * once added, which is when its receiver counts it as delivered.
+     */
+    private void addQueued() {
+        addScheduled.set(false);
+        List<ChainsawLoggingEvent> events;
+        while ((events = priorityBatches.poll()) != null) {
+            addQueued(events);
+        }
+        if ((events = bulkBatches.poll()) != null) {
+            addQueued(events);
+        }
+        if (!priorityBatches.isEmpty() || !bulkBatches.isEmpty()) {
+            scheduleAdd();
+        }
+    }
 
-            int addedRowCount = 0;
-            int searchAddedRowCount = 0;
+    private void addQueued(List<ChainsawLoggingEvent> events) {
+        try {
+            addEvents(events);
+        } catch (RuntimeException e) {
+            logger.error("Unable to show received events", e);
+        } finally {
+            EventBatch.release(events);
+        }
+    }
 
-            for (ChainsawLoggingEvent event1 : events) {
-                // create two separate loggingEventWrappers (main table and search table), as they have different info
-                // on display state
-                LoggingEventWrapper loggingEventWrapper1 = new LoggingEventWrapper(event1);
-                // if the clearTableExpressionRule is not null, evaluate & clear the table if it matches
-                if (clearTableExpressionRule != null && clearTableExpressionRule.evaluate(event1, null)) {
-                    logger.info("clear table expression matched - clearing table - matching event msg - "
-                            + event1.m_message);
-                    clearEvents();
-                }
+    /**
+     * Show a batch of the events held while paused, waiting for it to be added to the table
+     * before the next batch is read.
+     */
+    private void replay(List<ChainsawLoggingEvent> events) {
+        try {
+            EventQueue.invokeAndWait(() -> {
+                addEvents(events);
+                statusBar.setPaused(isPaused(), pauseSpill.getBacklog(), getIdentifier());
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            logger.error("Unable to show held events", e.getCause());
+        }
+    }
 
-                updateOtherModels(event1);
-                boolean isCurrentRowAdded = tableModel.isAddRow(loggingEventWrapper1);
-                if (isCurrentRowAdded) {
-                    addedRowCount++;
-                }
-                rowAdded = rowAdded || isCurrentRowAdded;
+    /**
+     * Add events to the table and the search table, on the EDT.
+     */
+    private void addEvents(List<ChainsawLoggingEvent> events) {
+        final int selectedRow = table.getSelectedRow();
+        final int startingRow = table.getRowCount();
+        final LoggingEventWrapper selectedEvent;
+        if (selectedRow >= 0) {
+            selectedEvent = tableModel.getRow(selectedRow);
+        } else {
+            selectedEvent = null;
+        }
 
-                // create a new loggingEventWrapper via copy constructor to ensure same IDs
-                LoggingEventWrapper loggingEventWrapper2 = new LoggingEventWrapper(loggingEventWrapper1);
-                boolean isSearchCurrentRowAdded = searchModel.isAddRow(loggingEventWrapper2);
-                if (isSearchCurrentRowAdded) {
-                    searchAddedRowCount++;
-                }
-                searchRowAdded = searchRowAdded || isSearchCurrentRowAdded;
-            }
-            // fire after adding all events
-            if (rowAdded) {
-                tableModel.fireTableEvent(startingRow, startingRow + addedRowCount, addedRowCount);
+        final int startingSearchRow = searchTable.getRowCount();
+
+        boolean rowAdded = false;
+        boolean searchRowAdded = false;
+
+        int addedRowCount = 0;
+        int searchAddedRowCount = 0;
+
+        for (ChainsawLoggingEvent event1 : events) {
+            // create two separate loggingEventWrappers (main table and search table), as they have different info
+            // on display state
+            LoggingEventWrapper loggingEventWrapper1 = new LoggingEventWrapper(event1);
+            // if the clearTableExpressionRule is not null, evaluate & clear the table if it matches
+            if (clearTableExpressionRule != null && clearTableExpressionRule.evaluate(event1, null)) {
+                logger.info("clear table expression matched - clearing table - matching event msg - "
+                        + event1.m_message);
+                clearEvents();
             }
-            if (searchRowAdded) {
-                searchModel.fireTableEvent(
-                        startingSearchRow, startingSearchRow + searchAddedRowCount, searchAddedRowCount);
+
+            updateOtherModels(event1);
+            boolean isCurrentRowAdded = tableModel.isAddRow(loggingEventWrapper1);
+            if (isCurrentRowAdded) {
+                addedRowCount++;
             }
+            rowAdded = rowAdded || isCurrentRowAdded;
 
-            // tell the model to notify the count listeners
-            tableModel.notifyCountListeners();
+            // create a new loggingEventWrapper via copy constructor to ensure same IDs
+            LoggingEventWrapper loggingEventWrapper2 = new LoggingEventWrapper(loggingEventWrapper1);
+            boolean isSearchCurrentRowAdded = searchModel.isAddRow(loggingEventWrapper2);
+            if (isSearchCurrentRowAdded) {
+                searchAddedRowCount++;
+            }
+            searchRowAdded = searchRowAdded || isSearchCurrentRowAdded;
+        }
+        // fire after adding all events
+        if (rowAdded) {
+            tableModel.fireTableEvent(startingRow, startingRow + addedRowCount, addedRowCount);
+        }
+        if (searchRowAdded) {
+            searchModel.fireTableEvent(
+                    startingSearchRow, startingSearchRow + searchAddedRowCount, searchAddedRowCount);
+        }
 
-            if (rowAdded) {
-                if (tableModel.isSortEnabled()) {
-                    tableModel.sort();
-                }
+        // tell the model to notify the count listeners
+        tableModel.notifyCountListeners();
 
-                // always update detail pane (since we may be using a cyclic buffer which is full)
-                detailPaneUpdater.setSelectedRow(table.getSelectedRow());
+        if (rowAdded) {
+            if (tableModel.isSortEnabled()) {
+                tableModel.sort();
             }
 
-            if (searchRowAdded) {
-                if (searchModel.isSortEnabled()) {
-                    searchModel.sort();
-                }
+            // always update detail pane (since we may be using a cyclic buffer which is full)
+            detailPaneUpdater.setSelectedRow(table.getSelectedRow());
+        }
+
+        if (searchRowAdded) {
+            if (searchModel.isSortEnabled()) {
+                searchModel.sort();
             }
+        }
 
-            if (!isScrollToBottom() && selectedEvent != null) {
-                final int newIndex = tableModel.getRowIndex(selectedEvent);
-                if (newIndex >= 0) {
-                    // Don't scroll, just maintain selection...
-                    table.setRowSelectionInterval(newIndex, newIndex);
-                }
+        if (!isScrollToBottom() && selectedEvent != null) {
+            final int newIndex = tableModel.getRowIndex(selectedEvent);
+            if (newIndex >= 0) {
+                // Don't scroll, just maintain selection...
+                table.setRowSelectionInterval(newIndex, newIndex);
             }
-        });
+        }
     }
 
     /**
@@ -3145,7 +3373,7 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
                 LoggingEventWrapper event = detailEventContainer.getRow(currentRow);
 
                 if (event != null) {
-                    String toolTipText = getToolTipTextForEvent(event);
+                    String toolTipText = getToolTipTextForEvent(detailEventContainer, currentRow, event);
                     detailTable.setToolTipText(toolTipText);
                 }
             } else {
@@ -3248,7 +3476,9 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
 
                 if (loggingEventWrapper != null) {
                     final StringBuilder buf = new StringBuilder();
-                    buf.append(detailLayout.format(loggingEventWrapper.getLoggingEvent()));
+                    buf.append(detailLayout.format(
+                            loggingEventWrapper.getLoggingEvent(),
+                            DerivedColumns.MILLIS_DELTA.getValue(tableModel, selectedRow, loggingEventWrapper)));
                     if (buf.length() > 0) {
                         try {
                             final Document doc = detail.getEditorKit().createDefaultDocument();
@@ -3444,15 +3674,12 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
         }
 
         boolean primaryMatches(ThumbnailLoggingEventWrapper wrapper) {
-            String millisDelta = wrapper.loggingEventWrapper
-                    .getLoggingEvent()
-                    .getProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE);
-            if (millisDelta != null && !millisDelta.trim().isEmpty()) {
-                long millisDeltaLong = Long.parseLong(millisDelta);
-                // arbitrary
-                return millisDeltaLong >= 1000;
-            }
-            return false;
+            // arbitrary
+            return getMillisDelta(wrapper) >= 1000;
+        }
+
+        private long getMillisDelta(ThumbnailLoggingEventWrapper wrapper) {
+            return (Long) DerivedColumns.MILLIS_DELTA.getValue(tableModel, wrapper.rowNum, wrapper.loggingEventWrapper);
         }
 
         boolean secondaryMatches(ThumbnailLoggingEventWrapper wrapper) {
@@ -3505,10 +3732,7 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
                     int startX = 1;
                     int width = getWidth() - (startX * 2);
                     // max out at 50, min 2...
-                    String millisDelta = wrapper.loggingEventWrapper
-                            .getLoggingEvent()
-                            .getProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE);
-                    long millisDeltaLong = Long.parseLong(millisDelta);
+                    long millisDeltaLong = getMillisDelta(wrapper);
                     long delta = Math.min(ChainsawConstants.MILLIS_DELTA_RENDERING_HEIGHT_MAX, Math.max(0, (long)
                             (millisDeltaLong * ChainsawConstants.MILLIS_DELTA_RENDERING_FACTOR)));
                     float widthMaxMillisDeltaRenderRatio =
@@ -3683,7 +3907,8 @@ public class LogPanel extends DockablePanel implements ChainsawEventBatchListene
                         int yPosition = e.getPoint().y;
                         ThumbnailLoggingEventWrapper event = getEventWrapperAtPosition(yPosition);
                         if (event != null) {
-                            setToolTipText(getToolTipTextForEvent(event.loggingEventWrapper));
+                            setToolTipText(
+                                    getToolTipTextForEvent(tableModel, event.rowNum, event.loggingEventWrapper));
                         }
                     } else {
                         setToolTipText(null);
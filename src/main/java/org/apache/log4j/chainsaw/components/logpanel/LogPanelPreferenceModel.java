@@ -39,6 +39,7 @@ public class LogPanelPreferenceModel {
     public static final String HIDDEN_EXPRESSION = "logpanel.hiddenExpression";
     public static final String DATE_FORMAT_TIME_ZONE = "logpanel.dateFormatTimeZone";
     public static final String HIDDEN_LOGGERS = "logpanel.hiddenLoggers";
+    public static final String PUSH_DOWN_FILTERS = "logpanel.pushDownFilters";
     public static final String LOG_TREE_PANEL_VISIBLE = "logpanel.logTreePanelVisible";
     public static final String TOOL_TIPS_VISIBLE = "logpanel.toolTipsVisible";
     public static final String THUMBNAIL_BAR_TOOL_TIPS_VISIBLE = "logpanel.thumbnailBarToolTipsVisible";
@@ -71,6 +72,7 @@ public class LogPanelPreferenceModel {
     private final boolean highlightSearchMatchTextDefault = true;
     private final boolean wrapMsgDefault = true;
     private final boolean levelIconsDisplayedDefault = false;
+    private final boolean pushDownFiltersDefault = false;
 
     private static final int lowerPanelDividerLocationDefault = 700;
     private static final int logTreeDividerLocationDefault = 230;
@@ -184,6 +186,7 @@ public class LogPanelPreferenceModel {
         setAlwaysDisplayExpression(model.getAlwaysDisplayExpression());
         setShowMillisDeltaAsGap(model.isShowMillisDeltaAsGap());
         setClearTableExpression(model.getClearTableExpression());
+        setPushDownFilters(model.isPushDownFilters());
     }
 
     /**
@@ -354,6 +357,18 @@ public class LogPanelPreferenceModel {
         return tabConfig.getList(String.class, HIDDEN_LOGGERS, Collections.emptyList());
     }
 
+    /**
+     * When set, the loggers and simple expression hidden in this tab are handed to its receiver,
+     * which drops their events before they are decoded or queued.  They can't be shown again.
+     */
+    public void setPushDownFilters(boolean pushDownFilters) {
+        tabConfig.setProperty(PUSH_DOWN_FILTERS, pushDownFilters);
+    }
+
+    public boolean isPushDownFilters() {
+        return tabConfig.getBoolean(PUSH_DOWN_FILTERS, pushDownFiltersDefault);
+    }
+
     public String getDateFormatTimeZone() {
         return tabConfig.getString(DATE_FORMAT_TIME_ZONE, "");
     }
@@ -412,6 +412,8 @@ public class LogPanelPreferencePanel extends AbstractPreferencePanel {
                 new JCheckBox("Display timestamp delta between events as row gap");
         private final JCheckBox toolTips = new JCheckBox("Show Event Detail Tooltips");
         private final JCheckBox thumbnailBarToolTips = new JCheckBox("Show Thumbnail Bar Tooltips");
+        private final JCheckBox pushDownFilters =
+                new JCheckBox("Drop hidden loggers' events in the receiver (they can't be shown again)");
         private final JEditorPane clearTableExpression = new JEditorPane();
 
         // ~ Constructors ==========================================================
@@ -441,6 +443,7 @@ public class LogPanelPreferencePanel extends AbstractPreferencePanel {
             loggerTreePanel.setAlignmentX(Component.LEFT_ALIGNMENT);
             scrollToBottom.setAlignmentX(Component.LEFT_ALIGNMENT);
             showMillisDeltaAsGap.setAlignmentX(Component.LEFT_ALIGNMENT);
+            pushDownFilters.setAlignmentX(Component.LEFT_ALIGNMENT);
             add(toolTips);
             add(thumbnailBarToolTips);
             add(detailPanelVisible);
@@ -450,6 +453,7 @@ public class LogPanelPreferencePanel extends AbstractPreferencePanel {
             add(highlightSearchMatchText);
             add(searchResultsVisible);
             add(showMillisDeltaAsGap);
+            add(pushDownFilters);
             JPanel clearPanel = new JPanel(new BorderLayout());
             clearPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
             clearPanel.add(new JLabel("Clear all events if expression matches"), BorderLayout.NORTH);
@@ -465,6 +469,7 @@ public class LogPanelPreferencePanel extends AbstractPreferencePanel {
             detailPanelVisible.setSelected(logPanelPreferenceModel.isDetailPaneVisible());
             searchResultsVisible.setSelected(logPanelPreferenceModel.isSearchResultsVisible());
             loggerTreePanel.setSelected(logPanelPreferenceModel.isLogTreePanelVisible());
+            pushDownFilters.setSelected(logPanelPreferenceModel.isPushDownFilters());
         }
 
         /**
@@ -549,6 +554,15 @@ public class LogPanelPreferencePanel extends AbstractPreferencePanel {
             loggerTreePanel.addActionListener(
                     e -> logPanelPreferenceModel.setLogTreePanelVisible(loggerTreePanel.isSelected()));
 
+            pushDownFilters.addActionListener(
+                    e -> logPanelPreferenceModel.setPushDownFilters(pushDownFilters.isSelected()));
+
+            tabConfig.addEventListener(ConfigurationEvent.SET_PROPERTY, evt -> {
+                if (!evt.getPropertyName().equals(LogPanelPreferenceModel.PUSH_DOWN_FILTERS)) return;
+                boolean value = (Boolean) evt.getPropertyValue();
+                pushDownFilters.setSelected(value);
+            });
+
             tabConfig.addEventListener(ConfigurationEvent.SET_PROPERTY, evt -> {
                 if (!evt.getPropertyName().equals(LogPanelPreferenceModel.LOG_TREE_PANEL_VISIBLE)) return;
                 boolean value = (Boolean) evt.getPropertyValue();
@@ -218,13 +218,24 @@ public class EventDetailLayout {
      * @see org.apache.log4j.Layout#format(java.io.Writer, org.apache.log4j.spi.LoggingEvent)
      */
     public String format(final ChainsawLoggingEvent event) {
+        return format(event, event.getProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE));
+    }
+
+    /**
+     * Format an event displayed in a table, using the millis delta derived from the row before it.
+     *
+     * @param event       the event
+     * @param millisDelta the derived millis delta (may be null)
+     * @return the formatted event
+     */
+    public String format(final ChainsawLoggingEvent event, final Object millisDelta) {
         ChainsawLoggingEvent newEvent = copyForHTML(event);
 
         Map<String, String> valuesMap = new HashMap<>();
         valuesMap.put("level", event.m_level.toString());
         valuesMap.put("logger", event.m_logger);
         valuesMap.put("time", event.m_timestamp.atZone(ZoneId.systemDefault()).format(m_dateFormat));
-        valuesMap.put("millisdelta", event.getProperty(ChainsawConstants.MILLIS_DELTA_COL_NAME_LOWERCASE));
+        valuesMap.put("millisdelta", millisDelta == null ? null : millisDelta.toString());
         valuesMap.put("thread", event.m_threadName);
         valuesMap.put("message", event.m_message);
         valuesMap.put("marker", "");
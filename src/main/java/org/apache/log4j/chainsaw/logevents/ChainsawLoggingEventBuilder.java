@@ -60,6 +60,7 @@ public class ChainsawLoggingEventBuilder {
         m_timestamp = null;
         m_level = null;
         m_message = null;
+        m_threadName = null;
         m_logger = null;
         m_locationInfo = null;
         m_ndc = null;
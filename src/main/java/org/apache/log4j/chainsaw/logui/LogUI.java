@@ -40,12 +40,14 @@ import org.apache.log4j.chainsaw.components.tutorial.TutorialFrame;
 import org.apache.log4j.chainsaw.components.welcome.WelcomePanel;
 import org.apache.log4j.chainsaw.dnd.FileDnDTarget;
 import org.apache.log4j.chainsaw.help.HelpManager;
+import org.apache.log4j.chainsaw.helper.SwingHelper;
 import org.apache.log4j.chainsaw.icons.ChainsawIcons;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.osx.OSXIntegration;
 import org.apache.log4j.chainsaw.prefs.SettingsManager;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiverFactory;
+import org.apache.log4j.chainsaw.receiver.RoutingReceiver;
 import org.apache.log4j.chainsaw.zeroconf.ZeroConfPlugin;
 import org.apache.log4j.rule.ExpressionRule;
 import org.apache.log4j.rule.Rule;
@@ -570,6 +572,12 @@ public class LogUI extends JFrame {
         receivers.add(rx);
         logUIPanelBuilder.buildLogPanel(false, rx.getName(), rx);
 
+        if (rx instanceof RoutingReceiver) {
+            // routes get tabs of their own, but aren't receivers to configure or save
+            ((RoutingReceiver) rx).addRouteListener(route -> SwingHelper.invokeOnEDT(
+                    () -> logUIPanelBuilder.buildLogPanel(false, route.getName(), route)));
+        }
+
         for (ReceiverEventListener listen : receiverListeners) {
             listen.receiverAdded(rx);
         }
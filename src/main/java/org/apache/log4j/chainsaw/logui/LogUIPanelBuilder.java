@@ -33,6 +33,7 @@ import org.apache.log4j.chainsaw.components.tabbedpane.ChainsawTabbedPane;
 import org.apache.log4j.chainsaw.icons.ChainsawIcons;
 import org.apache.log4j.chainsaw.prefs.SettingsManager;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.store.MemoryGovernor;
 import org.apache.log4j.chainsaw.zeroconf.ZeroConfPlugin;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -52,6 +53,7 @@ public class LogUIPanelBuilder {
 
     private Map<String, RuleColorizer> allColorizers = new HashMap<>();
     private RuleColorizer globalRuleColorizer = new RuleColorizer();
+    private MemoryGovernor memoryGovernor;
 
     public LogUIPanelBuilder(
             ChainsawTabbedPane tabbedPane,
@@ -73,6 +75,9 @@ public class LogUIPanelBuilder {
 
         RuleColorizer colorizer = new RuleColorizer();
         allColorizers.put(ChainsawConstants.DEFAULT_COLOR_RULE_NAME, colorizer);
+
+        memoryGovernor = MemoryGovernor.forHeapPercent(applicationPreferenceModel.getMemoryBudgetPercent());
+        memoryGovernor.install();
     }
 
     void buildLogPanel(boolean customExpression, final String ident, final ChainsawReceiver rx)
@@ -83,7 +88,8 @@ public class LogUIPanelBuilder {
                 chainsawStatusBar,
                 ident,
                 allColorizers,
-                globalRuleColorizer);
+                globalRuleColorizer,
+                memoryGovernor);
 
         if (!customExpression && rx != null) {
             thisPanel.setReceiver(rx);
@@ -17,6 +17,7 @@
 package org.apache.log4j.chainsaw.receiver;
 
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.chainsaw.ChainsawEventBatchListener;
 import org.apache.log4j.chainsaw.logevents.Level;
 
@@ -45,6 +46,13 @@ public interface ChainsawReceiver {
 
     boolean getPaused();
 
+    /**
+     * @return the number of events held while paused, waiting to be delivered
+     */
+    default long getPauseBacklog() {
+        return 0;
+    }
+
     /**
      * Start this receiver by(for example) opening a network socket.
      */
@@ -55,6 +63,27 @@ public interface ChainsawReceiver {
      */
     void shutdown();
 
+    /**
+     * Wait for the events received so far to be delivered to the listeners.
+     *
+     * @return true if they were delivered within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    default boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        return true;
+    }
+
+    /**
+     * Stop this receiver, then wait for the events it received to be delivered.
+     *
+     * @return true if they were delivered within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    default boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown();
+        return drain(timeout, unit);
+    }
+
     void addPropertyChangeListener(final PropertyChangeListener listener);
 
     void addPropertyChangeListener(final String propertyName, final PropertyChangeListener listener);
@@ -19,15 +19,50 @@ package org.apache.log4j.chainsaw.receiver;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.log4j.chainsaw.ChainsawEventBatchListener;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.logevents.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  *
  */
-public abstract class ChainsawReceiverSkeleton implements ChainsawReceiver {
+public abstract class ChainsawReceiverSkeleton implements FlowReceiver {
+    private static final Logger logger = LogManager.getLogger(ChainsawReceiverSkeleton.class);
+
+    /**
+     * A subscriber with this many events waiting for its demand makes the receiver
+     * backpressured.
+     */
+    public static final int BACKPRESSURE_HIGH_WATER = 20_000;
+
+    /**
+     * The receiver stops being backpressured once every subscriber is down to this many events
+     * waiting for its demand.
+     */
+    public static final int BACKPRESSURE_LOW_WATER = 5_000;
+
+    /**
+     * The receiver is also backpressured once this many events are queued for delivery, which
+     * are then delivered straight away whatever the queue interval.
+     */
+    public static final int QUEUE_HIGH_WATER = 50_000;
+
+    /**
+     * The receiver stops being backpressured by its queue once it is down to this many events.
+     */
+    public static final int QUEUE_LOW_WATER = 10_000;
 
     /**
      * Name of this plugin.
@@ -45,11 +80,31 @@ public abstract class ChainsawReceiverSkeleton implements ChainsawReceiver {
      */
     protected Level thresholdLevel = Level.TRACE;
 
+    /**
+     * Events at or above this level are delivered straight away, not batched.
+     */
+    private volatile Level priorityLevel = Level.ERROR;
+
+    private final DeliveryMetrics deliveryMetrics = new DeliveryMetrics();
+
+    /**
+     * Applies the threshold, and the filters pushed down from the tab, to appended events.
+     */
+    private final PushdownFilter pushdownFilter = new PushdownFilter();
+
     private List<ChainsawEventBatchListener> m_eventListeners;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    // guards changes to backpressured, and is notified when it clears
+    private final Object demandLock = new Object();
+    private volatile boolean backpressured;
     private WorkQueue m_worker;
     private final Object mutex = new Object();
     private int m_sleepInterval = 1000;
-    private boolean m_paused = false;
+
+    /**
+     * Holds the events appended while paused.
+     */
+    private final PauseSpill pauseSpill = new PauseSpill(getClass().getSimpleName());
 
     public ChainsawReceiverSkeleton() {
         m_eventListeners = new ArrayList<>();
@@ -74,6 +129,7 @@ public abstract class ChainsawReceiverSkeleton implements ChainsawReceiver {
     public void setThreshold(Level level) {
         Level oldValue = this.thresholdLevel;
         thresholdLevel = level;
+        pushdownFilter.setThreshold(level);
         propertySupport.firePropertyChange("threshold", oldValue, this.thresholdLevel);
     }
 
@@ -128,106 +184,505 @@ public abstract class ChainsawReceiverSkeleton implements ChainsawReceiver {
         m_sleepInterval = interval;
     }
 
+    /**
+     * @return the level from which events are delivered straight away
+     */
+    public Level getPriorityLevel() {
+        return priorityLevel;
+    }
+
+    /**
+     * Set the level from which events are delivered to the listeners as soon as they are
+     * appended, ahead of lower level events and without waiting for the queue interval.
+     * Level.OFF turns the priority lane off.
+     */
+    public void setPriorityLevel(Level level) {
+        Level oldValue = priorityLevel;
+        priorityLevel = level == null ? Level.OFF : level;
+        propertySupport.firePropertyChange("priorityLevel", oldValue, priorityLevel);
+    }
+
+    /**
+     * @return the filters applied to appended events, which decoders may also apply to their
+     * input
+     */
+    public PushdownFilter getPushdownFilter() {
+        return pushdownFilter;
+    }
+
+    /**
+     * @return the number of events dropped by the threshold and the pushed down filters
+     */
+    public long getDroppedCount() {
+        return pushdownFilter.getDropped();
+    }
+
+    /**
+     * @return counters for the events delivered to the listeners, per lane
+     */
+    public DeliveryMetrics getDeliveryMetrics() {
+        return deliveryMetrics;
+    }
+
+    /**
+     * While paused, appended events are held, in memory and then on disk up to a limit, and
+     * replayed in bulk when the receiver resumes.
+     */
     @Override
     public void setPaused(boolean paused) {
-        m_paused = paused;
+        if (paused) {
+            pauseSpill.pause();
+        } else if (pauseSpill.resume()) {
+            ReceiverRuntime.getShared().runIo(getName() + "-replay", () -> pauseSpill.replay(this::replay));
+        }
     }
 
     @Override
     public boolean getPaused() {
-        return m_paused;
+        return pauseSpill.isPaused();
+    }
+
+    @Override
+    public long getPauseBacklog() {
+        return pauseSpill.getBacklog();
+    }
+
+    /**
+     * @return the number of events discarded while paused because too many were held
+     */
+    public long getPauseOverflow() {
+        return pauseSpill.getOverflow();
+    }
+
+    /**
+     * Subscribe to this receiver's events, alongside any listeners.  Events are only queued
+     * for the subscriber from when it subscribes.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super EventBatch> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        EventSubscription subscription = new EventSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    @Override
+    public boolean isBackpressured() {
+        return backpressured;
+    }
+
+    /**
+     * Called by receivers which can hold back their source, before reading more from it:
+     * waits while a subscriber is too far behind or too many events are queued for delivery.
+     *
+     * @return the time spent waiting, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    protected long awaitDemand() throws InterruptedException {
+        if (!backpressured) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        synchronized (demandLock) {
+            while (backpressured) {
+                demandLock.wait();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * As {@link #awaitDemand()}, but gives up after the timeout, for threads which must not
+     * be held for long; the events they go on to append are queued as usual.
+     *
+     * @param timeoutMillis longest time to wait, in milliseconds
+     * @return the time spent waiting, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    protected long awaitDemand(long timeoutMillis) throws InterruptedException {
+        if (!backpressured) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (demandLock) {
+            long remaining;
+            while (backpressured && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(demandLock, remaining);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Called when the receiver becomes backpressured or stops being so, for receivers which
+     * hold back their source without a thread waiting in {@link #awaitDemand()}.
+     *
+     * @param backpressured true if the source should be held back
+     */
+    protected void backpressureChanged(boolean backpressured) {}
+
+    /**
+     * Recompute whether the subscriber furthest behind, or the delivery queue, is past its
+     * high water mark, or both are back to their low water marks.
+     */
+    private void updateBackpressure() {
+        long behind = 0;
+        for (EventSubscription subscription : subscriptions) {
+            behind = Math.max(behind, subscription.waitingEvents.get());
+        }
+        int queued = m_worker.queuedEvents;
+        boolean changed = false;
+        synchronized (demandLock) {
+            if (!backpressured && (behind >= BACKPRESSURE_HIGH_WATER || queued >= QUEUE_HIGH_WATER)) {
+                backpressured = true;
+                changed = true;
+            } else if (backpressured && behind <= BACKPRESSURE_LOW_WATER && queued <= QUEUE_LOW_WATER) {
+                backpressured = false;
+                changed = true;
+                demandLock.notifyAll();
+            }
+        }
+        if (changed) {
+            logger.debug("{} {} backpressured", getName(), backpressured ? "is" : "is no longer");
+            backpressureChanged(backpressured);
+        }
     }
 
     /**
      * Whenever a new log event comes in, create a ChainsawLoggingEvent and call
-     * this method.  If this receiver is paused, discard the event.
+     * this method.  If the event is below the threshold or hidden by a pushed down
+     * filter, discard the event, and if this receiver is paused, hold it.
      *
      * @param event
      */
     public void append(final ChainsawLoggingEvent event) {
-        if (m_paused) return;
+        if (!pushdownFilter.accept(event) || pauseSpill.hold(Collections.singletonList(event))) return;
         m_worker.enqueue(event);
     }
 
     /**
-     * Queue of Events are placed in here, which are picked up by an asychronous
-     * thread. The WorkerThread looks for events once a second and processes all
-     * events accumulated during that time..
+     * Append a batch of events decoded together, queueing them under a single lock.
+     * Discard those below the threshold or hidden by a pushed down filter, and if this
+     * receiver is paused, hold the rest.
+     *
+     * @param events
      */
-    class WorkQueue {
-        final ArrayList<ChainsawLoggingEvent> queue = new ArrayList<>();
-        Thread workerThread;
+    public void append(final List<ChainsawLoggingEvent> events) {
+        if (events.isEmpty()) return;
+        List<ChainsawLoggingEvent> kept = pushdownFilter.filter(events);
+        if (kept.isEmpty() || pauseSpill.hold(kept)) return;
+        m_worker.enqueueAll(kept);
+    }
 
-        protected WorkQueue() {
-            workerThread = new WorkerThread();
-            workerThread.start();
+    /**
+     * Deliver a batch of held events without waiting for the queue interval, and wait for it
+     * to be taken before the next batch is read, so the backlog isn't read into memory at once.
+     */
+    private void replay(List<ChainsawLoggingEvent> events) {
+        m_worker.enqueueAll(events);
+        try {
+            m_worker.drain(TimeUnit.MINUTES.toNanos(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
+
+    /**
+     * Wait for the events appended so far to be delivered to the listeners.  Events held
+     * while paused are not waited for.
+     */
+    @Override
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        return m_worker.drain(unit.toNanos(timeout));
+    }
+
+    /**
+     * Queue of Events are placed in here, which are delivered to the listeners by a task on
+     * the shared {@link ReceiverRuntime}, so a receiver holds no thread of its own.  Only one
+     * delivery task per receiver runs at a time, so listeners are never called concurrently.
+     * <p>
+     * Events at or above the priority level go in a lane of their own, which is delivered as
+     * soon as an event arrives in it, ahead of any bulk events waiting.  With a queue interval
+     * of more than a second, bulk events are delivered at most once per interval.
+     * <p>
+     * Each lane fills a pooled {@link EventBatch}, which is handed to the listeners as it is
+     * and replaced by an empty one, and returns to the pool once the listeners release it.
+     */
+    class WorkQueue {
+        // guarded by mutex, as is everything below
+        EventBatch queue = EventBatch.acquire();
+        EventBatch priorityQueue = EventBatch.acquire();
+        private long nextSequence;
+        // a delivery task is running or about to
+        private boolean scheduled;
+        // events in both lanes, written under mutex
+        volatile int queuedEvents;
+        // bulk events are not delivered before this
+        private long bulkDueNanos = System.nanoTime();
+        // wakes the delivery task once bulk events are due
+        private ScheduledFuture<?> bulkTimer;
 
         public final void enqueue(ChainsawLoggingEvent event) {
             synchronized (mutex) {
-                queue.add(event);
-                mutex.notify();
+                add(event, System.nanoTime());
+                queuedLocked();
+            }
+            checkHighWater();
+        }
+
+        public final void enqueueAll(List<ChainsawLoggingEvent> events) {
+            synchronized (mutex) {
+                long now = System.nanoTime();
+                for (int i = 0, size = events.size(); i < size; i++) {
+                    add(events.get(i), now);
+                }
+                queuedLocked();
+            }
+            checkHighWater();
+        }
+
+        private void add(ChainsawLoggingEvent event, long now) {
+            EventBatch lane = isPriority(event) ? priorityQueue : queue;
+            lane.add(event, nextSequence++, now);
+        }
+
+        /**
+         * Events were added: past the high water mark deliver them without waiting for the
+         * queue interval.
+         */
+        private void queuedLocked() {
+            queuedEvents = queue.size() + priorityQueue.size();
+            if (queuedEvents >= QUEUE_HIGH_WATER) {
+                bulkDueNanos = System.nanoTime();
+            }
+            scheduleLocked();
+        }
+
+        private void checkHighWater() {
+            if (!backpressured && queuedEvents >= QUEUE_HIGH_WATER) {
+                updateBackpressure();
+            }
+        }
+
+        private boolean isPriority(ChainsawLoggingEvent event) {
+            Level level = priorityLevel;
+            return level != Level.OFF && event.m_level != null && event.m_level.compareTo(level) >= 0;
+        }
+
+        /**
+         * Start the delivery task if there is something to deliver now, otherwise set the
+         * timer for when the bulk events are due.
+         */
+        private void scheduleLocked() {
+            if (scheduled) {
+                return;
+            }
+            long wait = bulkDueNanos - System.nanoTime();
+            if (!priorityQueue.isEmpty() || (!queue.isEmpty() && wait <= 0)) {
+                scheduled = true;
+                ReceiverRuntime.getShared().getCpuExecutor().execute(this::deliver);
+            } else if (!queue.isEmpty() && bulkTimer == null) {
+                bulkTimer = ReceiverRuntime.getShared().getScheduler().schedule(this::bulkDue, wait, TimeUnit.NANOSECONDS);
             }
         }
 
-        public final void stop() {
+        private void bulkDue() {
             synchronized (mutex) {
-                workerThread.interrupt();
+                bulkTimer = null;
+                scheduleLocked();
             }
         }
 
         /**
-         * The worker thread converts each queued event to a vector and forwards the
-         * vector on to the UI.
+         * The delivery task forwards the queued events on to the UI, priority events first.
          */
-        private class WorkerThread extends Thread {
-            public WorkerThread() {
-                super("Chainsaw-WorkerThread");
-                setDaemon(true);
-                setPriority(Thread.NORM_PRIORITY - 1);
-            }
-
-            public void run() {
-                while (true) {
-                    List<ChainsawLoggingEvent> innerList = new ArrayList<>();
-                    synchronized (mutex) {
-                        try {
-                            while ((queue.size() == 0)) {
-                                //                                setDataRate(0);
-                                mutex.wait();
-                            }
-                            if (queue.size() > 0) {
-                                innerList.addAll(queue);
-                                queue.clear();
-                            }
-                        } catch (InterruptedException ie) {
-                        }
+        private void deliver() {
+            EventBatch priorityBatch = null;
+            EventBatch bulkBatch = null;
+            synchronized (mutex) {
+                if (!priorityQueue.isEmpty()) {
+                    priorityBatch = priorityQueue;
+                    priorityBatch.setSource(name);
+                    priorityQueue = EventBatch.acquire();
+                }
+                if (!queue.isEmpty() && bulkDueNanos - System.nanoTime() <= 0) {
+                    bulkBatch = queue;
+                    bulkBatch.setSource(name);
+                    queue = EventBatch.acquire();
+                }
+                queuedEvents = queue.size() + priorityQueue.size();
+            }
+            if (backpressured) {
+                updateBackpressure();
+            }
+
+            try {
+                if (priorityBatch != null) {
+                    deliver(priorityBatch, deliveryMetrics.getPriority());
+                }
+                if (bulkBatch != null) {
+                    deliver(bulkBatch, deliveryMetrics.getBulk());
+                }
+            } finally {
+                synchronized (mutex) {
+                    if (bulkBatch != null && getQueueInterval() > 1000) {
+                        bulkDueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getQueueInterval());
                     }
+                    scheduled = false;
+                    scheduleLocked();
+                    mutex.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Hand a batch to the listeners and subscribers.  The lane counts it once the last of
+         * them, which may have kept it to show later, releases it.
+         */
+        private void deliver(EventBatch batch, DeliveryMetrics.Lane lane) {
+            batch.setLane(lane);
+            try {
+                for (ChainsawEventBatchListener evtListner : m_eventListeners) {
+                    evtListner.receiveChainsawEventBatch(batch);
+                }
+                for (EventSubscription subscription : subscriptions) {
+                    subscription.offer(batch);
+                }
+            } finally {
+                batch.release();
+            }
+        }
 
-                    for (ChainsawEventBatchListener evtListner : m_eventListeners) {
-                        evtListner.receiveChainsawEventBatch(innerList);
+        /**
+         * Deliver the bulk events without waiting for the queue interval, and wait for both
+         * lanes to empty.
+         *
+         * @return true if the queue was delivered within the timeout
+         */
+        final boolean drain(long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            synchronized (mutex) {
+                while (scheduled || !queue.isEmpty() || !priorityQueue.isEmpty()) {
+                    if (!scheduled) {
+                        bulkDueNanos = System.nanoTime();
+                        scheduleLocked();
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
                     }
+                    TimeUnit.NANOSECONDS.timedWait(mutex, remaining);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A subscriber's demand, and the batches waiting for it.
+     * <p>
+     * Batches are sent to the subscriber by whichever thread offers a batch or requests more,
+     * one thread at a time, so <code>onNext</code> is never called concurrently and a request
+     * made from <code>onNext</code> is served once it returns rather than recursively.
+     */
+    private final class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super EventBatch> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicLong waitingEvents = new AtomicLong();
+        // threads wanting to send, only the first does
+        private final AtomicInteger sending = new AtomicInteger();
+        // retained batches, guarded by itself
+        private final ArrayDeque<EventBatch> waiting = new ArrayDeque<>();
+        private volatile boolean cancelled;
+
+        private EventSubscription(Flow.Subscriber<? super EventBatch> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(EventBatch batch) {
+            if (cancelled) {
+                return;
+            }
+            synchronized (waiting) {
+                waiting.addLast(batch.retain());
+            }
+            waitingEvents.addAndGet(batch.size());
+            send();
+            updateBackpressure();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested " + n + " events"));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            send();
+            updateBackpressure();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (waiting) {
+                EventBatch batch;
+                while ((batch = waiting.pollFirst()) != null) {
+                    batch.release();
+                }
+            }
+            waitingEvents.set(0);
+            updateBackpressure();
+        }
 
-                    if (getQueueInterval() > 1000) {
-                        try {
-                            synchronized (this) {
-                                wait(getQueueInterval());
-                            }
-                        } catch (InterruptedException ie) {
-                        }
-                    } else {
-                        Thread.yield();
+        private void send() {
+            if (sending.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                EventBatch next;
+                while (!cancelled && (next = take()) != null) {
+                    try {
+                        subscriber.onNext(next);
+                    } catch (RuntimeException e) {
+                        logger.error("{} cancelling subscriber {} which failed", getName(), subscriber, e);
+                        cancel();
+                    } finally {
+                        next.release();
                     }
-                    //                    if (size == 0) {
-                    //                        setDataRate(0.0);
-                    //                    } else {
-                    //                        long timeEnd = System.currentTimeMillis();
-                    //                        long diffInSeconds = (timeEnd - timeStart) / 1000;
-                    //                        double rate = (((double) size) / diffInSeconds);
-                    //                        setDataRate(rate);
-                    //                    }
+                }
+            } while (sending.decrementAndGet() != 0);
+        }
+
+        /**
+         * @return the next batch the demand allows, split if the demand is less than a whole
+         * batch, or null
+         */
+        private EventBatch take() {
+            long available = demand.get();
+            if (available == 0) {
+                return null;
+            }
+            EventBatch next;
+            synchronized (waiting) {
+                EventBatch head = waiting.pollFirst();
+                if (head == null) {
+                    return null;
+                }
+                if (head.size() <= available) {
+                    next = head;
+                } else {
+                    next = head.slice(0, (int) available);
+                    waiting.addFirst(head.slice((int) available, head.size()));
+                    head.release();
                 }
             }
+            demand.addAndGet(-next.size());
+            waitingEvents.addAndGet(-next.size());
+            return next;
         }
     }
 }
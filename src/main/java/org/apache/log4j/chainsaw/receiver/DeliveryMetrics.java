@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the events a {@link ChainsawReceiverSkeleton} delivers to its listeners, kept
+ * separately for the priority lane and the bulk lane.
+ */
+public class DeliveryMetrics {
+
+    /**
+     * Counters for one lane.
+     * <p>
+     * The latency of an event runs from when it was queued in the receiver to when every
+     * listener is done with its batch, which for a tab is once the events are in its table.
+     * The event's own timestamp is not used, so events read from a file or replayed by the
+     * sender do not count the time since they were logged.
+     */
+    public static class Lane {
+        private final boolean priority;
+        private final LongAdder events = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+        private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        Lane(boolean priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * @return true for the priority lane
+         */
+        public boolean isPriority() {
+            return priority;
+        }
+
+        void delivered(EventBatch batch) {
+            long now = System.nanoTime();
+            long latencySum = 0;
+            long latencyMax = 0;
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                long latency = Math.max(0, now - batch.getEnqueuedNanos(i));
+                latencySum += latency;
+                latencyMax = Math.max(latencyMax, latency);
+            }
+            events.add(batch.size());
+            batches.increment();
+            latencyNanos.add(latencySum);
+            maxLatencyNanos.accumulate(latencyMax);
+        }
+
+        public long getEvents() {
+            return events.sum();
+        }
+
+        public long getBatches() {
+            return batches.sum();
+        }
+
+        /**
+         * @return the mean time an event waited in the receiver before it was delivered
+         */
+        public double getMeanLatencyMillis() {
+            long delivered = events.sum();
+            return delivered == 0 ? 0 : latencyNanos.sum() / 1e6 / delivered;
+        }
+
+        /**
+         * @return the longest time any event waited in the receiver before it was delivered
+         */
+        public long getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "events=" + getEvents() + " batches=" + getBatches()
+                    + " meanLatencyMs=" + String.format("%.1f", getMeanLatencyMillis())
+                    + " maxLatencyMs=" + getMaxLatencyMillis();
+        }
+    }
+
+    private final Lane priority = new Lane(true);
+    private final Lane bulk = new Lane(false);
+
+    /**
+     * @return counters for events at or above the receiver's priority level
+     */
+    public Lane getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return counters for the other events
+     */
+    public Lane getBulk() {
+        return bulk;
+    }
+
+    @Override
+    public String toString() {
+        return "priority[" + priority + "] bulk[" + bulk + "]";
+    }
+}
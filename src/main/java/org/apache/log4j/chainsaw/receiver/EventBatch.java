@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+
+/**
+ * A batch of events handed from a receiver to its listeners, without copying, and recycled
+ * once every listener is done with it.
+ * <p>
+ * A batch is read only: the listeners share it, so none may change it.  Each event carries the
+ * sequence number the receiver gave it and the time it was queued.  A batch is only valid
+ * during the listener call which received it; a listener keeping it for later, for example
+ * to hand it to another thread, must {@link #retain()} it during the call and
+ * {@link #release()} it when done.  {@link #retain(List)} and {@link #release(List)} do this
+ * for a list which may or may not be a batch.
+ * <p>
+ * A {@link #slice(int, int)} shares the events of its batch, keeping the batch from being
+ * recycled until the slice itself is released.
+ */
+public final class EventBatch extends AbstractList<ChainsawLoggingEvent> implements RandomAccess {
+
+    /**
+     * Batches whose arrays have grown beyond this are left to the garbage collector rather
+     * than pooled.
+     */
+    static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+    private static final int POOL_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final ConcurrentLinkedQueue<EventBatch> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+    private static final LongAdder allocated = new LongAdder();
+    private static final LongAdder reused = new LongAdder();
+
+    private final AtomicInteger references = new AtomicInteger();
+    // the batch a slice shares its arrays with, null for a batch
+    private final EventBatch parent;
+    private ChainsawLoggingEvent[] events;
+    private long[] sequences;
+    private long[] enqueuedNanos;
+    private int offset;
+    private int size;
+    private String source;
+    // the lane the batch was delivered in, told of the batch once every listener is done with it
+    private DeliveryMetrics.Lane lane;
+
+    private EventBatch(int capacity) {
+        parent = null;
+        events = new ChainsawLoggingEvent[capacity];
+        sequences = new long[capacity];
+        enqueuedNanos = new long[capacity];
+    }
+
+    private EventBatch(EventBatch parent, int offset, int size) {
+        this.parent = parent;
+        this.events = parent.events;
+        this.sequences = parent.sequences;
+        this.enqueuedNanos = parent.enqueuedNanos;
+        this.offset = offset;
+        this.size = size;
+        this.source = parent.source;
+        this.lane = parent.lane;
+        references.set(1);
+    }
+
+    /**
+     * Take an empty batch from the pool, or create one, for a receiver to fill.  The caller
+     * holds the only reference.
+     */
+    static EventBatch acquire() {
+        EventBatch batch = pool.poll();
+        if (batch == null) {
+            allocated.increment();
+            batch = new EventBatch(INITIAL_CAPACITY);
+        } else {
+            pooled.decrementAndGet();
+            reused.increment();
+        }
+        batch.references.set(1);
+        return batch;
+    }
+
+    /**
+     * Set the name of the receiver, when handing the batch to its listeners.
+     */
+    void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Set the lane the batch is delivered in, when handing it to the listeners.
+     */
+    void setLane(DeliveryMetrics.Lane lane) {
+        this.lane = lane;
+    }
+
+    /**
+     * Add an event while the batch is being filled, before it is handed to any listener.
+     */
+    void add(ChainsawLoggingEvent event, long sequence, long nanos) {
+        if (size == events.length) {
+            int capacity = events.length * 2;
+            events = Arrays.copyOf(events, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            enqueuedNanos = Arrays.copyOf(enqueuedNanos, capacity);
+        }
+        events[size] = event;
+        sequences[size] = sequence;
+        enqueuedNanos[size] = nanos;
+        size++;
+    }
+
+    @Override
+    public ChainsawLoggingEvent get(int index) {
+        checkIndex(index);
+        return events[offset + index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the name of the receiver which filled the batch
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the sequence number the receiver gave the event at the index
+     */
+    public long getSequence(int index) {
+        checkIndex(index);
+        return sequences[offset + index];
+    }
+
+    /**
+     * @return the sequence number of the first event
+     */
+    public long getFirstSequence() {
+        return getSequence(0);
+    }
+
+    /**
+     * @return the sequence number of the last event
+     */
+    public long getLastSequence() {
+        return getSequence(size - 1);
+    }
+
+    /**
+     * @return when, by System.nanoTime(), the event at the index was queued in the receiver
+     */
+    public long getEnqueuedNanos(int index) {
+        checkIndex(index);
+        return enqueuedNanos[offset + index];
+    }
+
+    /**
+     * @return when, by System.nanoTime(), the first event was queued in the receiver
+     */
+    public long getFirstEnqueuedNanos() {
+        return getEnqueuedNanos(0);
+    }
+
+    /**
+     * @return when, by System.nanoTime(), the last event was queued in the receiver
+     */
+    public long getLastEnqueuedNanos() {
+        return getEnqueuedNanos(size - 1);
+    }
+
+    /**
+     * @return true if the batch was delivered in the receiver's priority lane, so a listener
+     * should show it ahead of other batches it has yet to show
+     */
+    public boolean isPriority() {
+        return lane != null && lane.isPriority();
+    }
+
+    /**
+     * Share a range of this batch's events without copying them.  The slice must be released,
+     * and this batch is not recycled until it is.
+     *
+     * @param from index of the first event, inclusive
+     * @param to   index after the last event
+     */
+    public EventBatch slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Slice " + from + "-" + to + " of " + size);
+        }
+        EventBatch root = parent == null ? this : parent;
+        root.retain();
+        return new EventBatch(root, offset + from, to - from);
+    }
+
+    /**
+     * Keep the batch beyond the listener call which received it.
+     *
+     * @return this batch
+     */
+    public EventBatch retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.decrementAndGet();
+            throw new IllegalStateException("Batch from " + source + " retained after its release");
+        }
+        return this;
+    }
+
+    /**
+     * Give up a reference, recycling the batch once none are left.
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining > 0) {
+            return;
+        }
+        if (remaining < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Batch from " + source + " released too often");
+        }
+        if (parent != null) {
+            parent.release();
+            return;
+        }
+        if (lane != null) {
+            lane.delivered(this);
+            lane = null;
+        }
+        Arrays.fill(events, 0, size, null);
+        size = 0;
+        source = null;
+        if (events.length <= MAX_POOLED_CAPACITY && pooled.incrementAndGet() <= POOL_SIZE) {
+            pool.offer(this);
+        } else if (events.length <= MAX_POOLED_CAPACITY) {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Retain the list if it is a batch.
+     *
+     * @return the list
+     */
+    public static List<ChainsawLoggingEvent> retain(List<ChainsawLoggingEvent> events) {
+        if (events instanceof EventBatch) {
+            ((EventBatch) events).retain();
+        }
+        return events;
+    }
+
+    /**
+     * Release the list if it is a batch.
+     */
+    public static void release(List<ChainsawLoggingEvent> events) {
+        if (events instanceof EventBatch) {
+            ((EventBatch) events).release();
+        }
+    }
+
+    /**
+     * @return true if the list is a batch delivered in a receiver's priority lane
+     */
+    public static boolean isPriority(List<ChainsawLoggingEvent> events) {
+        return events instanceof EventBatch && ((EventBatch) events).isPriority();
+    }
+
+    /**
+     * @return the number of batches created because the pool was empty
+     */
+    public static long getAllocatedCount() {
+        return allocated.sum();
+    }
+
+    /**
+     * @return the number of batches taken from the pool
+     */
+    public static long getReusedCount() {
+        return reused.sum();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.concurrent.Flow;
+
+/**
+ * A receiver whose events can be subscribed to with demand, instead of being pushed to
+ * {@link org.apache.log4j.chainsaw.ChainsawEventBatchListener}s as fast as they arrive.
+ * <p>
+ * Demand is counted in events rather than batches: having requested <code>n</code>, a
+ * subscriber is sent batches of at most <code>n</code> events in total, a batch being split if
+ * need be, and each <code>onNext</code> uses up as much demand as its batch has events.  As for
+ * listeners, a batch is only valid during <code>onNext</code> unless the subscriber retains it.
+ * <p>
+ * Events a subscriber hasn't asked for yet wait in the receiver.  Once a subscriber falls far
+ * enough behind, the receiver is {@link #isBackpressured() backpressured}, and receivers able
+ * to hold back their source do so until it catches up: socket receivers stop reading, so the
+ * sender is slowed down by TCP flow control, and file receivers stop reading the file.
+ * Receivers which can't, such as UDP receivers, carry on.
+ */
+public interface FlowReceiver extends ChainsawReceiver, Flow.Publisher<EventBatch> {
+
+    /**
+     * @return true while a subscriber is far enough behind that the receiver holds back its
+     * source, where it can
+     */
+    boolean isBackpressured();
+}
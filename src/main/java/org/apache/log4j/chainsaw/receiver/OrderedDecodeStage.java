@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decodes chunks of raw input on several cores, delivering their events in the order the chunks
+ * were submitted.
+ * <p>
+ * An I/O thread submits chunks which can be decoded independently of each other, such as whole
+ * records.  Each chunk takes the next place in line and is decoded by one of up to
+ * <code>workers</code> decode workers on the {@link ReceiverRuntime} CPU pool.  A decoded chunk
+ * is delivered once every chunk ahead of it has been, so the sink sees events in arrival order
+ * however the decoding was spread, and is never called by two threads at once.
+ * <p>
+ * Workers are started when chunks are submitted and finish once none are waiting, and each has
+ * a {@link ChunkDecoder} to itself.  At most <code>capacity</code> chunks are held; beyond that
+ * {@link #submit(Object)} waits, slowing the reader down rather than letting memory grow.
+ * Readers which must not wait, such as selector threads, use {@link #submitNow(Object)} and
+ * stop reading while the stage is nearly full, as told by the listener set with
+ * {@link #setFullListener(Consumer)}.
+ *
+ * @param <T> type of the chunks
+ */
+public class OrderedDecodeStage<T> {
+    private static final Logger logger = LogManager.getLogger(OrderedDecodeStage.class);
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Decodes chunks, one at a time.
+     *
+     * @param <T> type of the chunks
+     */
+    public interface ChunkDecoder<T> {
+
+        /**
+         * Events are added to <code>events</code> as they are decoded, so if the chunk can't
+         * be decoded completely the events before the failure are still delivered.
+         *
+         * @param chunk  chunk to decode
+         * @param events list the events are added to
+         */
+        void decode(T chunk, List<ChainsawLoggingEvent> events);
+    }
+
+    /**
+     * A chunk's place in line.
+     */
+    private static final class Slot<T> {
+        private T chunk;
+        private final List<ChainsawLoggingEvent> events = new ArrayList<>();
+        private volatile boolean decoded;
+
+        private Slot(T chunk) {
+            this.chunk = chunk;
+        }
+    }
+
+    private final String name;
+    private final Consumer<List<ChainsawLoggingEvent>> sink;
+    private final Executor executor;
+    // decoders not in use by a running worker
+    private final BlockingQueue<ChunkDecoder<T>> idleDecoders;
+    private final int capacity;
+    private final int highWater;
+    private final int lowWater;
+    // chunks waiting for a worker, in submission order
+    private final Queue<Slot<T>> waiting = new ConcurrentLinkedQueue<>();
+    // chunks not yet delivered, in submission order, guarded by itself
+    private final ArrayDeque<Slot<T>> line = new ArrayDeque<>();
+    // chunks submitted but not yet delivered, written under line
+    private volatile int pending;
+    // pending reached the high water mark and has not yet fallen to the low water mark
+    private boolean full;
+    private Consumer<Boolean> fullListener;
+    private volatile boolean closed;
+
+    /**
+     * @param name     name used when logging
+     * @param workers  maximum number of chunks decoded at once
+     * @param capacity maximum number of chunks held
+     * @param decoders creates the decoder of each worker
+     * @param sink     receives the events of each chunk, in submission order
+     */
+    public OrderedDecodeStage(
+            String name,
+            int workers,
+            int capacity,
+            Supplier<? extends ChunkDecoder<T>> decoders,
+            Consumer<List<ChainsawLoggingEvent>> sink) {
+        this(name, workers, capacity, decoders, sink, ReceiverRuntime.getShared().getCpuExecutor());
+    }
+
+    /**
+     * @param executor runs the workers
+     */
+    OrderedDecodeStage(
+            String name,
+            int workers,
+            int capacity,
+            Supplier<? extends ChunkDecoder<T>> decoders,
+            Consumer<List<ChainsawLoggingEvent>> sink,
+            Executor executor) {
+        if (workers < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid worker count or capacity: " + workers + ", " + capacity);
+        }
+        this.name = name;
+        this.sink = sink;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.highWater = capacity - Math.max(1, capacity / 8);
+        this.lowWater = capacity / 2;
+        this.idleDecoders = new ArrayBlockingQueue<>(workers);
+        for (int i = 0; i < workers; i++) {
+            idleDecoders.add(decoders.get());
+        }
+    }
+
+    /**
+     * @return a default number of decode workers for this machine
+     */
+    public static int defaultWorkers() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Queue a chunk to be decoded, waiting while the stage is full.  Chunks submitted after
+     * the stage is closed are discarded.
+     *
+     * @param chunk chunk to decode
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    public void submit(T chunk) throws InterruptedException {
+        synchronized (line) {
+            while (!closed && pending >= capacity) {
+                line.wait();
+            }
+            if (!add(chunk)) {
+                return;
+            }
+        }
+        startWorker();
+    }
+
+    /**
+     * Queue a chunk to be decoded without waiting, even if the stage is full.  The caller is
+     * expected to stop submitting once the full listener is told the stage is nearly full, so
+     * the stage only goes past its capacity by the chunks already being read.  Chunks
+     * submitted after the stage is closed are discarded.
+     *
+     * @param chunk chunk to decode
+     */
+    public void submitNow(T chunk) {
+        synchronized (line) {
+            if (!add(chunk)) {
+                return;
+            }
+        }
+        startWorker();
+    }
+
+    /**
+     * Set the listener told, with true, when the chunks held reach seven eighths of the
+     * capacity, and with false once they are down to half of it.  It is called while the
+     * stage is locked, so it must not wait or submit chunks.
+     *
+     * @param listener listener, or null for none
+     */
+    public void setFullListener(Consumer<Boolean> listener) {
+        synchronized (line) {
+            fullListener = listener;
+        }
+    }
+
+    /**
+     * @return the number of chunks submitted but not yet delivered
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Put a chunk in line, called while the stage is locked.
+     *
+     * @return false if the stage is closed and the chunk discarded
+     */
+    private boolean add(T chunk) {
+        if (closed) {
+            return false;
+        }
+        Slot<T> slot = new Slot<>(chunk);
+        line.addLast(slot);
+        waiting.add(slot);
+        pendingChanged(1);
+        return true;
+    }
+
+    /**
+     * Count chunks added or removed, waking submitters waiting for space and telling the full
+     * listener of any crossing of the water marks.  Called while the stage is locked.
+     */
+    private void pendingChanged(int delta) {
+        pending += delta;
+        boolean wasFull = full;
+        if (!full && pending >= highWater) {
+            full = true;
+        } else if (full && pending <= lowWater) {
+            full = false;
+        }
+        if (delta < 0) {
+            line.notifyAll();
+        }
+        if (full != wasFull && fullListener != null) {
+            try {
+                fullListener.accept(full);
+            } catch (RuntimeException e) {
+                logger.error("{} full listener failed", name, e);
+            }
+        }
+    }
+
+    /**
+     * Wait for every chunk submitted so far to be delivered.
+     *
+     * @return true if the stage emptied within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (line) {
+            while (!line.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(line, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting chunks and discard those not yet decoded.  Chunks being decoded are
+     * still delivered.
+     */
+    public void close() {
+        synchronized (line) {
+            closed = true;
+            Slot<T> slot;
+            while ((slot = waiting.poll()) != null) {
+                line.remove(slot);
+                pendingChanged(-1);
+            }
+            line.notifyAll();
+        }
+    }
+
+    /**
+     * Start a worker if one is idle.
+     */
+    private void startWorker() {
+        ChunkDecoder<T> decoder = idleDecoders.poll();
+        if (decoder != null) {
+            executor.execute(() -> decode(decoder));
+        }
+    }
+
+    private void decode(ChunkDecoder<T> decoder) {
+        while (decoder != null) {
+            Slot<T> slot;
+            while ((slot = waiting.poll()) != null) {
+                try {
+                    decoder.decode(slot.chunk, slot.events);
+                } catch (RuntimeException e) {
+                    logger.warn("{} unable to decode chunk, keeping the {} events before the error", name, slot.events.size(), e);
+                }
+                slot.chunk = null;
+                slot.decoded = true;
+                deliver();
+            }
+            idleDecoders.offer(decoder);
+
+            // a chunk submitted after the queue was found empty may have found no idle decoder
+            decoder = waiting.isEmpty() ? null : idleDecoders.poll();
+        }
+    }
+
+    /**
+     * Deliver the decoded chunks at the head of the line.
+     */
+    private void deliver() {
+        synchronized (line) {
+            Slot<T> head;
+            while ((head = line.peekFirst()) != null && head.decoded) {
+                line.removeFirst();
+                pendingChanged(-1);
+                if (!head.events.isEmpty()) {
+                    try {
+                        sink.accept(head.events);
+                    } catch (RuntimeException e) {
+                        logger.error("{} unable to deliver events", name, e);
+                    }
+                }
+            }
+            if (line.isEmpty()) {
+                line.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.store.EventCodec;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Holds the events arriving while a receiver or tab is paused, and replays them in order once
+ * it resumes.
+ * <p>
+ * The first <code>memoryLimit</code> events held are kept in memory, later ones are written to
+ * a temporary file, in the form written by {@link EventCodec}, until it reaches
+ * <code>diskLimit</code> bytes.  Events arriving once both
+ * are full are discarded, and counted by {@link #getOverflow()}.
+ * <p>
+ * {@link #hold(List)} never touches the file, so it can be called on threads which must not
+ * block on I/O: events bound for the file are queued and written by a task on the
+ * {@link ReceiverRuntime} I/O pool.  Events which would fill the file are discarded when they
+ * are written, as are events arriving while the writer is too far behind.
+ * <p>
+ * Events keep being held after a resume until the replay has caught up, so events arriving
+ * during the replay are delivered after the backlog rather than overtaking it:
+ * <pre>
+ * if (!spill.hold(events)) deliver(events);
+ * ...
+ * if (spill.resume()) runInBackground(() -&gt; spill.replay(this::deliver));
+ * </pre>
+ */
+public class PauseSpill {
+    private static final Logger logger = LogManager.getLogger(PauseSpill.class);
+
+    public static final int DEFAULT_MEMORY_LIMIT = 100_000;
+    public static final long DEFAULT_DISK_LIMIT = 256L * 1024 * 1024;
+
+    /**
+     * Number of events replayed at a time.
+     */
+    public static final int REPLAY_BATCH_SIZE = 5000;
+
+    private static final Set<Path> openFiles = ConcurrentHashMap.newKeySet();
+    private static boolean shutdownHookAdded;
+
+    private final String name;
+    private final int memoryLimit;
+    private final long diskLimit;
+    private final EventCodec codec = new EventCodec();
+
+    // guards the file and its streams, taken before this, never while holding it
+    private final Object fileLock = new Object();
+    private Path file;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private ByteBuffer record = ByteBuffer.allocate(4096);
+
+    // everything below is guarded by this
+    private final ArrayDeque<ChainsawLoggingEvent> memory = new ArrayDeque<>();
+    // events bound for the file, in order, not yet written
+    private final ArrayDeque<ChainsawLoggingEvent> unwritten = new ArrayDeque<>();
+    // events are going to the file, so later ones must follow them there
+    private boolean spilling;
+    // the file is full or can't be written, so events bound for it are discarded
+    private boolean fileFull;
+    private boolean writing;
+    private long fileBytes;
+    private long fileEvents;
+    private long fileEventsRead;
+    private long overflow;
+    private boolean paused;
+    private boolean replaying;
+
+    public PauseSpill(String name) {
+        this(name, DEFAULT_MEMORY_LIMIT, DEFAULT_DISK_LIMIT);
+    }
+
+    /**
+     * @param name        name used when logging and for the temporary file
+     * @param memoryLimit maximum number of events held in memory
+     * @param diskLimit   maximum size of the temporary file in bytes, 0 for no file
+     */
+    public PauseSpill(String name, int memoryLimit, long diskLimit) {
+        this.name = name;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+    }
+
+    /**
+     * Start holding events.
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    /**
+     * Stop holding new events once the backlog has been replayed.
+     *
+     * @return true if the caller must now call {@link #replay(Consumer)}, false if there is
+     * nothing to replay or a replay is already running
+     */
+    public synchronized boolean resume() {
+        paused = false;
+        if (replaying || getBacklog() == 0) {
+            return false;
+        }
+        replaying = true;
+        return true;
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Hold the events if paused or if a backlog is waiting to be replayed.
+     *
+     * @return true if the events were held (or discarded for lack of room), false if the
+     * caller should deliver them itself
+     */
+    public synchronized boolean hold(List<ChainsawLoggingEvent> events) {
+        if (!paused && !replaying && getBacklog() == 0) {
+            return false;
+        }
+        for (ChainsawLoggingEvent event : events) {
+            add(event);
+        }
+        return true;
+    }
+
+    /**
+     * Deliver the backlog to the sink in batches of up to {@link #REPLAY_BATCH_SIZE} events,
+     * including events held while replaying, until it is empty or the spill is paused again.
+     * The sink is called on the calling thread, one batch at a time, and nothing held is
+     * delivered elsewhere until this returns.
+     */
+    public void replay(Consumer<List<ChainsawLoggingEvent>> sink) {
+        while (true) {
+            List<ChainsawLoggingEvent> batch = take(REPLAY_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                sink.accept(batch);
+            } catch (RuntimeException e) {
+                logger.error("{} unable to replay held events", name, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of events held
+     */
+    public synchronized long getBacklog() {
+        return memory.size() + unwritten.size() + fileEvents - fileEventsRead;
+    }
+
+    /**
+     * @return the number of events discarded because the spill was full
+     */
+    public synchronized long getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Discard the events held and delete the temporary file.
+     */
+    public void discard() {
+        synchronized (fileLock) {
+            synchronized (this) {
+                memory.clear();
+                unwritten.clear();
+                resetFile();
+            }
+            closeFile();
+        }
+    }
+
+    private void add(ChainsawLoggingEvent event) {
+        // once events go to the file, later ones must follow them there to keep their order
+        if (!spilling && memory.size() < memoryLimit) {
+            memory.addLast(event);
+            return;
+        }
+        if (diskLimit > 0 && !fileFull && unwritten.size() < Math.max(memoryLimit, REPLAY_BATCH_SIZE)) {
+            spilling = true;
+            unwritten.addLast(event);
+            if (!writing) {
+                writing = true;
+                ReceiverRuntime.getShared().runIo(name + "-spill", this::writeHeld);
+            }
+            return;
+        }
+        overflowed(1);
+    }
+
+    private void overflowed(long count) {
+        if (overflow == 0) {
+            logger.warn("{} holding as many events as it can, discarding newer events until resumed", name);
+        }
+        overflow += count;
+    }
+
+    /**
+     * Write the events waiting for the file, until none are left.
+     */
+    private void writeHeld() {
+        synchronized (fileLock) {
+            List<ChainsawLoggingEvent> batch = new ArrayList<>();
+            while (true) {
+                long bytes;
+                synchronized (this) {
+                    if (unwritten.isEmpty()) {
+                        writing = false;
+                        return;
+                    }
+                    // copied rather than taken, so a replay never sees them missing
+                    for (ChainsawLoggingEvent event : unwritten) {
+                        if (batch.size() == REPLAY_BATCH_SIZE) {
+                            break;
+                        }
+                        batch.add(event);
+                    }
+                    bytes = fileBytes;
+                }
+
+                int written = 0;
+                try {
+                    if (out == null) {
+                        openFile();
+                    }
+                    while (written < batch.size() && bytes < diskLimit) {
+                        bytes += write(batch.get(written));
+                        written++;
+                    }
+                } catch (IOException e) {
+                    logger.warn(
+                            "{} unable to write held events to {}, discarding events until resumed",
+                            name,
+                            file == null ? "a temporary file" : file,
+                            e);
+                    bytes = diskLimit;
+                }
+
+                synchronized (this) {
+                    for (int i = 0; i < written; i++) {
+                        unwritten.pollFirst();
+                    }
+                    fileEvents += written;
+                    fileBytes = bytes;
+                    if (bytes >= diskLimit) {
+                        fileFull = true;
+                        overflowed(unwritten.size());
+                        unwritten.clear();
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Take the next events of the backlog, reading the file without holding this, so events
+     * can be held meanwhile.
+     *
+     * @return the events, empty once the backlog has been replayed or the spill is paused
+     */
+    private List<ChainsawLoggingEvent> take(int max) {
+        synchronized (fileLock) {
+            List<ChainsawLoggingEvent> batch;
+            long fromFile;
+            synchronized (this) {
+                if (paused || getBacklog() == 0) {
+                    replaying = false;
+                    return Collections.emptyList();
+                }
+                batch = new ArrayList<>((int) Math.min(getBacklog(), max));
+                while (batch.size() < max && !memory.isEmpty()) {
+                    batch.add(memory.pollFirst());
+                }
+                fromFile = Math.min(max - batch.size(), fileEvents - fileEventsRead);
+            }
+
+            long read = 0;
+            IOException failure = null;
+            try {
+                if (fromFile > 0) {
+                    out.flush();
+                    if (in == null) {
+                        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+                    }
+                    for (; read < fromFile; read++) {
+                        batch.add(read());
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            boolean close;
+            synchronized (this) {
+                if (failure != null) {
+                    logger.warn(
+                            "{} unable to read held events from {}, discarding {} events",
+                            name,
+                            file,
+                            fileEvents - fileEventsRead - read + unwritten.size(),
+                            failure);
+                    fileEventsRead = fileEvents;
+                    unwritten.clear();
+                } else {
+                    fileEventsRead += fromFile;
+                }
+                // no write is under way, so the events waiting for the file come next
+                while (batch.size() < max && !unwritten.isEmpty()) {
+                    batch.add(unwritten.pollFirst());
+                }
+                close = spilling && fileEventsRead == fileEvents && unwritten.isEmpty();
+                if (close) {
+                    resetFile();
+                }
+            }
+            if (close) {
+                closeFile();
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Forget the file's contents, called while holding this before the file is closed.
+     */
+    private void resetFile() {
+        spilling = false;
+        fileFull = false;
+        fileBytes = 0;
+        fileEvents = 0;
+        fileEventsRead = 0;
+    }
+
+    private void openFile() throws IOException {
+        file = Files.createTempFile("chainsaw-" + name.replaceAll("[^A-Za-z0-9_-]", "_") + "-", ".spill");
+        deleteOnShutdown(file);
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+    }
+
+    private void closeFile() {
+        closeQuietly(out);
+        closeQuietly(in);
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("{} unable to delete {}", name, file, e);
+            }
+            openFiles.remove(file);
+        }
+        file = null;
+        out = null;
+        in = null;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // nothing more to do with it
+            }
+        }
+    }
+
+    /**
+     * Files left behind are deleted by one shutdown hook, rather than each file asking to be
+     * deleted on exit, which the JVM remembers until it exits.
+     */
+    private static synchronized void deleteOnShutdown(Path file) {
+        if (!shutdownHookAdded) {
+            shutdownHookAdded = true;
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(
+                            () -> openFiles.forEach(open -> open.toFile().delete()), "PauseSpill-cleanup"));
+        }
+        openFiles.add(file);
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private int write(ChainsawLoggingEvent event) throws IOException {
+        ByteBuffer encoded = codec.encode(event);
+        out.write(encoded.array(), encoded.arrayOffset(), encoded.limit());
+        return encoded.limit();
+    }
+
+    private ChainsawLoggingEvent read() throws IOException {
+        // the record length includes the length itself
+        int length = in.readInt();
+        if (length > record.capacity()) {
+            record = ByteBuffer.allocate(Math.max(length, record.capacity() * 2));
+        }
+        record.clear();
+        record.putInt(length);
+        in.readFully(record.array(), record.arrayOffset() + 4, length - 4);
+        record.position(0);
+        return EventCodec.decode(record);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.Level;
+
+/**
+ * The cheap filters a receiver applies to events before they are queued for its listeners,
+ * and a count of the events they dropped.
+ * <p>
+ * The filters are the receiver's threshold, and any filters pushed down from the tab showing
+ * the receiver's events: loggers the tab hides (with their descendants), and a hide expression
+ * simple enough to evaluate without the rule engine, one or more <code>FIELD == value</code>
+ * comparisons of LOGGER, LEVEL or THREAD joined by <code>||</code>.
+ * <p>
+ * Decoders given the filter can evaluate it on the raw input, with
+ * {@link #accept(Level, String, String)}, and skip a record without building its event.
+ * Dropped events are gone for good, unlike events hidden by the tab, which can be shown again.
+ */
+public class PushdownFilter {
+
+    /**
+     * An event with <code>field</code> equal to <code>value</code> is dropped.
+     */
+    public static final class Equality {
+        public static final String LOGGER = "LOGGER";
+        public static final String LEVEL = "LEVEL";
+        public static final String THREAD = "THREAD";
+
+        private final String field;
+        private final String value;
+
+        public Equality(String field, String value) {
+            this.field = field.toUpperCase(Locale.ROOT);
+            this.value = value;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return true if the event matches, false if it doesn't or the field isn't known
+         */
+        boolean matches(Level level, String logger, String thread) {
+            switch (field) {
+                case LOGGER:
+                    return value.equals(logger);
+                case LEVEL:
+                    return level != null && level.name().equalsIgnoreCase(value);
+                case THREAD:
+                    return value.equals(thread);
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field + " == " + value;
+        }
+    }
+
+    /**
+     * The filters in force at one time, replaced as a whole so a decoder never sees half of a
+     * change.
+     */
+    private static final class Criteria {
+        private final Level threshold;
+        private final List<String> hiddenLoggers;
+        // each hidden logger followed by a dot, matching its descendants
+        private final String[] hiddenPrefixes;
+        private final List<Equality> hiddenEqualities;
+        private final boolean passAll;
+
+        private Criteria(Level threshold, List<String> hiddenLoggers, List<Equality> hiddenEqualities) {
+            this.threshold = threshold;
+            this.hiddenLoggers = hiddenLoggers;
+            this.hiddenPrefixes = hiddenLoggers.stream().map(hidden -> hidden + ".").toArray(String[]::new);
+            this.hiddenEqualities = hiddenEqualities;
+            this.passAll = threshold.compareTo(Level.TRACE) <= 0 && hiddenLoggers.isEmpty() && hiddenEqualities.isEmpty();
+        }
+    }
+
+    private volatile Criteria criteria = new Criteria(Level.TRACE, Collections.emptyList(), Collections.emptyList());
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Drop events below the level.
+     */
+    public synchronized void setThreshold(Level threshold) {
+        Criteria current = criteria;
+        criteria = new Criteria(
+                threshold == null ? Level.TRACE : threshold, current.hiddenLoggers, current.hiddenEqualities);
+    }
+
+    /**
+     * Replace the filters pushed down from the tab.
+     *
+     * @param hiddenLoggers    loggers whose events, and whose descendants' events, are dropped
+     * @param hiddenEqualities comparisons dropping the events they match
+     */
+    public synchronized void setHidden(Collection<String> hiddenLoggers, Collection<Equality> hiddenEqualities) {
+        criteria = new Criteria(
+                criteria.threshold,
+                hiddenLoggers == null ? Collections.emptyList() : List.copyOf(hiddenLoggers),
+                hiddenEqualities == null ? Collections.emptyList() : List.copyOf(hiddenEqualities));
+    }
+
+    /**
+     * Stop dropping events for the tab.
+     */
+    public void clearHidden() {
+        setHidden(null, null);
+    }
+
+    /**
+     * @return true if no event would be dropped, so filtering can be skipped entirely
+     */
+    public boolean isPassAll() {
+        return criteria.passAll;
+    }
+
+    /**
+     * Evaluate the filters on the fields of an event before the event is built, counting the
+     * event as dropped if it fails.  Comparisons of a field which isn't known yet are not
+     * evaluated, so the event may still be dropped once it has been built.
+     *
+     * @param level  the event's level, or null if not known
+     * @param logger the event's logger, or null if not known
+     * @param thread the event's thread, or null if not known
+     * @return true if the event should be kept
+     */
+    public boolean accept(Level level, String logger, String thread) {
+        Criteria current = criteria;
+        if (current.passAll || passes(current, level, logger, thread)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Evaluate the filters on an event, counting the event as dropped if it fails.
+     *
+     * @return true if the event should be kept
+     */
+    public boolean accept(ChainsawLoggingEvent event) {
+        return accept(event.m_level, event.m_logger, event.m_threadName);
+    }
+
+    /**
+     * @return the events which pass the filters, the list itself if they all do
+     */
+    public List<ChainsawLoggingEvent> filter(List<ChainsawLoggingEvent> events) {
+        if (criteria.passAll) {
+            return events;
+        }
+        List<ChainsawLoggingEvent> kept = null;
+        for (int i = 0; i < events.size(); i++) {
+            ChainsawLoggingEvent event = events.get(i);
+            if (accept(event)) {
+                if (kept != null) {
+                    kept.add(event);
+                }
+            } else if (kept == null) {
+                kept = new ArrayList<>(events.subList(0, i));
+            }
+        }
+        return kept == null ? events : kept;
+    }
+
+    /**
+     * @return the number of events dropped since the receiver was created
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Parse a hide expression made only of <code>FIELD == value</code> comparisons of LOGGER,
+     * LEVEL or THREAD joined by <code>||</code>, values being optionally quoted with single
+     * quotes.
+     *
+     * @param expression the expression, may be null
+     * @return the comparisons, or null if the expression is anything else
+     */
+    public static List<Equality> parseEqualities(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            return null;
+        }
+        List<Equality> equalities = new ArrayList<>();
+        // keep empty terms, so a dangling || is rejected rather than ignored
+        for (String term : expression.split("\\|\\|", -1)) {
+            int operator = term.indexOf("==");
+            if (operator == -1) {
+                return null;
+            }
+            String field = term.substring(0, operator).trim().toUpperCase(Locale.ROOT);
+            String value = term.substring(operator + 2).trim();
+            if (value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            if (!(field.equals(Equality.LOGGER) || field.equals(Equality.LEVEL) || field.equals(Equality.THREAD))
+                    || value.isEmpty()
+                    || value.contains("'")
+                    || value.contains("&&")
+                    || value.contains("(")
+                    || value.contains(")")) {
+                return null;
+            }
+            equalities.add(new Equality(field, value));
+        }
+        return equalities;
+    }
+
+    private static boolean passes(Criteria criteria, Level level, String logger, String thread) {
+        if (level != null && level.compareTo(criteria.threshold) < 0) {
+            return false;
+        }
+        if (logger != null) {
+            for (int i = 0; i < criteria.hiddenPrefixes.length; i++) {
+                // the same test as the logger tree's
+                if (logger.startsWith(criteria.hiddenPrefixes[i]) || logger.endsWith(criteria.hiddenLoggers.get(i))) {
+                    return false;
+                }
+            }
+        }
+        for (Equality equality : criteria.hiddenEqualities) {
+            if (equality.matches(level, logger, thread)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
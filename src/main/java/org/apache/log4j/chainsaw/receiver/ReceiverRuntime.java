@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Threads shared by every receiver in the process, so that an idle receiver costs no thread.
+ * <ul>
+ * <li>{@link #runIo(String, Runnable)} runs blocking I/O, such as a socket's receive loop or a
+ * file being tailed.  Tasks run on virtual threads when the JVM provides them (Java 21 and
+ * later), otherwise on a cached pool of daemon threads which exit when idle.</li>
+ * <li>{@link #getCpuExecutor()} is a pool with a thread per core, for decoding and for
+ * delivering events to listeners.  Tasks on it must not block on I/O.</li>
+ * <li>{@link #getScheduler()} runs delayed work, such as a receiver's queue interval.</li>
+ * </ul>
+ * {@link #stop(Collection, long, TimeUnit)} stops many receivers at once.
+ */
+public final class ReceiverRuntime {
+    private static final Logger logger = LogManager.getLogger(ReceiverRuntime.class);
+
+    private static final ReceiverRuntime SHARED = new ReceiverRuntime(Runtime.getRuntime().availableProcessors());
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ThreadPoolExecutor cpuExecutor;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final boolean virtualThreads;
+
+    /**
+     * @param cpuThreads number of threads for decoding and delivery
+     */
+    public ReceiverRuntime(int cpuThreads) {
+        ThreadFactory virtual = virtualThreadFactory();
+        virtualThreads = virtual != null;
+        ioExecutor = new ThreadPoolExecutor(
+                0,
+                Integer.MAX_VALUE,
+                30,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                virtualThreads ? virtual : daemonThreadFactory("Chainsaw-io-", Thread.NORM_PRIORITY));
+        cpuExecutor = new ThreadPoolExecutor(
+                cpuThreads,
+                cpuThreads,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonThreadFactory("Chainsaw-cpu-", Thread.NORM_PRIORITY - 1));
+        cpuExecutor.allowCoreThreadTimeOut(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, daemonThreadFactory("Chainsaw-scheduler-", Thread.NORM_PRIORITY));
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @return the runtime shared by the receivers of this process
+     */
+    public static ReceiverRuntime getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Run a blocking task, which is named while it runs.
+     *
+     * @param name name for the thread while running the task
+     * @param task the task
+     * @return the task's future, cancelling it interrupts the task
+     */
+    public Future<?> runIo(String name, Runnable task) {
+        return ioExecutor.submit(named(name, task));
+    }
+
+    public Executor getCpuExecutor() {
+        return cpuExecutor;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return true if blocking I/O runs on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return the number of threads currently running or waiting for blocking I/O
+     */
+    public int getIoThreads() {
+        return ioExecutor.getPoolSize();
+    }
+
+    /**
+     * Shut down the receivers together, then wait for each to deliver the events it has queued.
+     *
+     * @return true if every receiver drained within the timeout
+     */
+    public boolean stop(Collection<? extends ChainsawReceiver> receivers, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        List<Future<?>> shutdowns = new ArrayList<>();
+        for (ChainsawReceiver receiver : receivers) {
+            shutdowns.add(runIo("Chainsaw-shutdown-" + receiver.getName(), receiver::shutdown));
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> shutdown : shutdowns) {
+            try {
+                shutdown.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                logger.warn("Receiver did not shut down cleanly", e);
+            }
+        }
+
+        boolean drained = true;
+        for (ChainsawReceiver receiver : receivers) {
+            drained &= receiver.drain(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return drained;
+    }
+
+    private static Runnable named(String name, Runnable task) {
+        return () -> {
+            Thread thread = Thread.currentThread();
+            String previous = thread.getName();
+            thread.setName(name);
+            try {
+                task.run();
+            } finally {
+                thread.setName(previous);
+            }
+        };
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+
+    /**
+     * The build targets a JVM without virtual threads, so look for them reflectively.
+     *
+     * @return a factory of virtual threads, or null if the JVM doesn't have them
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Chainsaw-io-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // older JVM, or virtual threads are a preview not enabled
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.function.Consumer;
+
+/**
+ * A receiver which routes some of its events to further receivers of its own, for example
+ * one per remote device, so each can be shown in its own tab.
+ */
+public interface RoutingReceiver extends ChainsawReceiver {
+
+    /**
+     * @param listener told about each route receiver as it is created, possibly on a receiver thread
+     */
+    void addRouteListener(Consumer<ChainsawReceiver> listener);
+}
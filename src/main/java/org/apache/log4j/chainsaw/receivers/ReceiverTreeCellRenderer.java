@@ -24,6 +24,10 @@ import org.apache.log4j.chainsaw.components.tutorial.Generator;
 import org.apache.log4j.chainsaw.icons.ChainsawIcons;
 import org.apache.log4j.chainsaw.icons.LevelIconFactory;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.DeliveryMetrics;
+import org.apache.log4j.net.ConnectionBased;
+import org.apache.log4j.net.ConnectionStats;
 
 /**
  * A TreeCellRenderer that can format the information of Receivers
@@ -92,10 +96,59 @@ public class ReceiverTreeCellRenderer extends DefaultTreeCellRenderer {
                     levelLabel.setText(t.getThreshold().toString());
                 }
             }
+
+            long backlog = t.getPauseBacklog();
+            if (t.getPaused()) {
+                tooltip = "Paused, holding " + backlog + " events";
+            } else if (backlog > 0) {
+                tooltip = "Resumed, still holding " + backlog + " events";
+            }
+        }
+
+        StringBuilder details = new StringBuilder(tooltip);
+        if (o instanceof ChainsawReceiverSkeleton) {
+            DeliveryMetrics metrics = ((ChainsawReceiverSkeleton) o).getDeliveryMetrics();
+            appendLane(details, "Priority", metrics.getPriority());
+            appendLane(details, "Bulk", metrics.getBulk());
+        }
+        if (o instanceof ConnectionBased) {
+            for (ConnectionStats stats : ((ConnectionBased) o).getConnectionStats()) {
+                if (details.length() > 0) {
+                    details.append("<br>");
+                }
+                details
+                        .append(stats.getRemoteAddress())
+                        .append(": ")
+                        .append(stats.getEvents())
+                        .append(" events, throttled for ")
+                        .append(stats.getThrottledMillis())
+                        .append(" ms")
+                        .append(stats.isThrottled() ? " (throttled now)" : "");
+            }
+        }
+        if (details.length() > tooltip.length()) {
+            tooltip = "<html>" + details + "</html>";
         }
 
         setToolTipText(tooltip);
 
         return panel;
     }
+
+    private static void appendLane(StringBuilder details, String name, DeliveryMetrics.Lane lane) {
+        if (lane.getEvents() == 0) {
+            return;
+        }
+        if (details.length() > 0) {
+            details.append("<br>");
+        }
+        details.append(name)
+                .append(": ")
+                .append(lane.getEvents())
+                .append(" events delivered, ")
+                .append(String.format("%.1f", lane.getMeanLatencyMillis()))
+                .append(" ms mean wait, ")
+                .append(lane.getMaxLatencyMillis())
+                .append(" ms max");
+    }
 }
@@ -453,9 +453,8 @@ public class ReceiversPanel extends JPanel implements SettingsListener {
     }
 
     /**
-     * Takes the currently selected Receiver and pauess it, effectively
-     * discarding any received event BEFORE it is even posted to the logger
-     * repository.
+     * Takes the currently selected Receiver and pauses it, holding any
+     * received event until it is resumed.
      *
      * The user is NOT asked to confirm this operation
      */
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.apache.log4j.chainsaw.logevents.LocationInfo;
+
+/**
+ * Compact binary form of a ChainsawLoggingEvent, used for events written to
+ * spill segments.
+ * <p>
+ * A record is an int length followed by the timestamp, level, message, thread,
+ * logger, NDC, location info, MDC and properties of the event.  Strings are stored
+ * as an int byte count (-1 for null) followed by UTF-8 bytes.
+ * <p>
+ * Instances reuse their encoding buffer and are not thread safe.
+ */
+public class EventCodec {
+    private static final Level[] LEVELS = Level.values();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    /**
+     * Encode an event.  The returned buffer is owned by this codec and is only
+     * valid until the next call.
+     *
+     * @param event event to encode
+     * @return buffer positioned at 0, limited to the end of the record
+     */
+    public ByteBuffer encode(ChainsawLoggingEvent event) {
+        buffer.clear();
+        // length, filled in below
+        buffer.putInt(0);
+        putLong(event.m_timestamp == null ? Long.MIN_VALUE : event.m_timestamp.getEpochSecond());
+        putInt(event.m_timestamp == null ? 0 : event.m_timestamp.getNano());
+        putByte(event.m_level == null ? -1 : event.m_level.ordinal());
+        putString(event.m_message);
+        putString(event.m_threadName);
+        putString(event.m_logger);
+        putString(event.m_ndc);
+        LocationInfo info = event.m_locationInfo;
+        if (info == null) {
+            putByte(0);
+        } else {
+            putByte(1);
+            putString(info.fileName);
+            putString(info.className);
+            putString(info.methodName);
+            putInt(info.lineNumber);
+        }
+        putMap(event.m_mdc);
+        putInt(event.getPropertyKeySet().size());
+        for (String key : event.getPropertyKeySet()) {
+            putString(key);
+            putString(event.getProperty(key));
+        }
+        buffer.putInt(0, buffer.position());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decode the record starting at the current position of the buffer.  On return
+     * the buffer is positioned after the record.
+     *
+     * @param in buffer positioned at the start of a record
+     * @return the event
+     */
+    public static ChainsawLoggingEvent decode(ByteBuffer in) {
+        int start = in.position();
+        int length = in.getInt();
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        int level = in.get();
+
+        ChainsawLoggingEventBuilder builder = new ChainsawLoggingEventBuilder();
+        builder.setTimestamp(seconds == Long.MIN_VALUE ? null : Instant.ofEpochSecond(seconds, nanos))
+                .setLevel(level < 0 ? null : LEVELS[level])
+                .setMessage(getString(in))
+                .setThreadName(getString(in))
+                .setLogger(getString(in))
+                .setNDC(getString(in));
+        if (in.get() == 1) {
+            builder.setLocationInfo(new LocationInfo(getString(in), getString(in), getString(in), in.getInt()));
+        }
+        builder.setMDC(getMap(in));
+
+        ChainsawLoggingEvent event = builder.create();
+        int properties = in.getInt();
+        for (int i = 0; i < properties; i++) {
+            event.setProperty(getString(in), getString(in));
+        }
+        in.position(start + length);
+        return event;
+    }
+
+    /**
+     * Skip the record starting at the current position of the buffer.
+     */
+    public static void skip(ByteBuffer in) {
+        in.position(in.position() + in.getInt(in.position()));
+    }
+
+    private void putMap(Map<String, String> map) {
+        if (map == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            putString(entry.getKey());
+            putString(entry.getValue());
+        }
+    }
+
+    private static Map<String, String> getMap(ByteBuffer in) {
+        int size = in.getInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(getString(in), getString(in));
+        }
+        return map;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        // mapped segments aren't array-backed
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putLong(long value) {
+        ensureCapacity(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    private void putInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    private void putByte(int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
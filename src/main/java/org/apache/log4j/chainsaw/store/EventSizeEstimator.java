@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.util.Map;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.LocationInfo;
+
+/**
+ * Rough estimate of the heap retained by an event and its wrapper.
+ * <p>
+ * The estimate assumes a 64 bit VM with compressed references and compact strings, and
+ * doesn't try to discount strings which are shared between events (logger and thread names
+ * usually are), so it errs on the high side.
+ */
+public final class EventSizeEstimator {
+    // LoggingEventWrapper, its search match map, the ChainsawLoggingEvent and its Instant
+    private static final int EVENT_OVERHEAD = 80 + 48 + 48 + 24;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int LOCATION_OVERHEAD = 32;
+    private static final int MAP_OVERHEAD = 64;
+    private static final int MAP_ENTRY_OVERHEAD = 40;
+
+    private EventSizeEstimator() {}
+
+    /**
+     * @param event event to measure
+     * @return estimated number of bytes retained by the event once it is wrapped and held in a table model
+     */
+    public static long estimate(ChainsawLoggingEvent event) {
+        long size = EVENT_OVERHEAD;
+        size += sizeOf(event.m_message);
+        size += sizeOf(event.m_threadName);
+        size += sizeOf(event.m_logger);
+        size += sizeOf(event.m_ndc);
+        LocationInfo info = event.m_locationInfo;
+        if (info != null) {
+            size += LOCATION_OVERHEAD + sizeOf(info.fileName) + sizeOf(info.className) + sizeOf(info.methodName);
+        }
+        size += sizeOf(event.m_mdc);
+        size += MAP_OVERHEAD;
+        for (String key : event.getPropertyKeySet()) {
+            size += MAP_ENTRY_OVERHEAD + sizeOf(key) + sizeOf(event.getProperty(key));
+        }
+        return size;
+    }
+
+    private static long sizeOf(Map<String, String> map) {
+        if (map == null) {
+            return 0;
+        }
+        long size = MAP_OVERHEAD;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            size += MAP_ENTRY_OVERHEAD + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length();
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps events on disk in a directory of append-only segment files.
+ * <p>
+ * Events are addressed by a zero-based index, oldest first.  When the total size of
+ * the segments exceeds the configured maximum, the oldest segment is deleted, and the
+ * indexes of the remaining events shift down accordingly.
+ * <p>
+ * If the store can't write to disk it logs the error and discards further events
+ * rather than interrupting the caller.
+ * <p>
+ * Segments are deleted as soon as they are dropped.  The directories of stores still
+ * open when the JVM exits are deleted by a single shutdown hook, and directories left
+ * behind by processes which didn't exit cleanly are deleted by {@link #create(File, String)}.
+ * <p>
+ * This class is not thread safe - callers synchronize access (the table model does
+ * so under its own mutex).
+ */
+public class EventSpillStore {
+    public static final String SPILL_DIRECTORY_NAME = "spill";
+    public static final long DEFAULT_SEGMENT_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final Logger logger = LogManager.getLogger(EventSpillStore.class);
+
+    // stores with a directory on disk, deleted by the shutdown hook if still open at exit
+    private static final Set<EventSpillStore> openStores = ConcurrentHashMap.newKeySet();
+    private static boolean shutdownHookAdded;
+
+    private final File directory;
+    private final List<SpillSegment> segments = new ArrayList<>();
+    private final EventCodec codec = new EventCodec();
+    private final long segmentBytes;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long totalBytes;
+    private long size;
+    private int nextSegment;
+    private boolean failed;
+
+    public EventSpillStore(File directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public EventSpillStore(File directory, long segmentBytes) {
+        if (segmentBytes < 1 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Create a store in a directory for the given name under the root spill directory,
+     * deleting segments left behind by Chainsaw processes which are no longer running.
+     *
+     * @param root the root spill directory
+     * @param name name of the store (for example the tab identifier)
+     * @return the store
+     */
+    public static EventSpillStore create(File root, String name) {
+        deleteStaleDirectories(root);
+        long pid = ProcessHandle.current().pid();
+        File directory = new File(root, name.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + pid);
+        return new EventSpillStore(directory);
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the number of bytes currently held on disk
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the number of events currently in the store
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Append an event to the newest segment, rolling to a new segment when it is full.
+     *
+     * @param event event to keep
+     * @return true if the event was written
+     */
+    public boolean append(ChainsawLoggingEvent event) {
+        if (failed) {
+            return false;
+        }
+        try {
+            ByteBuffer record = codec.encode(event);
+            SpillSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || segment.getLength() + record.remaining() > segmentBytes) {
+                segment = newSegment();
+            }
+            totalBytes += record.remaining();
+            segment.append(record);
+            size++;
+            trim();
+            return true;
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Unable to write to spill directory {}, evicted events will be discarded", directory, e);
+            return false;
+        }
+    }
+
+    /**
+     * Read the event with the given index back from disk.
+     *
+     * @param index zero-based index, oldest first
+     * @return a new ChainsawLoggingEvent
+     */
+    public ChainsawLoggingEvent get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        for (SpillSegment segment : segments) {
+            if (index < segment.getCount()) {
+                try {
+                    return segment.read((int) index);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to read spill segment " + segment.getFile(), e);
+                }
+            }
+            index -= segment.getCount();
+        }
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    /**
+     * Iterate over the events in the store, oldest first, reading each segment sequentially.
+     */
+    public Iterator<ChainsawLoggingEvent> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterate over the events in the store, starting at the given index.
+     */
+    public Iterator<ChainsawLoggingEvent> iterator(long startIndex) {
+        return new Iterator<ChainsawLoggingEvent>() {
+            private final List<SpillSegment> snapshot = new ArrayList<>(segments);
+            private long remaining = size - startIndex;
+            private int segmentIndex;
+            private int recordIndex;
+            private ByteBuffer view;
+
+            {
+                long skip = startIndex;
+                while (segmentIndex < snapshot.size() && skip >= snapshot.get(segmentIndex).getCount()) {
+                    skip -= snapshot.get(segmentIndex++).getCount();
+                }
+                recordIndex = (int) skip;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public ChainsawLoggingEvent next() {
+                if (remaining <= 0) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    SpillSegment segment = snapshot.get(segmentIndex);
+                    if (view == null) {
+                        view = segment.viewAt(recordIndex);
+                    }
+                    ChainsawLoggingEvent event = EventCodec.decode(view);
+                    remaining--;
+                    if (++recordIndex == segment.getCount()) {
+                        segmentIndex++;
+                        recordIndex = 0;
+                        view = null;
+                    }
+                    return event;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to read spill segment", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Delete all segments.
+     */
+    public void clear() {
+        for (SpillSegment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        totalBytes = 0;
+        size = 0;
+    }
+
+    /**
+     * Delete all segments and the store directory.
+     */
+    public void close() {
+        clear();
+        directory.delete();
+        openStores.remove(this);
+    }
+
+    private SpillSegment newSegment() throws IOException {
+        if (!directory.exists()) {
+            if (!directory.mkdirs()) {
+                throw new IOException("Unable to create " + directory);
+            }
+            deleteOnShutdown(this);
+        }
+        SpillSegment segment = new SpillSegment(new File(directory, String.format("%08d.seg", nextSegment++)));
+        segments.add(segment);
+        return segment;
+    }
+
+    private void trim() {
+        // always keep the segment being written to
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            deleteOldestSegment();
+        }
+    }
+
+    private void deleteOldestSegment() {
+        SpillSegment oldest = segments.remove(0);
+        totalBytes -= oldest.getLength();
+        size -= oldest.getCount();
+        oldest.delete();
+    }
+
+    private static void deleteStaleDirectories(File root) {
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            String name = directory.getName();
+            int separator = name.lastIndexOf('-');
+            if (separator < 0) {
+                continue;
+            }
+            try {
+                long pid = Long.parseLong(name.substring(separator + 1));
+                if (ProcessHandle.of(pid).isPresent()) {
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            deleteDirectory(directory);
+        }
+    }
+
+    private static synchronized void deleteOnShutdown(EventSpillStore store) {
+        if (!shutdownHookAdded) {
+            shutdownHookAdded = true;
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(
+                            () -> openStores.forEach(open -> deleteDirectory(open.directory)),
+                            "EventSpillStore-cleanup"));
+        }
+        openStores.add(store);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import org.apache.log4j.chainsaw.EventContainer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Shares a memory budget between the tabs of a Chainsaw instance.
+ * <p>
+ * Each registered tab is given a byte budget for its event containers: the tab viewed most
+ * recently gets two shares and every other tab one.  Once installed, the governor also sets a
+ * usage threshold on the heap pools which support one, and when a pool crosses it releases events
+ * held in memory, starting with the tab which has gone longest without being viewed.  Tabs with
+ * a spill store move their events to disk, other tabs discard them.
+ * <p>
+ * Tabs are registered for the life of the application: Chainsaw hides tabs but never disposes
+ * of them.  Events are released on the EDT, where the tables add and display them.
+ */
+public class MemoryGovernor implements NotificationListener {
+    public static final int DEFAULT_BUDGET_PERCENT = 50;
+
+    // fraction of a pool's maximum size which counts as heap pressure
+    static final double PRESSURE_THRESHOLD = 0.85;
+    // fraction of a pool's maximum size to get back under when relieving pressure
+    static final double RELIEF_TARGET = 0.70;
+
+    private static final Logger logger = LogManager.getLogger(MemoryGovernor.class);
+
+    private final long totalBudget;
+    private final List<Tab> tabs = new ArrayList<>();
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private long viewSequence;
+
+    /**
+     * @param totalBudget estimated bytes the events of all tabs may retain
+     */
+    public MemoryGovernor(long totalBudget) {
+        this.totalBudget = totalBudget;
+    }
+
+    /**
+     * Create a governor with a budget of the given percentage of the maximum heap size.
+     */
+    public static MemoryGovernor forHeapPercent(int percent) {
+        return new MemoryGovernor(Runtime.getRuntime().maxMemory() / 100 * percent);
+    }
+
+    public long getTotalBudget() {
+        return totalBudget;
+    }
+
+    /**
+     * Register a tab.  The containers of a tab share their events (the main and search
+     * tables of a log panel, for example), so each is given the full budget of the tab.
+     *
+     * @param key        identifies the tab in later calls
+     * @param containers the event containers of the tab
+     */
+    public synchronized void register(Object key, EventContainer... containers) {
+        tabs.add(new Tab(key, containers, ++viewSequence));
+        rebalance();
+    }
+
+    /**
+     * Record that a tab has been viewed, moving it to the back of the eviction order.
+     */
+    public synchronized void viewed(Object key) {
+        for (Tab tab : tabs) {
+            if (tab.key == key) {
+                tab.lastViewed = ++viewSequence;
+                rebalance();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return estimated bytes retained by the events of all registered tabs
+     */
+    public synchronized long getRetainedBytes() {
+        long retained = 0;
+        for (Tab tab : tabs) {
+            retained += tab.getRetainedBytes();
+        }
+        return retained;
+    }
+
+    /**
+     * Release events held in memory, least recently viewed tab first.  Must be called on the EDT.
+     *
+     * @param bytes estimated number of bytes to release
+     * @return the estimated number of bytes released
+     */
+    public synchronized long relieve(long bytes) {
+        List<Tab> ordered = new ArrayList<>(tabs);
+        ordered.sort(Comparator.comparingLong(tab -> tab.lastViewed));
+        long released = 0;
+        for (Tab tab : ordered) {
+            if (released >= bytes) {
+                break;
+            }
+            released += tab.trimToBytes(Math.max(0, tab.getRetainedBytes() - (bytes - released)));
+        }
+        return released;
+    }
+
+    /**
+     * Watch the heap pools which support usage thresholds.  The threshold measured after a
+     * collection is preferred, as it isn't tripped by garbage waiting to be collected.
+     */
+    public void install() {
+        NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() != MemoryType.HEAP || max <= 0) {
+                continue;
+            }
+            long threshold = (long) (max * PRESSURE_THRESHOLD);
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(threshold);
+            } else if (pool.isUsageThresholdSupported()) {
+                pool.setUsageThreshold(threshold);
+            } else {
+                continue;
+            }
+            pools.add(pool);
+            logger.debug("Watching memory pool {} with threshold {}", pool.getName(), threshold);
+        }
+        if (!pools.isEmpty()) {
+            emitter.addNotificationListener(this, null, null);
+        }
+    }
+
+    public void uninstall() {
+        if (pools.isEmpty()) {
+            return;
+        }
+        pools.clear();
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // not installed
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (!type.equals(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED)
+                && !type.equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) {
+            return;
+        }
+        MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+        MemoryUsage usage = info.getUsage();
+        long excess = usage.getUsed() - (long) (usage.getMax() * RELIEF_TARGET);
+        if (excess > 0) {
+            // notifications arrive on a JMX thread, the tables are only changed on the EDT
+            EventQueue.invokeLater(() -> {
+                long released = relieve(excess);
+                logger.info(
+                        "Memory pool {} is using {} of {} bytes, released an estimated {} bytes of events",
+                        info.getPoolName(),
+                        usage.getUsed(),
+                        usage.getMax(),
+                        released);
+            });
+        }
+    }
+
+    private void rebalance() {
+        if (tabs.isEmpty()) {
+            return;
+        }
+        Tab mostRecent = tabs.stream().max(Comparator.comparingLong(tab -> tab.lastViewed)).get();
+        long share = totalBudget / (tabs.size() + 1);
+        for (Tab tab : tabs) {
+            tab.setByteBudget(tab == mostRecent ? share * 2 : share);
+        }
+    }
+
+    private static class Tab {
+        private final Object key;
+        private final EventContainer[] containers;
+        private long lastViewed;
+
+        private Tab(Object key, EventContainer[] containers, long lastViewed) {
+            this.key = key;
+            this.containers = containers;
+            this.lastViewed = lastViewed;
+        }
+
+        // the containers share their events, so the tab is charged for the largest
+        private long getRetainedBytes() {
+            long retained = 0;
+            for (EventContainer container : containers) {
+                retained = Math.max(retained, container.getRetainedBytes());
+            }
+            return retained;
+        }
+
+        private void setByteBudget(long byteBudget) {
+            for (EventContainer container : containers) {
+                container.setByteBudget(byteBudget);
+            }
+        }
+
+        private long trimToBytes(long targetBytes) {
+            long released = 0;
+            for (EventContainer container : containers) {
+                released = Math.max(released, container.trimToBytes(targetBytes));
+            }
+            return released;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.apache.log4j.chainsaw.LoggingEventWrapper;
+import org.apache.log4j.chainsaw.logevents.Level;
+
+/**
+ * A List of events which evicts according to a RetentionPolicy rather than strictly oldest first.
+ * <p>
+ * Events are kept in arrival order in a linked map, and each event is also queued in the tier for
+ * its level and the queue for its logger.  Queues are in arrival order too, so expiring by age, by
+ * logger quota or by capacity only looks at the heads of the queues.  Evicted events are flagged
+ * and dropped from the other queues when they reach the head (or when a queue is mostly evicted
+ * events), rather than searched for.  Marked events which reach the head of a queue are moved to
+ * its tail instead of being evicted.
+ * <p>
+ * The list reads oldest first.  Iterate rather than calling {@link #get(int)}, which is linear.
+ * <p>
+ * Like CyclicBufferList, this class is not thread safe.
+ */
+public class RetentionEventList extends AbstractList<LoggingEventWrapper> {
+    private static final Level[] LEVELS = Level.values();
+
+    private int capacity;
+    private final RetentionPolicy policy;
+    private final Consumer<LoggingEventWrapper> evictionListener;
+    private final Clock clock;
+    private final Map<Long, Entry> entries = new LinkedHashMap<>();
+    // one tier per level, plus tier 0 for events without a level - the lowest tier is evicted first
+    private final EntryQueue[] tiers = new EntryQueue[LEVELS.length + 1];
+    private final Map<String, EntryQueue> loggers = new HashMap<>();
+    private long nextSequence;
+
+    /**
+     * @param capacity         number of events kept before evicting by tier
+     * @param policy           the retention policy
+     * @param evictionListener notified of each evicted event, may be null
+     */
+    public RetentionEventList(int capacity, RetentionPolicy policy, Consumer<LoggingEventWrapper> evictionListener) {
+        this(capacity, policy, evictionListener, Clock.systemUTC());
+    }
+
+    RetentionEventList(
+            int capacity, RetentionPolicy policy, Consumer<LoggingEventWrapper> evictionListener, Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity (" + capacity + ") is not a positive integer.");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.evictionListener = evictionListener;
+        this.clock = clock;
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new EntryQueue(true);
+        }
+    }
+
+    /**
+     * Add an event, then evict whatever the policy no longer retains.
+     *
+     * @return false if the event was evicted straight away (its logger quota is taken up by
+     * marked events, or it is in the lowest tier of a full list)
+     */
+    @Override
+    public boolean add(LoggingEventWrapper loggingEventWrapper) {
+        long now = clock.millis();
+        String loggerName = loggingEventWrapper.getLoggingEvent().m_logger;
+        Entry entry = new Entry(nextSequence++, loggingEventWrapper, now, tierOf(loggingEventWrapper), loggerName);
+        entries.put(entry.sequence, entry);
+        tiers[entry.tier].add(entry);
+        EntryQueue loggerQueue = loggers.computeIfAbsent(loggerName, k -> new EntryQueue(false));
+        loggerQueue.add(entry);
+
+        expire(now);
+        int quota = policy.getLoggerQuota();
+        if (quota > 0) {
+            evictFrom(loggerQueue, loggerQueue.live - quota, now);
+        }
+        for (EntryQueue tier : tiers) {
+            if (evictFrom(tier, entries.size() - capacity, now)) {
+                break;
+            }
+        }
+        return !entry.evicted;
+    }
+
+    /**
+     * Evict events which are older than the maximum age for their tier.
+     */
+    public void expire() {
+        expire(clock.millis());
+    }
+
+    /**
+     * Evict the oldest event of the lowest non-empty tier, skipping marked events.
+     *
+     * @return the evicted event, or null if every event is marked
+     */
+    public LoggingEventWrapper evictLeastImportant() {
+        long now = clock.millis();
+        for (EntryQueue tier : tiers) {
+            Entry entry = tier.pollEvictable(now, Long.MAX_VALUE);
+            if (entry != null) {
+                evict(entry);
+                return entry.loggingEventWrapper;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public LoggingEventWrapper get(int index) {
+        if (index < 0 || index >= entries.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + entries.size());
+        }
+        Iterator<LoggingEventWrapper> iterator = iterator();
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    @Override
+    public Iterator<LoggingEventWrapper> iterator() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        return new Iterator<LoggingEventWrapper>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public LoggingEventWrapper next() {
+                return iterator.next().loggingEventWrapper;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        loggers.clear();
+        for (EntryQueue tier : tiers) {
+            tier.clear();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Change the number of events kept, evicting by tier if there are more than <code>capacity</code>.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity (" + capacity + ") is not a positive integer.");
+        }
+        this.capacity = capacity;
+        long now = clock.millis();
+        for (EntryQueue tier : tiers) {
+            if (evictFrom(tier, entries.size() - capacity, now)) {
+                break;
+            }
+        }
+    }
+
+    public RetentionPolicy getPolicy() {
+        return policy;
+    }
+
+    private void expire(long now) {
+        for (int i = 0; i < tiers.length; i++) {
+            Duration maxAge = policy.getMaxAge(i == 0 ? null : LEVELS[i - 1]);
+            if (maxAge != null) {
+                evictFrom(tiers[i], Integer.MAX_VALUE, now, now - maxAge.toMillis());
+            }
+        }
+    }
+
+    private boolean evictFrom(EntryQueue queue, int count, long now) {
+        return evictFrom(queue, count, now, Long.MAX_VALUE);
+    }
+
+    /**
+     * Evict up to count events added before the given time from the head of a queue.
+     *
+     * @return true if count events were evicted
+     */
+    private boolean evictFrom(EntryQueue queue, int count, long now, long addedBefore) {
+        for (; count > 0; count--) {
+            Entry entry = queue.pollEvictable(now, addedBefore);
+            if (entry == null) {
+                return false;
+            }
+            evict(entry);
+        }
+        return true;
+    }
+
+    private void evict(Entry entry) {
+        entry.evicted = true;
+        entries.remove(entry.sequence);
+        tiers[entry.tier].live--;
+        EntryQueue loggerQueue = loggers.get(entry.loggerName);
+        if (--loggerQueue.live == 0) {
+            loggers.remove(entry.loggerName);
+        }
+        if (evictionListener != null) {
+            evictionListener.accept(entry.loggingEventWrapper);
+        }
+    }
+
+    private static int tierOf(LoggingEventWrapper loggingEventWrapper) {
+        Level level = loggingEventWrapper.getLoggingEvent().m_level;
+        return level == null ? 0 : level.ordinal() + 1;
+    }
+
+    private static class Entry {
+        private final long sequence;
+        private final LoggingEventWrapper loggingEventWrapper;
+        private final int tier;
+        private final String loggerName;
+        private long added;
+        private boolean evicted;
+
+        private Entry(long sequence, LoggingEventWrapper loggingEventWrapper, long added, int tier, String loggerName) {
+            this.sequence = sequence;
+            this.loggingEventWrapper = loggingEventWrapper;
+            this.added = added;
+            this.tier = tier;
+            this.loggerName = loggerName;
+        }
+    }
+
+    /**
+     * Entries in arrival order, possibly including entries which were evicted through another queue.
+     */
+    private class EntryQueue {
+        private final ArrayDeque<Entry> deque = new ArrayDeque<>();
+        // tiers are expired by age, so entries moved to the tail are treated as just added
+        private final boolean ageOrdered;
+        private int live;
+
+        private EntryQueue(boolean ageOrdered) {
+            this.ageOrdered = ageOrdered;
+        }
+
+        private void add(Entry entry) {
+            deque.add(entry);
+            live++;
+            // drop evicted entries once they make up most of the queue
+            if (deque.size() > 2 * live + 64) {
+                deque.removeIf(e -> e.evicted);
+            }
+        }
+
+        /**
+         * Remove and return the oldest live entry if it was added before the given time, moving
+         * marked entries found on the way to the tail.  The caller evicts the returned entry.
+         */
+        private Entry pollEvictable(long now, long addedBefore) {
+            for (int remaining = deque.size(); remaining > 0; remaining--) {
+                Entry head = deque.peek();
+                if (head.evicted) {
+                    deque.poll();
+                    continue;
+                }
+                if (head.added >= addedBefore) {
+                    return null;
+                }
+                deque.poll();
+                if (!policy.isPinned(head.loggingEventWrapper)) {
+                    return head;
+                }
+                if (ageOrdered) {
+                    head.added = now;
+                }
+                deque.add(head);
+            }
+            return null;
+        }
+
+        private void clear() {
+            deque.clear();
+            live = 0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import org.apache.log4j.chainsaw.ChainsawConstants;
+import org.apache.log4j.chainsaw.LoggingEventWrapper;
+import org.apache.log4j.chainsaw.logevents.Level;
+
+/**
+ * Decides how long events are kept by a RetentionEventList.
+ * <p>
+ * Events are kept for the maximum age configured for their level (measured from the time they
+ * were added, not their timestamp, so loading an old file doesn't expire it straight away), no
+ * more than the logger quota are kept for any one logger, and when the buffer is full the oldest
+ * event of the lowest level is evicted first.  Marked events are never evicted.
+ * <p>
+ * Instances are immutable, use a {@link RetentionPolicyBuilder} to create one.
+ */
+public final class RetentionPolicy {
+    private final Duration maxAge;
+    private final Map<Level, Duration> levelMaxAge;
+    private final int loggerQuota;
+    private final boolean keepMarked;
+
+    RetentionPolicy(Duration maxAge, Map<Level, Duration> levelMaxAge, int loggerQuota, boolean keepMarked) {
+        this.maxAge = maxAge;
+        this.levelMaxAge = levelMaxAge.isEmpty() ? new EnumMap<>(Level.class) : new EnumMap<>(levelMaxAge);
+        this.loggerQuota = loggerQuota;
+        this.keepMarked = keepMarked;
+    }
+
+    /**
+     * @param level level of the event, may be null
+     * @return the maximum age of events with the level, or null if they don't expire
+     */
+    public Duration getMaxAge(Level level) {
+        if (level == null) {
+            return maxAge;
+        }
+        return levelMaxAge.getOrDefault(level, maxAge);
+    }
+
+    /**
+     * @return true if events of some level expire
+     */
+    public boolean hasMaxAge() {
+        return maxAge != null || !levelMaxAge.isEmpty();
+    }
+
+    /**
+     * @return the maximum number of events kept for one logger, 0 if there is no limit
+     */
+    public int getLoggerQuota() {
+        return loggerQuota;
+    }
+
+    public boolean isKeepMarked() {
+        return keepMarked;
+    }
+
+    /**
+     * @return true if the event must not be evicted
+     */
+    public boolean isPinned(LoggingEventWrapper loggingEventWrapper) {
+        return keepMarked
+                && loggingEventWrapper.getLoggingEvent().getProperty(ChainsawConstants.LOG4J_MARKER_COL_NAME) != null;
+    }
+}
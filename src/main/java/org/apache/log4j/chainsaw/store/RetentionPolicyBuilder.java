@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import org.apache.log4j.chainsaw.logevents.Level;
+
+public class RetentionPolicyBuilder {
+    private Duration maxAge;
+    private final Map<Level, Duration> levelMaxAge = new EnumMap<>(Level.class);
+    private int loggerQuota;
+    private boolean keepMarked = true;
+
+    public RetentionPolicyBuilder() {}
+
+    /**
+     * Set the maximum age of events, null (the default) to keep events until they are
+     * evicted by count.
+     */
+    public RetentionPolicyBuilder setMaxAge(Duration inMaxAge) {
+        maxAge = inMaxAge;
+        return this;
+    }
+
+    /**
+     * Set the maximum age of events at or above the given level, overriding the default
+     * maximum age.  Call with the lower levels first - later calls replace the age of any
+     * levels they cover.
+     */
+    public RetentionPolicyBuilder setMaxAge(Level inLevel, Duration inMaxAge) {
+        for (Level level : Level.values()) {
+            if (level.compareTo(inLevel) >= 0) {
+                levelMaxAge.put(level, inMaxAge);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Set the maximum number of events kept for each logger, 0 (the default) for no limit.
+     */
+    public RetentionPolicyBuilder setLoggerQuota(int inLoggerQuota) {
+        if (inLoggerQuota < 0) {
+            throw new IllegalArgumentException("Invalid logger quota: " + inLoggerQuota);
+        }
+        loggerQuota = inLoggerQuota;
+        return this;
+    }
+
+    public RetentionPolicyBuilder setKeepMarked(boolean inKeepMarked) {
+        keepMarked = inKeepMarked;
+        return this;
+    }
+
+    public RetentionPolicy create() {
+        return new RetentionPolicy(maxAge, levelMaxAge, loggerQuota, keepMarked);
+    }
+}
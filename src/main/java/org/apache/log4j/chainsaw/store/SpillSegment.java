@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+
+/**
+ * A single append-only file of encoded events.
+ * <p>
+ * Records are appended through a FileChannel and read back through a read-only
+ * memory mapping of the file, which is extended as the file grows.  Only the offset
+ * of every {@link #CHECKPOINT_INTERVAL}th record is kept on the heap; reading a record
+ * skips forward from the nearest checkpoint.
+ */
+class SpillSegment {
+    static final int CHECKPOINT_INTERVAL = 64;
+
+    private final File file;
+    private final FileChannel channel;
+    private long[] checkpoints = new long[64];
+    private long length;
+    private int count;
+    private MappedByteBuffer mapped;
+
+    SpillSegment(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    void append(ByteBuffer record) throws IOException {
+        if (count % CHECKPOINT_INTERVAL == 0) {
+            int checkpoint = count / CHECKPOINT_INTERVAL;
+            if (checkpoint == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+            }
+            checkpoints[checkpoint] = length;
+        }
+        while (record.hasRemaining()) {
+            length += channel.write(record, length);
+        }
+        count++;
+    }
+
+    ChainsawLoggingEvent read(int index) throws IOException {
+        ByteBuffer view = viewAt(index);
+        return EventCodec.decode(view);
+    }
+
+    /**
+     * A buffer over the mapped segment positioned at the record with the given index.
+     */
+    ByteBuffer viewAt(int index) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        ByteBuffer view = map();
+        view.position((int) checkpoints[index / CHECKPOINT_INTERVAL]);
+        for (int i = index % CHECKPOINT_INTERVAL; i > 0; i--) {
+            EventCodec.skip(view);
+        }
+        return view;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    void delete() {
+        mapped = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore - the file is deleted below, or with the store's directory at exit
+        }
+        file.delete();
+    }
+
+    private ByteBuffer map() throws IOException {
+        if (mapped == null || mapped.capacity() < length) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        return mapped.duplicate();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import org.apache.log4j.chainsaw.CyclicBufferList;
+import org.apache.log4j.chainsaw.LoggingEventWrapper;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.helpers.Constants;
+
+/**
+ * A List of events made up of a hot in-memory ring and a cold EventSpillStore.
+ * <p>
+ * New events are added to the ring.  Once the ring is full, adding an event moves the
+ * oldest event in the ring to the spill store instead of discarding it.  The list reads
+ * oldest first, so indexes below {@link #getColdSize()} are paged in from disk on demand
+ * (a new LoggingEventWrapper is created for each read), and the rest come from the ring.
+ * <p>
+ * Each event added is also given the next number in an increasing sequence, which keeps
+ * identifying it as it moves to disk and as older events are dropped, so a long scan can
+ * {@link #read(long, int, List) read} the events a chunk at a time, giving up any lock
+ * between chunks.
+ * <p>
+ * Like CyclicBufferList, this class is not thread safe.
+ */
+public class TieredEventList extends AbstractList<LoggingEventWrapper> {
+    private final CyclicBufferList hot;
+    private final EventSpillStore cold;
+    private final Consumer<LoggingEventWrapper> loadListener;
+    // the sequence number the next event added will get
+    private long nextSequence;
+    // the sequence number after the newest event in the spill store - events which couldn't be written leave a gap
+    private long coldEndSequence;
+
+    /**
+     * @param hotSize      number of events kept in memory
+     * @param cold         store receiving events evicted from memory
+     * @param loadListener notified with each wrapper created for an event read back from disk
+     *                     (used to re-apply colors), may be null
+     */
+    public TieredEventList(int hotSize, EventSpillStore cold, Consumer<LoggingEventWrapper> loadListener) {
+        this.hot = new CyclicBufferList(hotSize);
+        this.cold = cold;
+        this.loadListener = loadListener;
+    }
+
+    @Override
+    public boolean add(LoggingEventWrapper loggingEventWrapper) {
+        if (isHotFull()) {
+            spill((LoggingEventWrapper) hot.get(0));
+        }
+        nextSequence++;
+        return hot.add(loggingEventWrapper);
+    }
+
+    @Override
+    public LoggingEventWrapper get(int index) {
+        int coldSize = getColdSize();
+        if (index < coldSize) {
+            return load(cold.get(getColdOffset() + index));
+        }
+        return (LoggingEventWrapper) hot.get(index - coldSize);
+    }
+
+    @Override
+    public int size() {
+        return getColdSize() + hot.size();
+    }
+
+    @Override
+    public void clear() {
+        hot.clear();
+        cold.clear();
+        coldEndSequence = nextSequence;
+    }
+
+    /**
+     * Iterates sequentially through the spill segments before the ring, rather than
+     * looking each cold event up by index.
+     */
+    @Override
+    public Iterator<LoggingEventWrapper> iterator() {
+        return new Iterator<LoggingEventWrapper>() {
+            private final Iterator<ChainsawLoggingEvent> coldIterator = cold.iterator(getColdOffset());
+            private final int hotSize = hot.size();
+            private int hotIndex;
+
+            @Override
+            public boolean hasNext() {
+                return coldIterator.hasNext() || hotIndex < hotSize;
+            }
+
+            @Override
+            public LoggingEventWrapper next() {
+                if (coldIterator.hasNext()) {
+                    return load(coldIterator.next());
+                }
+                if (hotIndex >= hotSize) {
+                    throw new NoSuchElementException();
+                }
+                return (LoggingEventWrapper) hot.get(hotIndex++);
+            }
+        };
+    }
+
+    /**
+     * @param index index into the events held in memory, oldest first
+     * @return the event, or null if there is no in-memory event with that index
+     */
+    public LoggingEventWrapper getHotEvent(int index) {
+        return (LoggingEventWrapper) hot.get(index);
+    }
+
+    /**
+     * Move the oldest event held in memory to the spill store.
+     *
+     * @return the event which was moved, or null if there are no events in memory
+     */
+    public LoggingEventWrapper spillOldest() {
+        LoggingEventWrapper oldest = (LoggingEventWrapper) hot.get(0);
+        if (oldest != null) {
+            spill(oldest);
+            hot.get();
+        }
+        return oldest;
+    }
+
+    /**
+     * @return the sequence number of the oldest event still held, in memory or on disk
+     */
+    public long getFirstSequence() {
+        return cold.isEmpty() ? getHotStartSequence() : coldEndSequence - cold.size();
+    }
+
+    /**
+     * @return the sequence number the next event added will get
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Read up to <code>max</code> events, oldest first, starting with the event with the given
+     * sequence number or, if that event is no longer held, the oldest event after it.  Events
+     * read back from disk are wrapped without notifying the load listener.
+     *
+     * @param fromSequence sequence number of the first event to read
+     * @param max          maximum number of events to read
+     * @param events       list the events are added to
+     * @return the sequence number to continue reading from
+     */
+    public long read(long fromSequence, int max, List<LoggingEventWrapper> events) {
+        return read(fromSequence, Long.MAX_VALUE, max, events);
+    }
+
+    /**
+     * Read the events still held with sequence numbers from <code>fromSequence</code> up to
+     * <code>toSequence</code>, oldest first, so a scan can go through the history newest
+     * chunk first.  Events read back from disk are wrapped without notifying the load
+     * listener.
+     *
+     * @param fromSequence sequence number of the first event to read
+     * @param toSequence   sequence number after the last event to read
+     * @param events       list the events are added to
+     */
+    public void readRange(long fromSequence, long toSequence, List<LoggingEventWrapper> events) {
+        read(fromSequence, toSequence, Integer.MAX_VALUE, events);
+    }
+
+    private long read(long fromSequence, long toSequence, int max, List<LoggingEventWrapper> events) {
+        long sequence = Math.max(fromSequence, getFirstSequence());
+        int read = 0;
+        if (sequence < coldEndSequence && sequence < toSequence && !cold.isEmpty()) {
+            Iterator<ChainsawLoggingEvent> coldIterator = cold.iterator(sequence - (coldEndSequence - cold.size()));
+            while (read < max && sequence < toSequence && coldIterator.hasNext()) {
+                events.add(wrap(coldIterator.next()));
+                read++;
+                sequence++;
+            }
+            if (read == max) {
+                return sequence;
+            }
+        }
+        long hotStart = getHotStartSequence();
+        sequence = Math.max(sequence, hotStart);
+        for (int i = (int) (sequence - hotStart); read < max && sequence < toSequence && i < hot.size(); i++) {
+            events.add((LoggingEventWrapper) hot.get(i));
+            read++;
+            sequence++;
+        }
+        return sequence;
+    }
+
+    /**
+     * @return a copy of the events held in memory, oldest first
+     */
+    public List<LoggingEventWrapper> copyHotEvents() {
+        List<LoggingEventWrapper> copy = new ArrayList<>(hot.size());
+        for (int i = 0; i < hot.size(); i++) {
+            copy.add((LoggingEventWrapper) hot.get(i));
+        }
+        return copy;
+    }
+
+    public boolean isHotFull() {
+        return hot.size() == hot.getMaxSize();
+    }
+
+    public int getHotSize() {
+        return hot.size();
+    }
+
+    public int getHotMaxSize() {
+        return hot.getMaxSize();
+    }
+
+    /**
+     * Change the number of events kept in memory, moving the oldest to the spill store if
+     * there are more than <code>hotMaxSize</code>.
+     */
+    public void setHotMaxSize(int hotMaxSize) {
+        while (hot.size() > hotMaxSize) {
+            spillOldest();
+        }
+        hot.setMaxSize(hotMaxSize);
+    }
+
+    public int getColdSize() {
+        return (int) Math.min(Integer.MAX_VALUE - hot.getMaxSize(), cold.size());
+    }
+
+    // if there is more on disk than a List can address, only the newest events are visible
+    private long getColdOffset() {
+        return cold.size() - getColdSize();
+    }
+
+    public EventSpillStore getSpillStore() {
+        return cold;
+    }
+
+    /**
+     * @return the sequence number of the oldest event held in memory, events before it are
+     * on disk
+     */
+    public long getHotStartSequence() {
+        return nextSequence - hot.size();
+    }
+
+    /**
+     * Write the oldest event in memory to the spill store.
+     */
+    private void spill(LoggingEventWrapper oldest) {
+        if (cold.append(oldest.getLoggingEvent())) {
+            coldEndSequence = getHotStartSequence() + 1;
+        }
+    }
+
+    private LoggingEventWrapper load(ChainsawLoggingEvent event) {
+        LoggingEventWrapper loggingEventWrapper = wrap(event);
+        if (loadListener != null) {
+            loadListener.accept(loggingEventWrapper);
+        }
+        return loggingEventWrapper;
+    }
+
+    private static LoggingEventWrapper wrap(ChainsawLoggingEvent event) {
+        LoggingEventWrapper loggingEventWrapper = new LoggingEventWrapper(event);
+        String id = event.getProperty(Constants.LOG4J_ID_KEY);
+        if (id != null) {
+            // wrappers are equal by id
+            loggingEventWrapper.setProperty(Constants.LOG4J_ID_KEY, id);
+        }
+        return loggingEventWrapper;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one connection to a receiver.  Bytes are only counted by the thread serving the
+ * connection, so that counter is a plain volatile, but its records may be decoded on several
+ * threads at once.
+ * <p>
+ * Also applies flow control to the connection: once {@link #HIGH_WATER_BYTES} read from it are
+ * waiting to be decoded, reading from it is suspended until they are down to
+ * {@link #LOW_WATER_BYTES}, so a fast sender is held back by TCP instead of filling the heap.
+ */
+public class ConnectionStats {
+    public static final long HIGH_WATER_BYTES = 4 * 1024 * 1024;
+    public static final long LOW_WATER_BYTES = 1024 * 1024;
+
+    private final SocketAddress remoteAddress;
+    private final long connectedNanos = System.nanoTime();
+    private volatile long bytes;
+    private final LongAdder events = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile NioStreamServer.ReadControl readControl;
+
+    public ConnectionStats(SocketAddress remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+    void bytesReceived(int count) {
+        bytes += count;
+    }
+
+    void eventsReceived(int count) {
+        events.add(count);
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    void opened(NioStreamServer.ReadControl control) {
+        readControl = control;
+    }
+
+    /**
+     * Bytes read were queued to be decoded, suspending reads at the high water mark.
+     */
+    void queued(long count) {
+        NioStreamServer.ReadControl control = readControl;
+        if (pendingBytes.addAndGet(count) >= HIGH_WATER_BYTES && control != null) {
+            control.setReadsSuspended(true);
+        }
+    }
+
+    /**
+     * Queued bytes were decoded, resuming reads at the low water mark.
+     */
+    void decoded(long count) {
+        NioStreamServer.ReadControl control = readControl;
+        if (pendingBytes.addAndGet(-count) <= LOW_WATER_BYTES && control != null) {
+            control.setReadsSuspended(false);
+        }
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getConnectedMillis() {
+        return (System.nanoTime() - connectedNanos) / 1_000_000;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * @return the number of records which couldn't be decoded
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the number of bytes read but not yet decoded
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * @return true if the connection isn't being read, because too much of what was read from
+     * it, or from the receiver's connections altogether, is waiting to be processed
+     */
+    public boolean isThrottled() {
+        NioStreamServer.ReadControl control = readControl;
+        return control != null && control.isThrottled();
+    }
+
+    /**
+     * @return the time the connection has spent not being read
+     */
+    public long getThrottledMillis() {
+        NioStreamServer.ReadControl control = readControl;
+        return control == null ? 0 : control.getThrottledMillis();
+    }
+
+    /**
+     * @return the mean number of events received per second since the connection was made
+     */
+    public double getEventsPerSecond() {
+        long millis = getConnectedMillis();
+        return millis == 0 ? 0 : getEvents() * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return remoteAddress + " events=" + getEvents() + " bytes=" + bytes + " errors=" + getErrors()
+                + " events/s=" + String.format("%.1f", getEventsPerSecond())
+                + " throttledMs=" + getThrottledMillis();
+    }
+}
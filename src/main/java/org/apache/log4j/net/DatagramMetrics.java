@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a datagram receiver, written by its receive and decode threads.
+ * <p>
+ * Packets dropped by the kernel because the socket's receive buffer was full can't be counted
+ * here; a rising buffer wait time is the warning that decoding isn't keeping up and they are
+ * likely to be, and a larger receive buffer or more decode threads are the remedy.
+ */
+public class DatagramMetrics {
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder decodeErrors = new LongAdder();
+    private final LongAdder bufferWaits = new LongAdder();
+    private final LongAdder bufferWaitNanos = new LongAdder();
+    private final AtomicInteger queueHighWater = new AtomicInteger();
+
+    void packetReceived(int length) {
+        packets.increment();
+        bytes.add(length);
+    }
+
+    void packetQueued(int queued) {
+        if (queued > queueHighWater.get()) {
+            queueHighWater.accumulateAndGet(queued, Math::max);
+        }
+    }
+
+    void eventsDecoded(int count) {
+        events.add(count);
+    }
+
+    void decodeError() {
+        decodeErrors.increment();
+    }
+
+    /**
+     * The receive stage waited for a buffer because every buffer was queued or being decoded.
+     */
+    void bufferWait(long nanos) {
+        bufferWaits.increment();
+        bufferWaitNanos.add(nanos);
+    }
+
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * @return the number of packets which couldn't be decoded
+     */
+    public long getDecodeErrors() {
+        return decodeErrors.sum();
+    }
+
+    public long getBufferWaits() {
+        return bufferWaits.sum();
+    }
+
+    public long getBufferWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(bufferWaitNanos.sum());
+    }
+
+    /**
+     * @return the most packets waiting to be decoded at once
+     */
+    public int getQueueHighWater() {
+        return queueHighWater.get();
+    }
+
+    @Override
+    public String toString() {
+        return "packets=" + getPackets()
+                + " bytes=" + getBytes()
+                + " events=" + getEvents()
+                + " decodeErrors=" + getDecodeErrors()
+                + " bufferWaits=" + getBufferWaits()
+                + " bufferWaitMs=" + getBufferWaitMillis()
+                + " queueHighWater=" + getQueueHighWater();
+    }
+}
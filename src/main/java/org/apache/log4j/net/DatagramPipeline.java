@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.receiver.OrderedDecodeStage;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Receives datagrams on one or more channels and decodes them on a pool of worker threads.
+ * <p>
+ * Each channel has a thread receiving into direct buffers borrowed from a fixed pool, and
+ * submitting each packet to an {@link OrderedDecodeStage}.  A buffer returns to the pool
+ * once its packet is decoded, so when decoding falls behind the receive threads wait for a
+ * buffer and the socket's receive buffer absorbs the burst, rather than memory growing.
+ * <p>
+ * The receive loops run as blocking I/O tasks on the shared {@link ReceiverRuntime}, and the
+ * stage decodes on its CPU pool, so an idle pipeline holds only its receive threads.
+ * <p>
+ * Each decode worker has a {@link PacketHandler} to itself, so a handler needs no
+ * synchronization.  However many workers decode, the events of each packet reach the sink
+ * in the order the packets were received; packets received on different channels have no
+ * order between them.
+ */
+public class DatagramPipeline {
+    private static final Logger logger = LogManager.getLogger(DatagramPipeline.class);
+
+    /**
+     * Large enough for any UDP payload.
+     */
+    public static final int PACKET_SIZE = 64 * 1024;
+
+    public static final int DEFAULT_BUFFERS = 64;
+
+    /**
+     * Decodes packets.
+     */
+    public interface PacketHandler {
+
+        /**
+         * @param packet a packet's bytes, only valid for the duration of the call
+         * @param events list the decoded events are added to
+         */
+        void packet(ByteBuffer packet, List<ChainsawLoggingEvent> events);
+    }
+
+    private final String name;
+    private final List<DatagramChannel> channels;
+    private final int decodeThreads;
+    private final int buffers;
+    private final Supplier<PacketHandler> handlerFactory;
+    private final Consumer<List<ChainsawLoggingEvent>> sink;
+    private final DatagramMetrics metrics;
+    private final BlockingQueue<ByteBuffer> bufferPool;
+    private final List<Future<?>> receivers = new ArrayList<>();
+    private volatile OrderedDecodeStage<ByteBuffer> stage;
+    private volatile boolean running;
+
+    /**
+     * @param name           name for the threads
+     * @param channels       bound, blocking channels to receive from
+     * @param decodeThreads  number of decode workers
+     * @param buffers        number of packet buffers
+     * @param handlerFactory creates the handler of each decode worker
+     * @param sink           receives the events of each packet, in the order received
+     * @param metrics        counters to update
+     */
+    public DatagramPipeline(
+            String name,
+            List<DatagramChannel> channels,
+            int decodeThreads,
+            int buffers,
+            Supplier<PacketHandler> handlerFactory,
+            Consumer<List<ChainsawLoggingEvent>> sink,
+            DatagramMetrics metrics) {
+        if (decodeThreads < 1 || buffers < 1) {
+            throw new IllegalArgumentException("Invalid decode thread or buffer count: " + decodeThreads + ", " + buffers);
+        }
+        this.name = name;
+        this.channels = new ArrayList<>(channels);
+        this.decodeThreads = decodeThreads;
+        this.buffers = buffers;
+        this.handlerFactory = handlerFactory;
+        this.sink = sink;
+        this.metrics = metrics;
+        this.bufferPool = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            bufferPool.add(ByteBuffer.allocateDirect(PACKET_SIZE));
+        }
+    }
+
+    public synchronized void start() {
+        running = true;
+        // as many slots as buffers, so submitting a received packet never waits
+        stage = new OrderedDecodeStage<>(name, decodeThreads, buffers, PacketDecodeWorker::new, sink);
+        for (int i = 0; i < channels.size(); i++) {
+            DatagramChannel channel = channels.get(i);
+            receivers.add(ReceiverRuntime.getShared().runIo(name + "-receive-" + i, () -> receive(channel)));
+        }
+    }
+
+    /**
+     * Close the channels and stop the threads, discarding any packets not yet decoded.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        for (Future<?> receiver : receivers) {
+            receiver.cancel(true);
+        }
+        receivers.clear();
+        if (stage != null) {
+            stage.close();
+        }
+    }
+
+    /**
+     * @return the number of packets which can wait to be decoded
+     */
+    public int getQueueCapacity() {
+        return buffers;
+    }
+
+    /**
+     * @return the number of packets waiting to be decoded or delivered
+     */
+    public int getQueuedPackets() {
+        OrderedDecodeStage<ByteBuffer> current = stage;
+        return current == null ? 0 : current.getPending();
+    }
+
+    private void receive(DatagramChannel channel) {
+        try {
+            while (running) {
+                ByteBuffer buffer = bufferPool.poll();
+                if (buffer == null) {
+                    long waitStart = System.nanoTime();
+                    buffer = bufferPool.take();
+                    metrics.bufferWait(System.nanoTime() - waitStart);
+                }
+
+                buffer.clear();
+                try {
+                    channel.receive(buffer);
+                } catch (IOException e) {
+                    bufferPool.offer(buffer);
+                    throw e;
+                }
+                buffer.flip();
+                metrics.packetReceived(buffer.remaining());
+
+                // never waits, the stage has as many slots as there are buffers
+                stage.submit(buffer);
+                metrics.packetQueued(getQueuedPackets());
+            }
+        } catch (ClosedChannelException | InterruptedException e) {
+            // stopped
+        } catch (IOException e) {
+            if (running) {
+                logger.error("{} stopped receiving", name, e);
+            }
+        }
+    }
+
+    /**
+     * Decodes packets with a handler of its own, and returns their buffers to the pool.
+     */
+    private final class PacketDecodeWorker implements OrderedDecodeStage.ChunkDecoder<ByteBuffer> {
+        private final PacketHandler handler = handlerFactory.get();
+
+        @Override
+        public void decode(ByteBuffer packet, List<ChainsawLoggingEvent> events) {
+            try {
+                handler.packet(packet, events);
+                metrics.eventsDecoded(events.size());
+            } catch (RuntimeException e) {
+                metrics.decodeError();
+                logger.warn("{} unable to decode packet, keeping the {} events before the error", name, events.size(), e);
+            } finally {
+                bufferPool.offer(packet);
+            }
+        }
+    }
+}
@@ -20,6 +20,8 @@ import com.owlike.genson.annotation.JsonProperty;
 import java.time.ZonedDateTime;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
 
 /**
  * Represents a LogEvent as from a ECS(ElasticSearch) event.
@@ -39,6 +41,21 @@ public class ECSLogEvent {
     @JsonProperty("log.logger")
     public String logger;
 
+    /**
+     * Evaluate the receiver's filters before the event is converted, so a dropped event's
+     * timestamp is never parsed.
+     */
+    boolean accept(PushdownFilter filter) {
+        Level parsed;
+        try {
+            parsed = level == null ? null : Level.valueOf(level);
+        } catch (IllegalArgumentException e) {
+            // converting fails on it instead
+            parsed = null;
+        }
+        return filter.accept(parsed, logger, threadName);
+    }
+
     ChainsawLoggingEvent toChainsawLoggingEvent(ChainsawLoggingEventBuilder build) {
         build.clear();
 
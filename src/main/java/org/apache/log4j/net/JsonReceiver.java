@@ -18,30 +18,49 @@ package org.apache.log4j.net;
 
 import com.owlike.genson.Genson;
 import com.owlike.genson.GensonBuilder;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.io.InputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.Iterator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
-import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.OrderedDecodeStage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * The JsonReceiver class receives log events over a TCP socket(as JSON) and
  * turns those into log events.
+ * <p>
+ * Any number of emitters can be connected at once; connections are served by a few selector
+ * threads (see {@link NioStreamServer}).  Each connection's stream is split into JSON records
+ * as it arrives, and the records of each read are deserialized with one shared Genson by an
+ * {@link OrderedDecodeStage}, so a busy receiver decodes on several cores.  The events of each
+ * read are appended as one batch, in the order the reads arrived.
  *
  * @author Robert Middleton
  */
-public class JsonReceiver extends ChainsawReceiverSkeleton implements Runnable, PortBased {
+public class JsonReceiver extends NioStreamReceiver<JsonReceiver.RecordChunk> implements PortBased, ConnectionBased {
     private static final Logger logger = LogManager.getLogger(JsonReceiver.class);
 
-    private ServerSocket serverSocket;
-    private Thread rxThread;
+    // Genson is thread safe once built, so every connection shares this one
+    private static final Genson GENSON = new GensonBuilder().useDateAsTimestamp(true).create();
+
     public static final int DEFAULT_PORT = 4449;
+    public static final int DEFAULT_BACKLOG = 256;
     protected int port = DEFAULT_PORT;
-    private boolean active = false;
+    private int backlog = DEFAULT_BACKLOG;
+    private int selectorThreads = NioStreamServer.defaultSelectorThreads();
+    private int decodeThreads = OrderedDecodeStage.defaultWorkers();
+    private final Map<SocketAddress, ConnectionStats> connections = new ConcurrentHashMap<>();
+    private final AtomicLong totalConnections = new AtomicLong();
+    private volatile boolean active = false;
 
     /**
      * The MulticastDNS zone advertised by an XMLSocketReceiver
@@ -53,10 +72,6 @@ public class JsonReceiver extends ChainsawReceiverSkeleton implements Runnable,
         // mark this as no longer running
         active = false;
 
-        if (rxThread != null) {
-            rxThread.interrupt();
-            rxThread = null;
-        }
         doShutdown();
     }
 
@@ -74,82 +89,43 @@ public class JsonReceiver extends ChainsawReceiverSkeleton implements Runnable,
     }
 
     /**
-     * Closes the server socket, if created.
+     * Closes the server socket and its connections, if created.
      */
     private void closeServerSocket() {
         logger.debug("{} closing server socket", getName());
 
-        try {
-            if (serverSocket != null) {
-                serverSocket.close();
-            }
-        } catch (Exception e) {
-            // ignore for now
-        }
-
-        serverSocket = null;
+        closeServer();
     }
 
     @Override
-    public void start() {
+    public synchronized void start() {
         logger.debug("Starting receiver");
-        if (!isActive()) {
-            rxThread = new Thread(this);
-            rxThread.setDaemon(true);
-            rxThread.start();
-
-            active = true;
+        if (isActive()) {
+            return;
         }
-    }
 
-    @Override
-    @SuppressFBWarnings
-    public void run() {
-        logger.debug("performing socket cleanup prior to entering loop for {}", name);
         /* Ensure we start fresh. */
         closeServerSocket();
-        logger.debug("socket cleanup complete for {}", name);
-        active = true;
 
-        // start the server socket
+        setDecodeStage(new OrderedDecodeStage<>(
+                "JsonReceiver-" + getName(),
+                decodeThreads,
+                OrderedDecodeStage.DEFAULT_CAPACITY,
+                RecordDecoder::new,
+                this::append));
+        NioStreamServer newServer =
+                new NioStreamServer("JsonReceiver-" + getName(), port, selectorThreads, ConnectionHandler::new);
+        newServer.setBacklog(backlog);
         try {
-            serverSocket = new ServerSocket(port, 1);
-        } catch (Exception e) {
+            startServer(newServer);
+        } catch (IOException e) {
             logger.error("error starting JsonReceiver ({}), receiver did not start", this.getName());
             logger.error(e, e);
-            active = false;
             doShutdown();
-
             return;
         }
 
-        Socket socket = null;
-
-        try {
-            logger.debug("in run-about to enter while isactiveloop");
-
-            while (!rxThread.isInterrupted()) {
-                // if we have a socket, start watching it
-                if (socket != null) {
-                    logger.debug("socket not null - parsing data");
-                    parseIncomingData(socket);
-                }
-
-                logger.debug("waiting to accept socket");
-
-                // wait for a socket to open, then loop to start it
-                socket = serverSocket.accept();
-                logger.debug("accepted socket");
-            }
-
-            // socket not watched because we a no longer running
-            // so close it now.
-            if (socket != null) {
-                socket.close();
-            }
-        } catch (Exception e) {
-            logger.warn("socket server disconnected, stopping");
-        }
+        active = true;
     }
 
     @Override
@@ -161,52 +137,150 @@ public class JsonReceiver extends ChainsawReceiverSkeleton implements Runnable,
         port = portnum;
     }
 
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Set the number of connections which may wait to be accepted, takes effect when the
+     * receiver is started.
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    /**
+     * Set the number of threads serving connections, takes effect when the receiver is started.
+     */
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
+
+    /**
+     * Set the number of threads deserializing records at once, takes effect when the receiver is
+     * started.
+     */
+    public void setDecodeThreads(int decodeThreads) {
+        this.decodeThreads = decodeThreads;
+    }
+
     @Override
     public boolean isActive() {
         return active;
     }
 
-    private void parseIncomingData(Socket sock) {
-        InputStream is;
+    /**
+     * @return the number of open connections
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
 
-        try {
-            is = sock.getInputStream();
-        } catch (Exception e) {
-            logger.error("Exception opening InputStream to {}", sock);
-            logger.error(e, e);
-            return;
+    /**
+     * @return the number of connections accepted since the receiver was created
+     */
+    public long getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    @Override
+    public List<ConnectionStats> getConnectionStats() {
+        return new ArrayList<>(connections.values());
+    }
+
+    /**
+     * The records of one read, copied out of the connection's buffer.
+     */
+    static final class RecordChunk {
+        private final ConnectionStats stats;
+        private final List<byte[]> records = new ArrayList<>();
+        private long bytes;
+
+        RecordChunk(ConnectionStats stats) {
+            this.stats = stats;
         }
+    }
 
-        if (is != null) {
-            Genson genson = new GensonBuilder().useDateAsTimestamp(true).create();
-
-            try {
-                // read data from the socket.
-                // Once we have a full JSON message, parse it
-                ChainsawLoggingEventBuilder build = new ChainsawLoggingEventBuilder();
-                while (true) {
-                    logger.debug("About to deserialize values");
-                    Iterator<ECSLogEvent> iter = genson.deserializeValues(is, ECSLogEvent.class);
-                    // Because the socket can be closed, if we don't have anything parsed
-                    // assume that the socket is closed.
-                    if (!iter.hasNext()) break;
-
-                    while (iter.hasNext()) {
-                        ECSLogEvent evt = iter.next();
-                        append(evt.toChainsawLoggingEvent(build));
+    /**
+     * Deserializes records on a decode worker, each worker having a decoder to itself.
+     */
+    private class RecordDecoder implements OrderedDecodeStage.ChunkDecoder<RecordChunk> {
+        private final ChainsawLoggingEventBuilder build = new ChainsawLoggingEventBuilder();
+
+        @Override
+        public void decode(RecordChunk chunk, List<ChainsawLoggingEvent> events) {
+            for (byte[] record : chunk.records) {
+                try {
+                    ECSLogEvent evt = GENSON.deserialize(new ByteArrayInputStream(record), ECSLogEvent.class);
+                    if (evt.accept(getPushdownFilter())) {
+                        events.add(evt.toChainsawLoggingEvent(build));
                     }
+                } catch (RuntimeException e) {
+                    // a bad record doesn't make the rest of the stream unreadable
+                    chunk.stats.error();
+                    logger.warn("{} unable to decode JSON event from {}", getName(), chunk.stats.getRemoteAddress(), e);
                 }
-            } catch (Exception e) {
-                logger.error("Unexpected exception. Closing connection.", e);
             }
+            chunk.stats.eventsReceived(events.size());
+            chunk.stats.decoded(chunk.bytes);
         }
+    }
 
-        try {
-            if (is != null) {
-                is.close();
+    /**
+     * Splits one connection's stream into records, called only from the selector thread serving
+     * it.  The records of each read are passed to the decode stage without waiting: the connection
+     * stops being read once too many of its bytes are waiting (see {@link ConnectionStats}), and
+     * every connection does while the stage is nearly full.
+     */
+    private class ConnectionHandler implements NioStreamServer.StreamHandler {
+        private final JsonRecordTokenizer tokenizer = new JsonRecordTokenizer();
+        private final OrderedDecodeStage<RecordChunk> stage = getDecodeStage();
+        private final ConnectionStats stats;
+        private RecordChunk chunk;
+
+        ConnectionHandler(SocketAddress remoteAddress) {
+            stats = new ConnectionStats(remoteAddress);
+            connections.put(remoteAddress, stats);
+            totalConnections.incrementAndGet();
+        }
+
+        @Override
+        public void opened(NioStreamServer.ReadControl control) {
+            stats.opened(control);
+        }
+
+        @Override
+        public void data(ByteBuffer buffer) throws IOException {
+            stats.bytesReceived(buffer.remaining());
+            tokenizer.feed(buffer, this::record);
+
+            if (chunk != null) {
+                stats.queued(chunk.bytes);
+                stage.submitNow(chunk);
+                chunk = null;
             }
-        } catch (Exception e) {
-            logger.error("Could not close connection.", e);
+        }
+
+        private void record(byte[] data, int offset, int length) {
+            if (chunk == null) {
+                chunk = new RecordChunk(stats);
+            }
+            chunk.records.add(Arrays.copyOfRange(data, offset, offset + length));
+            chunk.bytes += length;
+        }
+
+        @Override
+        public void closed() {
+            connections.remove(stats.getRemoteAddress());
+            logger.debug("{} connection closed: {}", getName(), stats);
         }
     }
 }
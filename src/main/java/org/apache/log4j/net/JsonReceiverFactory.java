@@ -38,6 +38,9 @@ public class JsonReceiverFactory implements ChainsawReceiverFactory {
             new PropertyDescriptor("name", JsonReceiver.class),
             //                new PropertyDescriptor("address", JsonReceiver.class),
             new PropertyDescriptor("port", JsonReceiver.class),
+            new PropertyDescriptor("backlog", JsonReceiver.class),
+            new PropertyDescriptor("selectorThreads", JsonReceiver.class),
+            new PropertyDescriptor("decodeThreads", JsonReceiver.class),
             //                new PropertyDescriptor("threshold", MulticastReceiver.class),
             //                new PropertyDescriptor("decoder", MulticastReceiver.class),
             //                new PropertyDescriptor("advertiseViaMulticastDNS", MulticastReceiver.class),
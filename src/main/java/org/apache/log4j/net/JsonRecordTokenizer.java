@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a stream of bytes into JSON object records.
+ * <p>
+ * Records are found by tracking brace depth outside of strings, so newline delimited JSON,
+ * pretty printed JSON and objects simply written one after another are all split the same
+ * way, without parsing anything but the structure.  Bytes between records (newlines, commas)
+ * are skipped.  UTF-8 continuation bytes never look like braces or quotes, so the stream
+ * needn't be decoded to split it.
+ * <p>
+ * A tokenizer is stateful and belongs to one connection.
+ */
+class JsonRecordTokenizer {
+    static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Receives each complete record, only valid for the duration of the call.
+     */
+    interface RecordHandler {
+        void record(byte[] data, int offset, int length);
+    }
+
+    private byte[] buffer = new byte[8192];
+    private int length;
+    private int scanned;
+    private int recordStart = -1;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * Add bytes to the stream, passing each record they complete to the handler.
+     *
+     * @throws IOException if a record is too long, or the structure is broken
+     */
+    void feed(ByteBuffer in, RecordHandler handler) throws IOException {
+        ensureCapacity(length + in.remaining());
+        int count = in.remaining();
+        in.get(buffer, length, count);
+        length += count;
+
+        int consumed = 0;
+        for (int i = scanned; i < length; i++) {
+            byte b = buffer[i];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '{') {
+                if (depth++ == 0) {
+                    recordStart = i;
+                }
+            } else if (b == '}') {
+                if (--depth == 0) {
+                    handler.record(buffer, recordStart, i + 1 - recordStart);
+                    recordStart = -1;
+                    consumed = i + 1;
+                } else if (depth < 0) {
+                    throw new IOException("Unbalanced '}' in JSON stream");
+                }
+            } else if (b == '"' && depth > 0) {
+                inString = true;
+            } else if (depth == 0) {
+                // between records
+                consumed = i + 1;
+            }
+        }
+
+        // keep only the unfinished record
+        int keep = length - consumed;
+        if (keep > 0 && consumed > 0) {
+            System.arraycopy(buffer, consumed, buffer, 0, keep);
+        }
+        if (recordStart >= 0) {
+            recordStart -= consumed;
+        }
+        length = keep;
+        scanned = keep;
+    }
+
+    private void ensureCapacity(int capacity) throws IOException {
+        if (capacity > MAX_RECORD_LENGTH) {
+            throw new IOException("JSON record longer than " + MAX_RECORD_LENGTH + " bytes");
+        }
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, Math.min(buffer.length * 2, MAX_RECORD_LENGTH)));
+        }
+    }
+}
@@ -17,10 +17,19 @@
 package org.apache.log4j.net;
 
 import java.io.IOException;
-import java.net.*;
-import java.util.ArrayList;
-import java.util.List;
-import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import java.lang.reflect.Constructor;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Enumeration;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
 import org.apache.log4j.spi.Decoder;
 import org.apache.logging.log4j.LogManager;
@@ -30,21 +39,31 @@ import org.apache.logging.log4j.Logger;
  * Multicast-based receiver.  Accepts LoggingEvents encoded using
  * MulticastAppender and XMLLayout. The the XML data is converted
  * back to a LoggingEvent and is posted.
+ * <p>
+ * Receiving and decoding are separate stages (see {@link DatagramPipeline}): a thread receives
+ * packets on a DatagramChannel joined to the group, into a fixed pool of buffers, and decode
+ * workers take them from a bounded queue, delivering events in the order the packets arrived.  A burst fills the queue rather than stalling the
+ * receiving thread, and once the queue is full the socket's receive buffer takes up the slack.
  *
  * @author Scott Deboy &lt;sdeboy@apache.org&gt;
  */
 public class MulticastReceiver extends ChainsawReceiverSkeleton implements PortBased, AddressBased {
-    private static final int PACKET_LENGTH = 16384;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
     private int port;
     private String address;
     private String encoding;
-    private MulticastSocket socket = null;
+    private String networkInterface;
+    private int receiveBufferSize = UDPReceiver.DEFAULT_RECEIVE_BUFFER_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int decodeThreads = 1;
 
     // default to log4j xml decoder
     private String decoder = "org.apache.log4j.xml.XMLDecoder";
-    private Decoder decoderImpl;
-    private MulticastReceiverThread receiverThread;
-    private boolean active = false;
+    private Charset charset;
+    private DatagramPipeline pipeline;
+    private final DatagramMetrics metrics = new DatagramMetrics();
+    private volatile boolean active = false;
 
     private static final Logger logger = LogManager.getLogger();
 
@@ -73,6 +92,10 @@ public class MulticastReceiver extends ChainsawReceiverSkeleton implements PortB
         return address;
     }
 
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
     /**
      * The <b>Encoding</b> option specifies how the bytes are encoded.  If this option is not specified,
      * the system encoding will be used.
@@ -88,151 +111,160 @@ public class MulticastReceiver extends ChainsawReceiverSkeleton implements PortB
         return encoding;
     }
 
-    public synchronized void shutdown() {
-        active = false;
-        if (receiverThread != null) {
-            receiverThread.interrupt();
-        }
-        if (socket != null) {
-            socket.close();
-        }
+    public String getNetworkInterface() {
+        return networkInterface;
     }
 
-    public void setAddress(String address) {
-        this.address = address;
+    /**
+     * Set the name of the network interface to join the group on, eth0 for instance.  If not
+     * set, the first interface which is up and supports multicast is used.
+     */
+    public void setNetworkInterface(String networkInterface) {
+        this.networkInterface = networkInterface == null || networkInterface.isEmpty() ? null : networkInterface;
     }
 
-    @Override
-    public void start() {
-        InetAddress addr = null;
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
 
-        try {
-            Class c = Class.forName(decoder);
-            Object o = c.newInstance();
+    /**
+     * Set the SO_RCVBUF size of the socket.  The operating system may cap it
+     * (net.core.rmem_max on Linux).
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
 
-            if (o instanceof Decoder) {
-                this.decoderImpl = (Decoder) o;
-            }
-        } catch (ClassNotFoundException cnfe) {
-            logger.warn("Unable to find decoder", cnfe);
-        } catch (IllegalAccessException | InstantiationException iae) {
-            logger.warn("Could not construct decoder", iae);
-        }
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
 
-        try {
-            addr = InetAddress.getByName(address);
-        } catch (UnknownHostException uhe) {
-            uhe.printStackTrace();
-        }
+    /**
+     * Set the number of packets which can wait to be decoded, each taking a 64k buffer.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
 
-        try {
-            active = true;
-            socket = new MulticastSocket(port);
-            socket.joinGroup(addr);
-            receiverThread = new MulticastReceiverThread();
-            receiverThread.start();
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
 
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
+    /**
+     * Set the number of threads decoding packets, one by default.  Events are still delivered
+     * in the order the packets were received with more threads.
+     */
+    public void setDecodeThreads(int decodeThreads) {
+        this.decodeThreads = decodeThreads;
     }
 
-    @Override
-    public boolean isActive() {
-        return active;
+    public DatagramMetrics getMetrics() {
+        return metrics;
     }
 
-    class MulticastHandlerThread extends Thread {
-        private final List<String> list = new ArrayList<>();
+    /**
+     * @return the number of packets waiting to be decoded
+     */
+    public int getQueuedPackets() {
+        DatagramPipeline current = pipeline;
+        return current == null ? 0 : current.getQueuedPackets();
+    }
 
-        public MulticastHandlerThread() {
-            setDaemon(true);
+    public synchronized void shutdown() {
+        active = false;
+        if (pipeline != null) {
+            pipeline.stop();
+            pipeline = null;
         }
+    }
 
-        public void append(String data) {
-            synchronized (list) {
-                list.add(data);
-                list.notify();
-            }
+    @Override
+    public synchronized void start() {
+        if (active) {
+            return;
         }
+        charset = PacketDecoder.charsetFor(encoding);
 
-        public void run() {
-            ArrayList<String> list2 = new ArrayList<>();
-
-            while (isAlive()) {
-                synchronized (list) {
-                    try {
-                        while (list.size() == 0) {
-                            list.wait();
-                        }
-
-                        if (list.size() > 0) {
-                            list2.addAll(list);
-                            list.clear();
-                        }
-                    } catch (InterruptedException ie) {
-                    }
-                }
-
-                if (list2.size() > 0) {
+        final Constructor<? extends Decoder> decoderConstructor;
+        try {
+            decoderConstructor = Class.forName(decoder).asSubclass(Decoder.class).getDeclaredConstructor();
+        } catch (Exception e) {
+            logger.warn("Unable to load decoder {}", decoder, e);
+            return;
+        }
 
-                    for (Object aList2 : list2) {
-                        String data = (String) aList2;
-                    }
+        DatagramChannel channel = null;
+        try {
+            InetAddress group = InetAddress.getByName(address);
+            ProtocolFamily family = group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+            NetworkInterface nif = networkInterface != null
+                    ? NetworkInterface.getByName(networkInterface)
+                    : defaultInterface(group);
+            if (nif == null) {
+                throw new SocketException("No network interface to join " + address + " on");
+            }
 
-                    list2.clear();
-                } else {
-                    try {
-                        synchronized (this) {
-                            wait(1000);
-                        }
-                    } catch (InterruptedException ie) {
-                    }
+            channel = DatagramChannel.open(family);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            channel.bind(new InetSocketAddress(port));
+            channel.join(group, nif);
+
+            pipeline = new DatagramPipeline(
+                    "MulticastReceiver-" + getName(),
+                    Collections.singletonList(channel),
+                    decodeThreads,
+                    queueCapacity,
+                    () -> new PacketDecoder(PacketDecoder.newDecoder(decoderConstructor), charset, metrics, getPushdownFilter()),
+                    this::append,
+                    metrics);
+            pipeline.start();
+            active = true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("error starting MulticastReceiver ({}), receiver did not start", getName(), e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // closing anyway
                 }
             }
+            pipeline = null;
         }
     }
 
-    class MulticastReceiverThread extends Thread {
-        public MulticastReceiverThread() {
-            setDaemon(true);
+    /**
+     * @return the first interface which is up, supports multicast and has an address of the
+     * group's family, preferring one which isn't the loopback interface
+     */
+    private static NetworkInterface defaultInterface(InetAddress group) throws SocketException {
+        NetworkInterface loopback = null;
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while (interfaces != null && interfaces.hasMoreElements()) {
+            NetworkInterface nif = interfaces.nextElement();
+            if (!nif.isUp() || !nif.supportsMulticast() || !hasAddressLike(nif, group)) {
+                continue;
+            }
+            if (!nif.isLoopback()) {
+                return nif;
+            }
+            loopback = nif;
         }
+        return loopback;
+    }
 
-        public void run() {
-            active = true;
-
-            byte[] b = new byte[PACKET_LENGTH];
-            DatagramPacket p = new DatagramPacket(b, b.length);
-
-            while (active) {
-                try {
-                    socket.receive(p);
-
-                    // this string constructor which accepts a charset throws an exception if it is
-                    // null
-                    String data;
-                    if (encoding == null) {
-                        data = new String(p.getData(), 0, p.getLength());
-                    } else {
-                        data = new String(p.getData(), 0, p.getLength(), encoding);
-                    }
-
-                    List<ChainsawLoggingEvent> v = decoderImpl.decodeEvents(data.trim());
-
-                    if (v != null) {
-
-                        for (ChainsawLoggingEvent aV : v) {
-                            append(aV);
-                        }
-                    }
-                } catch (SocketException se) {
-                    // disconnected
-                } catch (IOException ioe) {
-                    ioe.printStackTrace();
-                }
+    private static boolean hasAddressLike(NetworkInterface nif, InetAddress group) {
+        Enumeration<InetAddress> addresses = nif.getInetAddresses();
+        while (addresses.hasMoreElements()) {
+            if (addresses.nextElement().getClass() == group.getClass()) {
+                return true;
             }
-
-            logger.debug("{}'s thread is ending.", MulticastReceiver.this.getName());
         }
+        return false;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
     }
 }
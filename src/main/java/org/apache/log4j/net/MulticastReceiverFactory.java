@@ -39,6 +39,10 @@ public class MulticastReceiverFactory implements ChainsawReceiverFactory {
             new PropertyDescriptor("address", MulticastReceiver.class),
             new PropertyDescriptor("encoding", MulticastReceiver.class),
             new PropertyDescriptor("decoder", MulticastReceiver.class),
+            new PropertyDescriptor("networkInterface", MulticastReceiver.class),
+            new PropertyDescriptor("receiveBufferSize", MulticastReceiver.class),
+            new PropertyDescriptor("queueCapacity", MulticastReceiver.class),
+            new PropertyDescriptor("decodeThreads", MulticastReceiver.class),
         };
     }
 
@@ -54,6 +58,10 @@ public class MulticastReceiverFactory implements ChainsawReceiverFactory {
                 + "<li>address - the IP address to listen on for incoming data</li>"
                 + "<li>encoding - the encoding of the data(e.g. UTF-8)</li>"
                 + "<li>decoder - the specific decoder to use to decode the data.  Only XML decoding is built-in</li>"
+                + "<li>networkInterface - the name of the network interface to join the group on</li>"
+                + "<li>receiveBufferSize - the socket receive buffer size (SO_RCVBUF)</li>"
+                + "<li>queueCapacity - the number of packets which can wait to be decoded</li>"
+                + "<li>decodeThreads - the number of threads decoding packets</li>"
                 + "</ul>"
                 + "</html>";
     }
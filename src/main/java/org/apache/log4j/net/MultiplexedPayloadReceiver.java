@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.receiver.RoutingReceiver;
+import org.apache.log4j.net.payload.LaunchAPI;
+import org.apache.log4j.net.payload.LogEventDecoder;
+import org.apache.log4j.net.payload.PayloadReceiverCleanupSession;
+import org.apache.log4j.net.payload.PayloadRoute;
+import org.apache.log4j.net.payload.SequenceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Receives the channels of many devices over a single payload proxy connection.
+ * <p>
+ * The guid property takes a comma separated list of channels.  One session launches all of
+ * them with one request and receives their frames over one connection, routed by GUID, so
+ * each further device costs an entry in the routing table rather than a connection, a launch
+ * request and a worker thread of its own.
+ * <p>
+ * Every event is tagged with the {@link #GUID_PROPERTY} of its device and shown in this
+ * receiver's tab.  With tabPerDevice set, each device also gets a PayloadDeviceReceiver
+ * (and so a tab of its own) fed from this receiver's worker thread.
+ * <p>
+ * A device dropped from the guid list stops being routed when the receiver next connects, but
+ * its tab stays, like any other Chainsaw tab, and keeps the events it already shows.
+ */
+public class MultiplexedPayloadReceiver extends PayloadProxyReceiver implements RoutingReceiver {
+    private static final Logger logger = LoggerFactory.getLogger(MultiplexedPayloadReceiver.class);
+
+    private final Map<String, DeviceRoute> routes = new ConcurrentHashMap<>();
+    private final List<Consumer<ChainsawReceiver>> routeListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean tabPerDevice;
+
+    {
+        this.addPropertyChangeListener("tabPerDevice", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                setTabPerDevice(Boolean.parseBoolean(evt.getNewValue().toString()));
+            }
+        });
+
+        // split each batch between the device tabs
+        addChainsawEventBatchListener(this::routeBatch);
+    }
+
+    public boolean isTabPerDevice() {
+        return tabPerDevice;
+    }
+
+    /**
+     * Whether to give each device a tab of its own, as well as showing all of them in this
+     * receiver's tab.
+     */
+    public synchronized void setTabPerDevice(boolean tabPerDevice) {
+        this.tabPerDevice = tabPerDevice;
+        if (tabPerDevice) {
+            // devices already routed get their tabs now, rather than on the next reconnect
+            for (DeviceRoute route : routes.values()) {
+                addDevice(route);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void addRouteListener(Consumer<ChainsawReceiver> listener) {
+        routeListeners.add(listener);
+        for (DeviceRoute route : routes.values()) {
+            if (route.device != null) {
+                listener.accept(route.device);
+            }
+        }
+    }
+
+    /**
+     * @return the configured channels, in order, without duplicates
+     */
+    public Set<String> getGuids() {
+        final Set<String> guids = new LinkedHashSet<>();
+        if (getGuid() != null) {
+            for (String guid : getGuid().split(",")) {
+                if (!guid.trim().isEmpty()) {
+                    guids.add(guid.trim());
+                }
+            }
+        }
+        return guids;
+    }
+
+    @Override
+    protected PayloadReceiverCleanupSession createSession(LaunchAPI service, SequenceTracker tracker, Consumer<Void> flagback) {
+
+        final Set<String> guids = getGuids();
+
+        // routes outlive sessions, so devices keep their tabs and sequence numbers across reconnects -
+        // the tabs of dropped devices stay, they just get no more events
+        routes.keySet().retainAll(guids);
+        for (String guid : guids) {
+            final DeviceRoute route = routes.computeIfAbsent(guid, this::createRoute);
+            if (tabPerDevice) {
+                addDevice(route);
+            }
+        }
+
+        //frames which aren't routed are still shown, just not tagged with a device
+        final LogEventDecoder unroutedDecoder = new LogEventDecoder(tracker);
+        final PayloadRoute unrouted = new PayloadRoute((data, offset, length) -> {
+            parseIncomingData(unroutedDecoder, data, offset, length, null);
+        }, (data, offset, length) -> {
+            parseIncomingBatch(unroutedDecoder, data, offset, length, null);
+        });
+
+        return new PayloadReceiverCleanupSession(getHost(), service, String.join(",", guids), getPassword(), flagback,
+            unrouted, this::route, isCompression(), isAllowPlainTransport(), getBackoff(), getMetrics());
+    }
+
+    private PayloadRoute route(String guid) {
+        final DeviceRoute route = routes.get(guid);
+        return route == null ? null : route.payloadRoute;
+    }
+
+    private DeviceRoute createRoute(String guid) {
+
+        final DeviceRoute route = new DeviceRoute(guid);
+
+        logger.debug("{} routing channel {}", getName(), guid);
+        return route;
+    }
+
+    /**
+     * Give a route a device receiver, and so a tab, if it doesn't have one yet.
+     */
+    private synchronized void addDevice(DeviceRoute route) {
+        if (route.device != null) {
+            return;
+        }
+        final PayloadDeviceReceiver device = new PayloadDeviceReceiver(getName() + "." + route.guid, route.guid);
+        device.setThreshold(getThreshold());
+        route.device = device;
+        for (Consumer<ChainsawReceiver> listener : routeListeners) {
+            listener.accept(device);
+        }
+    }
+
+    private void routeBatch(List<ChainsawLoggingEvent> events) {
+
+        if (!tabPerDevice) {
+            return;
+        }
+
+        final Map<String, List<ChainsawLoggingEvent>> byDevice = new HashMap<>();
+        for (ChainsawLoggingEvent event : events) {
+            final String guid = event.getProperty(GUID_PROPERTY);
+            if (guid != null) {
+                byDevice.computeIfAbsent(guid, key -> new ArrayList<>()).add(event);
+            }
+        }
+
+        for (Map.Entry<String, List<ChainsawLoggingEvent>> entry : byDevice.entrySet()) {
+            final DeviceRoute route = routes.get(entry.getKey());
+            if (route != null && route.device != null) {
+                route.device.deliver(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * A routing table entry: the decoder and sequence tracker for one device.  Sessions
+     * deliver on one thread, so the decoder is only used by one thread at a time.
+     */
+    private class DeviceRoute {
+        private final String guid;
+        private final LogEventDecoder decoder;
+        private final PayloadRoute payloadRoute;
+        private volatile PayloadDeviceReceiver device;
+
+        DeviceRoute(String guid) {
+            this.guid = guid;
+            decoder = new LogEventDecoder(new SequenceTracker((expected, received) -> {
+                final ChainsawLoggingEvent lost = lostEvents(expected, received);
+                lost.setProperty(GUID_PROPERTY, guid);
+                append(lost);
+            }));
+            payloadRoute = new PayloadRoute((data, offset, length) -> {
+                parseIncomingData(decoder, data, offset, length, guid);
+            }, (data, offset, length) -> {
+                parseIncomingBatch(decoder, data, offset, length, guid);
+            });
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiverFactory;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+
+public class MultiplexedPayloadReceiverFactory implements ChainsawReceiverFactory {
+
+    @Override
+    public ChainsawReceiver create() {
+        return new MultiplexedPayloadReceiver();
+    }
+
+    @Override
+    public PropertyDescriptor[] getPropertyDescriptors() throws IntrospectionException {
+        return new PropertyDescriptor[] {
+            new PropertyDescriptor("name", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("host", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("baseUrl", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("guid", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("password", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("compression", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("allowPlainTransport", MultiplexedPayloadReceiver.class),
+            new PropertyDescriptor("tabPerDevice", MultiplexedPayloadReceiver.class),
+        };
+    }
+
+    @Override
+    public String getReceiverName() {
+        return "MultiplexedPayloadReceiver";
+    }
+
+    @Override
+    public String getReceiverDocumentation() {
+        return "<html>The MultiplexedPayloadReceiver receives many devices over one connection, "
+                + "and has the following parameters:<br/>" + "<ul>"
+                + "<li>host - host to connect to</li>"
+                + "<li>baseUrl - base URL of the channel launch API, derived from the host if empty</li>"
+                + "<li>guid - comma separated guids to connect to</li>"
+                + "<li>password - password to connect with</li>"
+                + "<li>compression - whether to offer compressed frames</li>"
+                + "<li>allowPlainTransport - whether to accept unauthenticated, unencrypted channels "
+                + "(testing against a local proxy only)</li>"
+                + "<li>tabPerDevice - whether each device also gets a tab of its own</li>"
+                + "</ul>"
+                + "</html>";
+    }
+}
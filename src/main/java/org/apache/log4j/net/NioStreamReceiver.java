@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.OrderedDecodeStage;
+
+/**
+ * A receiver serving TCP connections with a {@link NioStreamServer} and decoding what they
+ * read in an {@link OrderedDecodeStage}.
+ * <p>
+ * The selector threads never wait: they submit to the stage without waiting, and reading from
+ * every connection is suspended while the stage is nearly full or a subscriber is too far
+ * behind, leaving the senders to TCP flow control until both have caught up.
+ *
+ * @param <T> type of the chunks decoded
+ */
+public abstract class NioStreamReceiver<T> extends ChainsawReceiverSkeleton {
+    private volatile NioStreamServer server;
+    private volatile OrderedDecodeStage<T> decodeStage;
+    // the decode stage is nearly full
+    private volatile boolean decodeFull;
+    // orders the changes to the server's reads being suspended
+    private final Object readsLock = new Object();
+
+    /**
+     * Set the stage decoding what the server reads, before the server is started.
+     *
+     * @param stage the stage, or null if the connections decode what they read themselves
+     */
+    protected void setDecodeStage(OrderedDecodeStage<T> stage) {
+        decodeFull = false;
+        decodeStage = stage;
+        if (stage != null) {
+            stage.setFullListener(this::decodeFullChanged);
+        }
+    }
+
+    /**
+     * @return the stage decoding what the server reads, null if there is none
+     */
+    protected OrderedDecodeStage<T> getDecodeStage() {
+        return decodeStage;
+    }
+
+    /**
+     * Start the server, with reads suspended if the receiver is already held back.
+     *
+     * @throws IOException if the server can't be started
+     */
+    protected void startServer(NioStreamServer newServer) throws IOException {
+        newServer.setReadsSuspended(isBackpressured() || decodeFull);
+        newServer.start();
+        server = newServer;
+        updateReadsSuspended();
+    }
+
+    /**
+     * Stop the server and its connections, and close the decode stage, if created.
+     */
+    protected void closeServer() {
+        NioStreamServer current = server;
+        if (current != null) {
+            current.stop();
+        }
+        OrderedDecodeStage<T> stage = decodeStage;
+        if (stage != null) {
+            stage.close();
+        }
+        server = null;
+        decodeStage = null;
+        decodeFull = false;
+    }
+
+    /**
+     * @return the number of reads waiting to be decoded or delivered
+     */
+    public int getPendingDecodes() {
+        OrderedDecodeStage<T> stage = decodeStage;
+        return stage == null ? 0 : stage.getPending();
+    }
+
+    /**
+     * Wait for the records already received to be decoded, and their events delivered.
+     */
+    @Override
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        OrderedDecodeStage<T> stage = decodeStage;
+        if (stage != null && !stage.drain(timeout, unit)) {
+            return false;
+        }
+        return super.drain(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop reading from the connections while a subscriber is too far behind.
+     */
+    @Override
+    protected void backpressureChanged(boolean backpressured) {
+        updateReadsSuspended();
+    }
+
+    /**
+     * Stop reading from the connections while the decode stage is nearly full, so the selector
+     * threads never wait for it.
+     */
+    private void decodeFullChanged(boolean full) {
+        decodeFull = full;
+        updateReadsSuspended();
+    }
+
+    private void updateReadsSuspended() {
+        synchronized (readsLock) {
+            NioStreamServer current = server;
+            if (current != null) {
+                current.setReadsSuspended(isBackpressured() || decodeFull);
+            }
+        }
+    }
+}
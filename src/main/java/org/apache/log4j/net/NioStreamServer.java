@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A TCP server which serves many client connections with a few selector threads.
+ * <p>
+ * The first selector loop also accepts connections, and each new connection is assigned to a
+ * loop round-robin.  Each loop reads into a direct buffer borrowed from a shared pool and
+ * hands it to the connection's {@link StreamHandler}, so the number of threads and buffers
+ * doesn't grow with the number of clients - only the handlers do.  A handler is only ever
+ * called from its connection's loop, so it needs no synchronization of its own.
+ * <p>
+ * The loops run on the shared {@link ReceiverRuntime}.
+ * <p>
+ * Reading can be suspended, for every connection or by a handler for its own connection
+ * through its {@link ReadControl}, leaving the bytes in the sockets' buffers so TCP flow
+ * control slows the senders down while the events already read are worked through.  The time
+ * each connection spends suspended, for either reason, is counted.
+ */
+public class NioStreamServer {
+    private static final Logger logger = LogManager.getLogger(NioStreamServer.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_BACKLOG = 1024;
+
+    /**
+     * How long accepting is paused after an accept fails, such as when the process is out of
+     * file descriptors.
+     */
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+
+    /**
+     * Receives the bytes read from one connection.
+     */
+    public interface StreamHandler {
+
+        /**
+         * @param buffer bytes read, only valid for the duration of the call - anything left
+         *               unread is discarded
+         */
+        void data(ByteBuffer buffer) throws IOException;
+
+        /**
+         * The connection was registered, before any data is read from it.
+         *
+         * @param control suspends and resumes reading from this connection
+         */
+        default void opened(ReadControl control) {}
+
+        /**
+         * The connection was closed, by either end.
+         */
+        void closed();
+    }
+
+    /**
+     * Suspends and resumes reading from one connection.  May be used from any thread.
+     */
+    public interface ReadControl {
+
+        /**
+         * Stop or resume reading from this connection.  Reading stays suspended while reads
+         * are suspended for the whole server.
+         */
+        void setReadsSuspended(boolean suspended);
+
+        /**
+         * @return true if this connection isn't being read, whether suspended by itself or
+         * with the whole server
+         */
+        boolean isThrottled();
+
+        /**
+         * @return the time this connection has spent not being read since it was opened
+         */
+        long getThrottledMillis();
+    }
+
+    /**
+     * Creates the handler for each accepted connection.
+     */
+    @FunctionalInterface
+    public interface StreamHandlerFactory {
+
+        StreamHandler create(SocketAddress remoteAddress);
+    }
+
+    private final String name;
+    private final int port;
+    private final StreamHandlerFactory handlerFactory;
+    private final SelectorLoop[] loops;
+    private final BlockingQueue<ByteBuffer> bufferPool;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private int backlog = DEFAULT_BACKLOG;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+    private volatile boolean readsSuspended;
+
+    /**
+     * @param name           name for the selector threads
+     * @param port           port to listen on, 0 for any free port
+     * @param selectorThreads number of selector loops
+     * @param handlerFactory creates the handler for each connection
+     */
+    public NioStreamServer(String name, int port, int selectorThreads, StreamHandlerFactory handlerFactory) {
+        if (selectorThreads < 1) {
+            throw new IllegalArgumentException("Invalid selector thread count: " + selectorThreads);
+        }
+        this.name = name;
+        this.port = port;
+        this.handlerFactory = handlerFactory;
+        this.loops = new SelectorLoop[selectorThreads];
+        this.bufferPool = new ArrayBlockingQueue<>(selectorThreads);
+    }
+
+    /**
+     * @return a default number of selector threads for this machine
+     */
+    public static int defaultSelectorThreads() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Set the length of the queue of connections waiting to be accepted, before starting.
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public synchronized void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port), backlog);
+            serverChannel.configureBlocking(false);
+
+            for (int i = 0; i < loops.length; i++) {
+                bufferPool.add(ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE));
+                loops[i] = new SelectorLoop(Selector.open());
+            }
+            serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            ReceiverRuntime.getShared().runIo(name + "-selector-" + i, loops[i]);
+        }
+    }
+
+    /**
+     * Stop accepting, close every connection and stop the selector threads.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // ignore, we're done with it
+            }
+            serverChannel = null;
+        }
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Stop or resume reading from every connection.  Connections accepted while suspended
+     * aren't read until resumed.
+     */
+    public void setReadsSuspended(boolean suspended) {
+        readsSuspended = suspended;
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    public boolean isReadsSuspended() {
+        return readsSuspended;
+    }
+
+    /**
+     * @return the port actually listened on
+     */
+    public int getLocalPort() {
+        ServerSocketChannel channel = serverChannel;
+        return channel == null ? -1 : channel.socket().getLocalPort();
+    }
+
+    /**
+     * @return the number of open client connections
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * A registered connection, attached to its selection key.
+     */
+    private static final class Connection implements ReadControl {
+        private final StreamHandler handler;
+        private final SelectorLoop loop;
+        private SelectionKey key;
+        private volatile boolean suspended;
+        // whether registered for reading, only changed by the loop
+        private volatile boolean reading = true;
+        private volatile long throttledSinceNanos;
+        private volatile long throttledNanos;
+
+        Connection(StreamHandler handler, SelectorLoop loop) {
+            this.handler = handler;
+            this.loop = loop;
+        }
+
+        @Override
+        public void setReadsSuspended(boolean suspended) {
+            if (this.suspended != suspended) {
+                this.suspended = suspended;
+                loop.changed(this);
+            }
+        }
+
+        @Override
+        public boolean isThrottled() {
+            return !reading;
+        }
+
+        @Override
+        public long getThrottledMillis() {
+            long total = throttledNanos;
+            if (!reading) {
+                total += System.nanoTime() - throttledSinceNanos;
+            }
+            return total / 1_000_000;
+        }
+
+        /**
+         * Register for reading or not, on the loop's thread.
+         */
+        void update(boolean serverSuspended) {
+            boolean read = !suspended && !serverSuspended;
+            if (read == reading || !key.isValid()) {
+                return;
+            }
+            key.interestOps(read ? SelectionKey.OP_READ : 0);
+            long now = System.nanoTime();
+            if (read) {
+                throttledNanos += now - throttledSinceNanos;
+            } else {
+                throttledSinceNanos = now;
+            }
+            reading = read;
+        }
+    }
+
+    private class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        // connections which suspended or resumed their reads
+        private final Queue<Connection> changed = new ConcurrentLinkedQueue<>();
+        // whether reads were suspended for the whole server when last applied
+        private boolean serverSuspended;
+        // whether the last accept failed
+        private boolean acceptFailing;
+        // set by the scheduler when accepting should resume after a failure
+        private volatile boolean acceptRetry;
+
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void assign(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        void changed(Connection connection) {
+            changed.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = null;
+            try {
+                buffer = bufferPool.take();
+                while (running) {
+                    selector.select();
+                    registerPending();
+                    updateReading();
+                    resumeAccepting();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept(key);
+                        } else if (key.isReadable()) {
+                            read(key, buffer);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    logger.error("{} selector failed", name, e);
+                }
+            } finally {
+                if (buffer != null) {
+                    bufferPool.offer(buffer);
+                }
+                closeAll();
+            }
+        }
+
+        /**
+         * Accept the waiting connections.  A failure, such as running out of file descriptors,
+         * only costs the connection it happened on, the loop keeps serving the others.  The
+         * pending connection stays acceptable after a failure, so accepting is paused for
+         * {@link #ACCEPT_RETRY_MILLIS} rather than selecting it again straight away.
+         */
+        private void accept(SelectionKey key) {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (IOException e) {
+                    // only log the first of a run of failures
+                    if (!acceptFailing) {
+                        acceptFailing = true;
+                        logger.warn("{} unable to accept connections", name, e);
+                    }
+                    key.interestOps(0);
+                    ReceiverRuntime.getShared().getScheduler().schedule(() -> {
+                        acceptRetry = true;
+                        selector.wakeup();
+                    }, ACCEPT_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                if (channel == null) {
+                    return;
+                }
+                acceptFailing = false;
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException e) {
+                    logger.warn("{} unable to set up connection {}", name, channel, e);
+                    closeQuietly(channel);
+                    continue;
+                }
+                loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].assign(channel);
+            }
+        }
+
+        /**
+         * Accept again once the pause after a failed accept is over.
+         */
+        private void resumeAccepting() {
+            if (!acceptRetry) {
+                return;
+            }
+            acceptRetry = false;
+            SelectionKey key = serverChannel == null ? null : serverChannel.keyFor(selector);
+            if (key != null && key.isValid()) {
+                key.interestOps(SelectionKey.OP_ACCEPT);
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    StreamHandler handler = handlerFactory.create(channel.getRemoteAddress());
+                    Connection connection = new Connection(handler, this);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connection.update(serverSuspended);
+                    connections.incrementAndGet();
+                    handler.opened(connection);
+                    logger.debug("{} accepted {}", name, channel.getRemoteAddress());
+                } catch (IOException e) {
+                    logger.warn("{} unable to register connection", name, e);
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        /**
+         * Register or deregister connections for reading, all of them if reads were suspended
+         * or resumed for the whole server.
+         */
+        private void updateReading() {
+            Connection connection;
+            if (serverSuspended != readsSuspended) {
+                serverSuspended = readsSuspended;
+                changed.clear();
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).update(serverSuspended);
+                    }
+                }
+            } else {
+                while ((connection = changed.poll()) != null) {
+                    connection.update(serverSuspended);
+                }
+            }
+        }
+
+        private void read(SelectionKey key, ByteBuffer buffer) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            StreamHandler handler = ((Connection) key.attachment()).handler;
+            try {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    close(key);
+                    return;
+                }
+                buffer.flip();
+                if (buffer.hasRemaining()) {
+                    handler.data(buffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("{} closing connection {}", name, channel, e);
+                close(key);
+            }
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            closeQuietly(key.channel());
+            connections.decrementAndGet();
+            ((Connection) key.attachment()).handler.closed();
+        }
+
+        private void closeAll() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        close(key);
+                    }
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                // ignore, we're done with it
+            }
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
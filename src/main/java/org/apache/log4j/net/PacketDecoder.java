@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
+import org.apache.log4j.spi.Decoder;
+import org.apache.log4j.spi.StreamingDecoder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decodes packets holding whole events on one of a {@link DatagramPipeline}'s decode threads,
+ * the events of each packet being passed on as one batch.
+ * <p>
+ * The decoder is given the receiver's {@link PushdownFilter}, so records the receiver would
+ * drop may be skipped while decoding.  While the filter drops anything, a packet decoding to
+ * no events can't be told from a packet whose events were all dropped, and is not counted as a
+ * decode error.
+ */
+class PacketDecoder implements DatagramPipeline.PacketHandler {
+    private static final Logger logger = LogManager.getLogger(PacketDecoder.class);
+
+    private final StreamingDecoder decoder;
+    private final Charset charset;
+    private final DatagramMetrics metrics;
+    private final PushdownFilter filter;
+
+    PacketDecoder(
+            StreamingDecoder decoder,
+            Charset charset,
+            DatagramMetrics metrics,
+            PushdownFilter filter) {
+        this.decoder = decoder;
+        this.charset = charset;
+        this.metrics = metrics;
+        this.filter = filter;
+        decoder.setPushdownFilter(filter);
+    }
+
+    /**
+     * @return a new instance of the receiver's decoder, for one decode thread
+     */
+    static StreamingDecoder newDecoder(Constructor<? extends Decoder> decoderConstructor) {
+        try {
+            return StreamingDecoder.of(decoderConstructor.newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not construct decoder", e);
+        }
+    }
+
+    /**
+     * @return the charset named by the encoding, or the system charset if there is none
+     */
+    static Charset charsetFor(String encoding) {
+        if (encoding == null) {
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown encoding {}, using the system encoding", encoding);
+            return Charset.defaultCharset();
+        }
+    }
+
+    @Override
+    public void packet(ByteBuffer packet, List<ChainsawLoggingEvent> events) {
+        boolean empty = !packet.hasRemaining();
+        try {
+            decoder.decode(packet, charset, events::add);
+        } finally {
+            // packets hold whole events, don't let a broken one spoil the next packet
+            decoder.reset();
+        }
+
+        if (events.isEmpty() && !empty && filter.isPassAll()) {
+            metrics.decodeError();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.log4j.chainsaw.ChainsawEventBatchListener;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.apache.log4j.chainsaw.receiver.ChainsawReceiver;
+import org.apache.log4j.chainsaw.receiver.PauseSpill;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
+
+/**
+ * The events of one device routed from a MultiplexedPayloadReceiver.
+ * <p>
+ * Unlike a ChainsawReceiverSkeleton this has no worker thread or connection of its own: the
+ * multiplexed receiver's worker hands each device its share of every batch, and starting or
+ * stopping the device does nothing - it lives as long as the multiplexed receiver.
+ */
+public class PayloadDeviceReceiver implements ChainsawReceiver {
+
+    private final String guid;
+    private final List<ChainsawEventBatchListener> listeners = new CopyOnWriteArrayList<>();
+    private final PropertyChangeSupport propertySupport = new PropertyChangeSupport(this);
+    private String name;
+    private Level thresholdLevel = Level.TRACE;
+    // applies this device's threshold, which may be above the multiplexed receiver's
+    private final PushdownFilter thresholdFilter = new PushdownFilter();
+    private int queueInterval = 1000;
+    private final PauseSpill pauseSpill;
+
+    public PayloadDeviceReceiver(String name, String guid) {
+        this.name = name;
+        this.guid = guid;
+        this.pauseSpill = new PauseSpill("device-" + guid);
+    }
+
+    public String getGuid() {
+        return guid;
+    }
+
+    /**
+     * Called on the multiplexed receiver's worker thread with this device's events.  Events
+     * below the threshold are dropped, and the rest held while the device is paused.
+     */
+    void deliver(List<ChainsawLoggingEvent> events) {
+        final List<ChainsawLoggingEvent> kept = thresholdFilter.filter(events);
+        if (kept.isEmpty() || pauseSpill.hold(kept)) {
+            return;
+        }
+        deliverNow(kept);
+    }
+
+    private void deliverNow(List<ChainsawLoggingEvent> events) {
+        for (ChainsawEventBatchListener listener : listeners) {
+            listener.receiveChainsawEventBatch(events);
+        }
+    }
+
+    @Override
+    public void addChainsawEventBatchListener(ChainsawEventBatchListener listen) {
+        if (listen != null) {
+            listeners.add(listen);
+        }
+    }
+
+    @Override
+    public void removeEventBatchListener(ChainsawEventBatchListener listen) {
+        listeners.remove(listen);
+    }
+
+    @Override
+    public void setThreshold(Level level) {
+        Level oldValue = thresholdLevel;
+        thresholdLevel = level;
+        thresholdFilter.setThreshold(level);
+        propertySupport.firePropertyChange("threshold", oldValue, thresholdLevel);
+    }
+
+    @Override
+    public Level getThreshold() {
+        return thresholdLevel;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        String oldName = this.name;
+        this.name = name;
+        propertySupport.firePropertyChange("name", oldName, name);
+    }
+
+    @Override
+    public int getQueueInterval() {
+        return queueInterval;
+    }
+
+    @Override
+    public void setQueueInterval(int interval) {
+        queueInterval = interval;
+    }
+
+    @Override
+    public void setPaused(boolean paused) {
+        if (paused) {
+            pauseSpill.pause();
+        } else if (pauseSpill.resume()) {
+            ReceiverRuntime.getShared().runIo(name + "-replay", () -> pauseSpill.replay(this::deliverNow));
+        }
+    }
+
+    @Override
+    public boolean getPaused() {
+        return pauseSpill.isPaused();
+    }
+
+    @Override
+    public long getPauseBacklog() {
+        return pauseSpill.getBacklog();
+    }
+
+    @Override
+    public void start() {
+        // events arrive through the multiplexed receiver
+    }
+
+    @Override
+    public void shutdown() {
+        // the multiplexed receiver owns the connection
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        propertySupport.addPropertyChangeListener(listener);
+    }
+
+    @Override
+    public void addPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        propertySupport.addPropertyChangeListener(propertyName, listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        propertySupport.removePropertyChangeListener(listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        propertySupport.removePropertyChangeListener(propertyName, listener);
+    }
+}
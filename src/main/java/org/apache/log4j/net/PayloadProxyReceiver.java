@@ -17,19 +17,27 @@
 package org.apache.log4j.net;
 
 import llc.berserkr.common.payload.util.CleanupManager;
-import llc.berserkr.common.util.JacksonUtil;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.logevents.Level;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
-import org.apache.log4j.net.payload.LogEvent;
+import org.apache.log4j.net.payload.LaunchAPI;
+import org.apache.log4j.net.payload.LaunchServices;
+import org.apache.log4j.net.payload.LogEventDecoder;
+import org.apache.log4j.net.payload.PayloadReceiverMetrics;
+import org.apache.log4j.net.payload.PayloadRoute;
+import org.apache.log4j.net.payload.PlainFrameConnection;
+import org.apache.log4j.net.payload.ReconnectBackoff;
+import org.apache.log4j.net.payload.SequenceTracker;
 import org.apache.log4j.net.payload.PayloadReceiverCleanupSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 
@@ -56,12 +64,26 @@ import java.util.function.Consumer;
 public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements BerserkrBased {
     private static final Logger logger = LoggerFactory.getLogger(PayloadProxyReceiver.class);
 
+    /**
+     * How long the gateway's listener thread waits for demand before letting events queue.
+     */
+    private static final long LISTENER_DEMAND_WAIT_MILLIS = 100;
+
     // default to log4j xml decoder
     protected String decoder = "org.apache.log4j.xml.XMLDecoder";
 
     private CleanupManager<PayloadReceiverCleanupSession> cleanup;
     private String password;
     private String guid;
+    private String host = DEFAULT_HOST;
+    private String baseUrl;
+    private boolean compression = true;
+    private boolean allowPlainTransport;
+
+    private final PayloadReceiverMetrics metrics = new PayloadReceiverMetrics();
+    private final ReconnectBackoff backoff = new ReconnectBackoff();
+    private LaunchAPI launchService;
+    private String launchServiceUrl;
 
     {
 
@@ -79,6 +101,34 @@ public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements Be
             }
         });
 
+        this.addPropertyChangeListener("host", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                setHost(evt.getNewValue().toString());
+            }
+        });
+
+        this.addPropertyChangeListener("baseUrl", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                setBaseUrl(evt.getNewValue().toString());
+            }
+        });
+
+        this.addPropertyChangeListener("compression", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                setCompression(Boolean.parseBoolean(evt.getNewValue().toString()));
+            }
+        });
+
+        this.addPropertyChangeListener("allowPlainTransport", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                setAllowPlainTransport(Boolean.parseBoolean(evt.getNewValue().toString()));
+            }
+        });
+
     }
 
     public void setGuid(String guid) {
@@ -89,6 +139,62 @@ public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements Be
         this.password = newValue;
     }
 
+    /**
+     * Host serving the channel, the live payload proxy service by default.
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Base URL of the channel launch API, derived from the host if not set.
+     */
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl == null || baseUrl.isEmpty() ? null : baseUrl;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl == null ? PayloadReceiverCleanupSession.defaultBaseUrl(host) : baseUrl;
+    }
+
+    /**
+     * Whether to offer compressed frames when launching the channel, on by default.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Whether to accept a channel the launch API says is served as plain frames, which
+     * skips authentication and encryption.  Off by default, so a launch response can't
+     * downgrade the connection; only turn it on to test against a local stand-in proxy.
+     */
+    public void setAllowPlainTransport(boolean allowPlainTransport) {
+        this.allowPlainTransport = allowPlainTransport;
+    }
+
+    public boolean isAllowPlainTransport() {
+        return allowPlainTransport;
+    }
+
+    /**
+     * Host of the payload proxy used unless one is configured.
+     */
+    public static final String DEFAULT_HOST = "www.berserkr.llc";
+
+    /**
+     * Event property holding the GUID of the channel a routed event came from.
+     */
+    public static final String GUID_PROPERTY = "guid";
+
     /**
      * The MulticastDNS zone advertised by an XMLSocketReceiver
      */
@@ -169,6 +275,11 @@ public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements Be
         closeServerSocket();
         logger.debug("socket cleanup complete for {}", name);
 
+        //a restart asked for by the user connects straight away, and sequences start over
+        backoff.reset();
+        final LaunchAPI service = getLaunchService();
+        final SequenceTracker tracker = new SequenceTracker((expected, received) -> append(lostEvents(expected, received)));
+
         // start the server socket
         try {
 
@@ -176,9 +287,7 @@ public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements Be
             cleanup = new CleanupManager<>() {
                 @Override
                 public PayloadReceiverCleanupSession build(ExecutorService executorService, Consumer<Void> consumer) {
-                    return new PayloadReceiverCleanupSession("www.berserkr.llc", getGuid(), getPassword(), consumer, (payload) -> {
-                        parseIncomingData(payload);
-                    });
+                    return createSession(service, tracker, consumer);
                 }
             };
 
@@ -191,6 +300,28 @@ public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements Be
 
     }
 
+    /**
+     * Build the session for one connection to the channel.
+     *
+     * @param service  the launch API client
+     * @param tracker  sequence tracker for the channel, kept across sessions
+     * @param flagback tells the cleanup manager to rebuild the session
+     */
+    protected PayloadReceiverCleanupSession createSession(LaunchAPI service, SequenceTracker tracker, Consumer<Void> flagback) {
+
+        //one decoder per session, sessions deliver on a single thread
+        final LogEventDecoder eventDecoder = new LogEventDecoder(tracker);
+
+        final PayloadRoute route = new PayloadRoute((data, offset, length) -> {
+            parseIncomingData(eventDecoder, data, offset, length, null);
+        }, (data, offset, length) -> {
+            parseIncomingBatch(eventDecoder, data, offset, length, null);
+        });
+
+        return new PayloadReceiverCleanupSession(getHost(), service, getGuid(), getPassword(), flagback, route, null, isCompression(),
+            isAllowPlainTransport(), backoff, metrics);
+    }
+
     public String getPassword() {
         return password;
     }
@@ -199,27 +330,112 @@ public class PayloadProxyReceiver extends ChainsawReceiverSkeleton implements Be
         return guid;
     }
 
-    private void parseIncomingData(byte [] data) {
+    public PayloadReceiverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The launch API client is kept for the life of the receiver, and only rebuilt if the
+     * base URL changes.
+     */
+    private LaunchAPI getLaunchService() {
 
-        ChainsawLoggingEventBuilder build = new ChainsawLoggingEventBuilder();
+        final String url = getBaseUrl();
 
-        try {
-            LogEvent event = JacksonUtil.deserialize(new String(data, StandardCharsets.UTF_8), LogEvent.class);
+        if (launchService == null || !url.equals(launchServiceUrl)) {
+            launchService = LaunchServices.create(url);
+            launchServiceUrl = url;
+        }
 
-            build.clear();
-            final String timeStamp = ZonedDateTime.ofInstant(Instant.ofEpochMilli(event.time), ZoneId.systemDefault()).toString();
+        return launchService;
+    }
 
-            build.setLevelFromString(event.level)
-                .setMessage(event.message)
-                .setLogger(event.name)
-                .setThreadName(event.threadName)
-                .setTimestamp(ZonedDateTime.parse(timeStamp).toInstant());
+    protected ReconnectBackoff getBackoff() {
+        return backoff;
+    }
 
-            append(build.create());
+    /**
+     * Events went missing, most likely while reconnecting - count them, and build an event
+     * telling the user where in the event stream they are missing from.
+     */
+    protected ChainsawLoggingEvent lostEvents(long expected, long received) {
+
+        final long lost = received - expected;
+
+        metrics.sequenceGap(lost);
+        logger.warn("{} lost {} events (sequence {} to {})", getName(), lost, expected, received - 1);
 
-        } catch (JacksonUtil.DataException e) {
+        return new ChainsawLoggingEventBuilder()
+            .setLevel(Level.WARN)
+            .setLogger(PayloadProxyReceiver.class.getName())
+            .setThreadName(getName())
+            .setMessage(lost + " events were lost (sequence " + expected + " to " + (received - 1) + ")")
+            .setTimestamp(Instant.now())
+            .create();
+    }
+
+    /**
+     * Wait for demand before decoding.  The reader of a plain connection can be held for as
+     * long as it takes, but the gateway library's listener thread also carries its heartbeat
+     * and authentication, so it only waits briefly and then lets the events queue.
+     *
+     * @return false if interrupted
+     */
+    private boolean holdBack() {
+        try {
+            metrics.throttled(PlainFrameConnection.isReaderThread() ? awaitDemand() : awaitDemand(LISTENER_DEMAND_WAIT_MILLIS));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param route GUID the event was routed from, set as the {@link #GUID_PROPERTY} of the
+     *              event, or null
+     */
+    protected void parseIncomingData(LogEventDecoder eventDecoder, byte [] data, int offset, int length, String route) {
+
+        if (!holdBack()) {
+            return;
+        }
+
+        try {
+            final ChainsawLoggingEvent event = eventDecoder.decode(data, offset, length);
+            if (route != null) {
+                event.setProperty(GUID_PROPERTY, route);
+            }
+            append(event);
+            metrics.eventsReceived(1);
+        } catch (IOException | RuntimeException e) {
             logger.error("error parsing incoming data", e);
         }
 
     }
+
+    protected void parseIncomingBatch(LogEventDecoder eventDecoder, byte [] data, int offset, int length, String route) {
+
+        if (!holdBack()) {
+            return;
+        }
+
+        final List<ChainsawLoggingEvent> events = new ArrayList<>();
+
+        try {
+            eventDecoder.decodeBatch(data, offset, length, events);
+        } catch (IOException | RuntimeException e) {
+            logger.error("error parsing incoming batch, keeping the {} events before the error", events.size(), e);
+        }
+
+        if (route != null) {
+            for (ChainsawLoggingEvent event : events) {
+                event.setProperty(GUID_PROPERTY, route);
+            }
+        }
+
+        append(events);
+        metrics.eventsReceived(events.size());
+
+    }
 }
@@ -37,9 +37,12 @@ public class PayloadProxyReceiverFactory implements ChainsawReceiverFactory {
     public PropertyDescriptor[] getPropertyDescriptors() throws IntrospectionException {
         return new PropertyDescriptor[] {
             new PropertyDescriptor("name", PayloadProxyReceiver.class),
-//            new PropertyDescriptor("host", PayloadProxyReceiver.class),
+            new PropertyDescriptor("host", PayloadProxyReceiver.class),
+            new PropertyDescriptor("baseUrl", PayloadProxyReceiver.class),
             new PropertyDescriptor("guid", PayloadProxyReceiver.class),
             new PropertyDescriptor("password", PayloadProxyReceiver.class),
+            new PropertyDescriptor("compression", PayloadProxyReceiver.class),
+            new PropertyDescriptor("allowPlainTransport", PayloadProxyReceiver.class),
         };
     }
 
@@ -52,8 +55,12 @@ public class PayloadProxyReceiverFactory implements ChainsawReceiverFactory {
     public String getReceiverDocumentation() {
         return "<html>The PayloadProxyReceiver has the following parameters:<br/>" + "<ul>"
                 + "<li>host - host to connect to</li>"
+                + "<li>baseUrl - base URL of the channel launch API, derived from the host if empty</li>"
                 + "<li>guid - guid to connect to</li>"
                 + "<li>password - password to connect with</li>"
+                + "<li>compression - whether to offer compressed frames</li>"
+                + "<li>allowPlainTransport - whether to accept unauthenticated, unencrypted channels "
+                + "(testing against a local proxy only)</li>"
                 + "</ul>"
                 + "</html>";
     }
@@ -17,11 +17,13 @@
 package org.apache.log4j.net;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketException;
+import java.lang.reflect.Constructor;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
-import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
 import org.apache.log4j.spi.Decoder;
 import org.apache.logging.log4j.LogManager;
@@ -30,23 +32,33 @@ import org.apache.logging.log4j.Logger;
 /**
  * Receive LoggingEvents encoded with an XMLLayout, convert the XML data to a
  * LoggingEvent and post the LoggingEvent.
+ * <p>
+ * Packets are received on one or more DatagramChannels and decoded on a separate thread (see
+ * {@link DatagramPipeline}).  With more than one socket, each is bound to the port with
+ * SO_REUSEPORT and the kernel spreads packets between them.  Each packet must hold whole
+ * events.  Events are delivered in the order their socket received the packets, whatever the
+ * number of decode threads.  With more than one socket, packets arriving on different sockets
+ * may still be delivered out of order.
  *
  * @author Scott Deboy &lt;sdeboy@apache.org&gt;
  */
 public class UDPReceiver extends ChainsawReceiverSkeleton implements PortBased {
     private static final Logger logger = LogManager.getLogger(UDPReceiver.class);
 
-    private static final int PACKET_LENGTH = 16384;
-    private UDPReceiverThread receiverThread;
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+
     private String encoding;
 
     // default to log4j xml decoder
     private String decoder = "org.apache.log4j.xml.XMLDecoder";
-    private Decoder decoderImpl;
-    private boolean closed = false;
+    private Charset charset;
     private int port;
-    private DatagramSocket socket;
-    private boolean active = true;
+    private int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+    private int sockets = 1;
+    private int decodeThreads = 1;
+    private DatagramPipeline pipeline;
+    private final DatagramMetrics metrics = new DatagramMetrics();
+    private volatile boolean active = false;
 
     /**
      * The MulticastDNS zone advertised by a UDPReceiver
@@ -84,88 +96,113 @@ public class UDPReceiver extends ChainsawReceiverSkeleton implements PortBased {
         this.decoder = decoder;
     }
 
-    public synchronized void shutdown() {
-        if (closed) {
-            return;
-        }
-        closed = true;
-        active = false;
-        // Closing the datagram socket will unblock the UDPReceiverThread if it is
-        // was waiting to receive data from the socket.
-        if (socket != null) {
-            socket.close();
-        }
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
 
-        try {
-            if (receiverThread != null) {
-                receiverThread.join();
-            }
-        } catch (InterruptedException ie) {
-            logger.error(ie, ie);
-        }
+    /**
+     * Set the SO_RCVBUF size of each socket, which is what absorbs bursts while decoding
+     * catches up.  The operating system may cap it (net.core.rmem_max on Linux).
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
     }
 
-    @Override
-    public void start() {
-        try {
-            Class c = Class.forName(decoder);
-            Object o = c.newInstance();
+    public int getSockets() {
+        return sockets;
+    }
 
-            if (o instanceof Decoder) {
-                this.decoderImpl = (Decoder) o;
-            }
-        } catch (ClassNotFoundException cnfe) {
-            logger.warn("Unable to find decoder", cnfe);
-        } catch (IllegalAccessException | InstantiationException iae) {
-            logger.warn("Could not construct decoder", iae);
-        }
+    /**
+     * Set the number of sockets bound to the port, each with its own receive thread.  More
+     * than one needs SO_REUSEPORT, and one is used where it isn't supported.
+     */
+    public void setSockets(int sockets) {
+        this.sockets = sockets;
+    }
 
-        try {
-            socket = new DatagramSocket(port);
-            receiverThread = new UDPReceiverThread();
-            receiverThread.start();
-            active = true;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
+    public int getDecodeThreads() {
+        return decodeThreads;
     }
 
-    @Override
-    public boolean isActive() {
-        return active;
+    /**
+     * Set the number of threads decoding packets, one by default.  Events are still delivered
+     * in the order the packets were received with more threads.  Takes effect when the
+     * receiver is started.
+     */
+    public void setDecodeThreads(int decodeThreads) {
+        this.decodeThreads = decodeThreads;
+    }
+
+    public DatagramMetrics getMetrics() {
+        return metrics;
     }
 
-    class UDPReceiverThread extends Thread {
-        public UDPReceiverThread() {
-            setDaemon(true);
+    public synchronized void shutdown() {
+        active = false;
+        if (pipeline != null) {
+            pipeline.stop();
+            pipeline = null;
         }
+    }
 
-        public void run() {
-            byte[] b = new byte[PACKET_LENGTH];
-            DatagramPacket p = new DatagramPacket(b, b.length);
+    @Override
+    public synchronized void start() {
+        if (active) {
+            return;
+        }
+        charset = PacketDecoder.charsetFor(encoding);
 
-            while (!UDPReceiver.this.closed) {
-                try {
-                    socket.receive(p);
+        final Constructor<? extends Decoder> decoderConstructor;
+        try {
+            decoderConstructor = Class.forName(decoder).asSubclass(Decoder.class).getDeclaredConstructor();
+        } catch (Exception e) {
+            logger.warn("Unable to load decoder {}", decoder, e);
+            return;
+        }
 
-                    // this string constructor which accepts a charset throws an exception if it is null
-                    String data;
-                    if (encoding == null) {
-                        data = new String(p.getData(), 0, p.getLength());
+        List<DatagramChannel> channels = new ArrayList<>();
+        try {
+            int count = sockets;
+            for (int i = 0; i < count; i++) {
+                DatagramChannel channel = DatagramChannel.open();
+                channels.add(channel);
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+                if (count > 1) {
+                    if (channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                        channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
                     } else {
-                        data = new String(p.getData(), 0, p.getLength(), encoding);
+                        logger.warn("{}: SO_REUSEPORT isn't supported, using one socket", getName());
+                        count = 1;
                     }
+                }
+                channel.bind(new InetSocketAddress(port));
+            }
 
-                    List<ChainsawLoggingEvent> v = decoderImpl.decodeEvents(data);
-                    for (ChainsawLoggingEvent evt : v) {
-                        append(evt);
-                    }
-                } catch (SocketException se) {
-                    // disconnected
-                } catch (IOException ioe) {
-                    ioe.printStackTrace();
+            pipeline = new DatagramPipeline(
+                    "UDPReceiver-" + getName(),
+                    channels,
+                    decodeThreads,
+                    DatagramPipeline.DEFAULT_BUFFERS,
+                    () -> new PacketDecoder(PacketDecoder.newDecoder(decoderConstructor), charset, metrics, getPushdownFilter()),
+                    this::append,
+                    metrics);
+            pipeline.start();
+            active = true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("error starting UDPReceiver ({}), receiver did not start", getName(), e);
+            for (DatagramChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // closing anyway
                 }
             }
+            pipeline = null;
         }
     }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
 }
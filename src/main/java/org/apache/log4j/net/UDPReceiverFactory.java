@@ -35,6 +35,9 @@ public class UDPReceiverFactory implements ChainsawReceiverFactory {
             new PropertyDescriptor("port", UDPReceiver.class),
             new PropertyDescriptor("encoding", UDPReceiver.class),
             new PropertyDescriptor("decoder", UDPReceiver.class),
+            new PropertyDescriptor("receiveBufferSize", UDPReceiver.class),
+            new PropertyDescriptor("sockets", UDPReceiver.class),
+            new PropertyDescriptor("decodeThreads", UDPReceiver.class),
         };
     }
 
@@ -49,6 +52,9 @@ public class UDPReceiverFactory implements ChainsawReceiverFactory {
                 + "<li>port - the port to listen on for incoming data on all interfaces</li>"
                 + "<li>encoding - the encoding of the data(e.g. UTF-8)</li>"
                 + "<li>decoder - the specific decoder to use to decode the data.  Only XML decoding is built-in</li>"
+                + "<li>receiveBufferSize - the socket receive buffer size (SO_RCVBUF), raise it if packets are lost in bursts</li>"
+                + "<li>sockets - the number of sockets bound to the port with SO_REUSEPORT, each with its own thread</li>"
+                + "<li>decodeThreads - the number of threads decoding packets</li>"
                 + "</ul>"
                 + "</html>";
     }
@@ -37,6 +37,8 @@ public class XMLReceiverFactory implements ChainsawReceiverFactory {
         return new PropertyDescriptor[] {
             new PropertyDescriptor("name", XMLSocketReceiver.class),
             new PropertyDescriptor("port", XMLSocketReceiver.class),
+            new PropertyDescriptor("selectorThreads", XMLSocketReceiver.class),
+            new PropertyDescriptor("decodeThreads", XMLSocketReceiver.class),
         };
     }
 
@@ -49,6 +51,7 @@ public class XMLReceiverFactory implements ChainsawReceiverFactory {
     public String getReceiverDocumentation() {
         return "<html>The XML recevier has the following parameters:<br/>" + "<ul>"
                 + "<li>port - the port to listen on for incoming data via TCP</li>"
+                + "<li>selectorThreads - the number of threads serving connections</li>"
                 + "</ul>"
                 + "Note that this receiver listens for only log4j1 style XML events"
                 + "</html>";
@@ -16,15 +16,21 @@
  */
 package org.apache.log4j.net;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.io.InputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
-import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.OrderedDecodeStage;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
 import org.apache.log4j.spi.Decoder;
+import org.apache.log4j.spi.StreamingDecoder;
+import org.apache.log4j.xml.StreamingXMLDecoder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -42,23 +48,33 @@ import org.apache.logging.log4j.Logger;
  * To configure this receiver to support java.util.logging's XMLFormatter, specify a 'decoder' param
  * of org.apache.log4j.xml.UtilLoggingXMLDecoder.
  * <p>
+ * Any number of appenders can be connected at once.  Connections are served by a few selector
+ * threads (see {@link NioStreamServer}), and each connection gets its own decoder, so events
+ * split across reads are reassembled per connection.
+ * <p>
+ * With an XML decoder (a {@link StreamingXMLDecoder}), the selector threads only split the
+ * stream into complete records, and the records are read by an {@link OrderedDecodeStage} on
+ * up to <code>decodeThreads</code> cores, being delivered in the order they arrived.  Other
+ * decoders decode on the selector thread.
+ * <p>
  * Once the event has been "posted", it will be handled by the
  * appenders currently configured in the LoggerRespository.
  *
  * @author Mark Womack
  * @author Scott Deboy &lt;sdeboy@apache.org&gt;
  */
-public class XMLSocketReceiver extends ChainsawReceiverSkeleton implements Runnable, PortBased {
+public class XMLSocketReceiver extends NioStreamReceiver<XMLSocketReceiver.RecordText>
+        implements PortBased, ConnectionBased {
     private static final Logger logger = LogManager.getLogger(XMLSocketReceiver.class);
 
     // default to log4j xml decoder
     protected String decoder = "org.apache.log4j.xml.XMLDecoder";
-    private ServerSocket serverSocket;
-    private List<Socket> socketList = new ArrayList<>();
-    private Thread rThread;
     public static final int DEFAULT_PORT = 4448;
     protected int port = DEFAULT_PORT;
-    private boolean active = false;
+    private int selectorThreads = NioStreamServer.defaultSelectorThreads();
+    private int decodeThreads = OrderedDecodeStage.defaultWorkers();
+    private volatile boolean active = false;
+    private final Map<SocketAddress, ConnectionStats> connections = new ConcurrentHashMap<>();
 
     /**
      * The MulticastDNS zone advertised by an XMLSocketReceiver
@@ -95,17 +111,34 @@ public class XMLSocketReceiver extends ChainsawReceiverSkeleton implements Runna
         this.decoder = decoder;
     }
 
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    /**
+     * Set the number of threads serving connections, takes effect when the receiver is started.
+     */
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
+
+    /**
+     * Set the number of threads reading XML records at once, takes effect when the receiver is
+     * started.
+     */
+    public void setDecodeThreads(int decodeThreads) {
+        this.decodeThreads = decodeThreads;
+    }
+
     /**
      * Starts the XMLSocketReceiver with the current options.
      */
     public void activateOptions() {
-        if (!isActive()) {
-            rThread = new Thread(this);
-            rThread.setDaemon(true);
-            rThread.start();
-
-            active = true;
-        }
+        start();
     }
 
     /**
@@ -117,10 +150,6 @@ public class XMLSocketReceiver extends ChainsawReceiverSkeleton implements Runna
         // mark this as no longer running
         active = false;
 
-        if (rThread != null) {
-            rThread.interrupt();
-            rThread = null;
-        }
         doShutdown();
     }
 
@@ -138,139 +167,181 @@ public class XMLSocketReceiver extends ChainsawReceiverSkeleton implements Runna
     }
 
     /**
-     * Closes the server socket, if created.
+     * Closes the server socket and its connections, if created.
      */
     private void closeServerSocket() {
         logger.debug("{} closing server socket", getName());
 
-        try {
-            if (serverSocket != null) {
-                serverSocket.close();
-            }
-        } catch (Exception e) {
-            // ignore for now
-        }
-
-        serverSocket = null;
+        closeServer();
     }
 
-    /**
-     * Loop, accepting new socket connections.
-     */
-    @SuppressFBWarnings // TODO: this hsould be a secure socket?
-    public void run() {
+    @Override
+    public synchronized void start() {
+        logger.debug("Starting receiver");
+        if (isActive()) {
+            return;
+        }
+
         /**
          * Ensure we start fresh.
          */
-        logger.debug("performing socket cleanup prior to entering loop for {}", name);
         closeServerSocket();
-        logger.debug("socket cleanup complete for {}", name);
-        active = true;
 
-        // start the server socket
+        final Constructor<? extends Decoder> decoderConstructor;
         try {
-            serverSocket = new ServerSocket(port);
+            decoderConstructor = Class.forName(decoder).asSubclass(Decoder.class).getDeclaredConstructor();
         } catch (Exception e) {
+            logger.error("Unable to load correct decoder", e);
+            return;
+        }
+
+        if (StreamingXMLDecoder.class.isAssignableFrom(decoderConstructor.getDeclaringClass())) {
+            try {
+                setDecodeStage(new OrderedDecodeStage<>(
+                        "XMLSocketReceiver-" + getName(),
+                        decodeThreads,
+                        OrderedDecodeStage.DEFAULT_CAPACITY,
+                        () -> new RecordDecoder((StreamingXMLDecoder) newDecoder(decoderConstructor), getPushdownFilter()),
+                        this::append));
+            } catch (IllegalStateException e) {
+                logger.error("Unable to create decoder", e);
+                return;
+            }
+        }
+
+        // TODO: this should be a secure socket?
+        OrderedDecodeStage<RecordText> stage = getDecodeStage();
+        NioStreamServer newServer = new NioStreamServer(
+                "XMLSocketReceiver-" + getName(),
+                port,
+                selectorThreads,
+                remoteAddress -> new ConnectionHandler(remoteAddress, decoderConstructor, stage));
+        try {
+            startServer(newServer);
+        } catch (IOException e) {
             logger.error("error starting XMLSocketReceiver (" + this.getName() + "), receiver did not start", e);
-            active = false;
             doShutdown();
-
             return;
         }
 
-        Socket socket = null;
+        active = true;
+    }
 
-        try {
-            logger.debug("in run-about to enter while isactiveloop");
+    @Override
+    public boolean isActive() {
+        return active;
+    }
 
-            active = true;
+    @Override
+    public List<ConnectionStats> getConnectionStats() {
+        return new ArrayList<>(connections.values());
+    }
 
-            while (!rThread.isInterrupted()) {
-                // if we have a socket, start watching it
-                if (socket != null) {
-                    logger.debug("socket not null - parsing data");
-                    parseIncomingData(socket);
-                }
+    private static Decoder newDecoder(Constructor<? extends Decoder> decoderConstructor) {
+        try {
+            return decoderConstructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create decoder " + decoderConstructor.getDeclaringClass(), e);
+        }
+    }
 
-                logger.debug("waiting to accept socket");
+    /**
+     * Reads the records split from the connections' streams, each decode worker having a
+     * decoder to itself.
+     */
+    private static class RecordDecoder implements OrderedDecodeStage.ChunkDecoder<RecordText> {
+        private final StreamingXMLDecoder decoder;
 
-                // wait for a socket to open, then loop to start it
-                socket = serverSocket.accept();
-                logger.debug("accepted socket");
-            }
+        RecordDecoder(StreamingXMLDecoder decoder, PushdownFilter filter) {
+            this.decoder = decoder;
+            decoder.setPushdownFilter(filter);
+        }
 
-            // socket not watched because we a no longer running
-            // so close it now.
-            if (socket != null) {
-                socket.close();
+        @Override
+        public void decode(RecordText chunk, List<ChainsawLoggingEvent> events) {
+            try {
+                decoder.decodeRecords(chunk.records, events::add);
+            } finally {
+                chunk.stats.eventsReceived(events.size());
+                chunk.stats.decoded(chunk.records.length());
             }
-        } catch (Exception e) {
-            logger.warn("socket server disconnected, stopping");
         }
     }
 
-    @Override
-    public void start() {
-        logger.debug("Starting receiver");
-        if (!isActive()) {
-            rThread = new Thread(this);
-            rThread.setDaemon(true);
-            rThread.start();
+    /**
+     * The complete records of one read.
+     */
+    static final class RecordText {
+        private final ConnectionStats stats;
+        private final String records;
 
-            active = true;
+        RecordText(ConnectionStats stats, String records) {
+            this.stats = stats;
+            this.records = records;
         }
     }
 
-    @Override
-    public boolean isActive() {
-        return active;
-    }
-
-    private void parseIncomingData(Socket sock) {
-        InputStream is;
-        Decoder d = null;
-
-        try {
-            d = (Decoder) Class.forName(decoder).getDeclaredConstructor().newInstance();
-        } catch (Exception e) {
-            logger.error("Unable to load correct decoder", e);
-            return;
+    /**
+     * Decodes one connection's stream.  With a decode stage the connection's decoder only
+     * splits the stream into records, which the stage reads, and the connection stops being read
+     * while too many of its records are waiting (see {@link ConnectionStats}, which counts their
+     * characters as bytes), as do all connections while the stage is nearly full.  Otherwise the
+     * bytes of each read are passed straight to the connection's {@link StreamingDecoder}.
+     */
+    private class ConnectionHandler implements NioStreamServer.StreamHandler {
+        private final ConnectionStats stats;
+        private final Constructor<? extends Decoder> decoderConstructor;
+        private final OrderedDecodeStage<RecordText> stage;
+        private StreamingDecoder connectionDecoder;
+
+        ConnectionHandler(
+                SocketAddress remoteAddress,
+                Constructor<? extends Decoder> decoderConstructor,
+                OrderedDecodeStage<RecordText> stage) {
+            this.stats = new ConnectionStats(remoteAddress);
+            this.decoderConstructor = decoderConstructor;
+            this.stage = stage;
+            connections.put(remoteAddress, stats);
         }
 
-        try {
-            is = sock.getInputStream();
-        } catch (Exception e) {
-            logger.error("Exception opening InputStream to " + sock, e);
-            return;
+        @Override
+        public void opened(NioStreamServer.ReadControl control) {
+            stats.opened(control);
         }
 
-        // TODO: is is never updated
-        while (is != null) {
-            try {
-                byte[] b = new byte[1024];
-                int length = is.read(b);
-                if (length == -1) {
-                    logger.info("no bytes read from stream - closing connection.");
-                    break;
+        @Override
+        public void data(ByteBuffer buffer) throws IOException {
+            stats.bytesReceived(buffer.remaining());
+            if (connectionDecoder == null) {
+                try {
+                    connectionDecoder = StreamingDecoder.of(newDecoder(decoderConstructor));
+                    connectionDecoder.setPushdownFilter(getPushdownFilter());
+                } catch (IllegalStateException e) {
+                    throw new IOException(e.getMessage(), e.getCause());
                 }
-                List<ChainsawLoggingEvent> v = d.decodeEvents(new String(b, 0, length));
+            }
 
-                for (ChainsawLoggingEvent evt : v) {
-                    append(evt);
+            if (stage != null) {
+                String records = ((StreamingXMLDecoder) connectionDecoder).takeRecords(buffer, StandardCharsets.UTF_8);
+                if (records != null) {
+                    stats.queued(records.length());
+                    stage.submitNow(new RecordText(stats, records));
                 }
-            } catch (Exception ex) {
-                logger.error(ex);
-                break;
+                return;
             }
-        }
 
-        // close the socket
-        try {
-            if (is != null) {
-                is.close();
+            List<ChainsawLoggingEvent> events = new ArrayList<>();
+            connectionDecoder.decode(buffer, StandardCharsets.UTF_8, events::add);
+            stats.eventsReceived(events.size());
+            if (!events.isEmpty()) {
+                append(events);
             }
-        } catch (Exception e) {
-            logger.error("Could not close connection.", e);
+        }
+
+        @Override
+        public void closed() {
+            connections.remove(stats.getRemoteAddress());
+            logger.debug("{} connection closed: {}", getName(), stats);
         }
     }
 }
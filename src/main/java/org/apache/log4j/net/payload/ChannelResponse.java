@@ -2,15 +2,41 @@ package org.apache.log4j.net.payload;
 
 public class ChannelResponse {
 
+    /**
+     * Transport of a channel served as plain length-prefixed frames rather than through the
+     * payload gateway, see PlainFrameConnection.
+     */
+    public static final String TRANSPORT_PLAIN = "plain";
+
     private int port;
 
+    //null for the payload gateway
+    private String transport;
+
+    //compression the server will use, null if it sends plain frames
+    private String compression;
+
     private ChannelResponse() {}
 
     public ChannelResponse(int port) {
         this.port = port;
     }
 
+    public ChannelResponse(int port, String transport, String compression) {
+        this.port = port;
+        this.transport = transport;
+        this.compression = compression;
+    }
+
     public int getPort() {
         return port;
     }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
 }
@@ -0,0 +1,192 @@
+package org.apache.log4j.net.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed payload proxy frames.
+ * <p>
+ * A compressed frame body is a one byte preset dictionary id followed by the deflated bytes
+ * of an ordinary frame - its two byte type and body - so any frame type can be sent compressed.
+ * Dictionary {@link #NO_DICTIONARY} means plain deflate; the other ids name dictionaries
+ * shared by both ends, made up of the JSON keys, levels and logger prefixes that appear in
+ * nearly every event, which lets even a single small event compress well.
+ * <p>
+ * Inflaters and output buffers are pooled, so inflating a frame doesn't allocate once the
+ * pool is warm.  Inflated frames are only valid for the duration of the callback.
+ */
+public final class FrameCompression {
+
+    /**
+     * Value of the compression parameter sent when launching a channel.
+     */
+    public static final String NEGOTIATION = "deflate;dict=1";
+
+    public static final int NO_DICTIONARY = 0;
+    public static final int EVENT_DICTIONARY = 1;
+
+    /**
+     * Frames inflating to more than this are rejected rather than buffered.
+     */
+    public static final int MAX_INFLATED_LENGTH = 16 * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_LENGTH = 64 * 1024;
+    private static final int POOL_SIZE = 8;
+
+    // deflate matches nearer the end of the dictionary are cheaper, so the most common strings are last
+    private static final byte[] EVENT_DICTIONARY_BYTES = (
+        "org.springframework.org.hibernate.org.eclipse.io.netty.com.google.javax.java.util.org.apache."
+            + "main pool-1-thread-AWT-EventQueue-0 http-nio-exec-"
+            + "TRACEDEBUGFATALERRORWARNINFO"
+            + "{\"message\":\"\",\"name\":\"\",\"threadName\":\"\",\"level\":\"\",\"time\":"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private FrameCompression() {
+    }
+
+    /**
+     * Receives an inflated frame.
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+
+        void frame(byte[] frame, int length);
+    }
+
+    /**
+     * Inflate a compressed frame body and pass the inflated frame to the handler.
+     *
+     * @param data    frame bytes
+     * @param offset  offset of the dictionary id in the frame
+     * @param length  length of the compressed body
+     * @param handler receives the inflated frame, which is only valid during the call
+     * @throws IOException if the body is corrupt, too large, or names an unknown dictionary
+     */
+    public static void inflate(final byte[] data, final int offset, final int length, final FrameHandler handler) throws IOException {
+
+        if (length < 1) {
+            throw new IOException("Compressed frame is empty");
+        }
+
+        final byte[] dictionary;
+        try {
+            dictionary = dictionary(data[offset]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+
+        byte[] buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new byte[INITIAL_BUFFER_LENGTH];
+        }
+
+        try {
+            inflater.setInput(data, offset + 1, length - 1);
+
+            int inflated = 0;
+            while (!inflater.finished()) {
+                if (inflated == buffer.length) {
+                    if (buffer.length >= MAX_INFLATED_LENGTH) {
+                        throw new IOException("Compressed frame inflates to more than " + MAX_INFLATED_LENGTH + " bytes");
+                    }
+                    final byte[] larger = new byte[Math.min(buffer.length * 2, MAX_INFLATED_LENGTH)];
+                    System.arraycopy(buffer, 0, larger, 0, inflated);
+                    buffer = larger;
+                }
+
+                final int count = inflater.inflate(buffer, inflated, buffer.length - inflated);
+                inflated += count;
+
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        if (dictionary == null) {
+                            throw new IOException("Compressed frame needs a dictionary but none was named");
+                        }
+                        try {
+                            inflater.setDictionary(dictionary);
+                        } catch (IllegalArgumentException e) {
+                            throw new IOException("Compressed frame uses a different dictionary", e);
+                        }
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Compressed frame is truncated");
+                    }
+                }
+            }
+
+            handler.frame(buffer, inflated);
+
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed frame is corrupt", e);
+        } finally {
+            inflater.reset();
+            if (!INFLATERS.offer(inflater)) {
+                inflater.end();
+            }
+            // don't let one huge frame pin a huge buffer in the pool
+            if (buffer.length <= INITIAL_BUFFER_LENGTH * 4) {
+                BUFFERS.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Compress a frame, for senders (and tests) - the result is the body of a compressed frame.
+     *
+     * @param frame        frame bytes, type included
+     * @param offset       offset of the frame
+     * @param length       length of the frame
+     * @param dictionaryId preset dictionary to use
+     * @return dictionary id followed by the deflated frame
+     */
+    public static byte[] deflate(final byte[] frame, final int offset, final int length, final int dictionaryId) {
+
+        final byte[] dictionary = dictionary((byte) dictionaryId);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(frame, offset, length);
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 16);
+            out.write(dictionaryId);
+
+            final byte[] chunk = new byte[Math.max(256, Math.min(length, 64 * 1024))];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] dictionary(final byte id) {
+
+        switch (id) {
+            case NO_DICTIONARY:
+                return null;
+            case EVENT_DICTIONARY:
+                return EVENT_DICTIONARY_BYTES;
+            default:
+                throw new IllegalArgumentException("Unknown compression dictionary " + id);
+        }
+    }
+}
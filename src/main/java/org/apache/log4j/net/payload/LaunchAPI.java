@@ -7,6 +7,18 @@ import retrofit2.http.POST;
 import retrofit2.http.Query;
 
 public interface LaunchAPI {
+    /**
+     * @param compression frame compression the client accepts, or null for none - servers
+     *                    which don't support it ignore the parameter and send plain frames
+     */
     @GET("channel")
-    Call<ChannelResponse> launchChannel(@Query("channel") String code, @Query("password") String password);
+    Call<ChannelResponse> launchChannel(@Query("channel") String code, @Query("password") String password, @Query("compression") String compression);
+
+    /**
+     * Launch a connection carrying several channels, whose frames arrive routed by GUID.
+     *
+     * @param codes comma separated channels
+     */
+    @GET("channels")
+    Call<ChannelResponse> launchChannels(@Query("channels") String codes, @Query("password") String password, @Query("compression") String compression);
 }
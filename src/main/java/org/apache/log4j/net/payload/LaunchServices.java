@@ -0,0 +1,39 @@
+package org.apache.log4j.net.payload;
+
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates LaunchAPI clients.  All of them share one OkHttpClient, and so one connection pool
+ * and dispatcher, so reconnecting a session reuses a pooled connection to the launch API
+ * rather than building a new client (and handshake) every time.
+ */
+public final class LaunchServices {
+
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+        .connectTimeout(10, TimeUnit.SECONDS)
+        .readTimeout(30, TimeUnit.SECONDS)
+        .retryOnConnectionFailure(true)
+        .build();
+
+    private LaunchServices() {
+    }
+
+    /**
+     * @param baseUrl base URL of the launch API, ending with a slash
+     * @return a client for it - create one per receiver and reuse it for every session
+     */
+    public static LaunchAPI create(final String baseUrl) {
+
+        final Retrofit retrofit = new Retrofit.Builder()
+            .baseUrl(baseUrl)
+            .client(CLIENT)
+            .addConverterFactory(GsonConverterFactory.create())
+            .build();
+
+        return retrofit.create(LaunchAPI.class);
+    }
+}
@@ -8,6 +8,9 @@ public class LogEvent {
     public String level;
     public long time;
 
+    //optional, numbers events per channel so receivers can detect gaps
+    public Long sequence;
+
     public LogEvent() {
     }
 
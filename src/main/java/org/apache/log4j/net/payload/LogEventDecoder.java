@@ -0,0 +1,187 @@
+package org.apache.log4j.net.payload;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.logevents.Level;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the JSON form of a {@link LogEvent} straight from the bytes of a received frame.
+ * <p>
+ * The JSON is streamed from the frame at an offset, so the frame isn't copied and no
+ * intermediate String of the whole payload is built.  The level is matched against the
+ * parser's character buffer, and the time is converted with {@link Instant#ofEpochMilli}.
+ * The JsonFactory (and with it Jackson's buffer recycling) is shared, and each decoder
+ * reuses one ChainsawLoggingEventBuilder, so a decoder must only be used by one thread at
+ * a time - one per connection.
+ */
+public class LogEventDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final Level[] LEVELS = Level.values();
+
+    private final ChainsawLoggingEventBuilder builder = new ChainsawLoggingEventBuilder();
+    private final SequenceTracker sequenceTracker;
+
+    public LogEventDecoder() {
+        this(null);
+    }
+
+    /**
+     * @param sequenceTracker told the sequence number of each event which has one, may be null
+     */
+    public LogEventDecoder(final SequenceTracker sequenceTracker) {
+        this.sequenceTracker = sequenceTracker;
+    }
+
+    /**
+     * Decode one event.
+     *
+     * @param data   frame bytes
+     * @param offset offset of the JSON in the frame
+     * @param length length of the JSON
+     * @return the event
+     * @throws IOException if the JSON is malformed, or the level isn't known
+     */
+    public ChainsawLoggingEvent decode(final byte[] data, final int offset, final int length) throws IOException {
+
+        builder.clear();
+
+        long sequence = -1;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(data, offset, length)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a log event object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+                // field names are canonicalized by the parser, so this doesn't allocate
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+
+                switch (field) {
+                    case "message":
+                        builder.setMessage(parser.getValueAsString());
+                        break;
+                    case "name":
+                        builder.setLogger(parser.getValueAsString());
+                        break;
+                    case "threadName":
+                        builder.setThreadName(parser.getValueAsString());
+                        break;
+                    case "level":
+                        builder.setLevel(value == JsonToken.VALUE_NULL ? null : parseLevel(parser));
+                        break;
+                    case "time":
+                        builder.setTimestamp(Instant.ofEpochMilli(parser.getValueAsLong()));
+                        break;
+                    case "sequence":
+                        sequence = parser.getValueAsLong(-1);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        if (sequence >= 0 && sequenceTracker != null) {
+            sequenceTracker.sequence(sequence);
+        }
+
+        return builder.create();
+    }
+
+    /**
+     * Decode a batch frame: a little-endian int count of records, then each record as a
+     * little-endian int length followed by that many bytes of event JSON.
+     * <p>
+     * Events are added to <code>events</code> as they are decoded, so if a record can't be
+     * decoded the events before it are still available to the caller.
+     *
+     * @param data   frame bytes
+     * @param offset offset of the count in the frame
+     * @param length length of the batch
+     * @param events list the events are added to
+     * @throws IOException if the batch is truncated, or a record can't be decoded
+     */
+    public void decodeBatch(final byte[] data, final int offset, final int length, final List<ChainsawLoggingEvent> events) throws IOException {
+
+        final int end = offset + length;
+        int position = offset;
+
+        final int count = readInt(data, position, end);
+        position += 4;
+
+        if (events instanceof ArrayList) {
+            // the count comes off the wire, so only trust it as far as the frame could hold it
+            ((ArrayList<ChainsawLoggingEvent>) events).ensureCapacity(events.size() + Math.min(count, length / 4));
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            final int recordLength = readInt(data, position, end);
+            position += 4;
+
+            if (recordLength < 0 || recordLength > end - position) {
+                throw new EOFException("Batch record " + i + " of " + count + " is truncated");
+            }
+
+            events.add(decode(data, position, recordLength));
+            position += recordLength;
+        }
+    }
+
+    private static int readInt(final byte[] data, final int position, final int end) throws EOFException {
+
+        if (end - position < 4) {
+            throw new EOFException("Batch is truncated");
+        }
+
+        return (data[position] & 0xFF)
+            | (data[position + 1] & 0xFF) << 8
+            | (data[position + 2] & 0xFF) << 16
+            | (data[position + 3] & 0xFF) << 24;
+    }
+
+    private static Level parseLevel(final JsonParser parser) throws IOException {
+
+        final char[] chars = parser.getTextCharacters();
+        final int offset = parser.getTextOffset();
+        final int length = parser.getTextLength();
+
+        for (Level level : LEVELS) {
+            if (matches(level.name(), chars, offset, length)) {
+                return level;
+            }
+        }
+
+        throw new JsonParseException(parser, "Unknown level " + new String(chars, offset, length));
+    }
+
+    private static boolean matches(final String name, final char[] chars, final int offset, final int length) {
+
+        if (name.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
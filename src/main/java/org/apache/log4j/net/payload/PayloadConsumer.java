@@ -0,0 +1,11 @@
+package org.apache.log4j.net.payload;
+
+/**
+ * Receives the log event portion of a frame in place, without it being copied out of the
+ * frame.  The bytes are only valid for the duration of the call.
+ */
+@FunctionalInterface
+public interface PayloadConsumer {
+
+    void accept(byte[] data, int offset, int length);
+}
@@ -1,6 +1,5 @@
 package org.apache.log4j.net.payload;
 
-import okhttp3.OkHttpClient;
 import llc.berserkr.common.payload.auth.BaseAuthenticationProvider;
 import llc.berserkr.common.payload.client.AuthenticatingPayloadGateway;
 import llc.berserkr.common.payload.client.PayloadGateway;
@@ -13,8 +12,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import retrofit2.Call;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -25,6 +22,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession {
 
@@ -33,45 +31,108 @@ public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession
 
     private static final char BROADCAST = 'B';
 
+    //many events in one frame, see LogEventDecoder.decodeBatch for the layout
+    private static final char BATCH = 'M';
+
+    //a deflated frame of one of the other types, see FrameCompression
+    private static final char COMPRESSED = 'Z';
+
+    //a frame of one of the other types for one of several channels sharing the connection:
+    //a GUID length byte, the ASCII GUID, then the frame
+    private static final char ROUTED = 'R';
+
+    /**
+     * Base URL of the live payload proxy service for a host.
+     */
+    public static String defaultBaseUrl(final String host) {
+        return "https://" + host + "/chainsawchoker/";
+    }
+
     private final String host;
     private final String password;
-    private final Consumer<byte[]> payloadConsumer;
+    private final PayloadRoute route;
+    private final Function<String, PayloadRoute> router;
+    private final boolean compression;
+    private final boolean allowPlainTransport;
     private final Consumer<Void> flagback;
     private final String guid;
     private final LaunchAPI launchService;
+    private final ReconnectBackoff backoff;
+    private final PayloadReceiverMetrics metrics;
+    private volatile boolean receiving;
     private AuthenticatingPayloadGateway gateway;
-
+    private PlainFrameConnection plainConnection;
+
+    /**
+     * @param host          host the channel is served from
+     * @param guid          the channel, or a comma separated list of channels to receive
+     *                      over one connection when there is a router
+     * @param route         where frames which aren't routed go
+     * @param router        finds the route for the GUID of a routed frame (null to drop
+     *                      the frame), or null if this session is for a single channel
+     * @param launchService the receiver's launch API client, see {@link LaunchServices}
+     * @param allowPlainTransport whether a launch response may switch the channel to
+     *                      unauthenticated, unencrypted plain frames
+     * @param backoff       the receiver's backoff, applied before launching the channel
+     * @param metrics       the receiver's metrics
+     */
     public PayloadReceiverCleanupSession(
         final String host,
+        final LaunchAPI launchService,
         final String guid,
         final String password,
         final Consumer<Void> flagback,
-        final Consumer<byte []> payloadConsumer
+        final PayloadRoute route,
+        final Function<String, PayloadRoute> router,
+        final boolean compression,
+        final boolean allowPlainTransport,
+        final ReconnectBackoff backoff,
+        final PayloadReceiverMetrics metrics
     ) {
 
         this.guid = guid;
         this.host = host;
         this.password = password;
         this.flagback = flagback;
-        this.payloadConsumer = payloadConsumer;
+        this.route = route;
+        this.router = router;
+        this.compression = compression;
+        this.allowPlainTransport = allowPlainTransport;
+        this.launchService = launchService;
+        this.backoff = backoff;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void start() {
 
-        final OkHttpClient client = new OkHttpClient.Builder()
-            .build();
+        final long delay = backoff.nextDelayMillis();
 
-        final Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl("https://" + host + "/chainsawchoker/")
-                .client(client)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
+        if (delay > 0) {
 
-        this.launchService = retrofit.create(LaunchAPI.class);
+            logger.debug("waiting {}ms before reconnect attempt {} to channel {}", delay, backoff.getAttempt() - 1, guid);
 
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
 
+        try {
+            launch();
+        } catch (RuntimeException e) {
+            metrics.connectFailed();
+            throw e;
+        }
     }
-    @Override
-    public void start() {
 
-        final Call<ChannelResponse> call = launchService.launchChannel(guid, password);
+    private void launch() {
+
+        final Call<ChannelResponse> call = router == null
+            ? launchService.launchChannel(guid, password, compression ? FrameCompression.NEGOTIATION : null)
+            : launchService.launchChannels(guid, password, compression ? FrameCompression.NEGOTIATION : null);
 
         try {
 
@@ -81,6 +142,27 @@ public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession
 
                 final ChannelResponse channelResponse = executed.body();
 
+                logger.debug("channel {} on port {} transport {} compression {}", guid, channelResponse.getPort(), channelResponse.getTransport(), channelResponse.getCompression());
+
+                if (ChannelResponse.TRANSPORT_PLAIN.equals(channelResponse.getTransport())) {
+
+                    if (!allowPlainTransport) {
+                        throw new RuntimeException("channel " + guid + " offered the plain transport, which skips authentication and encryption and is not allowed");
+                    }
+
+                    logger.warn("channel {} from {} uses the plain transport, without authentication or encryption", guid, host);
+
+                    this.plainConnection = new PlainFrameConnection(
+                        host,
+                        channelResponse.getPort(),
+                        this::received,
+                        this::disconnected
+                    );
+                    plainConnection.connect();
+
+                    return;
+                }
+
                 this.gateway = new AuthenticatingPayloadGateway(
                     UUID.randomUUID().toString(),
                     new SocketClientConnection(host, channelResponse.getPort()),
@@ -93,24 +175,14 @@ public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession
                 );
                 gateway.addConnectionConsumer((connected -> {
                     if (!connected) {
-                        flagback.accept(null);
+                        disconnected();
                     }
                 }));
                 gateway.addAuthenticatedListener((listenerControl, authenticatedCommand) -> {
 
                     final byte[] data = authenticatedCommand.getTokenData().getData();
 
-                    char type = bytesToChar(new byte[]{data[0], data[1]});
-
-                    if (type == BROADCAST) {
-
-                        final byte[] logEventData = new byte[data.length - 2];
-
-                        System.arraycopy(data, 2, logEventData, 0, logEventData.length);
-
-                        payloadConsumer.accept(logEventData);
-
-                    }
+                    received(data, data.length);
 
                 });
 
@@ -136,6 +208,78 @@ public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession
 
     }
 
+    private void disconnected() {
+
+        metrics.disconnected();
+        flagback.accept(null);
+    }
+
+    private void received(final byte[] data, final int length) {
+
+        //the first frame proves the channel works, so stop backing off
+        if (!receiving) {
+            receiving = true;
+            backoff.reset();
+            metrics.resumed();
+        }
+
+        metrics.frameReceived(length);
+
+        dispatch(data, 0, length, route, true, router != null);
+    }
+
+    private void dispatch(final byte[] data, final int offset, final int length, final PayloadRoute target, final boolean allowCompressed, final boolean allowRouted) {
+
+        if (length < 2) {
+            logger.warn("dropping frame of {} bytes", length);
+            return;
+        }
+
+        char type = bytesToChar(data, offset);
+
+        if (type == BROADCAST) {
+
+            //hand the event over in place rather than copying it out of the frame
+            target.getPayloadConsumer().accept(data, offset + 2, length - 2);
+
+        }
+        else if (type == BATCH) {
+
+            target.getBatchConsumer().accept(data, offset + 2, length - 2);
+
+        }
+        else if (type == COMPRESSED && allowCompressed) {
+
+            try {
+                FrameCompression.inflate(data, offset + 2, length - 2, (frame, frameLength) -> dispatch(frame, 0, frameLength, target, false, allowRouted));
+            } catch (IOException e) {
+                logger.error("dropping compressed frame", e);
+            }
+
+        }
+        else if (type == ROUTED && allowRouted) {
+
+            final int guidLength = length > 2 ? data[offset + 2] & 0xFF : 0;
+
+            if (guidLength == 0 || 3 + guidLength > length) {
+                logger.warn("dropping routed frame with a bad GUID length {}", guidLength);
+                return;
+            }
+
+            final String routeGuid = new String(data, offset + 3, guidLength, StandardCharsets.US_ASCII);
+            final PayloadRoute routed = router.apply(routeGuid);
+
+            if (routed == null) {
+                logger.debug("dropping frame for unsubscribed channel {}", routeGuid);
+                return;
+            }
+
+            final int inner = 3 + guidLength;
+            dispatch(data, offset + inner, length - inner, routed, allowCompressed, false);
+
+        }
+    }
+
     @Override
     public void destroy() {
 
@@ -143,6 +287,11 @@ public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession
             this.gateway.disconnect();
             this.gateway = null;
         }
+
+        if(this.plainConnection != null) {
+            this.plainConnection.close();
+            this.plainConnection = null;
+        }
     }
 
     public static int bytesToInt(byte [] bytes) {
@@ -153,8 +302,13 @@ public class PayloadReceiverCleanupSession extends CleanupManager.CleanupSession
 
         if(bytes.length != 2) { throw new IllegalArgumentException("bytes must be 2 lenght " + bytes.length); }
 
-        final byte byte1 = bytes[0]; // Example: 'A' (most significant byte)
-        final byte byte2 = bytes[1]; // Example: (least significant byte for 'A' in little-endian UTF-16)
+        return bytesToChar(bytes, 0);
+    }
+
+    public static char bytesToChar(byte[] bytes, int offset) {
+
+        final byte byte1 = bytes[offset]; // Example: 'A' (most significant byte)
+        final byte byte2 = bytes[offset + 1]; // Example: (least significant byte for 'A' in little-endian UTF-16)
 
         // Combine the two bytes into a short, then cast to char
         // Assuming byte1 is the most significant byte and byte2 is the least significant byte
@@ -0,0 +1,155 @@
+package org.apache.log4j.net.payload;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a payload receiver's connection, shared by all of its sessions.
+ * <p>
+ * The reconnect time is measured from the connection being lost (or a connection attempt
+ * failing) to the first frame received on the next connection, so it covers the backoff, the
+ * channel launch request and the gateway handshake - the time the receiver was blind.
+ * <p>
+ * The throttled time is the time spent not reading the connection because too many of the
+ * events already read were waiting to be delivered.
+ */
+public class PayloadReceiverMetrics {
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder reconnectNanos = new LongAdder();
+    private final AtomicLong maxReconnectNanos = new AtomicLong();
+    private final AtomicLong lastReconnectNanos = new AtomicLong();
+    private final LongAdder sequenceGaps = new LongAdder();
+    private final LongAdder eventsLost = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+
+    // when the receiver went blind, 0 while connected
+    private final AtomicLong blindSince = new AtomicLong();
+
+    public void frameReceived(final int length) {
+        frames.increment();
+        bytes.add(length);
+    }
+
+    public void eventsReceived(final int count) {
+        events.add(count);
+    }
+
+    public void connectFailed() {
+        connectFailures.increment();
+        blind();
+    }
+
+    public void disconnected() {
+        disconnects.increment();
+        blind();
+    }
+
+    /**
+     * The first frame arrived on a new connection.
+     */
+    public void resumed() {
+        final long since = blindSince.getAndSet(0);
+        if (since != 0) {
+            final long nanos = Math.max(1, System.nanoTime() - since);
+            reconnects.increment();
+            reconnectNanos.add(nanos);
+            lastReconnectNanos.set(nanos);
+            maxReconnectNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public void sequenceGap(final long lost) {
+        sequenceGaps.increment();
+        eventsLost.add(lost);
+    }
+
+    /**
+     * Reading stopped for a while to let delivery catch up.
+     */
+    public void throttled(final long nanos) {
+        if (nanos > 0) {
+            throttledNanos.add(nanos);
+        }
+    }
+
+    private void blind() {
+        blindSince.compareAndSet(0, System.nanoTime());
+    }
+
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    public long getConnectFailures() {
+        return connectFailures.sum();
+    }
+
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    public long getTotalReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(reconnectNanos.sum());
+    }
+
+    public long getLastReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastReconnectNanos.get());
+    }
+
+    public long getMaxReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxReconnectNanos.get());
+    }
+
+    public long getSequenceGaps() {
+        return sequenceGaps.sum();
+    }
+
+    public long getEventsLost() {
+        return eventsLost.sum();
+    }
+
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum());
+    }
+
+    /**
+     * @return true while disconnected or reconnecting
+     */
+    public boolean isBlind() {
+        return blindSince.get() != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "frames=" + getFrames()
+            + " bytes=" + getBytes()
+            + " events=" + getEvents()
+            + " connectFailures=" + getConnectFailures()
+            + " disconnects=" + getDisconnects()
+            + " reconnects=" + getReconnects()
+            + " lastReconnectMs=" + getLastReconnectMillis()
+            + " maxReconnectMs=" + getMaxReconnectMillis()
+            + " sequenceGaps=" + getSequenceGaps()
+            + " eventsLost=" + getEventsLost()
+            + " throttledMs=" + getThrottledMillis();
+    }
+}
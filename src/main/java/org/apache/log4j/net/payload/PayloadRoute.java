@@ -0,0 +1,23 @@
+package org.apache.log4j.net.payload;
+
+/**
+ * Where a session delivers the events of one channel - single events and batches.
+ */
+public class PayloadRoute {
+
+    private final PayloadConsumer payloadConsumer;
+    private final PayloadConsumer batchConsumer;
+
+    public PayloadRoute(final PayloadConsumer payloadConsumer, final PayloadConsumer batchConsumer) {
+        this.payloadConsumer = payloadConsumer;
+        this.batchConsumer = batchConsumer;
+    }
+
+    public PayloadConsumer getPayloadConsumer() {
+        return payloadConsumer;
+    }
+
+    public PayloadConsumer getBatchConsumer() {
+        return batchConsumer;
+    }
+}
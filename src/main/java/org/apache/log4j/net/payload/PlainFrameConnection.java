@@ -0,0 +1,119 @@
+package org.apache.log4j.net.payload;
+
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Reads frames from a plain TCP connection, for channels served without the payload gateway
+ * (a local stand-in server for example).  Each frame is a big-endian int length followed by
+ * the frame itself - the same two byte type and body the gateway delivers.
+ * <p>
+ * Frames are read into one reused buffer on a thread of the shared receiver runtime and handed to the handler in
+ * place, so they are only valid for the duration of the call.
+ */
+public class PlainFrameConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlainFrameConnection.class);
+
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final ThreadLocal<Boolean> READER = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final String host;
+    private final int port;
+    private final FrameCompression.FrameHandler handler;
+    private final Runnable disconnected;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    /**
+     * @param host         host to connect to
+     * @param port         port to connect to
+     * @param handler      receives each frame
+     * @param disconnected run once if the connection drops, but not after {@link #close()}
+     */
+    public PlainFrameConnection(final String host, final int port, final FrameCompression.FrameHandler handler, final Runnable disconnected) {
+        this.host = host;
+        this.port = port;
+        this.handler = handler;
+        this.disconnected = disconnected;
+    }
+
+    public void connect() throws IOException {
+
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+
+        ReceiverRuntime.getShared().runIo("Chainsaw-PlainFrameReader-" + host + ":" + port, this::read);
+    }
+
+    public void close() {
+
+        closed = true;
+
+        final Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // ignore, we're done with it
+            }
+        }
+    }
+
+    /**
+     * @return true if called on the thread reading a plain connection, which only that
+     * connection depends on, so may be held back while the receiver catches up
+     */
+    public static boolean isReaderThread() {
+        return READER.get();
+    }
+
+    private void read() {
+
+        READER.set(Boolean.TRUE);
+
+        byte[] buffer = new byte[8192];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+
+            while (!closed) {
+
+                final int length = in.readInt();
+
+                if (length < 2 || length > MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+
+                if (length > buffer.length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+
+                in.readFully(buffer, 0, length);
+
+                handler.frame(buffer, length);
+            }
+
+        } catch (EOFException e) {
+            logger.debug("{}:{} closed the connection", host, port);
+        } catch (IOException e) {
+            if (!closed) {
+                logger.warn("lost connection to {}:{}", host, port, e);
+            }
+        } finally {
+            READER.remove();
+            if (!closed) {
+                closed = true;
+                disconnected.run();
+            }
+        }
+    }
+}
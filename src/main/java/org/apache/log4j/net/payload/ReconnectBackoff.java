@@ -0,0 +1,57 @@
+package org.apache.log4j.net.payload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Jittered exponential backoff between payload channel connection attempts.
+ * <p>
+ * The first attempt is immediate.  Each attempt after that waits a random time between zero
+ * and a ceiling which doubles per attempt up to a maximum ("full jitter"), so receivers which
+ * lost their connections together don't reconnect together.  The backoff is reset once a
+ * connection delivers a frame, rather than when it connects, so a server which accepts and
+ * then drops connections still gets backed off from.
+ */
+public class ReconnectBackoff {
+
+    public static final long DEFAULT_BASE_MILLIS = 250;
+    public static final long DEFAULT_MAX_MILLIS = 30_000;
+
+    private final long baseMillis;
+    private final long maxMillis;
+    private int attempt;
+
+    public ReconnectBackoff() {
+        this(DEFAULT_BASE_MILLIS, DEFAULT_MAX_MILLIS);
+    }
+
+    public ReconnectBackoff(final long baseMillis, final long maxMillis) {
+        if (baseMillis < 1 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Invalid backoff " + baseMillis + "-" + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * @return how long to wait before the next attempt, counting it as made
+     */
+    public synchronized long nextDelayMillis() {
+
+        if (attempt == 0) {
+            attempt++;
+            return 0;
+        }
+
+        final long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempt - 1, 30));
+        attempt++;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public synchronized void reset() {
+        attempt = 0;
+    }
+
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+}
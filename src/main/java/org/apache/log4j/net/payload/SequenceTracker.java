@@ -0,0 +1,48 @@
+package org.apache.log4j.net.payload;
+
+/**
+ * Detects events missing from a payload channel by their sequence numbers.
+ * <p>
+ * Senders which number their events let the receiver see how many were lost to a reconnect
+ * or a dropped frame.  A sequence lower than expected (a duplicate, or a restarted sender) just
+ * resynchronizes the tracker.  Events without a sequence number are not tracked.
+ */
+public class SequenceTracker {
+
+    /**
+     * Told about each gap in the sequence.
+     */
+    @FunctionalInterface
+    public interface GapListener {
+
+        /**
+         * @param expected the first missing sequence number
+         * @param received the sequence number received instead
+         */
+        void gap(long expected, long received);
+    }
+
+    private final GapListener listener;
+    private long expected = -1;
+
+    public SequenceTracker(final GapListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Note an event's sequence number.
+     */
+    public void sequence(final long sequence) {
+
+        final long missingFrom;
+
+        synchronized (this) {
+            missingFrom = expected >= 0 && sequence > expected ? expected : -1;
+            expected = sequence + 1;
+        }
+
+        if (missingFrom >= 0) {
+            listener.gap(missingFrom, sequence);
+        }
+    }
+}
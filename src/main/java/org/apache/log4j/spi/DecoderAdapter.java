@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.spi;
+
+import java.nio.CharBuffer;
+import java.util.Map;
+import java.util.Vector;
+import java.util.function.Consumer;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+
+/**
+ * Lets a {@link Decoder} be used as a {@link StreamingDecoder}, by decoding the bytes to text
+ * and passing it to {@link Decoder#decodeEvents(String)}.  The decoder's own handling of
+ * events split across calls is relied on, and can't be reset.
+ */
+public class DecoderAdapter extends TextStreamDecoder {
+    private final Decoder decoder;
+
+    public DecoderAdapter(Decoder decoder) {
+        this.decoder = decoder;
+    }
+
+    public Decoder getDecoder() {
+        return decoder;
+    }
+
+    @Override
+    protected void decodeText(CharBuffer text, Consumer<ChainsawLoggingEvent> sink) {
+        Vector<ChainsawLoggingEvent> events = decoder.decodeEvents(text.toString());
+        if (events != null) {
+            events.forEach(sink);
+        }
+    }
+
+    @Override
+    protected void resetText() {
+        // nothing to reset through the Decoder interface
+    }
+
+    @Override
+    public void setAdditionalProperties(Map additionalProperties) {
+        decoder.setAdditionalProperties(additionalProperties);
+    }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import org.apache.log4j.chainsaw.DerivedColumns;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.rule.InFixToPostFix;
 
@@ -49,7 +50,8 @@ import org.apache.log4j.rule.InFixToPostFix;
  * TIMESTAMP     timestamp                                 Long
  * THREAD        thread                                    String
  * PROP.keyName  entry in the Property hashtable           String
- *               mapped to the key [keyName]
+ *               mapped to the key [keyName], or the value
+ *               of the derived column [keyName]
  *
  * NOTE:  the values for the 'keyName' portion of the MDC and PROP mappings must
  * be an exact match to the key in the hashTable (case sensitive).
@@ -237,6 +239,13 @@ public final class LoggingEventFieldResolver {
                 }
             }
 
+            // derived columns (millisdelta etc) aren't stored on the event - they are computed
+            // from the row the event is being evaluated at
+            Object derived = DerivedColumns.resolve(realFieldName, event);
+            if (derived != null) {
+                return derived.toString();
+            }
+
             return EMPTY_STRING;
         } else {
             org.apache.log4j.chainsaw.logevents.LocationInfo info = event.m_locationInfo;
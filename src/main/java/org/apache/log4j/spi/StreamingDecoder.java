@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
+
+/**
+ * Reconstructs LoggingEvents from bytes as they arrive, passing each event to a sink as soon
+ * as it is complete.
+ * <p>
+ * Input may be split anywhere, even part way through a character; whatever can't be decoded
+ * yet is held by the decoder until the rest arrives.  A decoder is therefore only used for one
+ * stream at a time.
+ * <p>
+ * Implementations of the older {@link Decoder} interface can be used through {@link #of(Decoder)}.
+ *
+ * @see TextStreamDecoder
+ */
+public interface StreamingDecoder {
+    /**
+     * Decode the remaining bytes of the buffer, all of which are consumed.
+     *
+     * @param input   next bytes of the stream
+     * @param charset encoding of the stream
+     * @param sink    receives each event completed by these bytes
+     * @return the number of bytes consumed
+     */
+    int decode(ByteBuffer input, Charset charset, Consumer<ChainsawLoggingEvent> sink);
+
+    /**
+     * Decode the stream up to its end, without closing it.  An event incomplete at the end
+     * of the stream is held, so a stream which is still being written may be read again later.
+     *
+     * @param input   the stream
+     * @param charset encoding of the stream
+     * @param sink    receives each event as it is completed
+     * @return the number of bytes consumed
+     * @throws IOException if the stream can't be read
+     */
+    long decode(InputStream input, Charset charset, Consumer<ChainsawLoggingEvent> sink) throws IOException;
+
+    /**
+     * Forget any incomplete input, ready to decode a new stream.
+     */
+    void reset();
+
+    /**
+     * Sets additional properties.
+     *
+     * @param additionalProperties map of additional properties.
+     */
+    void setAdditionalProperties(Map additionalProperties);
+
+    /**
+     * Give the decoder the receiver's filters, to evaluate on its input so that records the
+     * receiver would drop needn't be decoded.  Decoders which can't evaluate them on their
+     * input ignore them, and the receiver applies them once the events are built.
+     *
+     * @param filter the receiver's filters
+     */
+    default void setPushdownFilter(PushdownFilter filter) {}
+
+    /**
+     * @param decoder a decoder
+     * @return the decoder itself if it is a StreamingDecoder, otherwise an adapter feeding it text
+     */
+    static StreamingDecoder of(Decoder decoder) {
+        if (decoder instanceof StreamingDecoder) {
+            return (StreamingDecoder) decoder;
+        }
+        return new DecoderAdapter(decoder);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.function.Consumer;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+
+/**
+ * Base of the StreamingDecoders for text formats.  Bytes are decoded into a reused character
+ * buffer without a String per read being built, and a character split across reads is carried
+ * over to the next read rather than being corrupted.
+ */
+public abstract class TextStreamDecoder implements StreamingDecoder {
+    /**
+     * Bytes read at a time when decoding a stream.
+     */
+    private static final int READ_SIZE = 16 * 1024;
+
+    private final ByteBuffer carry = ByteBuffer.allocate(8);
+    private CharsetDecoder charsetDecoder;
+    private CharBuffer chars = CharBuffer.allocate(READ_SIZE);
+
+    /**
+     * Decode the next characters of the stream.
+     *
+     * @param text next characters, only valid for the duration of the call
+     * @param sink receives each event completed by these characters
+     */
+    protected abstract void decodeText(CharBuffer text, Consumer<ChainsawLoggingEvent> sink);
+
+    /**
+     * Forget any incomplete text.
+     */
+    protected abstract void resetText();
+
+    @Override
+    public int decode(ByteBuffer input, Charset charset, Consumer<ChainsawLoggingEvent> sink) {
+        int consumed = input.remaining();
+        CharBuffer text = decodeChars(input, charset);
+        if (text.hasRemaining()) {
+            decodeText(text, sink);
+        }
+        return consumed;
+    }
+
+    /**
+     * Decode all of the bytes into characters, carrying a character split across reads over to
+     * the next read.
+     *
+     * @param input   bytes to decode, all of which are consumed
+     * @param charset charset of the bytes
+     * @return the characters, only valid until the next call
+     */
+    protected CharBuffer decodeChars(ByteBuffer input, Charset charset) {
+        int consumed = input.remaining();
+        CharsetDecoder cd = charsetDecoder(charset);
+
+        if (chars.capacity() < consumed + carry.capacity()) {
+            chars = CharBuffer.allocate(consumed + carry.capacity());
+        }
+        chars.clear();
+
+        // finish a character split across the previous read first
+        while (carry.position() > 0 && input.hasRemaining()) {
+            carry.put(input.get());
+            carry.flip();
+            cd.decode(carry, chars, false);
+            carry.compact();
+        }
+        cd.decode(input, chars, false);
+        carry.put(input);
+        chars.flip();
+        return chars;
+    }
+
+    @Override
+    public long decode(InputStream input, Charset charset, Consumer<ChainsawLoggingEvent> sink) throws IOException {
+        byte[] buffer = new byte[READ_SIZE];
+        long consumed = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            consumed += decode(ByteBuffer.wrap(buffer, 0, read), charset, sink);
+        }
+        return consumed;
+    }
+
+    @Override
+    public void reset() {
+        carry.clear();
+        if (charsetDecoder != null) {
+            charsetDecoder.reset();
+        }
+        resetText();
+    }
+
+    private CharsetDecoder charsetDecoder(Charset charset) {
+        if (charsetDecoder == null || !charsetDecoder.charset().equals(charset)) {
+            charsetDecoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            carry.clear();
+        }
+        return charsetDecoder;
+    }
+}
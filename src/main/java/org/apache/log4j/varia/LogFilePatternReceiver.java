@@ -33,6 +33,7 @@ import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
 import org.apache.log4j.chainsaw.logevents.Level;
 import org.apache.log4j.chainsaw.logevents.LocationInfo;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
 import org.apache.log4j.helpers.Constants;
 import org.apache.log4j.rule.ExpressionRule;
 import org.apache.log4j.rule.Rule;
@@ -310,8 +311,8 @@ public class LogFilePatternReceiver extends ChainsawReceiverSkeleton {
 
     /**
      * When true, this property uses the current Thread to perform the import,
-     * otherwise when false (the default), a new Thread is created and started to manage
-     * the import.
+     * otherwise when false (the default), the import runs on a thread of the shared receiver
+     * runtime.
      *
      * @return
      */
@@ -519,6 +520,13 @@ public class LogFilePatternReceiver extends ChainsawReceiverSkeleton {
         String readLine;
         // if newlines are provided in the logFormat - (NL) - combine the lines prior to matching
         while ((readLine = bufferedReader.readLine()) != null) {
+            try {
+                // reading stops here while a subscriber catches up
+                awaitDemand();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for subscribers");
+            }
             StringBuilder line = new StringBuilder(readLine);
             // there is already one line (read above, start i at 1
             for (int i = 1; i < lineCount; i++) {
@@ -1086,7 +1094,7 @@ public class LogFilePatternReceiver extends ChainsawReceiverSkeleton {
         if (useCurrentThread) {
             runnable.run();
         } else {
-            new Thread(runnable, "LogFilePatternReceiver-" + getName()).start();
+            ReceiverRuntime.getShared().runIo("LogFilePatternReceiver-" + getName(), runnable);
         }
     }
 }
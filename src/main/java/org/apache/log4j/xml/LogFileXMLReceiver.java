@@ -20,13 +20,15 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collection;
+import java.nio.charset.Charset;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
 import org.apache.log4j.chainsaw.receiver.ChainsawReceiverSkeleton;
+import org.apache.log4j.chainsaw.receiver.ReceiverRuntime;
 import org.apache.log4j.helpers.Constants;
 import org.apache.log4j.rule.ExpressionRule;
 import org.apache.log4j.rule.Rule;
 import org.apache.log4j.spi.Decoder;
+import org.apache.log4j.spi.StreamingDecoder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -64,8 +66,8 @@ public class LogFileXMLReceiver extends ChainsawReceiverSkeleton {
     private String decoder = "org.apache.log4j.xml.XMLDecoder";
     private boolean tailing = false;
 
-    private Decoder decoderInstance;
-    private Reader reader;
+    private StreamingDecoder decoderInstance;
+    private InputStream inputStream;
     private static final String FILE_KEY = "file";
     private String host;
     private String path;
@@ -145,25 +147,21 @@ public class LogFileXMLReceiver extends ChainsawReceiverSkeleton {
      */
     public void shutdown() {
         try {
-            if (reader != null) {
-                reader.close();
-                reader = null;
+            if (inputStream != null) {
+                inputStream.close();
+                inputStream = null;
             }
         } catch (IOException ioe) {
             ioe.printStackTrace();
         }
     }
 
-    private void process(Reader unbufferedReader) throws IOException {
-        BufferedReader bufferedReader = new BufferedReader(unbufferedReader);
-        char[] content = new char[10000];
+    private void process(InputStream in) throws IOException {
         logger.debug("processing starting: {}", fileURL);
-        int length;
         do {
             logger.debug("in do loop-about to process");
-            while ((length = bufferedReader.read(content)) > -1) {
-                processEvents(decoderInstance.decodeEvents(String.valueOf(content, 0, length)));
-            }
+            // an event still being written when the end is reached is completed by the next pass
+            decoderInstance.decode(in, Charset.defaultCharset(), this::processEvent);
             if (tailing) {
                 try {
                     Thread.sleep(5000);
@@ -177,27 +175,27 @@ public class LogFileXMLReceiver extends ChainsawReceiverSkeleton {
         shutdown();
     }
 
-    private void processEvents(Collection<ChainsawLoggingEvent> chainsawLoggingEvents) {
-        if (chainsawLoggingEvents == null) {
-            return;
+    private void processEvent(ChainsawLoggingEvent event) {
+        try {
+            // reading stops here while a subscriber catches up
+            awaitDemand();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-
-        for (ChainsawLoggingEvent event : chainsawLoggingEvents) {
-            if (passesExpression(event)) {
-                if (event.getProperty(Constants.HOSTNAME_KEY) != null) {
-                    event.setProperty(Constants.HOSTNAME_KEY, host);
-                }
-                if (event.getProperty(Constants.APPLICATION_KEY) != null) {
-                    event.setProperty(Constants.APPLICATION_KEY, path);
-                }
-                append(event);
+        if (passesExpression(event)) {
+            if (event.getProperty(Constants.HOSTNAME_KEY) != null) {
+                event.setProperty(Constants.HOSTNAME_KEY, host);
+            }
+            if (event.getProperty(Constants.APPLICATION_KEY) != null) {
+                event.setProperty(Constants.APPLICATION_KEY, path);
             }
+            append(event);
         }
     }
 
     /**
      * When true, this property uses the current Thread to perform the import, otherwise when false
-     * (the default), a new Thread is created and started to manage the import.
+     * (the default), the import runs on a thread of the shared receiver runtime.
      *
      * @return
      */
@@ -247,15 +245,16 @@ public class LogFileXMLReceiver extends ChainsawReceiverSkeleton {
                         c = Class.forName(decoder);
                         Object o = c.newInstance();
                         if (o instanceof Decoder) {
-                            decoderInstance = (Decoder) o;
+                            decoderInstance = StreamingDecoder.of((Decoder) o);
+                            decoderInstance.setPushdownFilter(getPushdownFilter());
                         }
                     } catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
                         logger.error(e, e);
                     }
 
                     try {
-                        reader = new InputStreamReader(new URL(getFileURL()).openStream());
-                        process(reader);
+                        inputStream = new URL(getFileURL()).openStream();
+                        process(inputStream);
                     } catch (FileNotFoundException fnfe) {
                         logger.info("file not available");
                     } catch (IOException ioe) {
@@ -268,8 +267,7 @@ public class LogFileXMLReceiver extends ChainsawReceiverSkeleton {
         if (useCurrentThread) {
             runnable.run();
         } else {
-            Thread thread = new Thread(runnable, "LogFileXMLReceiver-" + getName());
-            thread.start();
+            ReceiverRuntime.getShared().runIo("LogFileXMLReceiver-" + getName(), runnable);
         }
     }
 }
@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.xml;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.awt.Component;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.zip.ZipInputStream;
+import javax.swing.ProgressMonitorInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.receiver.PushdownFilter;
+import org.apache.log4j.spi.Decoder;
+import org.apache.log4j.spi.TextStreamDecoder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Base of the decoders reading events from a stream of XML records, such as log4j's
+ * <code>log4j:event</code> or java.util.logging's <code>record</code>.
+ * <p>
+ * Input may arrive in pieces of any size.  Text after the last complete record is held until
+ * the rest of the record arrives, and the complete records are read with a StAX pull parser,
+ * each event being passed on as soon as its record closes.  No DOM is built, and the text held
+ * is never more than one record plus the latest piece, however the input is split.
+ * <p>
+ * Anything before the first record, such as an XML declaration, DOCTYPE or the document's root
+ * element, is skipped.
+ * <p>
+ * Both the {@link Decoder} and the byte oriented {@link org.apache.log4j.spi.StreamingDecoder}
+ * interfaces are implemented.  Splitting the input into records and reading them can also be
+ * done separately, with {@link #takeRecords(ByteBuffer, Charset)} and
+ * {@link #decodeRecords(String, Consumer)}, so that records split from one stream can be read on
+ * several threads, each with a decoder of its own.
+ */
+public abstract class StreamingXMLDecoder extends TextStreamDecoder implements Decoder {
+    private static final Logger logger = LogManager.getLogger(StreamingXMLDecoder.class);
+
+    private final XMLInputFactory inputFactory;
+    private final String recordName;
+    private final String recordStart;
+    private final String recordEnd;
+    private final String rootStart;
+    private final String rootEnd;
+
+    /**
+     * Text received after the last complete record.
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * Additional properties.
+     */
+    protected Map additionalProperties = new HashMap();
+    /**
+     * Owner.
+     */
+    protected Component owner = null;
+
+    protected final ChainsawLoggingEventBuilder builder = new ChainsawLoggingEventBuilder();
+
+    /**
+     * The receiver's filters, or null.
+     */
+    protected PushdownFilter pushdownFilter;
+
+    /**
+     * @param recordElement qualified name of the element holding each event
+     * @param rootStart     start tag records are read within, declaring any namespaces they use
+     * @param rootEnd       end tag matching rootStart
+     */
+    protected StreamingXMLDecoder(String recordElement, String rootStart, String rootEnd) {
+        this.recordName = recordElement.substring(recordElement.indexOf(':') + 1);
+        this.recordStart = "<" + recordElement;
+        this.recordEnd = "</" + recordElement + ">";
+        this.rootStart = rootStart;
+        this.rootEnd = rootEnd;
+
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Sets an additionalProperty map, where each Key/Value pair is
+     * automatically added to each LoggingEvent as it is decoded.
+     * <p>
+     * This is useful, say, to include the source file name of the Logging events
+     *
+     * @param properties additional properties
+     */
+    public void setAdditionalProperties(final Map properties) {
+        this.additionalProperties = properties;
+    }
+
+    @Override
+    public void setPushdownFilter(final PushdownFilter filter) {
+        this.pushdownFilter = filter;
+    }
+
+    /**
+     * Read one record, starting at its start element and finishing at its end element.  A
+     * record the {@link #pushdownFilter} drops may be skipped as soon as that is known.
+     *
+     * @param reader reader positioned at the start element of the record
+     * @return the event, or null if the record was dropped
+     * @throws XMLStreamException if the record isn't well formed
+     */
+    protected abstract ChainsawLoggingEvent readRecord(XMLStreamReader reader) throws XMLStreamException;
+
+    /**
+     * Decodes a File into a Vector of LoggingEvents.
+     *
+     * @param url the url of a file containing events to decode
+     * @return Vector of LoggingEvents
+     * @throws IOException if IO error during processing.
+     */
+    @SuppressFBWarnings // TODO: loading files like this is dangerous - at least in web. see if we can do better
+    public Vector<ChainsawLoggingEvent> decode(final URL url) throws IOException {
+        boolean isZipFile = url.getPath().toLowerCase().endsWith(".zip");
+        InputStream inputStream;
+        if (isZipFile) {
+            inputStream = new ZipInputStream(url.openStream());
+            // move stream to next entry so we can read it
+            ((ZipInputStream) inputStream).getNextEntry();
+        } else {
+            inputStream = url.openStream();
+        }
+        if (owner != null) {
+            inputStream = new ProgressMonitorInputStream(owner, "Loading " + url, inputStream);
+        }
+
+        Vector<ChainsawLoggingEvent> v = new Vector<>();
+        try (InputStream in = inputStream) {
+            decode(in, v::add);
+        }
+        return v;
+    }
+
+    /**
+     * Decodes every event in a stream, passing each on as soon as its record has been read.
+     * The stream is not closed.
+     *
+     * @param in   UTF-8 encoded events
+     * @param sink receives each event
+     * @throws IOException if the stream can't be read
+     */
+    public void decode(final InputStream in, final Consumer<ChainsawLoggingEvent> sink) throws IOException {
+        try {
+            decode(in, StandardCharsets.UTF_8, sink);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Decodes a String representing a number of events into a
+     * Vector of LoggingEvents.
+     *
+     * @param document to decode events from
+     * @return Vector of LoggingEvents, or null if no record was completed
+     */
+    public Vector<ChainsawLoggingEvent> decodeEvents(final String document) {
+        if (document == null) {
+            return null;
+        }
+        Vector<ChainsawLoggingEvent> events = new Vector<>();
+        decodeEvents(document, events::add);
+        return events.isEmpty() ? null : events;
+    }
+
+    /**
+     * Decodes the next piece of the input, passing on the event of each record it completes.
+     * The end of the piece may be part way through a record, which is then completed by the
+     * following pieces.
+     *
+     * @param text next piece of the input
+     * @param sink receives each event
+     * @return the number of events decoded
+     */
+    public int decodeEvents(final CharSequence text, final Consumer<ChainsawLoggingEvent> sink) {
+        int lastEnd = append(text);
+        if (lastEnd == -1) {
+            return 0;
+        }
+
+        int count = parse(pending, 0, lastEnd, sink);
+        pending.delete(0, lastEnd);
+        return count;
+    }
+
+    /**
+     * Decodes the next piece of a byte stream, taking the text of the records it completes
+     * without reading them.  The text can be read by {@link #decodeRecords(String, Consumer)} on
+     * any decoder of the same class.
+     *
+     * @param input   next piece of the input, all of which is consumed
+     * @param charset charset of the input
+     * @return the complete records, or null if the piece completed none
+     */
+    public String takeRecords(final ByteBuffer input, final Charset charset) {
+        int lastEnd = append(decodeChars(input, charset));
+        if (lastEnd == -1) {
+            return null;
+        }
+
+        int first = indexOfRecord(pending, 0, lastEnd);
+        String records = first == -1 ? null : pending.substring(first, lastEnd);
+        pending.delete(0, lastEnd);
+        return records;
+    }
+
+    /**
+     * Reads complete records taken by {@link #takeRecords(ByteBuffer, Charset)}.  Text held from
+     * earlier pieces is unaffected.
+     *
+     * @param records text of one or more complete records
+     * @param sink    receives each event
+     * @return the number of events decoded
+     */
+    public int decodeRecords(final String records, final Consumer<ChainsawLoggingEvent> sink) {
+        return read(records, sink);
+    }
+
+    @Override
+    protected void decodeText(final CharBuffer text, final Consumer<ChainsawLoggingEvent> sink) {
+        decodeEvents(text, sink);
+    }
+
+    @Override
+    protected void resetText() {
+        pending.setLength(0);
+    }
+
+    /**
+     * Converts the string data into an event.
+     *
+     * @param data XML fragment
+     * @return the first event of the fragment, or null
+     */
+    public ChainsawLoggingEvent decode(final String data) {
+        if (data == null) {
+            return null;
+        }
+        ChainsawLoggingEvent[] first = new ChainsawLoggingEvent[1];
+        parse(new StringBuilder(data), 0, data.length(), event -> {
+            if (first[0] == null) {
+                first[0] = event;
+            }
+        });
+        return first[0];
+    }
+
+    /**
+     * Put the additional properties in an event's properties, overriding properties that
+     * already exist.
+     *
+     * @param properties the event's properties, may be null
+     * @return the properties, or null if there are none
+     */
+    protected Map<String, String> addAdditionalProperties(Map<String, String> properties) {
+        if (additionalProperties.isEmpty()) {
+            return properties;
+        }
+        Map<String, String> result = properties == null ? new HashMap<>() : properties;
+        for (Object o : additionalProperties.entrySet()) {
+            Map.Entry e = (Map.Entry) o;
+            result.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Skip the rest of the current element, including its children.
+     *
+     * @param reader reader positioned at the start element
+     */
+    protected static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Hold the next piece of text.
+     *
+     * @return the end of the last complete record held, or -1 if none is complete
+     */
+    private int append(CharSequence text) {
+        // only the new text and the end of the held text can hold a new record end
+        int from = Math.max(0, pending.length() - recordEnd.length() + 1);
+        if (text instanceof CharBuffer && ((CharBuffer) text).hasArray()) {
+            CharBuffer buffer = (CharBuffer) text;
+            pending.append(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            pending.append(text);
+        }
+
+        int lastEnd = -1;
+        for (int i = pending.indexOf(recordEnd, from); i != -1; i = pending.indexOf(recordEnd, i + recordEnd.length())) {
+            lastEnd = i + recordEnd.length();
+        }
+
+        if (lastEnd == -1) {
+            discardBeforeRecord();
+        }
+        return lastEnd;
+    }
+
+    /**
+     * Parse the complete records within [start, end) of the text.
+     */
+    private int parse(StringBuilder text, int start, int end, Consumer<ChainsawLoggingEvent> sink) {
+        int first = indexOfRecord(text, start, end);
+        if (first == -1) {
+            return 0;
+        }
+        return read(text.substring(first, end), sink);
+    }
+
+    /**
+     * Read complete records, starting with the first record's start tag.
+     */
+    private int read(String text, Consumer<ChainsawLoggingEvent> sink) {
+        String records = rootStart + text + rootEnd;
+        int count = 0;
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(new StringReader(records));
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && recordName.equals(reader.getLocalName())) {
+                    try {
+                        ChainsawLoggingEvent event = readRecord(reader);
+                        if (event != null) {
+                            sink.accept(event);
+                            count++;
+                        }
+                    } catch (RuntimeException e) {
+                        // a bad value in one record, the next record can still be read
+                        logger.warn("Unable to decode record", e);
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            logger.error(e, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing to release
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the index of the first record start tag in [start, end) of the text, or -1
+     */
+    private int indexOfRecord(StringBuilder text, int start, int end) {
+        int i = text.indexOf(recordStart, start);
+        while (i != -1 && i + recordStart.length() < end) {
+            // the name must not just be the start of a longer one, log4j:eventSet for instance
+            char next = text.charAt(i + recordStart.length());
+            if (next == '>' || next == '/' || Character.isWhitespace(next)) {
+                return i;
+            }
+            i = text.indexOf(recordStart, i + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Nothing before the first record is needed, so don't hold on to it while waiting for the
+     * record to complete.
+     */
+    private void discardBeforeRecord() {
+        int first = indexOfRecord(pending, 0, pending.length());
+        if (first > 0) {
+            pending.delete(0, first);
+        } else if (first == -1 && pending.length() > recordStart.length()) {
+            // keep enough to find a start tag split across pieces
+            pending.delete(0, pending.length() - recordStart.length());
+        }
+    }
+}
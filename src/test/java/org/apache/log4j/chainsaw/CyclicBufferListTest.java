@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for CyclicBufferList.
+ */
+public class CyclicBufferListTest {
+
+    @Test
+    public void testWrapDropsOldest() {
+        CyclicBufferList list = new CyclicBufferList(3);
+        for (int i = 0; i < 5; i++) {
+            list.add(i);
+        }
+
+        assertEquals(List.of(2, 3, 4), new ArrayList<>(list));
+        assertEquals(2, list.get(0));
+        assertNull(list.get(3));
+        assertEquals(2, list.get());
+        assertEquals(List.of(3, 4), new ArrayList<>(list));
+    }
+
+    @Test
+    public void testGrowsKeepingOrder() {
+        CyclicBufferList list = new CyclicBufferList(3000);
+        for (int i = 0; i < 1500; i++) {
+            list.add(i);
+        }
+        // wrap the backing array before it grows again
+        for (int i = 0; i < 500; i++) {
+            list.get();
+        }
+        for (int i = 1500; i < 3500; i++) {
+            list.add(i);
+        }
+
+        assertEquals(3000, list.size());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(500 + i, list.get(i));
+        }
+        assertEquals(3000, list.ea.length);
+    }
+
+    @Test
+    public void testUnboundedNeverDrops() {
+        CyclicBufferList list = new CyclicBufferList(CyclicBufferList.UNBOUNDED);
+        for (int i = 0; i < 10_000; i++) {
+            list.add(i);
+        }
+
+        assertEquals(10_000, list.size());
+        assertEquals(0, list.get(0));
+        assertEquals(9_999, list.get(9_999));
+    }
+
+    @Test
+    public void testRemoveAcrossWrap() {
+        CyclicBufferList list = new CyclicBufferList(4);
+        for (int i = 0; i < 6; i++) {
+            list.add(i);
+        }
+
+        assertEquals(3, list.remove(1));
+        assertEquals(List.of(2, 4, 5), new ArrayList<>(list));
+
+        list.add(6);
+        list.add(7);
+        assertEquals(List.of(4, 5, 6, 7), new ArrayList<>(list));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(4));
+    }
+
+    @Test
+    public void testSetMaxSizeDropsOldest() {
+        CyclicBufferList list = new CyclicBufferList(5);
+        for (int i = 0; i < 7; i++) {
+            list.add(i);
+        }
+
+        list.setMaxSize(2);
+        assertEquals(List.of(5, 6), new ArrayList<>(list));
+
+        list.setMaxSize(4);
+        list.add(7);
+        list.add(8);
+        list.add(9);
+        assertEquals(List.of(6, 7, 8, 9), new ArrayList<>(list));
+        assertThrows(IllegalArgumentException.class, () -> list.setMaxSize(0));
+    }
+
+    @Test
+    public void testSetMaxSizeShrinksBackingArray() {
+        CyclicBufferList list = new CyclicBufferList(CyclicBufferList.UNBOUNDED);
+        for (int i = 0; i < 10_000; i++) {
+            list.add(i);
+        }
+
+        list.setMaxSize(100);
+
+        assertEquals(1024, list.ea.length);
+        assertEquals(100, list.size());
+        assertEquals(9_900, list.get(0));
+        assertEquals(9_999, list.get(99));
+    }
+}
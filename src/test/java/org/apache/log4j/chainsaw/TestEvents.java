@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.logevents.Level;
+
+/**
+ * Numbered events for tests.  Event <code>n</code> is an INFO event from "logger" on "thread",
+ * stamped <code>n</code> milliseconds after the epoch, with the message "event n" and the
+ * property "n" holding its number.
+ */
+public final class TestEvents {
+
+    private TestEvents() {}
+
+    /**
+     * @return a builder for event <code>n</code>, for tests which need other fields
+     */
+    public static ChainsawLoggingEventBuilder builder(int n) {
+        return new ChainsawLoggingEventBuilder()
+                .setTimestamp(Instant.ofEpochMilli(n))
+                .setLevel(Level.INFO)
+                .setLogger("logger")
+                .setThreadName("thread")
+                .setMessage("event " + n);
+    }
+
+    public static ChainsawLoggingEvent event(int n) {
+        ChainsawLoggingEvent event = builder(n).create();
+        event.setProperty("n", Integer.toString(n));
+        return event;
+    }
+
+    /**
+     * @return events <code>first</code> to <code>first + count - 1</code>
+     */
+    public static List<ChainsawLoggingEvent> events(int first, int count) {
+        List<ChainsawLoggingEvent> events = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            events.add(event(i));
+        }
+        return events;
+    }
+}
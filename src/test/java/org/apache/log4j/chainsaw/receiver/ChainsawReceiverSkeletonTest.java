@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the subscriptions of ChainsawReceiverSkeleton.
+ */
+public class ChainsawReceiverSkeletonTest {
+
+    @Test
+    public void testDemandSplitsBatches() throws InterruptedException {
+        TestReceiver receiver = new TestReceiver();
+        RecordingSubscriber subscriber = new RecordingSubscriber(3);
+        receiver.subscribe(subscriber);
+
+        receiver.append(TestEvents.events(0, 5));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+
+        // only the demanded part of the batch is sent, the rest waits for more demand
+        assertEquals(List.of(3), subscriber.sizes);
+        assertEquals(List.of(0L, 1L, 2L), subscriber.sequences);
+
+        receiver.append(TestEvents.events(0, 4));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+        subscriber.subscription.request(4);
+
+        assertEquals(List.of(3, 2, 2), subscriber.sizes);
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L), subscriber.sequences);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(List.of(3, 2, 2, 2), subscriber.sizes);
+        assertEquals(9, subscriber.sequences.size());
+        assertEquals(8, subscriber.sequences.get(8).longValue());
+    }
+
+    @Test
+    public void testRequestFromOnNextIsNotRecursive() throws InterruptedException {
+        TestReceiver receiver = new TestReceiver();
+        AtomicInteger depth = new AtomicInteger();
+        RecordingSubscriber subscriber = new RecordingSubscriber(1) {
+            @Override
+            public void onNext(EventBatch batch) {
+                assertEquals(1, depth.incrementAndGet(), "onNext called recursively");
+                super.onNext(batch);
+                subscription.request(1);
+                depth.decrementAndGet();
+            }
+        };
+        receiver.subscribe(subscriber);
+
+        receiver.append(TestEvents.events(0, 10));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+
+        assertEquals(Collections.nCopies(10, 1), subscriber.sizes);
+        assertEquals(9, subscriber.sequences.get(9).longValue());
+        assertTrue(subscriber.failures.isEmpty(), subscriber.failures.toString());
+    }
+
+    @Test
+    public void testConcurrentRequestsSendOneAtATime() throws InterruptedException {
+        TestReceiver receiver = new TestReceiver();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0) {
+            @Override
+            public void onNext(EventBatch batch) {
+                if (active.incrementAndGet() != 1) {
+                    overlaps.incrementAndGet();
+                }
+                Thread.yield();
+                super.onNext(batch);
+                active.decrementAndGet();
+            }
+        };
+        receiver.subscribe(subscriber);
+        int threads = 4;
+        int requests = 500;
+        receiver.append(TestEvents.events(0, threads * requests));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> requesters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread requester = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < requests; j++) {
+                    subscriber.subscription.request(1);
+                }
+            });
+            requester.start();
+            requesters.add(requester);
+        }
+        start.countDown();
+        for (Thread requester : requesters) {
+            requester.join();
+        }
+
+        assertEquals(0, overlaps.get());
+        assertEquals(threads * requests, subscriber.sequences.size());
+        for (int i = 0; i < subscriber.sequences.size(); i++) {
+            assertEquals(i, subscriber.sequences.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testBackpressureHysteresis() throws InterruptedException {
+        TestReceiver receiver = new TestReceiver();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        receiver.subscribe(subscriber);
+
+        receiver.append(TestEvents.events(0, ChainsawReceiverSkeleton.BACKPRESSURE_HIGH_WATER - 1));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+        assertFalse(receiver.isBackpressured());
+
+        receiver.append(TestEvents.events(0, 1));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+        assertTrue(receiver.isBackpressured());
+        assertEquals(List.of(true), receiver.changes);
+
+        // still backpressured between the water marks
+        subscriber.subscription.request(
+                ChainsawReceiverSkeleton.BACKPRESSURE_HIGH_WATER - ChainsawReceiverSkeleton.BACKPRESSURE_LOW_WATER - 1);
+        assertTrue(receiver.isBackpressured());
+        assertTrue(receiver.awaitDemand(100) >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        subscriber.subscription.request(1);
+        assertFalse(receiver.isBackpressured());
+        assertEquals(List.of(true, false), receiver.changes);
+        assertEquals(0, receiver.awaitDemand(100));
+
+        // not backpressured again until back at the high water mark
+        receiver.append(TestEvents.events(0, ChainsawReceiverSkeleton.BACKPRESSURE_HIGH_WATER
+                - ChainsawReceiverSkeleton.BACKPRESSURE_LOW_WATER - 1));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+        assertFalse(receiver.isBackpressured());
+        assertEquals(List.of(true, false), receiver.changes);
+    }
+
+    @Test
+    public void testCancelReleasesBackpressure() throws InterruptedException {
+        TestReceiver receiver = new TestReceiver();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        receiver.subscribe(subscriber);
+
+        receiver.append(TestEvents.events(0, ChainsawReceiverSkeleton.BACKPRESSURE_HIGH_WATER));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+        assertTrue(receiver.isBackpressured());
+
+        subscriber.subscription.cancel();
+        assertFalse(receiver.isBackpressured());
+
+        receiver.append(TestEvents.events(0, 1));
+        assertTrue(receiver.drain(5, TimeUnit.SECONDS));
+        subscriber.subscription.request(10);
+        assertTrue(subscriber.sequences.isEmpty());
+    }
+
+    private static class TestReceiver extends ChainsawReceiverSkeleton {
+        final List<Boolean> changes = Collections.synchronizedList(new ArrayList<>());
+
+        TestReceiver() {
+            setName("test");
+            setQueueInterval(0);
+        }
+
+        @Override
+        protected void backpressureChanged(boolean backpressured) {
+            changes.add(backpressured);
+        }
+
+        @Override
+        public void start() {}
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<EventBatch> {
+        private final long initialDemand;
+        volatile Flow.Subscription subscription;
+        final List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(EventBatch batch) {
+            sizes.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                sequences.add(batch.getSequence(i));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failures.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {}
+    }
+}
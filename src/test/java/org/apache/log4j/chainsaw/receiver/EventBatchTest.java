@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for EventBatch.
+ */
+public class EventBatchTest {
+
+    @Test
+    public void testReleasedTooOften() {
+        EventBatch batch = batch(3);
+        batch.release();
+
+        assertThrows(IllegalStateException.class, batch::release);
+    }
+
+    @Test
+    public void testRetainedAfterRelease() {
+        EventBatch batch = batch(3);
+        batch.release();
+
+        assertThrows(IllegalStateException.class, batch::retain);
+        assertThrows(IllegalStateException.class, () -> batch.slice(0, 0));
+    }
+
+    @Test
+    public void testRetainedBatchOutlivesFirstRelease() {
+        EventBatch batch = batch(3);
+        batch.retain();
+        batch.release();
+
+        assertEquals(3, batch.size());
+        assertEquals("event 2", batch.get(2).m_message);
+
+        batch.release();
+        assertThrows(IllegalStateException.class, batch::release);
+    }
+
+    @Test
+    public void testSliceOutlivesBatch() {
+        EventBatch batch = batch(5);
+        EventBatch slice = batch.slice(1, 4);
+        batch.release();
+
+        // the slice still holds the batch's events
+        assertEquals(3, slice.size());
+        assertEquals("event 1", slice.get(0).m_message);
+        assertEquals("event 3", slice.get(2).m_message);
+        assertEquals(11, slice.getFirstSequence());
+        assertEquals(13, slice.getLastSequence());
+        assertEquals("test", slice.getSource());
+
+        // the batch is recycled with the slice, not before
+        assertEquals(5, batch.size());
+        slice.release();
+        assertEquals(0, batch.size());
+        assertThrows(IllegalStateException.class, slice::release);
+    }
+
+    @Test
+    public void testSliceOfSlice() {
+        EventBatch batch = batch(5);
+        EventBatch outer = batch.slice(1, 5);
+        EventBatch inner = outer.slice(1, 3);
+        batch.release();
+        outer.release();
+
+        assertEquals(2, inner.size());
+        assertEquals("event 2", inner.get(0).m_message);
+        assertEquals("event 3", inner.get(1).m_message);
+
+        inner.release();
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void testSliceBounds() {
+        EventBatch batch = batch(3);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.slice(-1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.slice(2, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.slice(2, 1));
+        EventBatch slice = batch.slice(1, 2);
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.getSequence(-1));
+
+        slice.release();
+        batch.release();
+    }
+
+    @Test
+    public void testReleasedBatchIsReused() {
+        EventBatch batch = batch(3);
+        batch.release();
+
+        long reused = EventBatch.getReusedCount();
+        EventBatch next = EventBatch.acquire();
+
+        assertEquals(reused + 1, EventBatch.getReusedCount());
+        assertEquals(0, next.size());
+        assertNull(next.getSource());
+        next.release();
+    }
+
+    @Test
+    public void testOversizedBatchIsNotPooled() {
+        EventBatch large = EventBatch.acquire();
+        ChainsawLoggingEvent event = TestEvents.event(0);
+        for (int i = 0; i <= EventBatch.MAX_POOLED_CAPACITY; i++) {
+            large.add(event, i, i);
+        }
+        large.release();
+
+        // take everything the pool holds without meeting the large batch
+        List<EventBatch> taken = new ArrayList<>();
+        long allocated = EventBatch.getAllocatedCount();
+        while (EventBatch.getAllocatedCount() == allocated) {
+            EventBatch batch = EventBatch.acquire();
+            assertNotSame(large, batch);
+            taken.add(batch);
+        }
+        for (EventBatch batch : taken) {
+            batch.release();
+        }
+    }
+
+    @Test
+    public void testLaneCountsBatchOnceLastReferenceIsReleased() {
+        DeliveryMetrics metrics = new DeliveryMetrics();
+        EventBatch batch = batch(3);
+        batch.setLane(metrics.getPriority());
+        assertTrue(batch.isPriority());
+        assertTrue(EventBatch.isPriority(batch));
+
+        // kept by a listener to show later, and sliced by a subscriber
+        batch.retain();
+        EventBatch slice = batch.slice(1, 2);
+        assertTrue(slice.isPriority());
+        batch.release();
+        batch.release();
+        assertEquals(0, metrics.getPriority().getBatches());
+
+        slice.release();
+        assertEquals(1, metrics.getPriority().getBatches());
+        assertEquals(3, metrics.getPriority().getEvents());
+        assertEquals(0, metrics.getBulk().getBatches());
+
+        // a recycled batch belongs to no lane
+        EventBatch next = EventBatch.acquire();
+        assertFalse(next.isPriority());
+        next.setLane(metrics.getBulk());
+        assertFalse(next.isPriority());
+        next.release();
+        assertEquals(1, metrics.getBulk().getBatches());
+    }
+
+    @Test
+    public void testStaticHelpersIgnoreOtherLists() {
+        List<ChainsawLoggingEvent> plain = new ArrayList<>();
+
+        assertSame(plain, EventBatch.retain(plain));
+        EventBatch.release(plain);
+        assertFalse(EventBatch.isPriority(plain));
+
+        EventBatch batch = batch(1);
+        assertSame(batch, EventBatch.retain((List<ChainsawLoggingEvent>) batch));
+        EventBatch.release((List<ChainsawLoggingEvent>) batch);
+        batch.release();
+        assertThrows(IllegalStateException.class, batch::release);
+    }
+
+    private static EventBatch batch(int count) {
+        EventBatch batch = EventBatch.acquire();
+        for (int i = 0; i < count; i++) {
+            batch.add(TestEvents.event(i), 10 + i, i);
+        }
+        batch.setSource("test");
+        return batch;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for OrderedDecodeStage.  Chunks are event numbers, and the decoder waits on the gate of
+ * a chunk, if it has one, so the tests decide when each chunk finishes decoding.  Each worker
+ * runs on a thread of its own, so gated chunks can't hold up the others however few cores
+ * there are.
+ */
+public class OrderedDecodeStageTest {
+    private final Map<Integer, CountDownLatch> gates = new ConcurrentHashMap<>();
+    // chunks whose decoding has started
+    private final Map<Integer, CountDownLatch> started = new ConcurrentHashMap<>();
+    private final List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testDeliversInOrderWhenLaterChunksFinishFirst() throws Exception {
+        OrderedDecodeStage<Integer> stage = stage(3, 16);
+        gate(0);
+        gate(1);
+
+        for (int i = 0; i < 5; i++) {
+            stage.submit(i);
+        }
+        awaitStarted(0);
+        awaitStarted(1);
+        // chunks 2 to 4 are decoded, but wait for the two ahead of them
+        awaitStarted(4);
+        Thread.sleep(50);
+        assertTrue(delivered.isEmpty());
+
+        release(1);
+        Thread.sleep(50);
+        assertTrue(delivered.isEmpty());
+
+        release(0);
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1, 2, 3, 4), delivered);
+        assertEquals(0, stage.getPending());
+    }
+
+    @Test
+    public void testBusyWorkerTakesChunksSubmittedMeanwhile() throws Exception {
+        OrderedDecodeStage<Integer> stage = stage(1, 16);
+        gate(0);
+
+        stage.submit(0);
+        awaitStarted(0);
+        // no decoder is idle, so these wait for the worker decoding chunk 0
+        stage.submit(1);
+        stage.submit(2);
+        assertEquals(3, stage.getPending());
+
+        release(0);
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1, 2), delivered);
+    }
+
+    @Test
+    public void testNoChunkIsStrandedAsWorkersFinish() throws Exception {
+        // each chunk is submitted as the worker may be finishing, a chunk missed by both the
+        // worker and the submitter would never be delivered
+        OrderedDecodeStage<Integer> stage = stage(1, 16);
+        for (int i = 0; i < 10000; i++) {
+            stage.submitNow(i);
+            if (i % 2 == 0) {
+                assertTrue(stage.drain(5, TimeUnit.SECONDS), "chunk " + i + " was not delivered");
+            }
+        }
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(10000, delivered.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, delivered.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testFullListenerFollowsWaterMarks() throws Exception {
+        // capacity 8 is full at 7 chunks and empties at 4
+        OrderedDecodeStage<Integer> stage = stage(1, 8);
+        List<Boolean> changes = Collections.synchronizedList(new ArrayList<>());
+        stage.setFullListener(changes::add);
+        for (int i = 0; i < 4; i++) {
+            gate(i);
+        }
+
+        for (int i = 0; i < 6; i++) {
+            stage.submitNow(i);
+        }
+        assertTrue(changes.isEmpty());
+        stage.submitNow(6);
+        assertEquals(List.of(true), changes);
+        // past the capacity without waiting
+        stage.submitNow(7);
+        stage.submitNow(8);
+        assertEquals(9, stage.getPending());
+
+        release(0);
+        release(1);
+        release(2);
+        awaitDelivered(3);
+        assertEquals(List.of(true), changes);
+        assertEquals(6, stage.getPending());
+
+        release(3);
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(List.of(true, false), changes);
+    }
+
+    @Test
+    public void testSubmitWaitsForSpace() throws Exception {
+        OrderedDecodeStage<Integer> stage = stage(1, 2);
+        gate(0);
+        stage.submit(0);
+        stage.submit(1);
+
+        Thread submitter = new Thread(() -> {
+            try {
+                stage.submit(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        submitter.join(100);
+        assertTrue(submitter.isAlive());
+
+        release(0);
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1, 2), delivered);
+    }
+
+    @Test
+    public void testCloseDiscardsWaitingChunks() throws Exception {
+        OrderedDecodeStage<Integer> stage = stage(1, 16);
+        gate(0);
+        stage.submit(0);
+        awaitStarted(0);
+        stage.submit(1);
+        stage.submit(2);
+
+        stage.close();
+        assertEquals(1, stage.getPending());
+        stage.submit(3);
+        stage.submitNow(4);
+        assertEquals(1, stage.getPending());
+
+        // the chunk being decoded is still delivered
+        release(0);
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0), delivered);
+        assertEquals(0, stage.getPending());
+    }
+
+    @Test
+    public void testDrainWaitsForDelivery() throws Exception {
+        OrderedDecodeStage<Integer> stage = stage(2, 16);
+        assertTrue(stage.drain(0, TimeUnit.MILLISECONDS));
+        gate(0);
+        stage.submit(0);
+        stage.submit(1);
+
+        assertFalse(stage.drain(50, TimeUnit.MILLISECONDS));
+
+        release(0);
+        assertTrue(stage.drain(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1), delivered);
+    }
+
+    private OrderedDecodeStage<Integer> stage(int workers, int capacity) {
+        return new OrderedDecodeStage<>(
+                "test",
+                workers,
+                capacity,
+                GatedDecoder::new,
+                events -> {
+                    for (ChainsawLoggingEvent event : events) {
+                        delivered.add(Integer.valueOf(event.getProperty("n")));
+                    }
+                },
+                task -> new Thread(task, "decode-worker").start());
+    }
+
+    private void gate(int chunk) {
+        gates.put(chunk, new CountDownLatch(1));
+    }
+
+    private void release(int chunk) {
+        gates.get(chunk).countDown();
+    }
+
+    private void awaitStarted(int chunk) throws InterruptedException {
+        assertTrue(started(chunk).await(5, TimeUnit.SECONDS), "chunk " + chunk + " was not decoded");
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delivered.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, delivered.size());
+    }
+
+    private CountDownLatch started(int chunk) {
+        return started.computeIfAbsent(chunk, c -> new CountDownLatch(1));
+    }
+
+    private class GatedDecoder implements OrderedDecodeStage.ChunkDecoder<Integer> {
+
+        @Override
+        public void decode(Integer chunk, List<ChainsawLoggingEvent> events) {
+            started(chunk).countDown();
+            CountDownLatch gate = gates.get(chunk);
+            if (gate != null) {
+                try {
+                    gate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(TestEvents.event(chunk));
+        }
+    }
+}
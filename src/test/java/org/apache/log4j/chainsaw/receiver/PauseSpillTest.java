@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for PauseSpill.
+ */
+public class PauseSpillTest {
+
+    @Test
+    public void testNotHeldUnlessPaused() {
+        PauseSpill spill = new PauseSpill("test", 10, 0);
+
+        assertFalse(spill.hold(TestEvents.events(0, 3)));
+        assertFalse(spill.resume());
+        assertEquals(0, spill.getBacklog());
+    }
+
+    @Test
+    public void testReplaysMemoryThenFileInOrder() {
+        // two events in memory, the rest written to the file
+        PauseSpill spill = new PauseSpill("test", 2, 1024 * 1024);
+        spill.pause();
+
+        assertTrue(spill.hold(TestEvents.events(0, 3)));
+        assertTrue(spill.hold(TestEvents.events(3, 4)));
+        assertEquals(7, spill.getBacklog());
+
+        assertTrue(spill.resume());
+        List<ChainsawLoggingEvent> replayed = new ArrayList<>();
+        spill.replay(replayed::addAll);
+
+        assertSequence(replayed, 0, 7);
+        assertEquals("event 5", replayed.get(5).m_message);
+        assertEquals(Level.INFO, replayed.get(5).m_level);
+        assertEquals("5", replayed.get(5).getProperty("n"));
+        assertEquals(0, spill.getBacklog());
+        assertFalse(spill.hold(TestEvents.events(7, 1)));
+    }
+
+    @Test
+    public void testOverflowDiscardsNewestEvents() {
+        PauseSpill spill = new PauseSpill("test", 2, 0);
+        spill.pause();
+
+        assertTrue(spill.hold(TestEvents.events(0, 5)));
+
+        assertEquals(2, spill.getBacklog());
+        assertEquals(3, spill.getOverflow());
+
+        spill.resume();
+        List<ChainsawLoggingEvent> replayed = new ArrayList<>();
+        spill.replay(replayed::addAll);
+        assertSequence(replayed, 0, 2);
+    }
+
+    @Test
+    public void testOverflowOnceFileIsFull() throws InterruptedException {
+        // the first event written to the file fills it
+        PauseSpill spill = new PauseSpill("test", 1, 1);
+        spill.pause();
+
+        assertTrue(spill.hold(TestEvents.events(0, 4)));
+
+        // events are written, and found not to fit, in the background
+        long deadline = System.currentTimeMillis() + 5000;
+        while (spill.getOverflow() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, spill.getBacklog());
+        assertEquals(2, spill.getOverflow());
+        assertTrue(spill.hold(TestEvents.events(4, 1)));
+        assertEquals(3, spill.getOverflow());
+
+        assertTrue(spill.resume());
+        List<ChainsawLoggingEvent> replayed = new ArrayList<>();
+        spill.replay(replayed::addAll);
+        assertSequence(replayed, 0, 2);
+    }
+
+    @Test
+    public void testEventsArrivingDuringReplayFollowBacklog() {
+        PauseSpill spill = new PauseSpill("test", 2, 1024 * 1024);
+        spill.pause();
+        spill.hold(TestEvents.events(0, PauseSpill.REPLAY_BATCH_SIZE + 1));
+        spill.resume();
+
+        List<ChainsawLoggingEvent> replayed = new ArrayList<>();
+        spill.replay(batch -> {
+            if (replayed.isEmpty()) {
+                // not paused, but still replaying, so these are held too
+                assertTrue(spill.hold(TestEvents.events(PauseSpill.REPLAY_BATCH_SIZE + 1, 2)));
+            }
+            replayed.addAll(batch);
+        });
+
+        assertSequence(replayed, 0, PauseSpill.REPLAY_BATCH_SIZE + 3);
+    }
+
+    @Test
+    public void testPauseDuringReplayKeepsBacklog() {
+        PauseSpill spill = new PauseSpill("test", 10, 1024 * 1024);
+        spill.pause();
+        spill.hold(TestEvents.events(0, PauseSpill.REPLAY_BATCH_SIZE + 5));
+        spill.resume();
+
+        List<ChainsawLoggingEvent> replayed = new ArrayList<>();
+        spill.replay(batch -> {
+            replayed.addAll(batch);
+            spill.pause();
+        });
+
+        assertEquals(PauseSpill.REPLAY_BATCH_SIZE, replayed.size());
+        assertEquals(5, spill.getBacklog());
+        assertTrue(spill.hold(TestEvents.events(PauseSpill.REPLAY_BATCH_SIZE + 5, 1)));
+
+        assertTrue(spill.resume());
+        spill.replay(replayed::addAll);
+        assertSequence(replayed, 0, PauseSpill.REPLAY_BATCH_SIZE + 6);
+    }
+
+    @Test
+    public void testDiscard() {
+        PauseSpill spill = new PauseSpill("test", 1, 1024 * 1024);
+        spill.pause();
+        spill.hold(TestEvents.events(0, 3));
+
+        spill.discard();
+
+        assertEquals(0, spill.getBacklog());
+        assertFalse(spill.resume());
+        assertFalse(spill.hold(Collections.singletonList(TestEvents.event(3))));
+    }
+
+    private static void assertSequence(List<ChainsawLoggingEvent> events, int first, int count) {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Instant.ofEpochMilli(first + i), events.get(i).m_timestamp);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.receiver;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for PushdownFilter.parseEqualities.
+ */
+public class PushdownFilterTest {
+
+    @Test
+    public void testParsesSingleEquality() {
+        assertEquals(List.of("LOGGER == org.example"), parse("logger == org.example"));
+        assertEquals(List.of("LEVEL == DEBUG"), parse("  LEVEL==DEBUG  "));
+    }
+
+    @Test
+    public void testParsesQuotedValues() {
+        assertEquals(List.of("THREAD == pool-1 worker"), parse("THREAD == 'pool-1 worker'"));
+        // quotes only go around a whole value, anything else is left to the full filter
+        assertNull(parse("LOGGER == 'a||b'"));
+        assertNull(parse("LOGGER == 'it''s'"));
+    }
+
+    @Test
+    public void testParsesListsJoinedByOr() {
+        assertEquals(
+                List.of("LOGGER == org.example", "LEVEL == TRACE", "THREAD == main thread"),
+                parse("LOGGER == org.example || LEVEL == TRACE||THREAD == 'main thread'"));
+    }
+
+    @Test
+    public void testRejectsAndAndParentheses() {
+        assertNull(parse("LOGGER == a && LEVEL == DEBUG"));
+        assertNull(parse("(LOGGER == a)"));
+        assertNull(parse("LOGGER == a || (LEVEL == DEBUG)"));
+        assertNull(parse("LOGGER == f(x)"));
+    }
+
+    @Test
+    public void testRejectsOtherExpressions() {
+        assertNull(parse(null));
+        assertNull(parse("  "));
+        assertNull(parse("LOGGER != a"));
+        assertNull(parse("MSG == a"));
+        assertNull(parse("LOGGER == "));
+        assertNull(parse("LOGGER == ''"));
+        assertNull(parse("LOGGER == 'a"));
+        assertNull(parse("LOGGER == a ||"));
+        assertNull(parse("|| LOGGER == a"));
+    }
+
+    @Test
+    public void testEqualityMatchesItsField() {
+        List<PushdownFilter.Equality> equalities =
+                PushdownFilter.parseEqualities("LEVEL == debug || LOGGER == a.b || THREAD == main");
+
+        assertTrue(equalities.get(0).matches(Level.DEBUG, "x", "y"));
+        assertFalse(equalities.get(0).matches(null, "x", "y"));
+        assertTrue(equalities.get(1).matches(Level.INFO, "a.b", "y"));
+        assertFalse(equalities.get(1).matches(Level.INFO, "a.b.c", "y"));
+        assertTrue(equalities.get(2).matches(Level.INFO, "x", "main"));
+    }
+
+    private static List<String> parse(String expression) {
+        List<PushdownFilter.Equality> equalities = PushdownFilter.parseEqualities(expression);
+        if (equalities == null) {
+            return null;
+        }
+        List<String> parsed = new ArrayList<>();
+        for (PushdownFilter.Equality equality : equalities) {
+            parsed.add(equality.toString());
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEventBuilder;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.apache.log4j.chainsaw.logevents.LocationInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for EventCodec.
+ */
+public class EventCodecTest {
+
+    @Test
+    public void testRoundTripsEveryField() {
+        Map<String, String> mdc = new HashMap<>();
+        mdc.put("user", "alice");
+        mdc.put("request", "42");
+        ChainsawLoggingEvent event = new ChainsawLoggingEventBuilder()
+                .setTimestamp(Instant.ofEpochSecond(1_700_000_000L, 123_456_789))
+                .setLevel(Level.WARN)
+                .setMessage("caf\u00e9 \u2603 message")
+                .setThreadName("main")
+                .setLogger("org.example.Service")
+                .setNDC("outer inner")
+                .setLocationInfo(new LocationInfo("Service.java", "org.example.Service", "run", 17))
+                .setMDC(mdc)
+                .create();
+        event.setProperty("log4jid", "7");
+        event.setProperty("hostname", "example");
+
+        ChainsawLoggingEvent decoded = EventCodec.decode(new EventCodec().encode(event));
+
+        assertEquals(event.m_timestamp, decoded.m_timestamp);
+        assertEquals(Level.WARN, decoded.m_level);
+        assertEquals(event.m_message, decoded.m_message);
+        assertEquals("main", decoded.m_threadName);
+        assertEquals("org.example.Service", decoded.m_logger);
+        assertEquals("outer inner", decoded.m_ndc);
+        assertEquals("Service.java", decoded.m_locationInfo.fileName);
+        assertEquals("org.example.Service", decoded.m_locationInfo.className);
+        assertEquals("run", decoded.m_locationInfo.methodName);
+        assertEquals(17, decoded.m_locationInfo.lineNumber);
+        assertEquals(mdc, decoded.m_mdc);
+        assertEquals(event.getProperties(), decoded.getProperties());
+    }
+
+    @Test
+    public void testRoundTripsMissingFields() {
+        ChainsawLoggingEvent decoded =
+                EventCodec.decode(new EventCodec().encode(new ChainsawLoggingEventBuilder().create()));
+
+        assertNull(decoded.m_timestamp);
+        assertNull(decoded.m_level);
+        assertNull(decoded.m_message);
+        assertNull(decoded.m_threadName);
+        assertNull(decoded.m_logger);
+        assertNull(decoded.m_ndc);
+        assertNull(decoded.m_locationInfo);
+        assertNull(decoded.m_mdc);
+        assertEquals(0, decoded.getPropertyKeySet().size());
+    }
+
+    @Test
+    public void testGrowsBufferForLargeEvents() {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            message.append((char) ('a' + i % 26));
+        }
+        EventCodec codec = new EventCodec();
+        codec.encode(event("small"));
+
+        ChainsawLoggingEvent decoded = EventCodec.decode(codec.encode(event(message.toString())));
+
+        assertEquals(message.toString(), decoded.m_message);
+    }
+
+    @Test
+    public void testDecodesAndSkipsConsecutiveRecords() {
+        EventCodec codec = new EventCodec();
+        ByteBuffer records = ByteBuffer.allocate(4096);
+        for (int i = 0; i < 3; i++) {
+            records.put(codec.encode(event("event " + i)));
+        }
+        records.flip();
+
+        EventCodec.skip(records);
+        assertEquals("event 1", EventCodec.decode(records).m_message);
+        assertEquals("event 2", EventCodec.decode(records).m_message);
+        assertEquals(records.limit(), records.position());
+    }
+
+    private static ChainsawLoggingEvent event(String message) {
+        return TestEvents.builder(1000).setMessage(message).create();
+    }
+}
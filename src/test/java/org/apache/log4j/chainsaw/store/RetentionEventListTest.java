@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.chainsaw.ChainsawConstants;
+import org.apache.log4j.chainsaw.LoggingEventWrapper;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RetentionEventList.
+ */
+public class RetentionEventListTest {
+
+    private final TestClock clock = new TestClock();
+    private final List<LoggingEventWrapper> evicted = new ArrayList<>();
+
+    @Test
+    public void testEvictsLowestTierFirst() {
+        RetentionEventList list = newList(3, new RetentionPolicyBuilder().create());
+        LoggingEventWrapper error = add(list, Level.ERROR, "a");
+        LoggingEventWrapper debug = add(list, Level.DEBUG, "a");
+        LoggingEventWrapper info = add(list, Level.INFO, "a");
+
+        LoggingEventWrapper warn = add(list, Level.WARN, "a");
+
+        assertEquals(List.of(debug), evicted);
+        assertEquals(List.of(error, info, warn), new ArrayList<>(list));
+
+        // oldest first within a tier
+        LoggingEventWrapper info2 = add(list, Level.INFO, "a");
+        assertEquals(List.of(debug, info), evicted);
+        assertEquals(List.of(error, warn, info2), new ArrayList<>(list));
+    }
+
+    @Test
+    public void testFullListRejectsEventOfLowestTier() {
+        RetentionEventList list = newList(2, new RetentionPolicyBuilder().create());
+        add(list, Level.WARN, "a");
+        add(list, Level.WARN, "a");
+
+        LoggingEventWrapper debug = event(Level.DEBUG, "a");
+
+        assertFalse(list.add(debug));
+        assertEquals(List.of(debug), evicted);
+        assertEquals(2, list.size());
+    }
+
+    @Test
+    public void testExpiresByAgeOfTier() {
+        RetentionEventList list = newList(100, new RetentionPolicyBuilder()
+                .setMaxAge(Duration.ofSeconds(10))
+                .setMaxAge(Level.WARN, Duration.ofSeconds(60))
+                .create());
+        LoggingEventWrapper info = add(list, Level.INFO, "a");
+        LoggingEventWrapper warn = add(list, Level.WARN, "a");
+        clock.advance(5_000);
+        LoggingEventWrapper laterInfo = add(list, Level.INFO, "a");
+
+        clock.advance(6_000);
+        list.expire();
+
+        assertEquals(List.of(info), evicted);
+        assertEquals(List.of(warn, laterInfo), new ArrayList<>(list));
+
+        clock.advance(60_000);
+        list.expire();
+
+        assertEquals(List.of(info, laterInfo, warn), evicted);
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    public void testLoggerQuota() {
+        RetentionEventList list = newList(100, new RetentionPolicyBuilder()
+                .setLoggerQuota(2)
+                .create());
+        LoggingEventWrapper a1 = add(list, Level.INFO, "a");
+        LoggingEventWrapper b1 = add(list, Level.INFO, "b");
+        LoggingEventWrapper a2 = add(list, Level.INFO, "a");
+        LoggingEventWrapper a3 = add(list, Level.ERROR, "a");
+
+        assertEquals(List.of(a1), evicted);
+        assertEquals(List.of(b1, a2, a3), new ArrayList<>(list));
+    }
+
+    @Test
+    public void testMarkedEventsAreKept() {
+        RetentionEventList list = newList(2, new RetentionPolicyBuilder()
+                .setKeepMarked(true)
+                .setMaxAge(Duration.ofSeconds(1))
+                .create());
+        LoggingEventWrapper marked = event(Level.DEBUG, "a");
+        marked.setProperty(ChainsawConstants.LOG4J_MARKER_COL_NAME, "set");
+        list.add(marked);
+        LoggingEventWrapper debug = add(list, Level.DEBUG, "a");
+        LoggingEventWrapper debug2 = add(list, Level.DEBUG, "a");
+
+        assertEquals(List.of(debug), evicted);
+
+        clock.advance(2_000);
+        list.expire();
+        assertEquals(List.of(debug, debug2), evicted);
+        assertEquals(List.of(marked), new ArrayList<>(list));
+        assertNull(list.evictLeastImportant());
+    }
+
+    @Test
+    public void testSetCapacityEvictsByTier() {
+        RetentionEventList list = newList(10, new RetentionPolicyBuilder().create());
+        LoggingEventWrapper warn = add(list, Level.WARN, "a");
+        LoggingEventWrapper debug = add(list, Level.DEBUG, "a");
+        LoggingEventWrapper info = add(list, Level.INFO, "a");
+
+        list.setCapacity(1);
+
+        assertEquals(List.of(debug, info), evicted);
+        assertEquals(1, list.size());
+        assertSame(warn, list.get(0));
+        assertTrue(list.add(event(Level.ERROR, "a")));
+    }
+
+    private RetentionEventList newList(int capacity, RetentionPolicy policy) {
+        return new RetentionEventList(capacity, policy, evicted::add, clock);
+    }
+
+    private static LoggingEventWrapper add(RetentionEventList list, Level level, String logger) {
+        LoggingEventWrapper wrapper = event(level, logger);
+        assertTrue(list.add(wrapper));
+        return wrapper;
+    }
+
+    private static LoggingEventWrapper event(Level level, String logger) {
+        return new LoggingEventWrapper(
+                TestEvents.builder(0).setLevel(level).setLogger(logger).create());
+    }
+
+    private static final class TestClock extends Clock {
+        private long millis;
+
+        void advance(long by) {
+            millis += by;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
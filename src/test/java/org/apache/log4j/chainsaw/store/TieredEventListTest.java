@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.chainsaw.store;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.chainsaw.LoggingEventWrapper;
+import org.apache.log4j.chainsaw.TestEvents;
+import org.apache.log4j.helpers.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for TieredEventList and the EventSpillStore behind it.
+ */
+public class TieredEventListTest {
+
+    private File directory;
+    private EventSpillStore store;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("tiered").toFile();
+        // small segments, so trimming the store drops a few events at a time
+        store = new EventSpillStore(new File(directory, "store"), 1024);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.close();
+        directory.delete();
+    }
+
+    @Test
+    public void testSpillsOldestEventsAndReadsOldestFirst() {
+        AtomicInteger loaded = new AtomicInteger();
+        TieredEventList list = new TieredEventList(3, store, wrapper -> loaded.incrementAndGet());
+        List<LoggingEventWrapper> added = add(list, 0, 10);
+
+        assertEquals(10, list.size());
+        assertEquals(3, list.getHotSize());
+        assertEquals(7, list.getColdSize());
+        for (int i = 0; i < 10; i++) {
+            // wrappers are equal by id, paged-in events get a new wrapper
+            LoggingEventWrapper wrapper = list.get(i);
+            assertEquals(added.get(i), wrapper);
+            assertEquals("event " + i, wrapper.getLoggingEvent().m_message);
+        }
+        assertSame(added.get(9), list.get(9));
+        assertEquals(7, loaded.get());
+
+        int i = 0;
+        for (LoggingEventWrapper wrapper : list) {
+            assertEquals("event " + i++, wrapper.getLoggingEvent().m_message);
+        }
+        assertEquals(10, i);
+    }
+
+    @Test
+    public void testShrinkingTheRingSpillsEvents() {
+        TieredEventList list = new TieredEventList(5, store, null);
+        add(list, 0, 5);
+
+        list.setHotMaxSize(2);
+
+        assertEquals(2, list.getHotSize());
+        assertEquals(3, list.getColdSize());
+        assertEquals("event 0", list.get(0).getLoggingEvent().m_message);
+        assertEquals("event 4", list.get(4).getLoggingEvent().m_message);
+        assertTrue(list.isHotFull());
+    }
+
+    @Test
+    public void testReadsInChunksAcrossTiers() {
+        TieredEventList list = new TieredEventList(4, store, wrapper -> {
+            throw new AssertionError("chunked reads don't notify the load listener");
+        });
+        add(list, 0, 10);
+        assertEquals(0, list.getFirstSequence());
+        assertEquals(10, list.getNextSequence());
+
+        List<LoggingEventWrapper> events = new ArrayList<>();
+        long sequence = list.getFirstSequence();
+        while (sequence < list.getNextSequence()) {
+            sequence = list.read(sequence, 3, events);
+        }
+
+        assertEquals(10, events.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("event " + i, events.get(i).getLoggingEvent().m_message);
+        }
+    }
+
+    @Test
+    public void testReadsRangesNewestFirst() {
+        TieredEventList list = new TieredEventList(4, store, null);
+        add(list, 0, 10);
+        assertEquals(6, list.getHotStartSequence());
+
+        // a chunk on disk, one across the tiers and one in memory
+        List<LoggingEventWrapper> events = new ArrayList<>();
+        list.readRange(7, 10, events);
+        assertMessages(events, 7, 3);
+        events.clear();
+        list.readRange(4, 7, events);
+        assertMessages(events, 4, 3);
+        events.clear();
+        list.readRange(0, 4, events);
+        assertMessages(events, 0, 4);
+
+        // nothing beyond the events held
+        events.clear();
+        list.readRange(10, 20, events);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testReadSkipsEventsDroppedFromTheStore() {
+        TieredEventList list = new TieredEventList(2, store, null);
+        add(list, 0, 50);
+        List<LoggingEventWrapper> first = new ArrayList<>();
+        long sequence = list.read(list.getFirstSequence(), 1, first);
+
+        // dropping the oldest segments moves the first sequence past where the scan stopped
+        store.setMaxBytes(1024);
+        long firstSequence = list.getFirstSequence();
+        assertTrue(firstSequence > sequence);
+
+        List<LoggingEventWrapper> rest = new ArrayList<>();
+        list.read(sequence, 100, rest);
+
+        assertEquals(50 - firstSequence, rest.size());
+        assertEquals("event " + firstSequence, rest.get(0).getLoggingEvent().m_message);
+        assertEquals("event 49", rest.get(rest.size() - 1).getLoggingEvent().m_message);
+        assertEquals(list.size(), rest.size());
+    }
+
+    @Test
+    public void testClearKeepsSequencesIncreasing() {
+        TieredEventList list = new TieredEventList(2, store, null);
+        add(list, 0, 5);
+
+        list.clear();
+
+        assertEquals(0, list.size());
+        assertTrue(store.isEmpty());
+        assertEquals(5, list.getFirstSequence());
+        add(list, 5, 3);
+        List<LoggingEventWrapper> events = new ArrayList<>();
+        list.read(0, 10, events);
+        assertEquals(3, events.size());
+        assertEquals("event 5", events.get(0).getLoggingEvent().m_message);
+        assertFalse(store.isEmpty());
+    }
+
+    private static void assertMessages(List<LoggingEventWrapper> events, int first, int count) {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("event " + (first + i), events.get(i).getLoggingEvent().m_message);
+        }
+    }
+
+    private static List<LoggingEventWrapper> add(TieredEventList list, int first, int count) {
+        List<LoggingEventWrapper> added = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            LoggingEventWrapper wrapper = new LoggingEventWrapper(TestEvents.event(i));
+            wrapper.setProperty(Constants.LOG4J_ID_KEY, String.valueOf(i + 1));
+            list.add(wrapper);
+            added.add(wrapper);
+        }
+        return added;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for JsonRecordTokenizer.
+ */
+public class JsonRecordTokenizerTest {
+    private final JsonRecordTokenizer tokenizer = new JsonRecordTokenizer();
+    private final List<String> records = new ArrayList<>();
+
+    @Test
+    public void testSplitsNewlineDelimitedRecords() throws IOException {
+        feed("{\"a\":1}\n{\"b\":{\"c\":2}}\n");
+
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":{\"c\":2}}"), records);
+    }
+
+    @Test
+    public void testJoinsRecordsSplitAcrossReads() throws IOException {
+        String stream = "{\"message\":\"first\"}{\"message\":\"second\",\"n\":{\"x\":[1,2]}}";
+        for (int i = 0; i < stream.length(); i++) {
+            feed(stream.substring(i, i + 1));
+        }
+
+        assertEquals(Arrays.asList("{\"message\":\"first\"}", "{\"message\":\"second\",\"n\":{\"x\":[1,2]}}"), records);
+    }
+
+    @Test
+    public void testIgnoresBracesAndEscapedQuotesInStrings() throws IOException {
+        String record = "{\"message\":\"a } b { \\\" } still \\\\\",\"next\":\"{\"}";
+        // split inside the escape, so the escaped state carries over to the next read
+        int split = record.indexOf('\\') + 1;
+        feed(record.substring(0, split));
+        feed(record.substring(split) + "\n{}");
+
+        assertEquals(Arrays.asList(record, "{}"), records);
+    }
+
+    @Test
+    public void testSplitsTopLevelArray() throws IOException {
+        feed("[\n  {\"a\":1},\n  {\"b\":\"]\"}\n]\n");
+
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":\"]\"}"), records);
+    }
+
+    @Test
+    public void testRejectsUnbalancedBrace() {
+        assertThrows(IOException.class, () -> feed("{\"a\":1}}"));
+    }
+
+    @Test
+    public void testRejectsRecordsOverLengthLimit() throws IOException {
+        feed("{\"message\":\"");
+        byte[] chunk = new byte[64 * 1024];
+        Arrays.fill(chunk, (byte) 'a');
+        int fed = 0;
+        IOException failure = null;
+        try {
+            while (fed <= JsonRecordTokenizer.MAX_RECORD_LENGTH) {
+                tokenizer.feed(ByteBuffer.wrap(chunk), this::record);
+                fed += chunk.length;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        assertNotNull(failure);
+        assertTrue(fed < JsonRecordTokenizer.MAX_RECORD_LENGTH);
+        assertTrue(records.isEmpty());
+    }
+
+    private void feed(String data) throws IOException {
+        tokenizer.feed(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)), this::record);
+    }
+
+    private void record(byte[] data, int offset, int length) {
+        records.add(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.net.payload.StandInPayloadProxy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Drives a PayloadProxyReceiver from a StandInPayloadProxy and reports throughput, latency
+ * (from the event being written to it reaching the receiver's listeners) and how long the
+ * receiver takes to resume after its connection is dropped half way through the run, along
+ * with the receiver's own metrics (including the events it saw go missing).
+ * <p>
+ * <code>./gradlew payloadLoadHarness -Pargs="seconds eventsPerSecond batchSize compression"</code>,
+ * for example <code>-Pargs="30 50000 100 true"</code>; a rate of 0 sends as fast as possible.
+ */
+public class PayloadProxyLoadHarness {
+
+    private static final int MAX_LATENCY_MILLIS = 60_000;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong lastReceivedNanos = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY_MILLIS + 1);
+
+    public static void main(String[] args) throws Exception {
+        final int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int eventsPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        final int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        final boolean compression = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        new PayloadProxyLoadHarness().run(seconds, eventsPerSecond, batchSize, compression);
+        System.exit(0);
+    }
+
+    public void run(int seconds, int eventsPerSecond, int batchSize, boolean compression) throws Exception {
+
+        try (StandInPayloadProxy proxy = new StandInPayloadProxy("load")
+            .setEventsPerSecond(eventsPerSecond)
+            .setBatchSize(batchSize)
+            .setCompression(compression)
+            .start()) {
+
+            final PayloadProxyReceiver receiver = new PayloadProxyReceiver();
+            receiver.setName("load");
+            receiver.setHost(proxy.getHost());
+            receiver.setBaseUrl(proxy.getBaseUrl());
+            receiver.setGuid("load");
+            receiver.setPassword("load");
+            receiver.setCompression(compression);
+            receiver.setAllowPlainTransport(true);
+            receiver.setQueueInterval(0);
+            receiver.addChainsawEventBatchListener(this::received);
+
+            final long start = System.nanoTime();
+            receiver.start();
+
+            TimeUnit.SECONDS.sleep(seconds / 2);
+
+            final long beforeDrop = received.get();
+            final long dropped = System.nanoTime();
+            proxy.dropConnections();
+
+            long resumed = 0;
+            while (System.nanoTime() - dropped < TimeUnit.SECONDS.toNanos(seconds - seconds / 2)) {
+                if (resumed == 0 && proxy.getConnections() > 1 && received.get() > beforeDrop + 1
+                    && lastReceivedNanos.get() > dropped) {
+                    resumed = lastReceivedNanos.get();
+                }
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+
+            final double elapsed = (System.nanoTime() - start) / 1e9;
+            receiver.shutdown();
+
+            System.out.printf("sent %,d received %,d in %.1fs: %,.0f events/s%n",
+                proxy.getEventsSent(), received.get(), elapsed, received.get() / elapsed);
+            System.out.printf("latency ms p50 %d p99 %d p99.9 %d max %d%n",
+                percentile(0.5), percentile(0.99), percentile(0.999), percentile(1.0));
+            System.out.printf("connections %d, resumed %s after drop%n", proxy.getConnections(),
+                resumed == 0 ? "never" : TimeUnit.NANOSECONDS.toMillis(resumed - dropped) + "ms");
+            System.out.println("receiver " + receiver.getMetrics());
+        }
+    }
+
+    private void received(List<ChainsawLoggingEvent> events) {
+        final long now = System.currentTimeMillis();
+        for (ChainsawLoggingEvent event : events) {
+            final long latency = Math.max(0, now - event.m_timestamp.toEpochMilli());
+            latencies.incrementAndGet((int) Math.min(latency, MAX_LATENCY_MILLIS));
+        }
+        received.addAndGet(events.size());
+        lastReceivedNanos.set(System.nanoTime());
+    }
+
+    private long percentile(double fraction) {
+        final long total = received.get();
+        final long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int millis = 0; millis < latencies.length(); millis++) {
+            seen += latencies.get(millis);
+            if (seen >= target) {
+                return millis;
+            }
+        }
+        return MAX_LATENCY_MILLIS;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.apache.log4j.net.payload.StandInPayloadProxy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for PayloadProxyReceiver against a StandInPayloadProxy.
+ */
+public class PayloadProxyReceiverTest {
+
+    @Test
+    public void testReceivesCompressedBatchesAndReconnects() throws Exception {
+        try (StandInPayloadProxy proxy = new StandInPayloadProxy("secret")
+            .setEventsPerSecond(2000)
+            .setBatchSize(20)
+            .setCompression(true)
+            .start()) {
+
+            final List<ChainsawLoggingEvent> events = new CopyOnWriteArrayList<>();
+
+            final PayloadProxyReceiver receiver = new PayloadProxyReceiver();
+            receiver.setHost(proxy.getHost());
+            receiver.setBaseUrl(proxy.getBaseUrl());
+            receiver.setGuid("test");
+            receiver.setPassword("secret");
+            receiver.setAllowPlainTransport(true);
+            receiver.setQueueInterval(0);
+            receiver.addChainsawEventBatchListener(events::addAll);
+            receiver.start();
+
+            try {
+                waitFor(() -> events.size() >= 100);
+
+                final ChainsawLoggingEvent event = events.get(0);
+                assertTrue(event.m_message.startsWith("synthetic event "));
+                assertNotNull(event.m_logger);
+                assertNotNull(event.m_threadName);
+                assertTrue(event.m_level.ordinal() >= Level.TRACE.ordinal());
+
+                proxy.dropConnections();
+                final int beforeReconnect = events.size();
+                waitFor(() -> proxy.getConnections() > 1 && events.size() > beforeReconnect + 100);
+
+                assertTrue(receiver.getMetrics().getReconnects() >= 1);
+            } finally {
+                receiver.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testPlainTransportRefusedUnlessAllowed() throws Exception {
+        try (StandInPayloadProxy proxy = new StandInPayloadProxy("secret")
+            .setEventsPerSecond(2000)
+            .start()) {
+
+            final List<ChainsawLoggingEvent> events = new CopyOnWriteArrayList<>();
+
+            final PayloadProxyReceiver receiver = new PayloadProxyReceiver();
+            receiver.setHost(proxy.getHost());
+            receiver.setBaseUrl(proxy.getBaseUrl());
+            receiver.setGuid("test");
+            receiver.setPassword("secret");
+            receiver.setQueueInterval(0);
+            receiver.addChainsawEventBatchListener(events::addAll);
+            receiver.start();
+
+            try {
+                waitFor(() -> receiver.getMetrics().getConnectFailures() >= 1);
+
+                assertEquals(0, proxy.getConnections());
+                assertTrue(events.isEmpty());
+            } finally {
+                receiver.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testMultiplexedReceiverRoutesByGuid() throws Exception {
+        try (StandInPayloadProxy proxy = new StandInPayloadProxy("secret")
+            .setEventsPerSecond(2000)
+            .setBatchSize(5)
+            .start()) {
+
+            final List<ChainsawLoggingEvent> all = new CopyOnWriteArrayList<>();
+            final Map<String, List<ChainsawLoggingEvent>> byDevice = new ConcurrentHashMap<>();
+
+            final MultiplexedPayloadReceiver receiver = new MultiplexedPayloadReceiver();
+            receiver.setHost(proxy.getHost());
+            receiver.setBaseUrl(proxy.getBaseUrl());
+            receiver.setGuid("device-a, device-b");
+            receiver.setPassword("secret");
+            receiver.setTabPerDevice(true);
+            receiver.setAllowPlainTransport(true);
+            receiver.setQueueInterval(0);
+            receiver.addChainsawEventBatchListener(all::addAll);
+            receiver.addRouteListener(route -> {
+                final List<ChainsawLoggingEvent> events = new CopyOnWriteArrayList<>();
+                byDevice.put(((PayloadDeviceReceiver) route).getGuid(), events);
+                route.addChainsawEventBatchListener(events::addAll);
+            });
+            receiver.start();
+
+            try {
+                waitFor(() -> byDevice.size() == 2
+                    && byDevice.get("device-a").size() >= 50
+                    && byDevice.get("device-b").size() >= 50);
+
+                for (Map.Entry<String, List<ChainsawLoggingEvent>> entry : byDevice.entrySet()) {
+                    for (ChainsawLoggingEvent event : entry.getValue()) {
+                        assertEquals(entry.getKey(), event.getProperty(PayloadProxyReceiver.GUID_PROPERTY));
+                    }
+                }
+                assertTrue(all.size() >= 100);
+            } finally {
+                receiver.shutdown();
+            }
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+}
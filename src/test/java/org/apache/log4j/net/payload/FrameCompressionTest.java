@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net.payload;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for FrameCompression.
+ */
+public class FrameCompressionTest {
+    private static final byte[] EVENT =
+            "{\"message\":\"started\",\"name\":\"org.apache.Main\",\"level\":\"INFO\",\"time\":1}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testRoundTripsWithEitherDictionary() throws IOException {
+        for (int id : new int[] {FrameCompression.NO_DICTIONARY, FrameCompression.EVENT_DICTIONARY}) {
+            assertTrue(Arrays.equals(EVENT, inflate(FrameCompression.deflate(EVENT, 0, EVENT.length, id))));
+        }
+    }
+
+    @Test
+    public void testGrowsBufferForLargeFrames() throws IOException {
+        byte[] frame = new byte[1024 * 1024];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = EVENT[i % EVENT.length];
+        }
+
+        byte[] body = FrameCompression.deflate(frame, 0, frame.length, FrameCompression.EVENT_DICTIONARY);
+
+        assertTrue(Arrays.equals(frame, inflate(body)));
+    }
+
+    @Test
+    public void testRejectsDictionaryMismatch() {
+        // deflated with a dictionary the receiver doesn't have
+        Deflater deflater = new Deflater();
+        deflater.setDictionary("some other dictionary".getBytes(StandardCharsets.UTF_8));
+        byte[] body = deflate(deflater, FrameCompression.EVENT_DICTIONARY);
+
+        IOException e = assertThrows(IOException.class, () -> inflate(body));
+        assertEquals("Compressed frame uses a different dictionary", e.getMessage());
+    }
+
+    @Test
+    public void testRejectsDictionaryNotNamed() {
+        byte[] body = FrameCompression.deflate(EVENT, 0, EVENT.length, FrameCompression.EVENT_DICTIONARY);
+        body[0] = FrameCompression.NO_DICTIONARY;
+
+        IOException e = assertThrows(IOException.class, () -> inflate(body));
+        assertEquals("Compressed frame needs a dictionary but none was named", e.getMessage());
+    }
+
+    @Test
+    public void testRejectsUnknownDictionary() {
+        byte[] body = FrameCompression.deflate(EVENT, 0, EVENT.length, FrameCompression.NO_DICTIONARY);
+        body[0] = 9;
+
+        assertThrows(IOException.class, () -> inflate(body));
+    }
+
+    @Test
+    public void testRejectsTruncatedFrame() {
+        byte[] body = FrameCompression.deflate(EVENT, 0, EVENT.length, FrameCompression.EVENT_DICTIONARY);
+
+        IOException e = assertThrows(IOException.class, () -> inflate(Arrays.copyOf(body, body.length / 2)));
+        assertEquals("Compressed frame is truncated", e.getMessage());
+        assertThrows(IOException.class, () -> inflate(new byte[0]));
+    }
+
+    @Test
+    public void testRejectsFramesOverLengthLimit() throws IOException {
+        byte[] limit = new byte[FrameCompression.MAX_INFLATED_LENGTH];
+        byte[] limitBody = FrameCompression.deflate(limit, 0, limit.length, FrameCompression.NO_DICTIONARY);
+        assertEquals(limit.length, inflate(limitBody).length);
+
+        byte[] over = new byte[FrameCompression.MAX_INFLATED_LENGTH + 1];
+        byte[] body = FrameCompression.deflate(over, 0, over.length, FrameCompression.NO_DICTIONARY);
+
+        assertThrows(IOException.class, () -> inflate(body));
+    }
+
+    private static byte[] inflate(byte[] body) throws IOException {
+        byte[][] inflated = new byte[1][];
+        FrameCompression.inflate(body, 0, body.length, (frame, length) -> inflated[0] = Arrays.copyOf(frame, length));
+        return inflated[0];
+    }
+
+    private static byte[] deflate(Deflater deflater, int dictionaryId) {
+        deflater.setInput(EVENT);
+        deflater.finish();
+        byte[] out = new byte[1024];
+        out[0] = (byte) dictionaryId;
+        int length = 1;
+        while (!deflater.finished()) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        deflater.end();
+        return Arrays.copyOf(out, length);
+    }
+}
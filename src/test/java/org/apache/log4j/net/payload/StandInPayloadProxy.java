@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net.payload;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-process stand-in for the payload proxy service.
+ * <p>
+ * Serves the <code>channel</code> launch endpoint over HTTP, and a socket server streaming
+ * synthetic LogEvents as plain length-prefixed frames (see PlainFrameConnection) at a fixed
+ * rate to every client, so receivers must allow the plain transport to connect to it.
+ * Event times are the time the event was written, so receivers can measure latency.  Events are numbered in a channel-wide sequence which, when a rate is set,
+ * keeps advancing while no client is connected - like a live service - so a receiver sees the
+ * events it missed while reconnecting as a gap.
+ * <p>
+ * The <code>channels</code> endpoint launches several channels at once: the next connection
+ * accepted gets frames routed round-robin between them, each channel with its own sequence.
+ */
+public class StandInPayloadProxy implements AutoCloseable {
+
+    public static final String HOST = "localhost";
+
+    private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "INFO", "INFO", "WARN", "ERROR"};
+    private static final String[] LOGGERS = {
+        "org.example.web.RequestHandler", "org.example.db.ConnectionPool", "org.example.cache.Region", "org.example.auth.Login"
+    };
+
+    private final String password;
+    private final List<Socket> clients = new CopyOnWriteArrayList<>();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private volatile String[] pendingChannels;
+    private long startNanos;
+
+    private int eventsPerSecond = 1000;
+    private int batchSize = 1;
+    private boolean compression;
+
+    private HttpServer httpServer;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public StandInPayloadProxy(String password) {
+        this.password = password;
+    }
+
+    /**
+     * Events per second written to each client, 0 for as fast as possible.
+     */
+    public StandInPayloadProxy setEventsPerSecond(int eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+        return this;
+    }
+
+    /**
+     * Events per frame, 1 for a BROADCAST frame per event, more for BATCH frames.
+     */
+    public StandInPayloadProxy setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * Whether to compress frames for clients which offer compression.
+     */
+    public StandInPayloadProxy setCompression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public StandInPayloadProxy start() throws IOException {
+
+        running = true;
+        startNanos = System.nanoTime();
+
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        serverSocket = new ServerSocket(0, 50, loopback);
+        final Thread acceptor = new Thread(this::accept, "StandInPayloadProxy-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        httpServer = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        httpServer.createContext("/chainsawchoker/channel", this::launchChannel);
+        httpServer.createContext("/chainsawchoker/channels", this::launchChannel);
+        httpServer.start();
+
+        return this;
+    }
+
+    public String getHost() {
+        return HOST;
+    }
+
+    public String getBaseUrl() {
+        return "http://" + HOST + ":" + httpServer.getAddress().getPort() + "/chainsawchoker/";
+    }
+
+    public long getEventsSent() {
+        return eventsSent.get();
+    }
+
+    /**
+     * @return the number of client connections accepted so far
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Close every client connection, as if the network dropped, leaving the server running.
+     */
+    public void dropConnections() {
+        for (Socket client : clients) {
+            closeQuietly(client);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        if (serverSocket != null) {
+            closeQuietly(serverSocket);
+        }
+        dropConnections();
+    }
+
+    private void launchChannel(HttpExchange exchange) throws IOException {
+
+        final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        final int status;
+        final String body;
+
+        if (password != null && !password.equals(query.get("password"))) {
+            status = 401;
+            body = "{\"error\":\"bad password\"}";
+        } else {
+            status = 200;
+            final String channels = query.get("channels");
+            pendingChannels = channels == null ? null : channels.split(",");
+            final boolean compress = compression && query.get("compression") != null;
+            body = "{\"port\":" + serverSocket.getLocalPort()
+                + ",\"transport\":\"" + ChannelResponse.TRANSPORT_PLAIN + "\""
+                + (compress ? ",\"compression\":\"" + FrameCompression.NEGOTIATION + "\"" : "")
+                + "}";
+        }
+
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                final Socket client = serverSocket.accept();
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                connections.incrementAndGet();
+
+                final Thread feeder = new Thread(() -> feed(client), "StandInPayloadProxy-feed-" + client.getPort());
+                feeder.setDaemon(true);
+                feeder.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void feed(Socket client) {
+
+        final long nanosPerFrame = eventsPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(batchSize) / eventsPerSecond;
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream(batchSize * 200);
+        long next = System.nanoTime();
+
+        final String[] channels = pendingChannels == null ? new String[] {""} : pendingChannels;
+        pendingChannels = null;
+
+        if (eventsPerSecond > 0) {
+            // skip the events "sent" while nobody was connected
+            final long due = (next - startNanos) * eventsPerSecond / TimeUnit.SECONDS.toNanos(1) / channels.length;
+            for (String channel : channels) {
+                sequences.computeIfAbsent(channel, key -> new AtomicLong()).accumulateAndGet(due, Math::max);
+            }
+        }
+
+        long frames = 0;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream(), 64 * 1024))) {
+
+            while (running && !client.isClosed()) {
+
+                frame.reset();
+
+                final String channel = channels[(int) (frames++ % channels.length)];
+                final AtomicLong sequence = sequences.computeIfAbsent(channel, key -> new AtomicLong());
+
+                if (!channel.isEmpty()) {
+                    writeType(frame, 'R');
+                    frame.write(channel.length());
+                    frame.write(channel.getBytes(StandardCharsets.US_ASCII));
+                }
+
+                if (batchSize == 1) {
+                    writeType(frame, 'B');
+                    frame.write(event(sequence.getAndIncrement()));
+                } else {
+                    writeType(frame, 'M');
+                    writeIntLE(frame, batchSize);
+                    for (int i = 0; i < batchSize; i++) {
+                        final byte[] event = event(sequence.getAndIncrement());
+                        writeIntLE(frame, event.length);
+                        frame.write(event);
+                    }
+                }
+
+                byte[] bytes = frame.toByteArray();
+
+                if (compression) {
+                    final byte[] compressed = FrameCompression.deflate(bytes, 0, bytes.length, FrameCompression.EVENT_DICTIONARY);
+                    bytes = new byte[compressed.length + 2];
+                    bytes[0] = 0;
+                    bytes[1] = 'Z';
+                    System.arraycopy(compressed, 0, bytes, 2, compressed.length);
+                }
+
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                eventsSent.addAndGet(batchSize);
+
+                if (nanosPerFrame > 0) {
+                    out.flush();
+                    next += nanosPerFrame;
+                    final long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+            }
+
+        } catch (IOException e) {
+            // client went away or was dropped
+        } finally {
+            clients.remove(client);
+            closeQuietly(client);
+        }
+    }
+
+    private static byte[] event(long sequence) {
+        final int index = (int) (sequence % 997);
+        return ("{\"message\":\"synthetic event " + sequence + "\""
+            + ",\"name\":\"" + LOGGERS[index % LOGGERS.length] + "\""
+            + ",\"threadName\":\"worker-" + (index % 8) + "\""
+            + ",\"level\":\"" + LEVELS[index % LEVELS.length] + "\""
+            + ",\"time\":" + System.currentTimeMillis()
+            + ",\"sequence\":" + sequence
+            + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeType(ByteArrayOutputStream out, char type) {
+        out.write(type >>> 8);
+        out.write(type);
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        final Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                final int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.xml;
+
+import java.util.Vector;
+import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.chainsaw.logevents.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for UtilLoggingXMLDecoder.
+ */
+public class UtilLoggingXMLDecoderTest {
+
+    private static final String HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+            + "<!DOCTYPE log SYSTEM \"logger.dtd\">\n"
+            + "<log>\n";
+
+    private static String record(int sequence, String level) {
+        return "<record>\n"
+                + "  <date>2024-01-01T00:00:00</date>\n"
+                + "  <millis>" + (1000 + sequence) + "</millis>\n"
+                + "  <sequence>" + sequence + "</sequence>\n"
+                + "  <logger>org.example.Test</logger>\n"
+                + "  <level>" + level + "</level>\n"
+                + "  <class>org.example.Test</class>\n"
+                + "  <method>run</method>\n"
+                + "  <thread>1</thread>\n"
+                + "  <message>message &amp; " + sequence + "</message>\n"
+                + "  <exception><message>boom</message><frame><class>C</class><method>m</method></frame></exception>\n"
+                + "</record>\n";
+    }
+
+    @Test
+    public void testDecodeEventsAcrossPieces() {
+        UtilLoggingXMLDecoder decoder = new UtilLoggingXMLDecoder();
+
+        // the head and the start of the first record, as the first write of a log would be
+        String first = record(0, "FINE");
+        assertNull(decoder.decodeEvents(HEAD + first.substring(0, 40)));
+
+        Vector<ChainsawLoggingEvent> events =
+                decoder.decodeEvents(first.substring(40) + record(1, "SEVERE") + record(2, "WARNING").substring(0, 10));
+        assertEquals(2, events.size());
+        assertEquals(Level.DEBUG, events.get(0).m_level);
+        assertEquals("message & 1", events.get(1).m_message);
+        assertEquals(Level.ERROR, events.get(1).m_level);
+        assertEquals("1", events.get(1).m_mdc.get("log4jid"));
+
+        events = decoder.decodeEvents(record(2, "WARNING").substring(10) + "</log>");
+        assertEquals(1, events.size());
+        assertEquals(Level.WARN, events.get(0).m_level);
+        assertEquals(1002, events.get(0).m_timestamp.toEpochMilli());
+    }
+}
@@ -21,9 +21,14 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 import org.apache.log4j.chainsaw.logevents.ChainsawLoggingEvent;
+import org.apache.log4j.spi.StreamingDecoder;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -80,4 +85,56 @@ public class XMLDecoderTest {
         Vector<ChainsawLoggingEvent> events = decoder.decode(resource);
         assertEquals(15, events.size());
     }
+
+    @Test
+    public void testDecodeEventsInPieces() throws Exception {
+        String xmlStr = getStringFromResource("xmlLayout.1.xml", 10000);
+        XMLDecoder decoder = new XMLDecoder();
+        List<ChainsawLoggingEvent> events = new ArrayList<>();
+        // split records, tags and the CDATA sections across pieces
+        for (int i = 0; i < xmlStr.length(); i += 7) {
+            decoder.decodeEvents(xmlStr.substring(i, Math.min(xmlStr.length(), i + 7)), events::add);
+        }
+        assertEquals(17, events.size());
+        assertEquals("in X() constructor", events.get(0).m_message);
+    }
+
+    @Test
+    public void testDecodeBytesSplitWithinCharacters() {
+        String event = "<log4j:event logger=\"l\" timestamp=\"1\" level=\"INFO\" thread=\"t\">"
+                + "<log4j:message><![CDATA[caf\u00e9 \u20ac \ud834\udd1e]]></log4j:message></log4j:event>\n";
+        byte[] bytes = (event + event + event).getBytes(StandardCharsets.UTF_8);
+        StreamingDecoder decoder = StreamingDecoder.of(new XMLDecoder());
+        List<ChainsawLoggingEvent> events = new ArrayList<>();
+        long consumed = 0;
+        for (int i = 0; i < bytes.length; i += 5) {
+            consumed += decoder.decode(
+                    ByteBuffer.wrap(bytes, i, Math.min(5, bytes.length - i)), StandardCharsets.UTF_8, events::add);
+        }
+        assertEquals(bytes.length, consumed);
+        assertEquals(3, events.size());
+        assertEquals("caf\u00e9 \u20ac \ud834\udd1e", events.get(2).m_message);
+    }
+
+    @Test
+    public void testTakeRecordsThenDecodeElsewhere() {
+        String event = "<log4j:event logger=\"l\" timestamp=\"1\" level=\"INFO\" thread=\"t\">"
+                + "<log4j:message>m</log4j:message></log4j:event>\n";
+        byte[] bytes = ("<?xml version=\"1.0\"?>\n" + event + event + event).getBytes(StandardCharsets.UTF_8);
+        XMLDecoder splitter = new XMLDecoder();
+        XMLDecoder reader = new XMLDecoder();
+        List<ChainsawLoggingEvent> events = new ArrayList<>();
+        int chunks = 0;
+        for (int i = 0; i < bytes.length; i += 70) {
+            String records = splitter.takeRecords(
+                    ByteBuffer.wrap(bytes, i, Math.min(70, bytes.length - i)), StandardCharsets.UTF_8);
+            if (records != null) {
+                chunks++;
+                reader.decodeRecords(records, events::add);
+            }
+        }
+        assertEquals(3, chunks);
+        assertEquals(3, events.size());
+        assertEquals("m", events.get(0).m_message);
+    }
 }